@@ -1,19 +1,28 @@
 package org.example.banksystem.config;
 
+import org.example.banksystem.security.BCryptCostCalibrator;
 import org.example.banksystem.security.JwtTokenFilter;
 import org.example.banksystem.security.JwtTokenProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
+import java.time.Duration;
+
 @Configuration
 public class BeanConfig {
 
     @Bean
-    public BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BCryptPasswordEncoder passwordEncoder(@Value("${auth.bcrypt.strength:0}") int strength,
+                                                 @Value("${auth.bcrypt.target-time:250ms}") Duration targetTime,
+                                                 @Value("${auth.bcrypt.min-strength:10}") int minStrength,
+                                                 @Value("${auth.bcrypt.max-strength:16}") int maxStrength) {
+        return new BCryptPasswordEncoder(strength > 0
+                ? strength
+                : BCryptCostCalibrator.calibrate(targetTime, minStrength, maxStrength));
     }
 
     @Bean
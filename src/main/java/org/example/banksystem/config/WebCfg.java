@@ -54,7 +54,9 @@ public class WebCfg {
                                 "/configuration/ui",
                                 "/configuration/security",
                                 "/webjars/**",
-                                "/error").permitAll()
+                                "/error",
+                                "/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .requestMatchers("/api/card/**").hasAnyRole("ADMIN", "USER")
                         .requestMatchers("/api/admin/**").hasRole("ADMIN")
                 )
@@ -1,12 +1,18 @@
 package org.example.banksystem.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.example.banksystem.dto.request.*;
 import org.example.banksystem.dto.response.*;
 import org.example.banksystem.service.CardService;
+import org.example.banksystem.service.KeyRotationService;
+import org.example.banksystem.service.UserImportService;
 import org.example.banksystem.service.UserService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.*;
 
@@ -30,6 +36,8 @@ import io.swagger.v3.oas.annotations.tags.Tag;
  * @version 1.0
  * @see CardService
  * @see UserService
+ * @see KeyRotationService
+ * @see UserImportService
  */
 @RequiredArgsConstructor
 @RestController
@@ -38,8 +46,13 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 @SecurityRequirement(name = "bearerAuth")
 public class AdminController {
 
+    private static final String TEXT_CSV = "text/csv";
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
     private final CardService cardService;
     private final UserService userService;
+    private final KeyRotationService keyRotationService;
+    private final UserImportService userImportService;
 
     /**
      * Получает список всех банковских карт в системе
@@ -70,6 +83,46 @@ public class AdminController {
         return ResponseEntity.ok(ApiResponseDTO.success("Cards", cardService.getAllCards()));
     }
 
+    /**
+     * Находит банковскую карту по полному номеру
+     *
+     * @param request DTO с номером карты
+     * @return ResponseEntity с ApiResponseDTO содержащим найденную карту
+     */
+    @Operation(
+            summary = "Найти карту по номеру",
+            description = "Поиск банковской карты по полному номеру через слепой индекс. Только для администраторов."
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Карта найдена",
+                    content = @Content(schema = @Schema(implementation = java.util.Map.class))
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Пользователь не аутентифицирован"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Недостаточно прав (требуется роль ADMIN)"
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Карта с указанным номером не найдена"
+            )
+    })
+    @PostMapping("/cards/search")
+    public ResponseEntity<ApiResponseDTO<CardResponse>> findCard(
+            @Parameter(
+                    description = "Номер карты для поиска",
+                    required = true,
+                    schema = @Schema(implementation = CardSearchRequest.class)
+            )
+            @RequestBody CardSearchRequest request) {
+        return ResponseEntity.ok(ApiResponseDTO.success("Card", cardService.findCardByNumber(request.card_number())));
+    }
+
     /**
      * Создает новую банковскую карту для пользователя
      *
@@ -152,6 +205,58 @@ public class AdminController {
         return ResponseEntity.ok(ApiResponseDTO.success("Card updated"));
     }
 
+    /**
+     * Частично обновляет банковскую карту
+     *
+     * @param id идентификатор карты
+     * @param card DTO с изменяемыми полями карты
+     * @return ResponseEntity с результатом операции
+     */
+    @Operation(
+            summary = "Частично обновить карту",
+            description = "Обновление только переданных полей банковской карты. Номер карты шифруется, только если он передан. Только для администраторов."
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Карта успешно обновлена",
+                    content = @Content(schema = @Schema(implementation = java.util.Map.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Неверные данные запроса (статус не найден, номер занят или нет полей)"
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Пользователь не аутентифицирован"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Недостаточно прав (требуется роль ADMIN)"
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Карта или новый владелец не найдены"
+            )
+    })
+    @PatchMapping("/cards/{id}")
+    public ResponseEntity<ApiResponseDTO<Void>> patchCard(
+            @Parameter(
+                    description = "ID карты для обновления",
+                    required = true,
+                    example = "1"
+            )
+            @PathVariable("id") Integer id,
+            @Parameter(
+                    description = "Изменяемые поля карты",
+                    required = true,
+                    schema = @Schema(implementation = CardPatchRequest.class)
+            )
+            @RequestBody CardPatchRequest card) {
+        cardService.patchCard(id, card.card_number(), card.cardholder(), card.expiry_date(), card.status(), card.balance());
+        return ResponseEntity.ok(ApiResponseDTO.success("Card updated"));
+    }
+
     /**
      * Удаляет банковскую карту по идентификатору
      *
@@ -263,6 +368,53 @@ public class AdminController {
         return ResponseEntity.ok(ApiResponseDTO.success("User successfully added"));
     }
 
+    /**
+     * Импортирует пользователей из файла CSV или NDJSON
+     * <p>
+     * Тело запроса читается потоком, результат каждой строки возвращается в формате NDJSON
+     * по мере обработки, поэтому ни файл, ни ответ не держатся в памяти целиком.
+     * </p>
+     *
+     * @param contentType тип тела запроса: text/csv или application/x-ndjson
+     * @param httpRequest запрос, из которого читается файл
+     * @return ResponseEntity с потоком результатов по строкам
+     */
+    @Operation(
+            summary = "Импортировать пользователей",
+            description = "Массовое создание пользователей из CSV (username,password,role) или NDJSON. "
+                    + "Возвращает результат каждой строки в формате NDJSON. Только для администраторов."
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Файл обработан, результаты строк в теле ответа",
+                    content = @Content(mediaType = "application/x-ndjson",
+                            schema = @Schema(implementation = UserImportResult.class))
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Пользователь не аутентифицирован"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Недостаточно прав (требуется роль ADMIN)"
+            ),
+            @ApiResponse(
+                    responseCode = "415",
+                    description = "Неподдерживаемый тип тела запроса"
+            )
+    })
+    @PostMapping(value = "/users/import", consumes = {TEXT_CSV, APPLICATION_NDJSON}, produces = APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> importUsers(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            HttpServletRequest httpRequest) {
+        UserImportService.Format format = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.valueOf(TEXT_CSV))
+                ? UserImportService.Format.CSV
+                : UserImportService.Format.NDJSON;
+        StreamingResponseBody body = output -> userImportService.importUsers(httpRequest.getInputStream(), format, output);
+        return ResponseEntity.ok().contentType(MediaType.valueOf(APPLICATION_NDJSON)).body(body);
+    }
+
     /**
      * Обновляет данные существующего пользователя
      *
@@ -304,6 +456,58 @@ public class AdminController {
         return ResponseEntity.ok(ApiResponseDTO.success("User successfully updated"));
     }
 
+    /**
+     * Частично обновляет пользователя
+     *
+     * @param id имя пользователя
+     * @param user DTO с изменяемыми полями пользователя
+     * @return ResponseEntity с результатом операции
+     */
+    @Operation(
+            summary = "Частично обновить пользователя",
+            description = "Обновление только переданных полей пользователя. Пароль хешируется, только если он передан. Только для администраторов."
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Пользователь успешно обновлен",
+                    content = @Content(schema = @Schema(implementation = java.util.Map.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Неверные данные запроса (роль не найдена или нет полей)"
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Пользователь не аутентифицирован"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Недостаточно прав (требуется роль ADMIN)"
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Пользователь не найден"
+            )
+    })
+    @PatchMapping("/users/{id}")
+    public ResponseEntity<ApiResponseDTO<Void>> patchUser(
+            @Parameter(
+                    description = "ID пользователя для обновления",
+                    required = true,
+                    example = "user123"
+            )
+            @PathVariable("id") String id,
+            @Parameter(
+                    description = "Изменяемые поля пользователя",
+                    required = true,
+                    schema = @Schema(implementation = UserPatchRequest.class)
+            )
+            @RequestBody UserPatchRequest user) {
+        userService.patchUser(id, user.password(), user.role());
+        return ResponseEntity.ok(ApiResponseDTO.success("User successfully updated"));
+    }
+
     /**
      * Удаляет пользователя по идентификатору
      *
@@ -344,4 +548,136 @@ public class AdminController {
         userService.delete(id);
         return ResponseEntity.ok(ApiResponseDTO.success("User successfully deleted"));
     }
-}
\ No newline at end of file
+
+    /**
+     * Отзывает все выданные пользователю JWT токены
+     *
+     * @param id имя пользователя
+     * @return ResponseEntity с результатом операции
+     */
+    @Operation(
+            summary = "Отозвать токены пользователя",
+            description = "Делает недействительными все выданные пользователю токены. Пользователю потребуется войти заново."
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Токены пользователя отозваны",
+                    content = @Content(schema = @Schema(implementation = java.util.Map.class))
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Пользователь не аутентифицирован"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Недостаточно прав (требуется роль ADMIN)"
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Пользователь не найден"
+            )
+    })
+    @PostMapping("/users/{id}/revoke-tokens")
+    public ResponseEntity<ApiResponseDTO<Void>> revokeUserTokens(
+            @Parameter(
+                    description = "ID пользователя, токены которого отзываются",
+                    required = true,
+                    example = "user123"
+            )
+            @PathVariable("id") String id) {
+        userService.revokeTokens(id);
+        return ResponseEntity.ok(ApiResponseDTO.success("User tokens successfully revoked"));
+    }
+
+    /**
+     * Получает состояние ротации ключа шифрования номеров карт
+     *
+     * @return ResponseEntity с ApiResponseDTO содержащим прогресс ротации
+     */
+    @Operation(
+            summary = "Состояние ротации ключа",
+            description = "Возвращает прогресс и скорость фонового перешифрования номеров карт активным ключом."
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Успешное получение состояния",
+                    content = @Content(schema = @Schema(implementation = java.util.Map.class))
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Пользователь не аутентифицирован"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Недостаточно прав (требуется роль ADMIN)"
+            )
+    })
+    @GetMapping("/key-rotation")
+    public ResponseEntity<ApiResponseDTO<KeyRotationResponse>> getKeyRotation() {
+        return ResponseEntity.ok(ApiResponseDTO.success("Key rotation", keyRotationService.getStatus()));
+    }
+
+    /**
+     * Запускает фоновую ротацию ключа шифрования номеров карт
+     *
+     * @return ResponseEntity с ApiResponseDTO содержащим состояние запущенной ротации
+     */
+    @Operation(
+            summary = "Запустить ротацию ключа",
+            description = "Запускает фоновое перешифрование номеров карт активным ключом связки codec.keys."
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "202",
+                    description = "Ротация запущена",
+                    content = @Content(schema = @Schema(implementation = java.util.Map.class))
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Пользователь не аутентифицирован"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Недостаточно прав (требуется роль ADMIN)"
+            ),
+            @ApiResponse(
+                    responseCode = "409",
+                    description = "Ротация уже выполняется"
+            )
+    })
+    @PostMapping("/key-rotation")
+    public ResponseEntity<ApiResponseDTO<KeyRotationResponse>> startKeyRotation() {
+        return ResponseEntity.accepted().body(ApiResponseDTO.success("Key rotation started", keyRotationService.start()));
+    }
+
+    /**
+     * Останавливает ротацию ключа после текущей пачки
+     *
+     * @return ResponseEntity с ApiResponseDTO содержащим состояние ротации
+     */
+    @Operation(
+            summary = "Остановить ротацию ключа",
+            description = "Останавливает фоновое перешифрование после текущей пачки. Повторный запуск продолжит с необработанных карт."
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Запрос на остановку принят",
+                    content = @Content(schema = @Schema(implementation = java.util.Map.class))
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Пользователь не аутентифицирован"
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Недостаточно прав (требуется роль ADMIN)"
+            )
+    })
+    @DeleteMapping("/key-rotation")
+    public ResponseEntity<ApiResponseDTO<KeyRotationResponse>> cancelKeyRotation() {
+        return ResponseEntity.ok(ApiResponseDTO.success("Key rotation cancellation requested", keyRotationService.cancel()));
+    }
+}
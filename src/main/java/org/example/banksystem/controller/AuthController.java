@@ -1,12 +1,15 @@
 package org.example.banksystem.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.example.banksystem.dto.request.AuthRequest;
 import org.example.banksystem.dto.response.ApiResponseDTO;
+import org.example.banksystem.dto.response.AuthCookies;
+import org.example.banksystem.security.AuthRateLimiter;
 import org.example.banksystem.service.AuthService;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CookieValue;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -23,6 +26,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 /**
  * Контроллер для обработки запросов аутентификации и регистрации пользователей.
  * Предоставляет endpoints для входа в систему и создания новых учетных записей.
+ * Частота попыток ограничивается {@link AuthRateLimiter} до обращения к сервису.
  *
  * @author George
  * @version 1.0
@@ -35,19 +39,21 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 public class AuthController {
 
     private final AuthService authService;
+    private final AuthRateLimiter authRateLimiter;
 
     /**
      * Выполняет аутентификацию пользователя в системе.
-     * При успешной аутентификации возвращает JWT токен в виде HTTP cookie.
+     * При успешной аутентификации возвращает JWT и refresh токены в виде HTTP cookie.
      *
      * @param request объект {@link AuthRequest} содержащий учетные данные пользователя
-     * @return {@link ResponseEntity} с {@link ApiResponseDTO} и JWT токеном в cookie
+     * @param httpRequest HTTP запрос, из которого берется адрес клиента
+     * @return {@link ResponseEntity} с {@link ApiResponseDTO} и токенами в cookie
      * @see AuthRequest
      * @see ApiResponseDTO
      */
     @Operation(
             summary = "Вход в систему",
-            description = "Аутентификация пользователя и получение JWT токена в cookie"
+            description = "Аутентификация пользователя и получение JWT и refresh токенов в cookie"
     )
     @ApiResponses({
             @ApiResponse(
@@ -64,6 +70,16 @@ public class AuthController {
                     responseCode = "404",
                     description = "Пользователь не найден",
                     content = @Content(schema = @Schema(implementation = java.util.Map.class))
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = "Превышен лимит попыток, повторите через Retry-After секунд",
+                    content = @Content(schema = @Schema(implementation = java.util.Map.class))
+            ),
+            @ApiResponse(
+                    responseCode = "503",
+                    description = "Слишком много запросов аутентификации, повторите через Retry-After секунд",
+                    content = @Content(schema = @Schema(implementation = java.util.Map.class))
             )
     })
     @PostMapping("/login")
@@ -73,9 +89,90 @@ public class AuthController {
                     required = true,
                     schema = @Schema(implementation = AuthRequest.class)
             )
-            @RequestBody AuthRequest request) {
-        ResponseCookie cookie = authService.login(request.username(), request.password());
-        return ResponseEntity.ok().header(HttpHeaders.SET_COOKIE, cookie.toString()).body(ApiResponseDTO.success("Authorization success"));
+            @RequestBody AuthRequest request,
+            HttpServletRequest httpRequest) {
+        authRateLimiter.checkClient(httpRequest.getRemoteAddr());
+        authRateLimiter.checkUsername(request.username());
+        AuthCookies cookies = authService.login(request.username(), request.password());
+        return ResponseEntity.ok()
+                .header(HttpHeaders.SET_COOKIE, cookies.accessToken().toString(), cookies.refreshToken().toString())
+                .body(ApiResponseDTO.success("Authorization success"));
+    }
+
+    /**
+     * Обновляет токены без повторного ввода пароля.
+     * Обменивает одноразовый refresh токен из cookie на новые JWT и refresh токены.
+     * Повторное использование refresh токена отзывает все токены пользователя.
+     *
+     * @param refreshToken refresh токен из cookie или null, если cookie отсутствует
+     * @param httpRequest HTTP запрос, из которого берется адрес клиента
+     * @return {@link ResponseEntity} с {@link ApiResponseDTO} и новыми токенами в cookie
+     * @see ApiResponseDTO
+     */
+    @Operation(
+            summary = "Обновление токенов",
+            description = "Обмен refresh токена из cookie на новые JWT и refresh токены"
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Токены обновлены",
+                    content = @Content(schema = @Schema(implementation = java.util.Map.class))
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Refresh токен отсутствует, недействителен или уже использован",
+                    content = @Content(schema = @Schema(implementation = java.util.Map.class))
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = "Превышен лимит попыток, повторите через Retry-After секунд",
+                    content = @Content(schema = @Schema(implementation = java.util.Map.class))
+            )
+    })
+    @PostMapping("/refresh")
+    public ResponseEntity<ApiResponseDTO<Void>> refresh(
+            @Parameter(hidden = true)
+            @CookieValue(name = AuthService.REFRESH_COOKIE, required = false) String refreshToken,
+            HttpServletRequest httpRequest) {
+        authRateLimiter.checkClient(httpRequest.getRemoteAddr());
+        AuthCookies cookies = authService.refresh(refreshToken);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.SET_COOKIE, cookies.accessToken().toString(), cookies.refreshToken().toString())
+                .body(ApiResponseDTO.success("Token refresh success"));
+    }
+
+    /**
+     * Выполняет выход из системы.
+     * Отзывает JWT токен из cookie до его истечения, отзывает refresh токены сессии
+     * и удаляет cookie у клиента.
+     *
+     * @param token JWT токен из cookie или null, если cookie отсутствует
+     * @param refreshToken refresh токен из cookie или null, если cookie отсутствует
+     * @return {@link ResponseEntity} с {@link ApiResponseDTO} и удаляющими cookie заголовками
+     * @see ApiResponseDTO
+     */
+    @Operation(
+            summary = "Выход из системы",
+            description = "Отзыв текущих JWT и refresh токенов и удаление cookie"
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Выход выполнен",
+                    content = @Content(schema = @Schema(implementation = java.util.Map.class))
+            )
+    })
+    @PostMapping("/logout")
+    public ResponseEntity<ApiResponseDTO<Void>> logout(
+            @Parameter(hidden = true)
+            @CookieValue(name = AuthService.ACCESS_COOKIE, required = false) String token,
+            @Parameter(hidden = true)
+            @CookieValue(name = AuthService.REFRESH_COOKIE, required = false) String refreshToken) {
+        AuthCookies cookies = authService.logout(token, refreshToken);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.SET_COOKIE, cookies.accessToken().toString(), cookies.refreshToken().toString())
+                .body(ApiResponseDTO.success("Logout success"));
     }
 
     /**
@@ -83,6 +180,7 @@ public class AuthController {
      * Создает учетную запись с ролью ROLE_USER по умолчанию.
      *
      * @param request объект {@link AuthRequest} содержащий данные для регистрации
+     * @param httpRequest HTTP запрос, из которого берется адрес клиента
      * @return {@link ResponseEntity} с {@link ApiResponseDTO} содержащим результат операции
      * @see AuthRequest
      * @see ApiResponseDTO
@@ -101,6 +199,16 @@ public class AuthController {
                     responseCode = "401",
                     description = "Пользователь уже существует",
                     content = @Content(schema = @Schema(implementation = java.util.Map.class))
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = "Превышен лимит попыток, повторите через Retry-After секунд",
+                    content = @Content(schema = @Schema(implementation = java.util.Map.class))
+            ),
+            @ApiResponse(
+                    responseCode = "503",
+                    description = "Слишком много запросов аутентификации, повторите через Retry-After секунд",
+                    content = @Content(schema = @Schema(implementation = java.util.Map.class))
             )
     })
     @PostMapping("/register")
@@ -110,7 +218,10 @@ public class AuthController {
                     required = true,
                     schema = @Schema(implementation = AuthRequest.class)
             )
-            @RequestBody AuthRequest request) {
+            @RequestBody AuthRequest request,
+            HttpServletRequest httpRequest) {
+        authRateLimiter.checkClient(httpRequest.getRemoteAddr());
+        authRateLimiter.checkUsername(request.username());
         authService.registerUser(request.username(), request.password());
         return ResponseEntity.ok(ApiResponseDTO.success("User successfully registered"));
     }
@@ -3,13 +3,17 @@ package org.example.banksystem.controller;
 import lombok.RequiredArgsConstructor;
 import org.example.banksystem.dto.request.*;
 import org.example.banksystem.dto.response.ApiResponseDTO;
+import org.example.banksystem.dto.response.BatchTransferResult;
+import org.example.banksystem.dto.response.CardBalanceResponse;
 import org.example.banksystem.dto.response.CardResponse;
 import org.example.banksystem.entity.User;
+import org.example.banksystem.service.BatchTransferService;
 import org.example.banksystem.service.CardService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
 import java.util.List;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -31,6 +35,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
  * @author George
  * @version 1.0
  * @see CardService
+ * @see BatchTransferService
  */
 @RequiredArgsConstructor
 @RequestMapping("/api/card")
@@ -39,7 +44,10 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 @SecurityRequirement(name = "bearerAuth")
 public class CardController {
 
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
     private final CardService cardService;
+    private final BatchTransferService batchTransferService;
 
     /**
      * Получает список всех карт текущего аутентифицированного пользователя
@@ -122,8 +130,13 @@ public class CardController {
 
     /**
      * Выполняет перевод средств между картами текущего пользователя
+     * <p>
+     * Повтор запроса с тем же заголовком Idempotency-Key возвращает результат первого перевода,
+     * не изменяя балансы.
+     * </p>
      *
      * @param request DTO с данными для перевода
+     * @param idempotencyKey ключ идемпотентности клиента или null
      * @param user аутентифицированный пользователь
      * @return ResponseEntity с результатом операции
      */
@@ -147,6 +160,11 @@ public class CardController {
                     description = "Карта не принадлежит пользователю",
                     content = @Content(schema = @Schema(implementation = java.util.Map.class))
             ),
+            @ApiResponse(
+                    responseCode = "422",
+                    description = "Ключ идемпотентности уже использован для другого перевода",
+                    content = @Content(schema = @Schema(implementation = java.util.Map.class))
+            ),
             @ApiResponse(
                     responseCode = "401",
                     description = "Пользователь не аутентифицирован"
@@ -160,13 +178,121 @@ public class CardController {
                     schema = @Schema(implementation = TransferRequest.class)
             )
             @RequestBody TransferRequest request,
+            @Parameter(
+                    description = "Ключ идемпотентности, до 64 символов",
+                    example = "5f0c6a1e-8d3b-4a47-9c1e-2b7f4d9a6e10"
+            )
+            @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
             @Parameter(
                     description = "Аутентифицированный пользователь",
                     hidden = true
             )
             @AuthenticationPrincipal User user) {
-        cardService.transfer(request.from(), request.to(), request.amount(), user.getUsername());
+        cardService.transfer(request.from(), request.to(), request.amount(), user.getUsername(), idempotencyKey);
         return ResponseEntity.ok(ApiResponseDTO.success("Card successfully transferred"));
     }
 
-}
\ No newline at end of file
+    /**
+     * Выполняет пакет переводов между картами текущего пользователя в одной транзакции
+     *
+     * @param transfers переводы в порядке применения
+     * @param mode режим применения пакета
+     * @param user аутентифицированный пользователь
+     * @return ResponseEntity с ApiResponseDTO содержащим результат каждого перевода
+     */
+    @Operation(
+            summary = "Пакет переводов между картами",
+            description = "Выполнение пакета переводов в одной транзакции. ALL_OR_NOTHING применяет пакет, только если "
+                    + "прошли все переводы, BEST_EFFORT применяет прошедшие переводы"
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Пакет обработан, результат каждого перевода в ответе",
+                    content = @Content(schema = @Schema(implementation = java.util.Map.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Пакет пуст или превышает допустимый размер",
+                    content = @Content(schema = @Schema(implementation = java.util.Map.class))
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Пользователь не аутентифицирован"
+            )
+    })
+    @PostMapping("/cards/transfers:batch")
+    public ResponseEntity<ApiResponseDTO<List<BatchTransferResult>>> transferBatch(
+            @Parameter(
+                    description = "Переводы в порядке применения",
+                    required = true
+            )
+            @RequestBody List<TransferRequest> transfers,
+            @Parameter(
+                    description = "Режим применения пакета",
+                    example = "ALL_OR_NOTHING"
+            )
+            @RequestParam(defaultValue = "ALL_OR_NOTHING") BatchTransferService.Mode mode,
+            @Parameter(
+                    description = "Аутентифицированный пользователь",
+                    hidden = true
+            )
+            @AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(ApiResponseDTO.success("Transfers:", batchTransferService.transfer(transfers, mode, user.getUsername())));
+    }
+
+    /**
+     * Получает баланс карты текущего пользователя на момент времени
+     *
+     * @param card_id идентификатор карты
+     * @param asOf момент времени в формате ISO-8601, по умолчанию текущий
+     * @param user аутентифицированный пользователь
+     * @return ResponseEntity с ApiResponseDTO содержащим баланс карты
+     */
+    @Operation(
+            summary = "Баланс карты на момент времени",
+            description = "Вычисляет баланс карты из последнего снимка баланса и журнала переводов после него"
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Баланс успешно вычислен",
+                    content = @Content(schema = @Schema(implementation = java.util.Map.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Нет истории баланса карты на этот момент",
+                    content = @Content(schema = @Schema(implementation = java.util.Map.class))
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Карта не принадлежит пользователю",
+                    content = @Content(schema = @Schema(implementation = java.util.Map.class))
+            ),
+            @ApiResponse(
+                    responseCode = "401",
+                    description = "Пользователь не аутентифицирован"
+            )
+    })
+    @GetMapping("/cards/{card_id}/balance")
+    public ResponseEntity<ApiResponseDTO<CardBalanceResponse>> getBalance(
+            @Parameter(
+                    description = "ID карты",
+                    required = true,
+                    example = "1"
+            )
+            @PathVariable Integer card_id,
+            @Parameter(
+                    description = "Момент времени в формате ISO-8601",
+                    example = "2024-01-15T10:30:00Z"
+            )
+            @RequestParam(required = false) Instant asOf,
+            @Parameter(
+                    description = "Аутентифицированный пользователь",
+                    hidden = true
+            )
+            @AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(ApiResponseDTO.success("Balance:", cardService.getBalanceAsOf(card_id, asOf, user.getUsername())));
+    }
+
+}
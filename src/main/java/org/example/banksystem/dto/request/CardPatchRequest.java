@@ -0,0 +1,56 @@
+package org.example.banksystem.dto.request;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.Date;
+
+/**
+ * DTO для запросов частичного обновления банковской карты
+ * <p>
+ * Передаются только изменяемые поля, отсутствующие поля остаются без изменений.
+ * Номер карты шифруется только если он передан.
+ * </p>
+ *
+ * @param card_number новый номер банковской карты или null
+ * @param cardholder новый владелец карты или null
+ * @param expiry_date новый срок действия карты или null
+ * @param status новый статус карты или null
+ * @param balance новый баланс карты или null
+ */
+@Schema(description = "DTO для запросов частичного обновления банковской карты")
+public record CardPatchRequest(
+        @Schema(
+                description = "Новый номер банковской карты",
+                example = "1234567812345678",
+                requiredMode = Schema.RequiredMode.NOT_REQUIRED,
+                minLength = 16,
+                maxLength = 16)
+        String card_number,
+
+        @Schema(
+                description = "Новый владелец карты (ник пользователя)",
+                example = "user",
+                requiredMode = Schema.RequiredMode.NOT_REQUIRED,
+                maxLength = 20)
+        String cardholder,
+
+        @Schema(
+                description = "Новый срок действия карты",
+                example = "2025-12-31",
+                requiredMode = Schema.RequiredMode.NOT_REQUIRED)
+        Date expiry_date,
+
+        @Schema(
+                description = "Новый статус карты",
+                example = "BLOCKED",
+                requiredMode = Schema.RequiredMode.NOT_REQUIRED,
+                allowableValues = {"ACTIVE", "BLOCKED", "EXPIRED"})
+        String status,
+
+        @Schema(
+                description = "Новый баланс карты",
+                example = "1500.75",
+                requiredMode = Schema.RequiredMode.NOT_REQUIRED,
+                minimum = "0")
+        Double balance
+) {}
@@ -0,0 +1,22 @@
+package org.example.banksystem.dto.request;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO для запроса поиска банковской карты по номеру
+ * <p>
+ * Номер передается в теле запроса, а не в URL, чтобы он не попадал в логи доступа и историю браузера.
+ * </p>
+ *
+ * @param card_number полный номер банковской карты
+ */
+@Schema(description = "DTO для запроса поиска банковской карты по номеру")
+public record CardSearchRequest(
+        @Schema(
+                description = "Номер банковской карты",
+                example = "1234567812345678",
+                requiredMode = Schema.RequiredMode.REQUIRED,
+                minLength = 16,
+                maxLength = 16)
+        String card_number
+) {}
@@ -0,0 +1,29 @@
+package org.example.banksystem.dto.request;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO для запросов частичного обновления пользователя
+ * <p>
+ * Передаются только изменяемые поля, отсутствующие поля остаются без изменений.
+ * Пароль хешируется только если он передан.
+ * </p>
+ *
+ * @param password новый пароль пользователя или null
+ * @param role новая роль пользователя или null
+ */
+@Schema(description = "DTO для запросов частичного обновления пользователя")
+public record UserPatchRequest(
+        @Schema(
+                description = "Новый пароль пользователя",
+                example = "password",
+                requiredMode = Schema.RequiredMode.NOT_REQUIRED)
+        String password,
+
+        @Schema(
+                description = "Новая роль пользователя",
+                example = "ROLE_ADMIN",
+                requiredMode = Schema.RequiredMode.NOT_REQUIRED,
+                allowableValues = {"ROLE_USER", "ROLE_ADMIN"})
+        String role
+) {}
@@ -0,0 +1,15 @@
+package org.example.banksystem.dto.response;
+
+import org.springframework.http.ResponseCookie;
+
+/**
+ * Cookie, выдаваемые клиенту при входе и обновлении токенов
+ *
+ * @param accessToken cookie с JWT токеном доступа
+ * @param refreshToken cookie с одноразовым refresh токеном
+ *
+ * @author George
+ * @version 1.0
+ */
+public record AuthCookies(ResponseCookie accessToken, ResponseCookie refreshToken) {
+}
@@ -0,0 +1,65 @@
+package org.example.banksystem.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO с результатом одного перевода из пакета
+ *
+ * @param index номер перевода в пакете, начиная с 0
+ * @param from идентификатор карты отправителя
+ * @param to идентификатор карты получателя
+ * @param status COMPLETED если перевод выполнен, FAILED если он не прошел проверку,
+ *               ROLLED_BACK если он корректен, но пакет отклонен целиком из-за другого перевода
+ * @param message причина отказа или null для выполненного перевода
+ */
+@Schema(description = "DTO с результатом перевода из пакета")
+public record BatchTransferResult(
+
+        @Schema(
+                description = "Номер перевода в пакете",
+                example = "0",
+                accessMode = Schema.AccessMode.READ_ONLY)
+        int index,
+
+        @Schema(
+                description = "ID карты отправителя",
+                example = "1",
+                accessMode = Schema.AccessMode.READ_ONLY)
+        Integer from,
+
+        @Schema(
+                description = "ID карты получателя",
+                example = "2",
+                accessMode = Schema.AccessMode.READ_ONLY)
+        Integer to,
+
+        @Schema(
+                description = "Результат перевода",
+                example = "COMPLETED",
+                accessMode = Schema.AccessMode.READ_ONLY,
+                allowableValues = {"COMPLETED", "FAILED", "ROLLED_BACK"})
+        String status,
+
+        @Schema(
+                description = "Причина отказа",
+                example = "Insufficient funds",
+                accessMode = Schema.AccessMode.READ_ONLY)
+        String message
+) {
+
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+    public static final String ROLLED_BACK = "ROLLED_BACK";
+
+    public static BatchTransferResult completed(int index, Integer from, Integer to) {
+        return new BatchTransferResult(index, from, to, COMPLETED, null);
+    }
+
+    public static BatchTransferResult failed(int index, Integer from, Integer to, String message) {
+        return new BatchTransferResult(index, from, to, FAILED, message);
+    }
+
+    public static BatchTransferResult rolledBack(int index, Integer from, Integer to) {
+        return new BatchTransferResult(index, from, to, ROLLED_BACK, "Batch rejected");
+    }
+}
@@ -0,0 +1,38 @@
+package org.example.banksystem.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * DTO для ответа с балансом карты на момент времени
+ * <p>
+ * Баланс вычисляется из последнего снимка баланса до запрошенного момента
+ * и переводов журнала после снимка. Все поля доступны только для чтения.
+ * </p>
+ *
+ * @param card_id идентификатор карты
+ * @param balance баланс карты на момент asOf
+ * @param asOf момент времени, на который вычислен баланс
+ */
+@Schema(description = "DTO для ответа с балансом карты на момент времени")
+public record CardBalanceResponse(
+        @Schema(
+                description = "Уникальный идентификатор карты",
+                example = "1",
+                accessMode = Schema.AccessMode.READ_ONLY)
+        Integer card_id,
+
+        @Schema(
+                description = "Баланс карты",
+                example = "1500.00",
+                accessMode = Schema.AccessMode.READ_ONLY)
+        BigDecimal balance,
+
+        @Schema(
+                description = "Момент времени, на который вычислен баланс",
+                example = "2024-01-15T10:30:00Z",
+                accessMode = Schema.AccessMode.READ_ONLY)
+        Instant asOf
+) {}
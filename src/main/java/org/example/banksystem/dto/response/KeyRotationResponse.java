@@ -0,0 +1,79 @@
+package org.example.banksystem.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO для ответа с состоянием задачи ротации ключа шифрования номеров карт
+ * <p>
+ * Используется для отображения прогресса фонового перешифрования в административном API.
+ * Все поля доступны только для чтения.
+ * </p>
+ *
+ * @param state состояние задачи (IDLE, RUNNING, COMPLETED, CANCELLED, FAILED)
+ * @param activeKeyId идентификатор ключа, которым перешифровываются карты
+ * @param reencrypted число перешифрованных карт
+ * @param skipped число карт, которые не удалось перешифровать или которые изменились во время ротации
+ * @param lastCardId идентификатор последней обработанной карты
+ * @param rowsPerSecond средняя скорость перешифрования
+ * @param startedAt время запуска задачи
+ * @param finishedAt время завершения задачи
+ * @param error сообщение об ошибке, если задача завершилась неуспешно
+ */
+@Schema(description = "DTO для ответа с состоянием ротации ключа шифрования")
+public record KeyRotationResponse(
+        @Schema(
+                description = "Состояние задачи",
+                example = "RUNNING",
+                accessMode = Schema.AccessMode.READ_ONLY,
+                allowableValues = {"IDLE", "RUNNING", "COMPLETED", "CANCELLED", "FAILED"})
+        String state,
+
+        @Schema(
+                description = "Идентификатор активного ключа",
+                example = "1",
+                accessMode = Schema.AccessMode.READ_ONLY)
+        int activeKeyId,
+
+        @Schema(
+                description = "Число перешифрованных карт",
+                example = "15000",
+                accessMode = Schema.AccessMode.READ_ONLY)
+        long reencrypted,
+
+        @Schema(
+                description = "Число пропущенных карт",
+                example = "0",
+                accessMode = Schema.AccessMode.READ_ONLY)
+        long skipped,
+
+        @Schema(
+                description = "Идентификатор последней обработанной карты",
+                example = "15230",
+                accessMode = Schema.AccessMode.READ_ONLY)
+        int lastCardId,
+
+        @Schema(
+                description = "Средняя скорость перешифрования, карт в секунду",
+                example = "980.5",
+                accessMode = Schema.AccessMode.READ_ONLY)
+        double rowsPerSecond,
+
+        @Schema(
+                description = "Время запуска задачи",
+                example = "2024-01-15T10:30:00",
+                accessMode = Schema.AccessMode.READ_ONLY)
+        LocalDateTime startedAt,
+
+        @Schema(
+                description = "Время завершения задачи",
+                example = "2024-01-15T10:45:00",
+                accessMode = Schema.AccessMode.READ_ONLY)
+        LocalDateTime finishedAt,
+
+        @Schema(
+                description = "Сообщение об ошибке",
+                accessMode = Schema.AccessMode.READ_ONLY)
+        String error
+) {}
@@ -0,0 +1,56 @@
+package org.example.banksystem.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * DTO с результатом импорта одной строки файла пользователей
+ * <p>
+ * Возвращается построчно в формате NDJSON по мере обработки файла,
+ * поэтому клиент видит результат строки, не дожидаясь конца импорта.
+ * </p>
+ *
+ * @param line номер строки во входном файле, начиная с 1
+ * @param username имя пользователя из строки или null, если строку не удалось разобрать
+ * @param status CREATED если пользователь создан, иначе FAILED
+ * @param message причина отказа или null для созданного пользователя
+ */
+@Schema(description = "DTO с результатом импорта строки файла пользователей")
+public record UserImportResult(
+
+        @Schema(
+                description = "Номер строки во входном файле",
+                example = "2",
+                accessMode = Schema.AccessMode.READ_ONLY)
+        long line,
+
+        @Schema(
+                description = "Имя пользователя",
+                example = "user",
+                accessMode = Schema.AccessMode.READ_ONLY)
+        String username,
+
+        @Schema(
+                description = "Результат импорта строки",
+                example = "CREATED",
+                accessMode = Schema.AccessMode.READ_ONLY,
+                allowableValues = {"CREATED", "FAILED"})
+        String status,
+
+        @Schema(
+                description = "Причина отказа",
+                example = "User already exists",
+                accessMode = Schema.AccessMode.READ_ONLY)
+        String message
+) {
+
+    public static final String CREATED = "CREATED";
+    public static final String FAILED = "FAILED";
+
+    public static UserImportResult created(long line, String username) {
+        return new UserImportResult(line, username, CREATED, null);
+    }
+
+    public static UserImportResult failed(long line, String username, String message) {
+        return new UserImportResult(line, username, FAILED, message);
+    }
+}
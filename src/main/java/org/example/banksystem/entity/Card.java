@@ -32,10 +32,22 @@ public class Card {
     private Integer cardId;
 
     /**
-     * Зашифрованный номер банковской карты
+     * Зашифрованный номер банковской карты в бинарном формате с байтом версии
      */
     @Column(nullable = false)
-    private String encryptedCardNumber;
+    private byte[] encryptedCardNumber;
+
+    /**
+     * Слепой индекс номера карты (HMAC) для поиска и проверки уникальности без дешифрования
+     */
+    @Column(unique = true)
+    private String cardNumberIndex;
+
+    /**
+     * Последние четыре цифры номера карты для маскированного отображения без дешифрования
+     */
+    @Column(length = 4)
+    private String cardNumberLast4;
 
     /**
      * Имя владельца карты (ссылка на пользователя)
@@ -66,16 +78,31 @@ public class Card {
      * Конструктор для создания новой карты без указания идентификатора
      *
      * @param encryptedCardNumber зашифрованный номер карты
+     * @param cardNumberIndex слепой индекс номера карты
+     * @param cardNumberLast4 последние четыре цифры номера карты
      * @param cardholder имя владельца карты
      * @param expiry_date срок действия карты
      * @param status начальный статус карты
      * @param balance начальный баланс карты
      */
-    public Card(String encryptedCardNumber, String cardholder, Date expiry_date, CardStatus status, Double balance) {
+    public Card(byte[] encryptedCardNumber, String cardNumberIndex, String cardNumberLast4, String cardholder,
+                Date expiry_date, CardStatus status, Double balance) {
         this.encryptedCardNumber = encryptedCardNumber;
+        this.cardNumberIndex = cardNumberIndex;
+        this.cardNumberLast4 = cardNumberLast4;
         this.cardholder = cardholder;
         this.expiry_date = expiry_date;
         this.status = status;
         this.balance = balance;
     }
-}
\ No newline at end of file
+
+    /**
+     * Возвращает последние четыре цифры номера карты
+     *
+     * @param cardNumber полный номер карты
+     * @return последние четыре символа номера
+     */
+    public static String lastDigits(String cardNumber) {
+        return cardNumber.substring(cardNumber.length() - 4);
+    }
+}
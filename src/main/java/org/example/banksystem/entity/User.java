@@ -46,6 +46,24 @@ public class User implements UserDetails {
     @Column(nullable = false)
     private Role role;
 
+    /**
+     * Версия токенов пользователя, увеличивается при изменении или удалении пользователя,
+     * токены с другой версией в claim "ver" недействительны
+     */
+    @Column(nullable = false)
+    private int tokenVersion;
+
+    /**
+     * Создает пользователя с начальной версией токенов
+     *
+     * @param username имя пользователя
+     * @param password зашифрованный пароль
+     * @param role роль пользователя
+     */
+    public User(String username, String password, Role role) {
+        this(username, password, role, 0);
+    }
+
     /**
      * Возвращает список прав доступа пользователя
      *
@@ -1,12 +1,20 @@
 package org.example.banksystem.exceptions;
 
 import org.example.banksystem.dto.response.ApiResponseDTO;
+import org.example.banksystem.exceptions.auth.AuthRateLimitExceededException;
+import org.example.banksystem.exceptions.auth.InvalidRefreshTokenException;
+import org.example.banksystem.exceptions.auth.PasswordHasherBusyException;
 import org.example.banksystem.exceptions.cards.CardAccessDeniedException;
+import org.example.banksystem.exceptions.cards.CardInsufficientFundsException;
 import org.example.banksystem.exceptions.cards.CardNotFoundException;
 import org.example.banksystem.exceptions.cards.CardNotInService;
+import org.example.banksystem.exceptions.cards.CardWrongCredentials;
+import org.example.banksystem.exceptions.cards.IdempotencyKeyReusedException;
+import org.example.banksystem.exceptions.cards.KeyRotationInProgressException;
 import org.example.banksystem.exceptions.users.UserAccessDeniedException;
 import org.example.banksystem.exceptions.users.UserNotFoundException;
 import org.example.banksystem.exceptions.users.UserWrongCredentialsException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -58,6 +66,50 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(400).body(ApiResponseDTO.error(e.getMessage()));
     }
 
+    /**
+     * Обрабатывает исключения недостаточного остатка на карте
+     *
+     * @param e исключение недостаточного остатка
+     * @return ResponseEntity с HTTP статусом 400 (Bad Request)
+     */
+    @ExceptionHandler(CardInsufficientFundsException.class)
+    public ResponseEntity<ApiResponseDTO<Void>> handleCardInsufficientFundsException(CardInsufficientFundsException e) {
+        return ResponseEntity.status(400).body(ApiResponseDTO.error(e.getMessage()));
+    }
+
+    /**
+     * Обрабатывает исключения неверных данных карты
+     *
+     * @param e исключение неверных данных карты
+     * @return ResponseEntity с HTTP статусом 400 (Bad Request)
+     */
+    @ExceptionHandler(CardWrongCredentials.class)
+    public ResponseEntity<ApiResponseDTO<Void>> handleCardWrongCredentials(CardWrongCredentials e) {
+        return ResponseEntity.status(400).body(ApiResponseDTO.error(e.getMessage()));
+    }
+
+    /**
+     * Обрабатывает исключения повторного использования ключа идемпотентности
+     *
+     * @param e исключение повторно использованного ключа
+     * @return ResponseEntity с HTTP статусом 422 (Unprocessable Entity)
+     */
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<ApiResponseDTO<Void>> handleIdempotencyKeyReusedException(IdempotencyKeyReusedException e) {
+        return ResponseEntity.status(422).body(ApiResponseDTO.error(e.getMessage()));
+    }
+
+    /**
+     * Обрабатывает исключения повторного запуска ротации ключа
+     *
+     * @param e исключение выполняющейся ротации
+     * @return ResponseEntity с HTTP статусом 409 (Conflict)
+     */
+    @ExceptionHandler(KeyRotationInProgressException.class)
+    public ResponseEntity<ApiResponseDTO<Void>> handleKeyRotationInProgressException(KeyRotationInProgressException e) {
+        return ResponseEntity.status(409).body(ApiResponseDTO.error(e.getMessage()));
+    }
+
     /**
      * Обрабатывает исключения ненайденного пользователя
      *
@@ -90,4 +142,43 @@ public class GlobalExceptionHandler {
     public ResponseEntity<ApiResponseDTO<Void>> handleUserWrongCredentialsException(UserWrongCredentialsException e) {
         return ResponseEntity.status(400).body(ApiResponseDTO.error(e.getMessage()));
     }
+
+    /**
+     * Обрабатывает исключения недействительного refresh токена
+     *
+     * @param e исключение недействительного refresh токена
+     * @return ResponseEntity с HTTP статусом 401 (Unauthorized)
+     */
+    @ExceptionHandler(InvalidRefreshTokenException.class)
+    public ResponseEntity<ApiResponseDTO<Void>> handleInvalidRefreshTokenException(InvalidRefreshTokenException e) {
+        return ResponseEntity.status(401).body(ApiResponseDTO.error(e.getMessage()));
+    }
+
+    /**
+     * Обрабатывает исключения переполнения очереди хеширования паролей
+     *
+     * @param e исключение переполнения очереди
+     * @return ResponseEntity с HTTP статусом 503 (Service Unavailable) и заголовком Retry-After
+     */
+    @ExceptionHandler(PasswordHasherBusyException.class)
+    public ResponseEntity<ApiResponseDTO<Void>> handlePasswordHasherBusyException(PasswordHasherBusyException e) {
+        long retryAfterSeconds = Math.max(1, (e.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(503)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(ApiResponseDTO.error(e.getMessage()));
+    }
+
+    /**
+     * Обрабатывает исключения превышения лимита попыток аутентификации
+     *
+     * @param e исключение превышения лимита
+     * @return ResponseEntity с HTTP статусом 429 (Too Many Requests) и заголовком Retry-After
+     */
+    @ExceptionHandler(AuthRateLimitExceededException.class)
+    public ResponseEntity<ApiResponseDTO<Void>> handleAuthRateLimitExceededException(AuthRateLimitExceededException e) {
+        long retryAfterSeconds = Math.max(1, (e.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(429)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(ApiResponseDTO.error(e.getMessage()));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package org.example.banksystem.exceptions.auth;
+
+import java.time.Duration;
+
+/**
+ * Исключение, выбрасываемое при превышении лимита попыток аутентификации
+ * <p>
+ * Лимит действует отдельно для адреса клиента и для имени пользователя.
+ * Клиенту сообщается, через сколько освободится следующая попытка.
+ * </p>
+ */
+public class AuthRateLimitExceededException extends RuntimeException {
+
+    /**
+     * Время до следующей разрешенной попытки
+     */
+    private final Duration retryAfter;
+
+    /**
+     * Создает новое исключение с указанным сообщением об ошибке
+     *
+     * @param message детальное сообщение о причине отказа
+     * @param retryAfter время до следующей разрешенной попытки
+     */
+    public AuthRateLimitExceededException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Возвращает время до следующей разрешенной попытки
+     *
+     * @return задержка
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
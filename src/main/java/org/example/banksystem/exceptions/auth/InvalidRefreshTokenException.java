@@ -0,0 +1,20 @@
+package org.example.banksystem.exceptions.auth;
+
+/**
+ * Исключение, выбрасываемое при недействительном refresh токене
+ * <p>
+ * Используется когда refresh токен отсутствует, истек, неизвестен системе
+ * или уже был использован ранее (повторное использование отзывает все токены семейства).
+ * </p>
+ */
+public class InvalidRefreshTokenException extends RuntimeException {
+
+    /**
+     * Создает новое исключение с указанным сообщением об ошибке
+     *
+     * @param message детальное сообщение о причине отказа
+     */
+    public InvalidRefreshTokenException(String message) {
+        super(message);
+    }
+}
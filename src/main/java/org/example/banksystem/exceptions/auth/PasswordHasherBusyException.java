@@ -0,0 +1,38 @@
+package org.example.banksystem.exceptions.auth;
+
+import java.time.Duration;
+
+/**
+ * Исключение, выбрасываемое когда очередь хеширования паролей переполнена
+ * <p>
+ * Запрос отклоняется сразу, не дожидаясь освобождения потоков хеширования.
+ * Клиенту сообщается, через сколько стоит повторить попытку.
+ * </p>
+ */
+public class PasswordHasherBusyException extends RuntimeException {
+
+    /**
+     * Рекомендуемая задержка перед повторным запросом
+     */
+    private final Duration retryAfter;
+
+    /**
+     * Создает новое исключение с указанным сообщением об ошибке
+     *
+     * @param message детальное сообщение о причине отказа
+     * @param retryAfter рекомендуемая задержка перед повторным запросом
+     */
+    public PasswordHasherBusyException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Возвращает рекомендуемую задержку перед повторным запросом
+     *
+     * @return задержка
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,16 @@
+package org.example.banksystem.exceptions.cards;
+
+/**
+ * Исключение, выбрасываемое при переводе суммы, превышающей остаток на карте отправителя
+ */
+public class CardInsufficientFundsException extends RuntimeException {
+
+    /**
+     * Создает новое исключение с указанным сообщением об ошибке
+     *
+     * @param message детальное сообщение об ошибке
+     */
+    public CardInsufficientFundsException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package org.example.banksystem.exceptions.cards;
+
+/**
+ * Исключение, выбрасываемое при повторном использовании ключа идемпотентности для другого перевода
+ */
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    /**
+     * Создает новое исключение с указанным сообщением об ошибке
+     *
+     * @param message детальное сообщение об ошибке
+     */
+    public IdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package org.example.banksystem.exceptions.cards;
+
+/**
+ * Исключение, выбрасываемое при попытке запустить ротацию ключа, когда она уже выполняется
+ */
+public class KeyRotationInProgressException extends RuntimeException {
+
+    /**
+     * Создает новое исключение с указанным сообщением об ошибке
+     *
+     * @param message детальное сообщение о причине ошибки
+     */
+    public KeyRotationInProgressException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,193 @@
+package org.example.banksystem.migration;
+
+import liquibase.Scope;
+import liquibase.change.CheckSum;
+import liquibase.change.custom.CustomChangeChecksum;
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.SetupException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+import lombok.Setter;
+import org.example.banksystem.security.CommonsCodecHasher;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Базовая миграция, заполняющая производную от номера карты колонку для существующих строк
+ * <p>
+ * Проходит таблицу cards пачками в порядке card_id (keyset-пагинация), дешифрует номера
+ * пачки через {@link CommonsCodecHasher#decodeAll(List)}, вычисляет значение колонки и записывает его одним JDBC batch на пачку. Каждая пачка фиксируется
+ * отдельно, а повторный запуск обрабатывает только строки с пустой колонкой.
+ * Строки, которые не удалось дешифровать, пропускаются с предупреждением в логе.
+ * </p>
+ * <p>
+ * Контрольная сумма миграции не зависит от ключей из параметров changelog: иначе Liquibase
+ * хранил бы производное от ключей значение в истории миграций, и смена ключа после ротации
+ * останавливала бы запуск ошибкой проверки контрольных сумм.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ */
+@Setter
+public abstract class CardBackfillChange implements CustomTaskChange, CustomChangeChecksum {
+
+    /**
+     * Ключ шифрования номеров карт (параметр changelog codecKey)
+     */
+    private String codecKey;
+
+    /**
+     * Ключ HMAC слепого индекса (параметр changelog codecIndexKey)
+     */
+    private String codecIndexKey;
+
+    /**
+     * Размер пачки строк
+     */
+    private Integer batchSize = 500;
+
+    /**
+     * Возвращает имя заполняемой колонки
+     *
+     * @return имя колонки в таблице cards
+     */
+    protected abstract String column();
+
+    /**
+     * Вычисляет значение колонки по номеру карты
+     *
+     * @param hasher компонент шифрования с ключами из параметров changelog
+     * @param cardNumber дешифрованный номер карты
+     * @return значение колонки
+     */
+    protected abstract String compute(CommonsCodecHasher hasher, String cardNumber);
+
+    /**
+     * Вызывается после заполнения всех строк, до фиксации последних изменений
+     *
+     * @param connection соединение миграции
+     * @param table экранированное имя таблицы cards
+     * @throws SQLException если запрос завершился ошибкой
+     */
+    protected void afterBackfill(Connection connection, String table) throws SQLException {
+    }
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        String table = database.escapeTableName(null, database.getDefaultSchemaName(), "cards");
+        Connection connection = ((JdbcConnection) database.getConnection()).getUnderlyingConnection();
+
+        String select = "SELECT card_id, encrypted_card_number FROM " + table
+                + " WHERE " + column() + " IS NULL AND card_id > ? ORDER BY card_id LIMIT ?";
+        String update = "UPDATE " + table + " SET " + column() + " = ? WHERE card_id = ?";
+
+        try (CommonsCodecHasher hasher = new CommonsCodecHasher(
+                     codecKey.getBytes(StandardCharsets.UTF_8),
+                     codecIndexKey.getBytes(StandardCharsets.UTF_8),
+                     0);
+             PreparedStatement selectStatement = connection.prepareStatement(select);
+             PreparedStatement updateStatement = connection.prepareStatement(update)) {
+            int lastId = 0;
+            List<Integer> ids = new ArrayList<>(batchSize);
+            List<byte[]> encrypted = new ArrayList<>(batchSize);
+            do {
+                ids.clear();
+                encrypted.clear();
+                selectStatement.setInt(1, lastId);
+                selectStatement.setInt(2, batchSize);
+                try (ResultSet resultSet = selectStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        ids.add(resultSet.getInt(1));
+                        encrypted.add(readEncrypted(resultSet.getObject(2)));
+                    }
+                }
+                if (ids.isEmpty()) {
+                    break;
+                }
+                lastId = ids.getLast();
+
+                List<String> cardNumbers = decodeBatch(hasher, ids, encrypted);
+                for (int i = 0; i < ids.size(); i++) {
+                    if (cardNumbers.get(i) == null) {
+                        continue;
+                    }
+                    updateStatement.setString(1, compute(hasher, cardNumbers.get(i)));
+                    updateStatement.setInt(2, ids.get(i));
+                    updateStatement.addBatch();
+                }
+                updateStatement.executeBatch();
+                database.commit();
+            } while (ids.size() == batchSize);
+            afterBackfill(connection, table);
+            database.commit();
+        } catch (Exception e) {
+            throw new CustomChangeException("Backfill of " + column() + " failed", e);
+        }
+    }
+
+    /**
+     * Приводит значение колонки encrypted_card_number к бинарному формату: до перевода колонки
+     * в bytea (changeset 005) она хранит строку Base64 прежнего формата
+     */
+    private static byte[] readEncrypted(Object value) {
+        return value instanceof byte[] bytes ? bytes : CommonsCodecHasher.fromLegacy((String) value);
+    }
+
+    /**
+     * Дешифрует пачку номеров одним пакетным вызовом, а если в пачке есть поврежденные
+     * значения - по одному, заменяя нечитаемые номера на null
+     */
+    private List<String> decodeBatch(CommonsCodecHasher hasher, List<Integer> ids, List<byte[]> encrypted) {
+        try {
+            return hasher.decodeAll(encrypted);
+        } catch (RuntimeException batchFailure) {
+            List<String> cardNumbers = new ArrayList<>(encrypted.size());
+            for (int i = 0; i < encrypted.size(); i++) {
+                try {
+                    cardNumbers.add(hasher.decode(encrypted.get(i)));
+                } catch (RuntimeException e) {
+                    Scope.getCurrentScope().getLog(getClass())
+                            .warning("Card " + ids.get(i) + " could not be decrypted, " + column() + " left empty");
+                    cardNumbers.add(null);
+                }
+            }
+            return cardNumbers;
+        }
+    }
+
+    @Override
+    public CheckSum generateChecksum() {
+        return CheckSum.compute(getClass().getName() + ":" + column() + ":" + batchSize);
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "Column " + column() + " backfilled";
+    }
+
+    @Override
+    public void setUp() throws SetupException {
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        ValidationErrors errors = new ValidationErrors();
+        errors.checkRequiredField("codecKey", codecKey);
+        errors.checkRequiredField("codecIndexKey", codecIndexKey);
+        return errors;
+    }
+}
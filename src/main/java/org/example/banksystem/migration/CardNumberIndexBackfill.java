@@ -0,0 +1,59 @@
+package org.example.banksystem.migration;
+
+import liquibase.Scope;
+import org.example.banksystem.security.CommonsCodecHasher;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Миграция, заполняющая слепой индекс номера карты для существующих строк
+ * <p>
+ * Прежняя проверка уникальности номера не работала, поэтому в таблице могут быть карты
+ * с одинаковым номером. Их индексы совпадают, и уникальный индекс по колонке не создался бы.
+ * Индекс оставляется у карты с наименьшим card_id, у остальных карт группы он очищается,
+ * а группы пишутся в лог для ручного разбора. Карты без индекса не находятся по номеру.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ * @see CardBackfillChange
+ */
+public class CardNumberIndexBackfill extends CardBackfillChange {
+
+    @Override
+    protected String column() {
+        return "card_number_index";
+    }
+
+    @Override
+    protected String compute(CommonsCodecHasher hasher, String cardNumber) {
+        return hasher.index(cardNumber);
+    }
+
+    @Override
+    protected void afterBackfill(Connection connection, String table) throws SQLException {
+        String duplicates = "SELECT array_agg(card_id ORDER BY card_id) FROM " + table
+                + " WHERE card_number_index IS NOT NULL GROUP BY card_number_index HAVING count(*) > 1";
+        String clear = "UPDATE " + table + " SET card_number_index = NULL WHERE card_id = ?";
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(duplicates);
+             PreparedStatement clearStatement = connection.prepareStatement(clear)) {
+            while (resultSet.next()) {
+                Integer[] cardIds = (Integer[]) resultSet.getArray(1).getArray();
+                for (int i = 1; i < cardIds.length; i++) {
+                    clearStatement.setInt(1, cardIds[i]);
+                    clearStatement.addBatch();
+                }
+                Scope.getCurrentScope().getLog(getClass()).warning("Cards " + Arrays.toString(cardIds)
+                        + " share a card number, card_number_index kept only for card " + cardIds[0]
+                        + ", remove or reissue the others manually");
+            }
+            clearStatement.executeBatch();
+        }
+    }
+}
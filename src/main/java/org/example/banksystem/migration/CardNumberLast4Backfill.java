@@ -0,0 +1,24 @@
+package org.example.banksystem.migration;
+
+import org.example.banksystem.entity.Card;
+import org.example.banksystem.security.CommonsCodecHasher;
+
+/**
+ * Миграция, заполняющая последние четыре цифры номера карты для существующих строк
+ *
+ * @author George
+ * @version 1.0
+ * @see CardBackfillChange
+ */
+public class CardNumberLast4Backfill extends CardBackfillChange {
+
+    @Override
+    protected String column() {
+        return "card_number_last4";
+    }
+
+    @Override
+    protected String compute(CommonsCodecHasher hasher, String cardNumber) {
+        return Card.lastDigits(cardNumber);
+    }
+}
@@ -0,0 +1,49 @@
+package org.example.banksystem.repository;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Фрагмент репозитория карт для истории балансов
+ * <p>
+ * Каждый перевод записывается функцией transfer_funds в журнал transfer_journal, который
+ * только дополняется. Балансы периодически сохраняются в balance_snapshots, поэтому баланс
+ * на момент времени вычисляется из последнего снимка до этого момента и переводов журнала
+ * после снимка, без просмотра всей истории карты. Изменение баланса в обход перевода
+ * (создание карты, правка администратором) должно сопровождаться снимком {@link #snapshotBalance}.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ */
+public interface BalanceHistoryRepository {
+
+    /**
+     * Сохраняет снимок текущего баланса карты
+     * <p>
+     * Вызывается в транзакции, изменившей баланс, после изменения.
+     * </p>
+     *
+     * @param cardId идентификатор карты
+     */
+    void snapshotBalance(Integer cardId);
+
+    /**
+     * Сохраняет снимки балансов пачки карт, изменившихся после своего последнего снимка
+     *
+     * @param afterCardId идентификатор, после которого начинается пачка
+     * @param limit число карт в пачке
+     * @return идентификатор последней карты пачки или null, если карт после afterCardId нет
+     */
+    Integer snapshotBalances(int afterCardId, int limit);
+
+    /**
+     * Вычисляет баланс карты на момент времени
+     *
+     * @param cardId идентификатор карты
+     * @param asOf момент времени
+     * @return баланс или empty, если до этого момента нет ни одного снимка карты
+     */
+    Optional<BigDecimal> findBalanceAsOf(Integer cardId, Instant asOf);
+}
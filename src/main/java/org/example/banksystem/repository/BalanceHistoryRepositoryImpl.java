@@ -0,0 +1,65 @@
+package org.example.banksystem.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+/**
+ * Реализация {@link BalanceHistoryRepository} через JdbcTemplate
+ *
+ * @author George
+ * @version 1.0
+ */
+public class BalanceHistoryRepositoryImpl implements BalanceHistoryRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String snapshotBalance;
+    private final String snapshotBalances;
+    private final String balanceAsOf;
+
+    public BalanceHistoryRepositoryImpl(JdbcTemplate jdbcTemplate,
+                                        @Value("${spring.liquibase.default-schema}") String schema) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.snapshotBalance = "INSERT INTO " + schema + ".balance_snapshots (card_id, taken_at, balance)"
+                + " SELECT card_id, clock_timestamp(), balance FROM " + schema + ".cards WHERE card_id = ?";
+        this.snapshotBalances = "SELECT " + schema + ".snapshot_balances(?, ?)";
+        this.balanceAsOf = "WITH snapshot AS (SELECT taken_at, balance FROM " + schema + ".balance_snapshots"
+                + " WHERE card_id = ? AND taken_at <= ? ORDER BY taken_at DESC LIMIT 1)"
+                + " SELECT snapshot.balance"
+                + " + COALESCE((SELECT sum(amount) FROM " + schema + ".transfer_journal"
+                + " WHERE to_card_id = ? AND created_at > snapshot.taken_at AND created_at <= ?), 0)"
+                + " - COALESCE((SELECT sum(amount) FROM " + schema + ".transfer_journal"
+                + " WHERE from_card_id = ? AND created_at > snapshot.taken_at AND created_at <= ?), 0)"
+                + " FROM snapshot";
+    }
+
+    @Override
+    public void snapshotBalance(Integer cardId) {
+        jdbcTemplate.update(snapshotBalance, cardId);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Карты пачки блокируются FOR SHARE в порядке card_id до конца транзакции: переводы
+     * по ним ждут снимка, поэтому снимок и журнал согласованы по времени.
+     * </p>
+     */
+    @Override
+    public Integer snapshotBalances(int afterCardId, int limit) {
+        return jdbcTemplate.queryForObject(snapshotBalances, Integer.class, afterCardId, limit);
+    }
+
+    @Override
+    public Optional<BigDecimal> findBalanceAsOf(Integer cardId, Instant asOf) {
+        OffsetDateTime timestamp = asOf.atOffset(ZoneOffset.UTC);
+        return jdbcTemplate.query(balanceAsOf, (rs, rowNum) -> rs.getBigDecimal(1),
+                cardId, timestamp, cardId, timestamp, cardId, timestamp).stream().findFirst();
+    }
+}
@@ -15,15 +15,20 @@ import java.util.Optional;
  * Репозиторий для работы с сущностью Card в базе данных
  * <p>
  * Предоставляет методы для выполнения операций с банковскими картами,
- * включая поиск, обновление баланса и блокировку карт.
+ * включая поиск, блокировку карт, переводы (см. {@link CardTransferRepository})
+ * историю балансов (см. {@link BalanceHistoryRepository}) и состояние карт для движка переводов
+ * (см. {@link CardStateRepository}).
  * Наследует стандартные CRUD операции от JpaRepository.
+ * Частичные изменения записываются через {@link PatchRepository#patch(Object, Patch)}.
  * </p>
  *
  * @author George
  * @version 1.0
  */
 @Repository
-public interface CardRepository extends JpaRepository<Card, Integer> {
+public interface CardRepository extends JpaRepository<Card, Integer>, PersistRepository<Card>,
+        PatchRepository<Card, Integer>, CardTransferRepository, BalanceHistoryRepository,
+        CardStateRepository {
 
     /**
      * Находит все карты пользователя по его имени
@@ -31,17 +36,24 @@ public interface CardRepository extends JpaRepository<Card, Integer> {
      * @param username имя пользователя-владельца карт
      * @return Optional список карт пользователя или empty если карт нет
      */
-    @Query("SELECT c.cardId, c.encryptedCardNumber, c.cardholder, c.expiry_date, c.status " +
-            "FROM Card c WHERE c.cardholder = :username")
+    @Query("SELECT c FROM Card c WHERE c.cardholder = :username")
     Optional<List<Card>> findCardsByUsername(@Param("username") String username);
 
     /**
-     * Проверяет существование карты по зашифрованному номеру
+     * Проверяет существование карты по слепому индексу номера
      *
-     * @param encrypted_card_number зашифрованный номер карты
+     * @param cardNumberIndex слепой индекс номера карты
      * @return true если карта с таким номером существует, иначе false
      */
-    boolean existsByEncryptedCardNumber(String encrypted_card_number);
+    boolean existsByCardNumberIndex(String cardNumberIndex);
+
+    /**
+     * Находит карту по слепому индексу номера
+     *
+     * @param cardNumberIndex слепой индекс номера карты
+     * @return Optional с найденной картой или empty если карта не найдена
+     */
+    Optional<Card> findByCardNumberIndex(String cardNumberIndex);
 
     /**
      * Проверяет принадлежность карты пользователю
@@ -60,24 +72,4 @@ public interface CardRepository extends JpaRepository<Card, Integer> {
     @Modifying
     @Query("UPDATE Card c SET c.status = 'BLOCKED' WHERE c.cardId = :cardId")
     void blockCard(@Param("cardId") Integer cardId);
-
-    /**
-     * Уменьшает баланс карты на указанную сумму
-     *
-     * @param cardId идентификатор карты
-     * @param amount сумма для списания
-     */
-    @Modifying
-    @Query("UPDATE Card c SET c.balance = c.balance - :amount WHERE c.cardId = :cardId")
-    void decreaseCardBalance(@Param("cardId") Integer cardId, @Param("amount") Double amount);
-
-    /**
-     * Увеличивает баланс карты на указанную сумму
-     *
-     * @param cardId идентификатор карты
-     * @param amount сумма для зачисления
-     */
-    @Modifying
-    @Query("UPDATE Card c SET c.balance = c.balance + :amount WHERE c.cardId = :cardId")
-    void increaseCardBalance(@Param("cardId") Integer cardId, @Param("amount") Double amount);
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+package org.example.banksystem.repository;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Фрагмент репозитория карт для движка переводов в памяти
+ * <p>
+ * Движок держит владельца, статус и баланс карт в памяти и записывает новые балансы
+ * сравнением с прочитанными значениями (см. {@link #compareAndSetBalances}), поэтому
+ * изменение карты в обход движка обнаруживается при записи, а не теряется.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ */
+public interface CardStateRepository {
+
+    /**
+     * Передает состояние всех карт, читая таблицу потоком
+     *
+     * @param consumer получатель состояний
+     */
+    void forEachCardState(Consumer<CardState> consumer);
+
+    /**
+     * Находит состояние карт по идентификаторам
+     *
+     * @param cardIds идентификаторы карт
+     * @return состояния найденных карт
+     */
+    List<CardState> findCardStates(Collection<Integer> cardIds);
+
+    /**
+     * Записывает новые балансы карт одним JDBC batch, если карты не изменились с момента чтения
+     * <p>
+     * Строки изменяются в порядке списка, вызывающий код передает их в порядке card_id.
+     * </p>
+     *
+     * @param changes ожидаемые состояния и новые балансы
+     * @return число измененных строк для каждого изменения, 0 - карта изменена или удалена
+     */
+    int[] compareAndSetBalances(List<BalanceChange> changes);
+
+    /**
+     * Состояние карты
+     *
+     * @param cardId идентификатор карты
+     * @param cardholder владелец карты
+     * @param status статус карты
+     * @param balance баланс карты
+     */
+    record CardState(Integer cardId, String cardholder, String status, BigDecimal balance) {
+    }
+
+    /**
+     * Новый баланс карты при условии, что ее состояние не изменилось
+     *
+     * @param expected прочитанное состояние карты
+     * @param balance новый баланс
+     */
+    record BalanceChange(CardState expected, BigDecimal balance) {
+    }
+}
@@ -0,0 +1,69 @@
+package org.example.banksystem.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Реализация {@link CardStateRepository} через JdbcTemplate
+ *
+ * @author George
+ * @version 1.0
+ */
+public class CardStateRepositoryImpl implements CardStateRepository {
+
+    /**
+     * Число строк, получаемых драйвером за раз при потоковом чтении
+     */
+    private static final int FETCH_SIZE = 1000;
+
+    private static final RowMapper<CardState> CARD_STATE = (rs, rowNum) ->
+            new CardState(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getBigDecimal(4));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String selectAll;
+    private final String selectByIds;
+    private final String compareAndSetBalance;
+
+    public CardStateRepositoryImpl(JdbcTemplate jdbcTemplate,
+                                   @Value("${spring.liquibase.default-schema}") String schema) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.selectAll = "SELECT card_id, cardholder, status, balance FROM " + schema + ".cards";
+        this.selectByIds = selectAll + " WHERE card_id = ANY (?)";
+        this.compareAndSetBalance = "UPDATE " + schema + ".cards SET balance = ?"
+                + " WHERE card_id = ? AND cardholder = ? AND status = ? AND balance = ?";
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Драйвер PostgreSQL читает курсором только внутри транзакции, поэтому метод вызывается в ней.
+     * </p>
+     */
+    @Override
+    public void forEachCardState(Consumer<CardState> consumer) {
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streaming.setFetchSize(FETCH_SIZE);
+        streaming.query(selectAll, rs -> {
+            consumer.accept(CARD_STATE.mapRow(rs, 0));
+        });
+    }
+
+    @Override
+    public List<CardState> findCardStates(Collection<Integer> cardIds) {
+        return jdbcTemplate.query(selectByIds, CARD_STATE, (Object) cardIds.toArray(Integer[]::new));
+    }
+
+    @Override
+    public int[] compareAndSetBalances(List<BalanceChange> changes) {
+        return jdbcTemplate.batchUpdate(compareAndSetBalance, changes.stream()
+                .map(change -> new Object[]{change.balance(), change.expected().cardId(), change.expected().cardholder(),
+                        change.expected().status(), change.expected().balance()})
+                .toList());
+    }
+}
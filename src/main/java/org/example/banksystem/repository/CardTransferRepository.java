@@ -0,0 +1,123 @@
+package org.example.banksystem.repository;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Фрагмент репозитория карт для переводов между картами
+ * <p>
+ * Перевод выполняется одним вызовом функции базы transfer_funds: она блокирует обе карты
+ * в порядке card_id, проверяет владельца, статус и остаток и переносит сумму. Проверки
+ * и изменение балансов выполняются над заблокированными строками, поэтому параллельный
+ * перевод не может уменьшить остаток или заблокировать карту между проверкой и списанием.
+ * </p>
+ * <p>
+ * Перевод с ключом идемпотентности выполняется функцией transfer_funds_once: ключ, запрос
+ * и результат сохраняются в той же транзакции, что и перевод, поэтому повтор с тем же ключом
+ * возвращает сохраненный результат и не изменяет балансы.
+ * </p>
+ * <p>
+ * Пакет переводов выполняется в одной транзакции: карты пользователя блокируются одним запросом
+ * {@link #lockOwnedCards} в том же порядке card_id, переводы проверяются вызывающим кодом,
+ * а изменения балансов и записи журнала отправляются JDBC batch через {@link #applyTransfers}.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ */
+public interface CardTransferRepository {
+
+    /**
+     * Переводит сумму между картами пользователя
+     *
+     * @param username имя пользователя, владельца обеих карт
+     * @param from идентификатор карты отправителя
+     * @param to идентификатор карты получателя
+     * @param amount положительная сумма перевода
+     * @return результат перевода, балансы изменяются только при {@link TransferResult#COMPLETED}
+     */
+    TransferResult transferFunds(String username, Integer from, Integer to, BigDecimal amount);
+
+    /**
+     * Переводит сумму между картами пользователя не более одного раза на ключ
+     * <p>
+     * Если ключ занят незавершенной транзакцией, вызов ждет ее фиксации.
+     * </p>
+     *
+     * @param username имя пользователя, владельца обеих карт
+     * @param idempotencyKey ключ идемпотентности клиента
+     * @param ttl время хранения ключа
+     * @param from идентификатор карты отправителя
+     * @param to идентификатор карты получателя
+     * @param amount положительная сумма перевода
+     * @return результат первого перевода с этим ключом или {@link TransferResult#IDEMPOTENCY_KEY_REUSED},
+     * если ключ использован для другого перевода
+     */
+    TransferResult transferFundsOnce(String username, String idempotencyKey, Duration ttl,
+                                     Integer from, Integer to, BigDecimal amount);
+
+    /**
+     * Удаляет истекшие ключи идемпотентности
+     *
+     * @return число удаленных ключей
+     */
+    int deleteExpiredIdempotencyKeys();
+
+    /**
+     * Блокирует карты пользователя до конца текущей транзакции
+     * <p>
+     * Карты блокируются FOR UPDATE в порядке card_id, как в transfer_funds, поэтому пакет
+     * и одиночные переводы не образуют взаимных блокировок. Чужие и несуществующие карты
+     * не возвращаются.
+     * </p>
+     *
+     * @param username имя пользователя, владельца карт
+     * @param cardIds идентификаторы карт
+     * @return заблокированные карты пользователя по идентификатору
+     */
+    Map<Integer, LockedCard> lockOwnedCards(String username, Collection<Integer> cardIds);
+
+    /**
+     * Применяет проверенные переводы по картам, заблокированным {@link #lockOwnedCards}
+     * <p>
+     * Балансы изменяются на суммарное изменение каждой карты одним JDBC batch, переводы
+     * записываются в журнал вторым batch. Переводы с карты на нее же не записываются.
+     * </p>
+     *
+     * @param transfers переводы с суммами, округленными до копеек
+     */
+    void applyTransfers(List<Transfer> transfers);
+
+    /**
+     * Записывает переводы в журнал одним JDBC batch
+     * <p>
+     * Вызывается в транзакции, изменившей балансы, пока строки карт заблокированы.
+     * </p>
+     *
+     * @param transfers переводы между разными картами с суммами, округленными до копеек
+     */
+    void appendJournal(List<Transfer> transfers);
+
+    /**
+     * Карта, заблокированная для пакета переводов
+     *
+     * @param cardId идентификатор карты
+     * @param active true если карта в статусе ACTIVE
+     * @param balance баланс карты
+     */
+    record LockedCard(Integer cardId, boolean active, BigDecimal balance) {
+    }
+
+    /**
+     * Проверенный перевод пакета
+     *
+     * @param from идентификатор карты отправителя
+     * @param to идентификатор карты получателя
+     * @param amount сумма перевода
+     */
+    record Transfer(Integer from, Integer to, BigDecimal amount) {
+    }
+}
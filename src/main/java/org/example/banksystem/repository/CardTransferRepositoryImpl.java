@@ -0,0 +1,115 @@
+package org.example.banksystem.repository;
+
+import org.example.banksystem.entity.CardStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Реализация {@link CardTransferRepository} через JdbcTemplate
+ *
+ * @author George
+ * @version 1.0
+ */
+public class CardTransferRepositoryImpl implements CardTransferRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Запрос вызова функции с именем схемы
+     */
+    private final String transferFunds;
+    private final String transferFundsOnce;
+    private final String deleteExpiredIdempotencyKeys;
+    private final String lockOwnedCards;
+    private final String updateBalance;
+    private final String insertJournal;
+
+    public CardTransferRepositoryImpl(JdbcTemplate jdbcTemplate,
+                                      @Value("${spring.liquibase.default-schema}") String schema) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transferFunds = "SELECT " + schema + ".transfer_funds(?, ?, ?, ?)";
+        this.transferFundsOnce = "SELECT " + schema + ".transfer_funds_once(?, ?, ?, ?, ?, ?)";
+        this.deleteExpiredIdempotencyKeys = "DELETE FROM " + schema + ".transfer_idempotency_keys WHERE expires_at < clock_timestamp()";
+        this.lockOwnedCards = "SELECT card_id, status, balance FROM " + schema + ".cards"
+                + " WHERE cardholder = ? AND card_id = ANY (?) ORDER BY card_id FOR UPDATE";
+        this.updateBalance = "UPDATE " + schema + ".cards SET balance = balance + ? WHERE card_id = ?";
+        this.insertJournal = "INSERT INTO " + schema + ".transfer_journal (from_card_id, to_card_id, amount, created_at)"
+                + " VALUES (?, ?, ?, clock_timestamp())";
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Вызов участвует в текущей транзакции, если она есть, иначе выполняется в собственной.
+     * </p>
+     */
+    @Override
+    public TransferResult transferFunds(String username, Integer from, Integer to, BigDecimal amount) {
+        Integer code = jdbcTemplate.queryForObject(transferFunds, Integer.class, username, from, to, amount);
+        return TransferResult.of(code);
+    }
+
+    @Override
+    public TransferResult transferFundsOnce(String username, String idempotencyKey, Duration ttl,
+                                            Integer from, Integer to, BigDecimal amount) {
+        Integer code = jdbcTemplate.queryForObject(transferFundsOnce, Integer.class,
+                username, idempotencyKey, (int) ttl.toSeconds(), from, to, amount);
+        return TransferResult.of(code);
+    }
+
+    @Override
+    public int deleteExpiredIdempotencyKeys() {
+        return jdbcTemplate.update(deleteExpiredIdempotencyKeys);
+    }
+
+    @Override
+    public Map<Integer, LockedCard> lockOwnedCards(String username, Collection<Integer> cardIds) {
+        Map<Integer, LockedCard> cards = new HashMap<>();
+        jdbcTemplate.query(lockOwnedCards, rs -> {
+            LockedCard card = new LockedCard(rs.getInt(1), CardStatus.ACTIVE.name().equals(rs.getString(2)), rs.getBigDecimal(3));
+            cards.put(card.cardId(), card);
+        }, username, cardIds.toArray(Integer[]::new));
+        return cards;
+    }
+
+    @Override
+    public void applyTransfers(List<Transfer> transfers) {
+        Map<Integer, BigDecimal> changes = new TreeMap<>();
+        List<Transfer> journal = new ArrayList<>(transfers.size());
+        for (Transfer transfer : transfers) {
+            if (transfer.from().equals(transfer.to())) {
+                continue;
+            }
+            changes.merge(transfer.from(), transfer.amount().negate(), BigDecimal::add);
+            changes.merge(transfer.to(), transfer.amount(), BigDecimal::add);
+            journal.add(transfer);
+        }
+        if (journal.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(updateBalance, changes.entrySet().stream()
+                .filter(change -> change.getValue().signum() != 0)
+                .map(change -> new Object[]{change.getValue(), change.getKey()})
+                .toList());
+        appendJournal(journal);
+    }
+
+    @Override
+    public void appendJournal(List<Transfer> transfers) {
+        if (transfers.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(insertJournal, transfers.stream()
+                .map(transfer -> new Object[]{transfer.from(), transfer.to(), transfer.amount()})
+                .toList());
+    }
+}
@@ -0,0 +1,47 @@
+package org.example.banksystem.repository;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+/**
+ * Имена ограничений базы данных, нарушения которых сервисы превращают в ошибки предметной области
+ *
+ * @author George
+ * @version 1.0
+ */
+public final class Constraints {
+
+    /**
+     * Первичный ключ таблицы users (имя пользователя)
+     */
+    public static final String USERS_PKEY = "users_pkey";
+
+    /**
+     * Внешний ключ владельца карты на таблицу users
+     */
+    public static final String FK_CARD_USER = "fk_card_user";
+
+    /**
+     * Уникальный индекс по слепому индексу номера карты
+     */
+    public static final String UX_CARDS_CARD_NUMBER_INDEX = "ux_cards_card_number_index";
+
+    private Constraints() {
+    }
+
+    /**
+     * Проверяет, что исключение вызвано нарушением указанного ограничения
+     *
+     * @param e исключение целостности данных
+     * @param constraintName имя ограничения
+     * @return true если нарушено именно это ограничение
+     */
+    public static boolean isViolated(DataIntegrityViolationException e, String constraintName) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return constraintName.equalsIgnoreCase(violation.getConstraintName());
+            }
+        }
+        return false;
+    }
+}
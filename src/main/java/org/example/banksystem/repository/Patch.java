@@ -0,0 +1,93 @@
+package org.example.banksystem.repository;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Набор изменяемых атрибутов сущности для частичного обновления
+ * <p>
+ * Содержит только те атрибуты, которые нужно изменить, поэтому {@link PatchRepository#patch(Object, Patch)}
+ * строит UPDATE ровно по этим столбцам. Отсутствующие в запросе поля просто не добавляются в набор,
+ * и значения для них (хеш пароля, шифротекст номера карты) не вычисляются.
+ * </p>
+ *
+ * @param <T> тип сущности
+ * @author George
+ * @version 1.0
+ */
+public final class Patch<T> {
+
+    private final Class<T> entityType;
+
+    /**
+     * Новые значения атрибутов в порядке добавления
+     */
+    private final Map<String, Object> values = new LinkedHashMap<>();
+
+    /**
+     * Числовые атрибуты, увеличиваемые на единицу на стороне базы
+     */
+    private final Set<String> increments = new LinkedHashSet<>();
+
+    private Patch(Class<T> entityType) {
+        this.entityType = entityType;
+    }
+
+    /**
+     * Создает пустой набор изменений
+     *
+     * @param entityType класс сущности
+     * @param <T> тип сущности
+     * @return пустой набор изменений
+     */
+    public static <T> Patch<T> of(Class<T> entityType) {
+        return new Patch<>(entityType);
+    }
+
+    /**
+     * Устанавливает новое значение атрибута
+     *
+     * @param attribute имя атрибута сущности
+     * @param value новое значение
+     * @return этот набор изменений
+     */
+    public Patch<T> set(String attribute, Object value) {
+        values.put(attribute, value);
+        return this;
+    }
+
+    /**
+     * Увеличивает числовой атрибут на единицу выражением над текущим значением столбца
+     *
+     * @param attribute имя атрибута сущности
+     * @return этот набор изменений
+     */
+    public Patch<T> increment(String attribute) {
+        increments.add(attribute);
+        return this;
+    }
+
+    /**
+     * Проверяет, что набор не содержит изменений
+     *
+     * @return true если ни один атрибут не изменяется
+     */
+    public boolean isEmpty() {
+        return values.isEmpty() && increments.isEmpty();
+    }
+
+    public Class<T> getEntityType() {
+        return entityType;
+    }
+
+    public Map<String, Object> getValues() {
+        return Collections.unmodifiableMap(values);
+    }
+
+    public Set<String> getIncrements() {
+        return Collections.unmodifiableSet(increments);
+    }
+}
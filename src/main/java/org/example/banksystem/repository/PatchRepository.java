@@ -0,0 +1,30 @@
+package org.example.banksystem.repository;
+
+/**
+ * Фрагмент репозитория для частичного обновления сущностей
+ * <p>
+ * {@code save} для измененной сущности требует сначала прочитать ее целиком и затем записывает
+ * все столбцы. {@link #patch(Object, Patch)} выполняет один UPDATE по ключу только для атрибутов
+ * из {@link Patch}, без предварительного SELECT. Отсутствие строки определяется по числу
+ * обновленных строк, нарушение ограничений базы приходит как DataIntegrityViolationException,
+ * см. {@link Constraints}.
+ * </p>
+ *
+ * @param <T> тип сущности
+ * @param <ID> тип идентификатора сущности
+ * @author George
+ * @version 1.0
+ */
+public interface PatchRepository<T, ID> {
+
+    /**
+     * Обновляет указанные атрибуты сущности одним UPDATE
+     *
+     * @param id идентификатор сущности
+     * @param patch изменяемые атрибуты, не пустой набор
+     * @return число обновленных строк (0 или 1)
+     * @throws IllegalArgumentException если набор изменений пуст
+     * @throws org.springframework.dao.DataIntegrityViolationException если нарушено ограничение базы
+     */
+    int patch(ID id, Patch<T> patch);
+}
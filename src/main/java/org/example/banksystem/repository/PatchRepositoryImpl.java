@@ -0,0 +1,51 @@
+package org.example.banksystem.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.metamodel.EntityType;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Реализация {@link PatchRepository} через CriteriaUpdate
+ *
+ * @param <T> тип сущности
+ * @param <ID> тип идентификатора сущности
+ * @author George
+ * @version 1.0
+ */
+public class PatchRepositoryImpl<T, ID> implements PatchRepository<T, ID> {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Запрос выполняется в обход контекста персистентности: загруженные ранее экземпляры
+     * сущности в текущей транзакции не обновляются.
+     * </p>
+     */
+    @Override
+    @Transactional
+    public int patch(ID id, Patch<T> patch) {
+        if (patch.isEmpty()) {
+            throw new IllegalArgumentException("Patch has no changes");
+        }
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<T> update = builder.createCriteriaUpdate(patch.getEntityType());
+        Root<T> root = update.from(patch.getEntityType());
+        patch.getValues().forEach(update::set);
+        for (String attribute : patch.getIncrements()) {
+            Path<Integer> path = root.get(attribute);
+            update.set(path, builder.sum(path, 1));
+        }
+        EntityType<T> entityType = entityManager.getMetamodel().entity(patch.getEntityType());
+        String idAttribute = entityType.getId(entityType.getIdType().getJavaType()).getName();
+        update.where(builder.equal(root.get(idAttribute), id));
+        return entityManager.createQuery(update).executeUpdate();
+    }
+}
@@ -0,0 +1,27 @@
+package org.example.banksystem.repository;
+
+/**
+ * Фрагмент репозитория для вставки новых сущностей
+ * <p>
+ * {@code save} для сущности с заданным идентификатором выполняет merge: сначала SELECT по ключу,
+ * затем INSERT. {@link #persist(Object)} сразу выполняет INSERT, поэтому существование записи
+ * не проверяется отдельным запросом, а нарушение ограничений базы (первичного ключа,
+ * уникального индекса, внешнего ключа) приходит как DataIntegrityViolationException,
+ * см. {@link Constraints}.
+ * </p>
+ *
+ * @param <T> тип сущности
+ * @author George
+ * @version 1.0
+ */
+public interface PersistRepository<T> {
+
+    /**
+     * Вставляет новую сущность и сразу отправляет INSERT в базу
+     *
+     * @param entity новая сущность
+     * @return та же сущность, с заполненным сгенерированным идентификатором
+     * @throws org.springframework.dao.DataIntegrityViolationException если нарушено ограничение базы
+     */
+    T persist(T entity);
+}
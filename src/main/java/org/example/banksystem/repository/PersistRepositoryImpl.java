@@ -0,0 +1,32 @@
+package org.example.banksystem.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Реализация {@link PersistRepository} через EntityManager.persist
+ *
+ * @param <T> тип сущности
+ * @author George
+ * @version 1.0
+ */
+public class PersistRepositoryImpl<T> implements PersistRepository<T> {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * INSERT отправляется сразу, чтобы нарушение ограничения было получено здесь, а не при фиксации транзакции.
+     * </p>
+     */
+    @Override
+    @Transactional
+    public T persist(T entity) {
+        entityManager.persist(entity);
+        entityManager.flush();
+        return entity;
+    }
+}
@@ -0,0 +1,29 @@
+package org.example.banksystem.repository;
+
+/**
+ * Фрагмент репозитория пользователей для отзыва refresh токенов
+ * <p>
+ * Отзыв JWT увеличивает версию токенов пользователя, но refresh токен обменивается на JWT
+ * с текущей версией, поэтому при отзыве сессий семейства refresh токенов пользователя
+ * тоже удаляются. При удалении пользователя они удаляются каскадно внешним ключом.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ */
+public interface RefreshTokenRepository {
+
+    /**
+     * Удаляет все семейства refresh токенов пользователя
+     * <p>
+     * Вызывается в транзакции, изменившей версию токенов, после записи строки пользователя:
+     * обмен refresh токена блокирует строку пользователя до обмена (см.
+     * {@link org.example.banksystem.service.RefreshTokenService#rotate}), поэтому обратный порядок
+     * привел бы к взаимной блокировке.
+     * </p>
+     *
+     * @param username имя пользователя
+     * @return число удаленных токенов
+     */
+    int deleteRefreshTokens(String username);
+}
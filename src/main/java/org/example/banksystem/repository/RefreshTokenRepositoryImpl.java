@@ -0,0 +1,28 @@
+package org.example.banksystem.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Реализация {@link RefreshTokenRepository} через JdbcTemplate
+ *
+ * @author George
+ * @version 1.0
+ */
+public class RefreshTokenRepositoryImpl implements RefreshTokenRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String deleteByUsername;
+
+    public RefreshTokenRepositoryImpl(JdbcTemplate jdbcTemplate,
+                                      @Value("${spring.liquibase.default-schema}") String schema) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.deleteByUsername = "DELETE FROM " + schema + ".refresh_tokens WHERE username = ?";
+    }
+
+    @Override
+    public int deleteRefreshTokens(String username) {
+        return jdbcTemplate.update(deleteByUsername, username);
+    }
+}
@@ -0,0 +1,50 @@
+package org.example.banksystem.repository;
+
+/**
+ * Результат перевода, возвращаемый функциями базы transfer_funds и transfer_funds_once
+ *
+ * @author George
+ * @version 1.0
+ */
+public enum TransferResult {
+
+    /**
+     * Перевод выполнен
+     */
+    COMPLETED,
+
+    /**
+     * Одна из карт не найдена или принадлежит другому пользователю
+     */
+    ACCESS_DENIED,
+
+    /**
+     * Одна из карт неактивна
+     */
+    CARD_NOT_ACTIVE,
+
+    /**
+     * На карте отправителя недостаточно средств
+     */
+    INSUFFICIENT_FUNDS,
+
+    /**
+     * Ключ идемпотентности уже использован для перевода с другими картами или суммой
+     */
+    IDEMPOTENCY_KEY_REUSED;
+
+    /**
+     * Возвращает результат по коду функции перевода
+     *
+     * @param code код результата (порядковый номер константы)
+     * @return результат перевода
+     * @throws IllegalStateException если код неизвестен
+     */
+    public static TransferResult of(int code) {
+        TransferResult[] values = values();
+        if (code < 0 || code >= values.length) {
+            throw new IllegalStateException("Unknown transfer result code: " + code);
+        }
+        return values[code];
+    }
+}
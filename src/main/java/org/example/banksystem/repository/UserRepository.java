@@ -2,7 +2,11 @@ package org.example.banksystem.repository;
 
 import org.example.banksystem.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -12,13 +16,17 @@ import java.util.Optional;
  * Предоставляет методы для выполнения операций с пользователями системы.
  * Наследует стандартные CRUD операции от JpaRepository.
  * Использует имя пользователя (username) в качестве первичного ключа.
+ * Новые пользователи вставляются через {@link PersistRepository#persist(Object)},
+ * частичные изменения записываются через {@link PatchRepository#patch(Object, Patch)},
+ * refresh токены пользователя удаляются через {@link RefreshTokenRepository}.
  * </p>
  *
  * @author George
  * @version 1.0
  */
 @Repository
-public interface UserRepository extends JpaRepository<User, String> {
+public interface UserRepository extends JpaRepository<User, String>, PersistRepository<User>, PatchRepository<User, String>,
+        RefreshTokenRepository {
 
     /**
      * Находит пользователя по имени пользователя
@@ -27,4 +35,32 @@ public interface UserRepository extends JpaRepository<User, String> {
      * @return Optional с найденным пользователем или empty если пользователь не найден
      */
     Optional<User> findByUsername(String username);
+
+    /**
+     * Находит текущую версию токенов пользователя
+     *
+     * @param username имя пользователя
+     * @return Optional с версией токенов или empty если пользователь не найден
+     */
+    @Query("SELECT u.tokenVersion FROM User u WHERE u.username = :username")
+    Optional<Integer> findTokenVersionByUsername(@Param("username") String username);
+
+    /**
+     * Заменяет хеш пароля, только если он не изменился с момента чтения
+     * <p>
+     * Используется для перехеширования пароля с новой стоимостью BCrypt: если пароль
+     * был изменен параллельно, новое значение не перезаписывается.
+     * </p>
+     *
+     * @param username имя пользователя
+     * @param expectedPassword прочитанный ранее хеш пароля
+     * @param newPassword новый хеш того же пароля
+     * @return число обновленных строк (0 или 1)
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.password = :newPassword WHERE u.username = :username AND u.password = :expectedPassword")
+    int updatePasswordIfUnchanged(@Param("username") String username,
+                                  @Param("expectedPassword") String expectedPassword,
+                                  @Param("newPassword") String newPassword);
 }
\ No newline at end of file
@@ -0,0 +1,187 @@
+package org.example.banksystem.security;
+
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.SecureRandom;
+
+/**
+ * Движок симметричного шифрования AES с переиспользованием состояния
+ * <p>
+ * Ключ разбирается один раз при создании движка. Экземпляры Cipher создаются один раз на поток
+ * (см. {@link ThreadBoundPool}). Данные шифруются в режиме AES-GCM со случайным IV,
+ * поэтому шифр GCM повторно инициализируется на каждый вызов и может принимать любой ключ,
+ * в том числе ключ данных конверта. Режим ECB поддерживается только для чтения данных,
+ * записанных прежним форматом.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ */
+public class AesCipherEngine {
+
+    /**
+     * Преобразование, соответствующее Cipher.getInstance("AES") у провайдера SunJCE
+     */
+    private static final String LEGACY_TRANSFORMATION = "AES/ECB/PKCS5Padding";
+
+    /**
+     * Преобразование без padding для дешифрования отдельных целых блоков
+     */
+    private static final String BLOCK_TRANSFORMATION = "AES/ECB/NoPadding";
+
+    /**
+     * Преобразование для новых данных
+     */
+    private static final String GCM_TRANSFORMATION = "AES/GCM/NoPadding";
+
+    /**
+     * Размер блока AES в байтах
+     */
+    public static final int BLOCK_SIZE = 16;
+
+    /**
+     * Длина IV для GCM в байтах
+     */
+    public static final int IV_LENGTH = 12;
+
+    /**
+     * Длина тега аутентификации GCM в байтах
+     */
+    public static final int TAG_LENGTH = 16;
+
+    /**
+     * Число простаивающих шифров, которые хранятся для виртуальных потоков
+     */
+    private static final int MAX_SHARED_CIPHERS = 64;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Шифры GCM не привязаны к ключу, так как инициализируются на каждый вызов,
+     * поэтому общие для всех движков
+     */
+    private static final ThreadBoundPool<Cipher> GCM_CIPHERS =
+            new ThreadBoundPool<>(() -> Cipher.getInstance(GCM_TRANSFORMATION), MAX_SHARED_CIPHERS);
+
+    private final SecretKeySpec keySpec;
+    private final ThreadBoundPool<Cipher> legacyDecryptors;
+    private final ThreadBoundPool<Cipher> blockDecryptors;
+
+    /**
+     * Создает движок для указанного ключа
+     *
+     * @param key ключ AES (16, 24 или 32 байта)
+     */
+    public AesCipherEngine(byte[] key) {
+        this.keySpec = new SecretKeySpec(key, "AES");
+        this.legacyDecryptors = new ThreadBoundPool<>(() -> newDecryptor(LEGACY_TRANSFORMATION), MAX_SHARED_CIPHERS);
+        this.blockDecryptors = new ThreadBoundPool<>(() -> newDecryptor(BLOCK_TRANSFORMATION), MAX_SHARED_CIPHERS);
+    }
+
+    /**
+     * Шифрует данные в режиме AES-GCM указанным ключом
+     * <p>
+     * Результат имеет вид header || IV || шифртекст || тег. Заголовок не шифруется,
+     * а его первые aadLength байт защищаются тегом как дополнительные аутентифицируемые данные (AAD),
+     * поэтому подмена версии формата обнаруживается при дешифровании.
+     * </p>
+     *
+     * @param key ключ AES
+     * @param header открытый заголовок формата
+     * @param aadLength число первых байт заголовка, защищаемых тегом
+     * @param input открытые данные
+     * @return заголовок, IV и зашифрованные данные одним массивом
+     * @throws GeneralSecurityException если происходит ошибка шифрования
+     */
+    public static byte[] seal(Key key, byte[] header, int aadLength, byte[] input) throws GeneralSecurityException {
+        byte[] output = new byte[header.length + IV_LENGTH + input.length + TAG_LENGTH];
+        byte[] iv = new byte[IV_LENGTH];
+        RANDOM.nextBytes(iv);
+        System.arraycopy(header, 0, output, 0, header.length);
+        System.arraycopy(iv, 0, output, header.length, IV_LENGTH);
+        return GCM_CIPHERS.apply(cipher -> {
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, iv));
+            cipher.updateAAD(header, 0, aadLength);
+            cipher.doFinal(input, 0, input.length, output, header.length + IV_LENGTH);
+            return output;
+        });
+    }
+
+    /**
+     * Дешифрует данные, зашифрованные {@link #seal(Key, byte[], int, byte[])}
+     *
+     * @param key ключ AES
+     * @param input заголовок, IV и зашифрованные данные
+     * @param aadLength число первых байт заголовка, защищенных тегом
+     * @param headerLength длина заголовка в начале массива
+     * @return открытые данные
+     * @throws GeneralSecurityException если данные повреждены или зашифрованы другим ключом
+     */
+    public static byte[] open(Key key, byte[] input, int aadLength, int headerLength) throws GeneralSecurityException {
+        int offset = headerLength + IV_LENGTH;
+        if (input.length < offset + TAG_LENGTH) {
+            throw new IllegalBlockSizeException("Input shorter than header, IV and tag");
+        }
+        return GCM_CIPHERS.apply(cipher -> {
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, input, headerLength, IV_LENGTH));
+            cipher.updateAAD(input, 0, aadLength);
+            return cipher.doFinal(input, offset, input.length - offset);
+        });
+    }
+
+    /**
+     * Дешифрует данные AES-GCM ключом движка, весь заголовок защищен тегом
+     *
+     * @param input заголовок, IV и зашифрованные данные
+     * @param headerLength длина заголовка в начале массива
+     * @return открытые данные
+     * @throws GeneralSecurityException если данные повреждены или зашифрованы другим ключом
+     */
+    public byte[] open(byte[] input, int headerLength) throws GeneralSecurityException {
+        return open(keySpec, input, headerLength, headerLength);
+    }
+
+    /**
+     * Дешифрует данные прежнего формата (AES/ECB/PKCS5Padding)
+     *
+     * @param input зашифрованные данные
+     * @param offset смещение шифртекста в массиве
+     * @param length длина шифртекста
+     * @return открытые данные
+     * @throws GeneralSecurityException если происходит ошибка дешифрования
+     */
+    public byte[] decryptLegacy(byte[] input, int offset, int length) throws GeneralSecurityException {
+        return legacyDecryptors.apply(cipher -> cipher.doFinal(input, offset, length));
+    }
+
+    /**
+     * Дешифрует только целые блоки шифртекста прежнего формата, отбрасывая неполный хвост
+     * <p>
+     * Режим ECB шифрует блоки независимо, поэтому шифртекст, обрезанный не по границе блока,
+     * все еще содержит целые первые блоки. Padding при этом не проверяется и не удаляется.
+     * </p>
+     *
+     * @param input зашифрованные данные, возможно обрезанные
+     * @param offset смещение шифртекста в массиве
+     * @param length длина шифртекста
+     * @return открытые данные целых блоков
+     * @throws GeneralSecurityException если происходит ошибка дешифрования
+     */
+    public byte[] decryptWholeBlocks(byte[] input, int offset, int length) throws GeneralSecurityException {
+        int blocksLength = length - length % BLOCK_SIZE;
+        if (blocksLength == 0) {
+            throw new IllegalBlockSizeException("Input shorter than one block");
+        }
+        return blockDecryptors.apply(cipher -> cipher.doFinal(input, offset, blocksLength));
+    }
+
+    private Cipher newDecryptor(String transformation) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(transformation);
+        cipher.init(Cipher.DECRYPT_MODE, keySpec);
+        return cipher;
+    }
+}
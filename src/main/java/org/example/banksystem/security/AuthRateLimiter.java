@@ -0,0 +1,153 @@
+package org.example.banksystem.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.example.banksystem.exceptions.auth.AuthRateLimitExceededException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограничение частоты попыток аутентификации по адресу клиента и по имени пользователя
+ * <p>
+ * Каждому ключу соответствует ведро токенов, реализованное по алгоритму GCRA: в ведре хранится
+ * одно число - теоретическое время следующей попытки, которое обновляется через compareAndSet
+ * без блокировок. Ведро вмещает burst попыток и пополняется на одну попытку за period.
+ * </p>
+ * <p>
+ * Ведра лежат в кеше Caffeine, ограниченном по размеру. Ведро, к которому не обращались дольше
+ * времени полного пополнения, вытесняется: оно неотличимо от нового, поэтому вытеснение ничего
+ * не теряет, а миллионы разовых ключей не накапливаются в памяти. Проверка выполняется в контроллере
+ * до любого обращения к базе и BCrypt.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ */
+@Component
+public class AuthRateLimiter implements MeterBinder {
+
+    private final Cache<String, AtomicLong> buckets;
+    private final Ticker ticker;
+    private final Limit clientLimit;
+    private final Limit usernameLimit;
+
+    /**
+     * Создает ограничитель
+     *
+     * @param clientBurst число попыток с одного адреса подряд
+     * @param clientPeriod время восстановления одной попытки для адреса
+     * @param usernameBurst число попыток для одного имени пользователя подряд
+     * @param usernamePeriod время восстановления одной попытки для имени пользователя
+     * @param maxKeys максимальное число отслеживаемых ключей
+     */
+    @Autowired
+    public AuthRateLimiter(@Value("${auth.rate-limit.client.burst:20}") int clientBurst,
+                           @Value("${auth.rate-limit.client.period:3s}") Duration clientPeriod,
+                           @Value("${auth.rate-limit.username.burst:5}") int usernameBurst,
+                           @Value("${auth.rate-limit.username.period:12s}") Duration usernamePeriod,
+                           @Value("${auth.rate-limit.max-keys:200000}") long maxKeys) {
+        this(clientBurst, clientPeriod, usernameBurst, usernamePeriod, maxKeys, Ticker.systemTicker());
+    }
+
+    AuthRateLimiter(int clientBurst, Duration clientPeriod, int usernameBurst, Duration usernamePeriod,
+                    long maxKeys, Ticker ticker) {
+        this.clientLimit = new Limit("client:", clientBurst, clientPeriod);
+        this.usernameLimit = new Limit("username:", usernameBurst, usernamePeriod);
+        this.ticker = ticker;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(Duration.ofNanos(Math.max(clientLimit.window, usernameLimit.window)))
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Регистрирует метрики числа ведер и отказов
+     *
+     * @param registry реестр метрик
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, buckets, "auth.rate-limit.buckets");
+        clientLimit.rejected = Counter.builder("auth.rate-limit.rejected")
+                .description("Число попыток аутентификации, отклоненных ограничителем")
+                .tag("key", "client")
+                .register(registry);
+        usernameLimit.rejected = Counter.builder("auth.rate-limit.rejected")
+                .description("Число попыток аутентификации, отклоненных ограничителем")
+                .tag("key", "username")
+                .register(registry);
+    }
+
+    /**
+     * Расходует попытку адреса клиента
+     *
+     * @param clientAddress адрес клиента
+     * @throws AuthRateLimitExceededException если попытки адреса исчерпаны
+     */
+    public void checkClient(String clientAddress) {
+        acquire(clientLimit, clientAddress);
+    }
+
+    /**
+     * Расходует попытку имени пользователя
+     *
+     * @param username имя пользователя, null не ограничивается
+     * @throws AuthRateLimitExceededException если попытки для имени исчерпаны
+     */
+    public void checkUsername(String username) {
+        if (username != null) {
+            acquire(usernameLimit, username);
+        }
+    }
+
+    private void acquire(Limit limit, String key) {
+        long now = ticker.read();
+        AtomicLong bucket = buckets.get(limit.prefix + key, k -> new AtomicLong(now));
+        while (true) {
+            long arrival = bucket.get();
+            long next = Math.max(arrival, now) + limit.interval;
+            long wait = next - now - limit.window;
+            if (wait > 0) {
+                if (limit.rejected != null) {
+                    limit.rejected.increment();
+                }
+                throw new AuthRateLimitExceededException("Too many authentication attempts, try again later",
+                        Duration.ofNanos(wait));
+            }
+            if (bucket.compareAndSet(arrival, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Параметры ведра одного вида ключей
+     */
+    private static final class Limit {
+
+        private final String prefix;
+        private final long interval;
+        private final long window;
+        private Counter rejected;
+
+        private Limit(String prefix, int burst, Duration period) {
+            if (burst <= 0 || period.isNegative() || period.isZero()) {
+                throw new IllegalArgumentException("Invalid rate limit for " + prefix + " burst=" + burst + ", period=" + period);
+            }
+            this.prefix = prefix;
+            this.interval = period.toNanos();
+            this.window = Math.multiplyExact(interval, (long) burst);
+        }
+    }
+}
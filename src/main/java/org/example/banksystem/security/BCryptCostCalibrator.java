@@ -0,0 +1,65 @@
+package org.example.banksystem.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+import java.time.Duration;
+
+/**
+ * Подбор стоимости BCrypt под заданное время хеширования на текущем оборудовании
+ * <p>
+ * Измеряет время хеширования с минимальной стоимостью и выбирает наибольшую стоимость,
+ * при которой ожидаемое время не превышает целевого. Каждая единица стоимости удваивает
+ * число раундов, поэтому достаточно одного замера.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ */
+@Slf4j
+public final class BCryptCostCalibrator {
+
+    /**
+     * Число замеров, из которых берется минимальное время
+     */
+    private static final int SAMPLES = 3;
+
+    private BCryptCostCalibrator() {
+    }
+
+    /**
+     * Подбирает стоимость BCrypt
+     *
+     * @param targetTime целевое время одного хеширования
+     * @param minStrength минимальная допустимая стоимость
+     * @param maxStrength максимальная допустимая стоимость
+     * @return стоимость от minStrength до maxStrength
+     * @throws IllegalArgumentException если границы вне диапазона BCrypt (4..31) или перепутаны
+     */
+    public static int calibrate(Duration targetTime, int minStrength, int maxStrength) {
+        if (minStrength < 4 || maxStrength > 31 || minStrength > maxStrength) {
+            throw new IllegalArgumentException("Invalid BCrypt strength bounds: " + minStrength + ".." + maxStrength);
+        }
+        long nanos = measure(minStrength);
+        int strength = minStrength;
+        while (strength < maxStrength && nanos * 2 <= targetTime.toNanos()) {
+            strength++;
+            nanos *= 2;
+        }
+        log.info("BCrypt strength calibrated to {} (~{} ms per hash, target {} ms)",
+                strength, nanos / 1_000_000, targetTime.toMillis());
+        return strength;
+    }
+
+    private static long measure(int strength) {
+        String salt = BCrypt.gensalt(strength);
+        BCrypt.hashpw("calibration", salt);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            BCrypt.hashpw("calibration", salt);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
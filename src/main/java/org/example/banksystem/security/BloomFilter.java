@@ -0,0 +1,92 @@
+package org.example.banksystem.security;
+
+import org.apache.commons.codec.digest.MurmurHash3;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Потокобезопасный фильтр Блума для строковых идентификаторов
+ * <p>
+ * Отвечает на вопрос "мог ли идентификатор быть добавлен": отрицательный ответ точен,
+ * положительный может быть ложным с заданной вероятностью. Позиции битов вычисляются
+ * по двум половинам хеша MurmurHash3 x64 128 (схема Кирша-Митценмахера), поэтому
+ * на каждый запрос идентификатор хешируется один раз. Биты хранятся в AtomicLongArray,
+ * чтение и добавление выполняются без блокировок.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ */
+public final class BloomFilter {
+
+    /**
+     * Биты фильтра
+     */
+    private final AtomicLongArray bits;
+
+    /**
+     * Число бит фильтра
+     */
+    private final long bitCount;
+
+    /**
+     * Число хеш-функций
+     */
+    private final int hashCount;
+
+    /**
+     * Создает фильтр, рассчитанный на заданное число элементов
+     *
+     * @param expectedInsertions ожидаемое число добавляемых элементов
+     * @param falsePositiveRate допустимая вероятность ложноположительного ответа (от 0 до 1)
+     * @throws IllegalArgumentException если параметры вне допустимого диапазона
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("Expected insertions must be positive: " + expectedInsertions);
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + falsePositiveRate);
+        }
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = Math.toIntExact(Math.max(1, (optimalBits + Long.SIZE - 1) / Long.SIZE));
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words * Long.SIZE;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * Добавляет идентификатор в фильтр
+     *
+     * @param value идентификатор
+     */
+    public void put(String value) {
+        long[] hash = MurmurHash3.hash128x64(value.getBytes(StandardCharsets.UTF_8));
+        long combined = hash[0];
+        for (int i = 0; i < hashCount; i++) {
+            long index = (combined & Long.MAX_VALUE) % bitCount;
+            bits.accumulateAndGet((int) (index >>> 6), 1L << index, (word, mask) -> word | mask);
+            combined += hash[1];
+        }
+    }
+
+    /**
+     * Проверяет, мог ли идентификатор быть добавлен в фильтр
+     *
+     * @param value идентификатор
+     * @return false если идентификатор точно не добавлялся
+     */
+    public boolean mightContain(String value) {
+        long[] hash = MurmurHash3.hash128x64(value.getBytes(StandardCharsets.UTF_8));
+        long combined = hash[0];
+        for (int i = 0; i < hashCount; i++) {
+            long index = (combined & Long.MAX_VALUE) % bitCount;
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+            combined += hash[1];
+        }
+        return true;
+    }
+}
@@ -1,80 +1,674 @@
 package org.example.banksystem.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Hex;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * Компонент для шифрования и дешифрования данных с использованием AES алгоритма
  * <p>
  * Предоставляет методы для кодирования и декодирования чувствительных данных,
  * таких как номера банковских карт, с использованием симметричного шифрования AES.
- * Использует Base64 для кодирования бинарных данных в строковый формат.
+ * Результат - бинарное значение с байтом версии формата в начале, поэтому значения
+ * всех прежних форматов остаются читаемыми.
+ * </p>
+ * <p>
+ * Новые значения шифруются конвертом: каждая карта (или пакет карт из {@link #encodeAll(List)})
+ * получает собственный случайный ключ данных (DEK), который хранится рядом с шифртекстом
+ * в обернутом мастер-ключом (KEK) виде. Мастер-ключи находятся во внешнем хранилище
+ * {@link KeyEncryptionKeyStore}, поэтому ротация мастер-ключа сводится к переобертыванию
+ * ключей данных без перешифрования самих номеров.
+ * </p>
+ * <p>
+ * Развернутые ключи данных кешируются в ограниченном по размеру и времени жизни кеше,
+ * поэтому часто читаемые карты не платят за развертывание на каждом запросе.
+ * Доля попаданий в кеш и время развертывания публикуются как метрики Micrometer.
+ * </p>
+ * <p>
+ * Для поиска и проверки уникальности номеров карт без дешифрования строится
+ * "слепой индекс" - HMAC-SHA256 от номера на отдельном ключе.
+ * </p>
+ * <p>
+ * Для массовых операций (миграции, ротация ключей) есть пакетные методы {@link #encodeAll(List)}
+ * и {@link #decodeAll(List)}, которые делят большие списки между потоками собственного
+ * ограниченного ForkJoinPool. Каждый поток пула переиспользует свои экземпляры Cipher.
  * </p>
  *
  * @author George
  * @version 1.0
  */
 @Component
-public class CommonsCodecHasher {
+public class CommonsCodecHasher implements AutoCloseable, MeterBinder {
+
+    /**
+     * Алгоритм HMAC для слепого индекса
+     */
+    private static final String INDEX_ALGORITHM = "HmacSHA256";
+
+    /**
+     * Размер части пакета, которая обрабатывается одним потоком без дальнейшего деления
+     */
+    private static final int BATCH_THRESHOLD = 256;
+
+    /**
+     * Длина ключа данных в байтах
+     */
+    private static final int DATA_KEY_LENGTH = 32;
+
+    /**
+     * Размер кеша ключей данных по умолчанию
+     */
+    private static final long DEFAULT_DATA_KEY_CACHE_SIZE = 10_000;
+
+    /**
+     * Время жизни ключа данных в кеше по умолчанию
+     */
+    private static final Duration DEFAULT_DATA_KEY_TTL = Duration.ofMinutes(10);
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Версия формата прежних значений: шифртекст AES/ECB, возможно обрезанный до 24 байт
+     */
+    public static final byte FORMAT_LEGACY = 0;
+
+    /**
+     * Версия формата AES-GCM на основном ключе: [версия][IV][шифртекст с тегом]
+     */
+    public static final byte FORMAT_GCM = 1;
+
+    /**
+     * Версия формата AES-GCM с идентификатором ключа: [версия][id ключа][IV][шифртекст с тегом]
+     */
+    public static final byte FORMAT_KEYED = 2;
+
+    /**
+     * Версия конвертного формата:
+     * [версия][id мастер-ключа][длина обернутого ключа][обернутый ключ данных][IV][шифртекст с тегом]
+     */
+    public static final byte FORMAT_ENVELOPE = 3;
+
+    /**
+     * Идентификатор основного ключа codec.key, которым зашифрованы значения форматов 0 и 1
+     */
+    public static final int PRIMARY_KEY_ID = 0;
+
+    /**
+     * Длина заголовка значений формата {@link #FORMAT_GCM}
+     */
+    private static final int GCM_HEADER_LENGTH = 1;
+
+    /**
+     * Длина заголовка значений формата {@link #FORMAT_KEYED}
+     */
+    private static final int KEYED_HEADER_LENGTH = 2;
+
+    /**
+     * Длина заголовка конвертного формата без обернутого ключа
+     */
+    private static final int ENVELOPE_PREFIX_LENGTH = 3;
+
+    /**
+     * Тегом конвертного формата защищается только байт версии: подмена обернутого ключа
+     * и так приводит к ошибке проверки тега, а переобертывание не требует перешифрования
+     */
+    private static final int ENVELOPE_AAD_LENGTH = 1;
+
+    /**
+     * Движки шифрования связки ключей прежних форматов, индекс массива - идентификатор ключа
+     */
+    private final AesCipherEngine[] engines = new AesCipherEngine[256];
+
+    /**
+     * Хранилище мастер-ключей
+     */
+    private final KeyEncryptionKeyStore keyStore;
+
+    /**
+     * Развернутые ключи данных по идентификатору мастер-ключа и обернутому ключу
+     */
+    private final Cache<ByteBuffer, SecretKey> dataKeys;
+
+    /**
+     * Время развертывания ключей данных, регистрируется при привязке к реестру метрик
+     */
+    private volatile Timer unwrapTimer;
+
+    /**
+     * Экземпляры HMAC для построения слепого индекса
+     */
+    private final ThreadBoundPool<Mac> indexMacs;
 
     /**
-     * Ключ шифрования, настраиваемый через properties файл
+     * Пул потоков для пакетных операций
      */
-    @Value("${codec.key}")
-    private byte[] key;
+    private final ForkJoinPool batchPool;
+
+    /**
+     * Создает компонент с единственным ключом шифрования
+     * <p>
+     * Ключ используется и для чтения прежних форматов, и как мастер-ключ конверта.
+     * Предназначен для миграций и тестов.
+     * </p>
+     *
+     * @param key ключ шифрования
+     * @param indexKey ключ HMAC для слепого индекса
+     * @param parallelism число потоков для пакетных операций (0 - по числу процессоров)
+     */
+    public CommonsCodecHasher(byte[] key, byte[] indexKey, int parallelism) {
+        this(key, Map.of(), new InMemoryKeyEncryptionKeyStore(Map.of(PRIMARY_KEY_ID, key), PRIMARY_KEY_ID),
+                indexKey, parallelism);
+    }
+
+    /**
+     * Создает компонент с настройками кеша ключей данных по умолчанию
+     *
+     * @param key основной ключ прежних форматов
+     * @param keys дополнительные ключи прежних форматов по идентификаторам от 1 до 255
+     * @param keyStore хранилище мастер-ключей
+     * @param indexKey ключ HMAC для слепого индекса
+     * @param parallelism число потоков для пакетных операций (0 - по числу процессоров)
+     */
+    public CommonsCodecHasher(byte[] key, Map<Integer, String> keys, KeyEncryptionKeyStore keyStore,
+                              byte[] indexKey, int parallelism) {
+        this(key, keys, keyStore, DEFAULT_DATA_KEY_CACHE_SIZE, DEFAULT_DATA_KEY_TTL, indexKey, parallelism);
+    }
+
+    /**
+     * Создает компонент с хранилищем мастер-ключей и ключом индексации
+     * <p>
+     * Новые значения шифруются только конвертом на активном мастер-ключе хранилища.
+     * Ключи codec.key и codec.keys нужны для чтения значений прежних форматов,
+     * пока фоновая ротация не перешифрует их.
+     * </p>
+     *
+     * @param key основной ключ прежних форматов (идентификатор 0), настраиваемый через properties файл
+     * @param keys дополнительные ключи прежних форматов по идентификаторам от 1 до 255
+     * @param keyStore хранилище мастер-ключей
+     * @param dataKeyCacheSize максимальное число развернутых ключей данных в кеше
+     * @param dataKeyTtl время жизни развернутого ключа данных в кеше
+     * @param indexKey ключ HMAC для слепого индекса, настраиваемый через properties файл
+     * @param parallelism число потоков для пакетных операций (0 - по числу процессоров)
+     * @throws IllegalArgumentException если идентификатор ключа вне диапазона
+     */
+    @Autowired
+    public CommonsCodecHasher(@Value("${codec.key}") byte[] key,
+                              @Value("#{${codec.keys:{:}}}") Map<Integer, String> keys,
+                              KeyEncryptionKeyStore keyStore,
+                              @Value("${codec.data-key-cache.max-size:10000}") long dataKeyCacheSize,
+                              @Value("${codec.data-key-cache.ttl:10m}") Duration dataKeyTtl,
+                              @Value("${codec.index-key}") byte[] indexKey,
+                              @Value("${codec.parallelism:0}") int parallelism) {
+        engines[PRIMARY_KEY_ID] = new AesCipherEngine(key);
+        keys.forEach((id, value) -> {
+            if (id <= PRIMARY_KEY_ID || id >= engines.length) {
+                throw new IllegalArgumentException("Key id must be between 1 and 255: " + id);
+            }
+            engines[id] = new AesCipherEngine(value.getBytes(StandardCharsets.UTF_8));
+        });
+        this.keyStore = keyStore;
+        this.dataKeys = Caffeine.newBuilder()
+                .maximumSize(dataKeyCacheSize)
+                .expireAfterWrite(dataKeyTtl)
+                .recordStats()
+                .build();
+        SecretKeySpec indexKeySpec = new SecretKeySpec(indexKey, INDEX_ALGORITHM);
+        this.indexMacs = new ThreadBoundPool<>(() -> {
+            Mac mac = Mac.getInstance(INDEX_ALGORITHM);
+            mac.init(indexKeySpec);
+            return mac;
+        }, 64);
+        this.batchPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Регистрирует метрики кеша ключей данных и времени их развертывания
+     *
+     * @param registry реестр метрик
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, dataKeys, "card.data-keys");
+        Gauge.builder("card.data-keys.hit.ratio", dataKeys, cache -> cache.stats().hitRate())
+                .description("Доля чтений ключей данных, обслуженных из кеша")
+                .register(registry);
+        unwrapTimer = Timer.builder("card.data-key.unwrap")
+                .description("Время развертывания ключа данных мастер-ключом")
+                .register(registry);
+    }
 
     /**
-     * Шифрует входную строку с использованием AES алгоритма
+     * Шифрует номер карты в текущем бинарном формате
      *
      * @param input исходная строка для шифрования
-     * @return зашифрованная строка в Base64 формате (обрезанная до 32 символов)
+     * @return зашифрованные данные (см. {@link #encrypt(byte[])})
      * @throws RuntimeException если происходит ошибка шифрования
      */
-    public String encode(String input) {
-        try {
-            SecretKeySpec keySpec = new SecretKeySpec(key, "AES");
-            Cipher cipher = Cipher.getInstance("AES");
-            cipher.init(Cipher.ENCRYPT_MODE, keySpec);
-
-            byte[] encrypted = cipher.doFinal(input.getBytes(StandardCharsets.UTF_8));
-            String base64 = Base64.encodeBase64String(encrypted);
-            return base64.substring(0, Math.min(32, base64.length()));
+    public byte[] encode(String input) {
+        return encrypt(input.getBytes(StandardCharsets.UTF_8));
+    }
 
+    /**
+     * Шифрует массив байт конвертом на новом ключе данных
+     * <p>
+     * Формат: [версия, 1 байт][id мастер-ключа, 1 байт][длина обернутого ключа, 1 байт]
+     * [обернутый ключ данных, 40 байт для AES Key Wrap][IV, 12 байт][шифртекст][тег GCM, 16 байт].
+     * </p>
+     *
+     * @param input исходные данные для шифрования
+     * @return зашифрованные данные
+     * @throws RuntimeException если происходит ошибка шифрования
+     */
+    public byte[] encrypt(byte[] input) {
+        try {
+            return seal(newDataKey(), input);
         } catch (Exception e) {
             throw new RuntimeException("Encoding error", e);
         }
     }
 
     /**
-     * Дешифрует зашифрованную строку обратно в исходный текст
+     * Дешифрует номер карты в любом поддерживаемом бинарном формате
      *
-     * @param hash зашифрованная строка в Base64 формате
+     * @param encrypted зашифрованные данные с байтом версии формата
      * @return расшифрованная исходная строка
      * @throws RuntimeException если происходит ошибка дешифрования
      */
-    public String decode(String hash) {
+    public String decode(byte[] encrypted) {
+        return new String(decrypt(encrypted), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Дешифрует массив байт в любом поддерживаемом бинарном формате
+     * <p>
+     * Формат определяется по первому байту, а ключ - по заголовку формата,
+     * поэтому строки разных форматов и ключей могут храниться в одной колонке одновременно.
+     * </p>
+     *
+     * @param encrypted зашифрованные данные с байтом версии формата
+     * @return расшифрованные данные
+     * @throws RuntimeException если формат неизвестен или происходит ошибка дешифрования
+     */
+    public byte[] decrypt(byte[] encrypted) {
         try {
-            SecretKeySpec keySpec = new SecretKeySpec(key, "AES");
-            Cipher cipher = Cipher.getInstance("AES");
-            cipher.init(Cipher.DECRYPT_MODE, keySpec);
-
-            // Восстанавливаем padding для Base64 если нужно
-            String paddedHash = hash;
-            while (paddedHash.length() % 4 != 0) {
-                paddedHash += "=";
+            if (encrypted.length == 0) {
+                throw new IllegalArgumentException("Empty input");
             }
+            return switch (encrypted[0]) {
+                case FORMAT_ENVELOPE -> {
+                    int headerLength = envelopeHeaderLength(encrypted);
+                    yield AesCipherEngine.open(dataKey(encrypted, headerLength), encrypted, ENVELOPE_AAD_LENGTH, headerLength);
+                }
+                case FORMAT_KEYED -> engine(encrypted.length > 1 ? encrypted[1] & 0xFF : -1)
+                        .open(encrypted, KEYED_HEADER_LENGTH);
+                case FORMAT_GCM -> engines[PRIMARY_KEY_ID].open(encrypted, GCM_HEADER_LENGTH);
+                case FORMAT_LEGACY -> decryptLegacy(encrypted);
+                default -> throw new IllegalArgumentException("Unknown format version " + encrypted[0]);
+            };
+        } catch (Exception e) {
+            throw new RuntimeException("Decoding error", e);
+        }
+    }
+
+    /**
+     * Приводит значение к текущему формату на активном мастер-ключе
+     * <p>
+     * У значений конвертного формата переобертывается только ключ данных, шифртекст номера
+     * не меняется. Значения прежних форматов дешифруются и шифруются конвертом заново.
+     * </p>
+     *
+     * @param encrypted зашифрованные данные любого поддерживаемого формата
+     * @return данные в текущем формате
+     * @throws RuntimeException если происходит ошибка дешифрования или шифрования
+     */
+    public byte[] reencrypt(byte[] encrypted) {
+        return reencrypt(encrypted, null);
+    }
 
-            byte[] decoded = Base64.decodeBase64(paddedHash);
-            byte[] decrypted = cipher.doFinal(decoded);
-            return new String(decrypted, StandardCharsets.UTF_8);
+    /**
+     * Проверяет, записаны ли данные в текущем формате на активном мастер-ключе
+     *
+     * @param encrypted зашифрованные данные с байтом версии формата
+     * @return true, если данные не требуют перешифрования
+     */
+    public boolean isCurrentFormat(byte[] encrypted) {
+        return encrypted.length > 1 && encrypted[0] == FORMAT_ENVELOPE && (encrypted[1] & 0xFF) == keyStore.activeKeyId();
+    }
 
+    /**
+     * Возвращает начало заголовка значений текущего формата
+     * <p>
+     * Позволяет отбирать строки, требующие перешифрования, на стороне БД
+     * сравнением первых байт колонки.
+     * </p>
+     *
+     * @return [версия формата][id активного мастер-ключа]
+     */
+    public byte[] activeHeader() {
+        return new byte[]{FORMAT_ENVELOPE, (byte) keyStore.activeKeyId()};
+    }
+
+    /**
+     * Возвращает идентификатор активного мастер-ключа
+     *
+     * @return идентификатор ключа, которым обертываются новые ключи данных
+     */
+    public int activeKeyId() {
+        return keyStore.activeKeyId();
+    }
+
+    /**
+     * Преобразует значение прежнего строкового формата (Base64, возможно обрезанный до 32 символов)
+     * в бинарный формат версии {@link #FORMAT_LEGACY}
+     * <p>
+     * Выполняет то же преобразование, что и миграция колонки в bytea.
+     * </p>
+     *
+     * @param hash зашифрованная строка в Base64 формате
+     * @return данные с байтом версии формата
+     */
+    public static byte[] fromLegacy(String hash) {
+        // Восстанавливаем padding для Base64 если нужно
+        int missing = (4 - hash.length() % 4) % 4;
+        byte[] decoded = Base64.decodeBase64(missing == 0 ? hash : hash.concat("=".repeat(missing)));
+        byte[] result = new byte[decoded.length + 1];
+        result[0] = FORMAT_LEGACY;
+        System.arraycopy(decoded, 0, result, 1, decoded.length);
+        return result;
+    }
+
+    /**
+     * Создает новый ключ данных и обертывает его активным мастер-ключом
+     */
+    private DataKey newDataKey() throws GeneralSecurityException {
+        byte[] keyBytes = new byte[DATA_KEY_LENGTH];
+        RANDOM.nextBytes(keyBytes);
+        SecretKey key = new SecretKeySpec(keyBytes, "AES");
+        byte[] header = envelopeHeader(keyStore.activeKeyId(), keyStore.wrap(keyStore.activeKeyId(), key));
+        dataKeys.put(cacheKey(header, header.length), key);
+        return new DataKey(key, header);
+    }
+
+    /**
+     * Шифрует данные ключом данных конверта
+     */
+    private static byte[] seal(DataKey dataKey, byte[] input) throws GeneralSecurityException {
+        return AesCipherEngine.seal(dataKey.key(), dataKey.header(), ENVELOPE_AAD_LENGTH, input);
+    }
+
+    /**
+     * Приводит значение к текущему формату, шифруя значения прежних форматов общим ключом данных пакета
+     */
+    private byte[] reencrypt(byte[] encrypted, DataKey batchKey) {
+        if (isCurrentFormat(encrypted)) {
+            return encrypted;
+        }
+        try {
+            if (encrypted.length > 0 && encrypted[0] == FORMAT_ENVELOPE) {
+                int headerLength = envelopeHeaderLength(encrypted);
+                SecretKey key = dataKey(encrypted, headerLength);
+                byte[] header = envelopeHeader(keyStore.activeKeyId(), keyStore.wrap(keyStore.activeKeyId(), key));
+                dataKeys.put(cacheKey(header, header.length), key);
+                byte[] result = new byte[header.length + encrypted.length - headerLength];
+                System.arraycopy(header, 0, result, 0, header.length);
+                System.arraycopy(encrypted, headerLength, result, header.length, encrypted.length - headerLength);
+                return result;
+            }
         } catch (Exception e) {
             throw new RuntimeException("Decoding error", e);
         }
+        byte[] plain = decrypt(encrypted);
+        if (batchKey == null) {
+            return encrypt(plain);
+        }
+        try {
+            return seal(batchKey, plain);
+        } catch (Exception e) {
+            throw new RuntimeException("Encoding error", e);
+        }
+    }
+
+    /**
+     * Собирает заголовок конвертного формата
+     */
+    private static byte[] envelopeHeader(int keyId, byte[] wrappedKey) {
+        byte[] header = new byte[ENVELOPE_PREFIX_LENGTH + wrappedKey.length];
+        header[0] = FORMAT_ENVELOPE;
+        header[1] = (byte) keyId;
+        header[2] = (byte) wrappedKey.length;
+        System.arraycopy(wrappedKey, 0, header, ENVELOPE_PREFIX_LENGTH, wrappedKey.length);
+        return header;
+    }
+
+    /**
+     * Возвращает длину заголовка значения конвертного формата
+     */
+    private static int envelopeHeaderLength(byte[] encrypted) throws GeneralSecurityException {
+        int headerLength = encrypted.length < ENVELOPE_PREFIX_LENGTH ? -1 : ENVELOPE_PREFIX_LENGTH + (encrypted[2] & 0xFF);
+        if (headerLength < 0 || encrypted.length < headerLength + AesCipherEngine.IV_LENGTH + AesCipherEngine.TAG_LENGTH) {
+            throw new IllegalBlockSizeException("Input shorter than envelope header, IV and tag");
+        }
+        return headerLength;
+    }
+
+    /**
+     * Возвращает развернутый ключ данных значения, разворачивая его мастер-ключом при промахе кеша
+     */
+    private SecretKey dataKey(byte[] encrypted, int headerLength) {
+        return dataKeys.get(cacheKey(encrypted, headerLength), cacheKey -> {
+            long start = System.nanoTime();
+            try {
+                return keyStore.unwrap(encrypted[1] & 0xFF,
+                        Arrays.copyOfRange(encrypted, ENVELOPE_PREFIX_LENGTH, headerLength));
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Data key could not be unwrapped", e);
+            } finally {
+                Timer timer = unwrapTimer;
+                if (timer != null) {
+                    timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+        });
+    }
+
+    /**
+     * Ключ кеша - идентификатор мастер-ключа, длина и сам обернутый ключ данных
+     */
+    private static ByteBuffer cacheKey(byte[] encrypted, int headerLength) {
+        return ByteBuffer.wrap(Arrays.copyOfRange(encrypted, 1, headerLength));
+    }
+
+    /**
+     * Дешифрует данные прежнего формата AES/ECB
+     */
+    private byte[] decryptLegacy(byte[] encrypted) throws GeneralSecurityException {
+        int length = encrypted.length - 1;
+        if (length % AesCipherEngine.BLOCK_SIZE == 0) {
+            return engines[PRIMARY_KEY_ID].decryptLegacy(encrypted, 1, length);
+        }
+        // Прежний encode обрезал шифртекст до 32 символов Base64 (24 байта): для 16-значного номера
+        // первый блок целиком содержит номер, а обрезанный второй блок - только padding
+        return engines[PRIMARY_KEY_ID].decryptWholeBlocks(encrypted, 1, length);
+    }
+
+    /**
+     * Возвращает движок ключа связки прежних форматов
+     */
+    private AesCipherEngine engine(int keyId) throws GeneralSecurityException {
+        AesCipherEngine engine = keyId >= 0 ? engines[keyId] : null;
+        if (engine == null) {
+            throw new InvalidKeyException("Key " + keyId + " is not in the key ring");
+        }
+        return engine;
+    }
+
+    /**
+     * Строит слепой индекс номера карты
+     * <p>
+     * Индекс детерминирован для одного ключа, поэтому по нему можно искать карту
+     * и проверять уникальность номера одним обращением к индексу БД.
+     * </p>
+     *
+     * @param cardNumber номер карты
+     * @return HMAC-SHA256 номера в шестнадцатеричном виде (64 символа)
+     * @throws RuntimeException если происходит ошибка вычисления HMAC
+     */
+    public String index(String cardNumber) {
+        byte[] input = cardNumber.getBytes(StandardCharsets.UTF_8);
+        try {
+            byte[] digest = indexMacs.apply(mac -> mac.doFinal(input));
+            return Hex.encodeHexString(digest);
+        } catch (Exception e) {
+            throw new RuntimeException("Indexing error", e);
+        }
+    }
+
+    /**
+     * Шифрует список строк общим для пакета ключом данных, распределяя работу между потоками пакетного пула
+     * <p>
+     * Ключ данных разворачивается и обертывается один раз на пакет, при этом каждое значение
+     * шифруется с собственным случайным IV.
+     * </p>
+     *
+     * @param inputs исходные строки
+     * @return зашифрованные данные в том же порядке (см. {@link #encode(String)})
+     * @throws RuntimeException если происходит ошибка шифрования любого элемента
+     */
+    public List<byte[]> encodeAll(List<String> inputs) {
+        DataKey batchKey;
+        try {
+            batchKey = newDataKey();
+        } catch (Exception e) {
+            throw new RuntimeException("Encoding error", e);
+        }
+        return transformAll(inputs, input -> {
+            try {
+                return seal(batchKey, input.getBytes(StandardCharsets.UTF_8));
+            } catch (Exception e) {
+                throw new RuntimeException("Encoding error", e);
+            }
+        });
+    }
+
+    /**
+     * Дешифрует список значений, распределяя работу между потоками пакетного пула
+     *
+     * @param hashes зашифрованные данные с байтом версии формата
+     * @return расшифрованные строки в том же порядке (см. {@link #decode(byte[])})
+     * @throws RuntimeException если происходит ошибка дешифрования любого элемента
+     */
+    public List<String> decodeAll(List<byte[]> hashes) {
+        return transformAll(hashes, this::decode);
+    }
+
+    /**
+     * Приводит список значений к текущему формату, распределяя работу между потоками пакетного пула
+     *
+     * @param hashes зашифрованные данные любого поддерживаемого формата
+     * @return данные, зашифрованные активным ключом, в том же порядке (см. {@link #reencrypt(byte[])})
+     * @throws RuntimeException если происходит ошибка перешифрования любого элемента
+     */
+    public List<byte[]> reencryptAll(List<byte[]> hashes) {
+        DataKey batchKey;
+        try {
+            batchKey = newDataKey();
+        } catch (Exception e) {
+            throw new RuntimeException("Encoding error", e);
+        }
+        return transformAll(hashes, encrypted -> reencrypt(encrypted, batchKey));
+    }
+
+    /**
+     * Останавливает пакетный пул потоков
+     */
+    @Override
+    public void close() {
+        batchPool.shutdown();
+    }
+
+    /**
+     * Применяет преобразование к каждому элементу списка: небольшие списки обрабатываются
+     * в текущем потоке, большие - рекурсивно делятся между потоками пакетного пула
+     */
+    private <T, R> List<R> transformAll(List<T> inputs, Function<T, R> transform) {
+        List<T> source = inputs instanceof RandomAccess ? inputs : new ArrayList<>(inputs);
+        Object[] results = new Object[source.size()];
+        BatchTask<T> task = new BatchTask<>(source, results, 0, source.size(), transform);
+        if (source.size() <= BATCH_THRESHOLD) {
+            task.compute();
+        } else {
+            batchPool.invoke(task);
+        }
+        @SuppressWarnings("unchecked")
+        List<R> list = (List<R>) Arrays.asList(results);
+        return list;
+    }
+
+    /**
+     * Ключ данных и заголовок конверта с его обернутой копией
+     */
+    private record DataKey(SecretKey key, byte[] header) {
+    }
+
+    /**
+     * Задача, обрабатывающая диапазон [from, to) пакета
+     */
+    private static final class BatchTask<T> extends RecursiveAction {
+
+        private final List<T> source;
+        private final Object[] results;
+        private final int from;
+        private final int to;
+        private final Function<T, ?> transform;
+
+        private BatchTask(List<T> source, Object[] results, int from, int to, Function<T, ?> transform) {
+            this.source = source;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.transform = transform;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    results[i] = transform.apply(source.get(i));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchTask<>(source, results, from, middle, transform),
+                    new BatchTask<>(source, results, middle, to, transform));
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,124 @@
+package org.example.banksystem.security;
+
+import org.apache.commons.codec.binary.Base64;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Локальное файловое хранилище мастер-ключей
+ * <p>
+ * Ключи читаются из properties файла вида:
+ * <pre>
+ * active=1
+ * key.0=&lt;ключ AES в Base64&gt;
+ * key.1=&lt;ключ AES в Base64&gt;
+ * </pre>
+ * Для ротации в файл добавляется новый ключ и назначается активным, старые ключи
+ * остаются в файле, пока все ключи данных не будут переобернуты.
+ * Если файла нет и разрешено его создание, генерируется случайный 256-битный ключ с идентификатором 0.
+ * Создание разрешается только при первой установке: без файла уже записанные номера не расшифровать,
+ * поэтому по умолчанию отсутствующий файл - ошибка запуска.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ */
+@Component
+public class FileKeyEncryptionKeyStore implements KeyEncryptionKeyStore {
+
+    private static final String ACTIVE_PROPERTY = "active";
+    private static final String KEY_PREFIX = "key.";
+
+    private final KeyEncryptionKeyStore keys;
+
+    /**
+     * Загружает ключи из файла
+     *
+     * @param file путь к файлу ключей, настраиваемый через properties файл
+     * @param createIfMissing создать файл со случайным ключом, если его нет
+     * @throws UncheckedIOException если файла нет и создание не разрешено, или файл не удалось прочитать или создать
+     * @throws IllegalArgumentException если файл не содержит активного ключа
+     */
+    public FileKeyEncryptionKeyStore(@Value("${codec.kek.file}") Path file,
+                                     @Value("${codec.kek.create-if-missing:false}") boolean createIfMissing) {
+        try {
+            if (Files.notExists(file)) {
+                if (!createIfMissing) {
+                    throw new NoSuchFileException(file.toString(), null,
+                            "set codec.kek.create-if-missing=true only on first install");
+                }
+                create(file);
+            }
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+            Map<Integer, byte[]> keyMap = new HashMap<>();
+            for (String name : properties.stringPropertyNames()) {
+                if (name.startsWith(KEY_PREFIX)) {
+                    keyMap.put(Integer.parseInt(name.substring(KEY_PREFIX.length())),
+                            Base64.decodeBase64(properties.getProperty(name).trim()));
+                }
+            }
+            this.keys = new InMemoryKeyEncryptionKeyStore(keyMap,
+                    Integer.parseInt(properties.getProperty(ACTIVE_PROPERTY, "0").trim()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Key encryption key file " + file + " could not be loaded", e);
+        }
+    }
+
+    @Override
+    public int activeKeyId() {
+        return keys.activeKeyId();
+    }
+
+    @Override
+    public byte[] wrap(int keyId, SecretKey dataKey) throws GeneralSecurityException {
+        return keys.wrap(keyId, dataKey);
+    }
+
+    @Override
+    public SecretKey unwrap(int keyId, byte[] wrappedKey) throws GeneralSecurityException {
+        return keys.unwrap(keyId, wrappedKey);
+    }
+
+    /**
+     * Создает файл со случайным мастер-ключом, доступный только владельцу
+     */
+    private static void create(Path file) throws IOException {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        Properties properties = new Properties();
+        properties.setProperty(ACTIVE_PROPERTY, "0");
+        properties.setProperty(KEY_PREFIX + 0, Base64.encodeBase64String(key));
+
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(file);
+        }
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            properties.store(writer, "Card number key encryption keys");
+        }
+    }
+}
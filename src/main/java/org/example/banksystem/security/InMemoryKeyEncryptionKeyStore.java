@@ -0,0 +1,90 @@
+package org.example.banksystem.security;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.util.Map;
+
+/**
+ * Хранилище мастер-ключей в памяти процесса
+ * <p>
+ * Ключи данных обертываются алгоритмом AES Key Wrap (RFC 3394): обернутый 256-битный ключ
+ * занимает 40 байт и проверяется на целостность при развертывании. Используется напрямую
+ * в миграциях и тестах, а также как основа {@link FileKeyEncryptionKeyStore}.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ */
+public class InMemoryKeyEncryptionKeyStore implements KeyEncryptionKeyStore {
+
+    /**
+     * Алгоритм обертывания ключей
+     */
+    private static final String WRAP_TRANSFORMATION = "AESWrap";
+
+    /**
+     * Мастер-ключи, индекс массива - идентификатор ключа
+     */
+    private final SecretKeySpec[] keys = new SecretKeySpec[256];
+
+    /**
+     * Экземпляры Cipher для обертывания, инициализируются на каждый вызов
+     */
+    private final ThreadBoundPool<Cipher> wrappers = new ThreadBoundPool<>(() -> Cipher.getInstance(WRAP_TRANSFORMATION), 64);
+
+    private final int activeKeyId;
+
+    /**
+     * Создает хранилище
+     *
+     * @param keys мастер-ключи AES по идентификаторам от 0 до 255
+     * @param activeKeyId идентификатор мастер-ключа для новых ключей данных
+     * @throws IllegalArgumentException если идентификатор вне диапазона или активный ключ не задан
+     */
+    public InMemoryKeyEncryptionKeyStore(Map<Integer, byte[]> keys, int activeKeyId) {
+        keys.forEach((id, key) -> {
+            if (id < 0 || id >= this.keys.length) {
+                throw new IllegalArgumentException("Key id must be between 0 and 255: " + id);
+            }
+            this.keys[id] = new SecretKeySpec(key, "AES");
+        });
+        if (activeKeyId < 0 || activeKeyId >= this.keys.length || this.keys[activeKeyId] == null) {
+            throw new IllegalArgumentException("Active key " + activeKeyId + " is not in the key store");
+        }
+        this.activeKeyId = activeKeyId;
+    }
+
+    @Override
+    public int activeKeyId() {
+        return activeKeyId;
+    }
+
+    @Override
+    public byte[] wrap(int keyId, SecretKey dataKey) throws GeneralSecurityException {
+        SecretKeySpec key = key(keyId);
+        return wrappers.apply(cipher -> {
+            cipher.init(Cipher.WRAP_MODE, key);
+            return cipher.wrap(dataKey);
+        });
+    }
+
+    @Override
+    public SecretKey unwrap(int keyId, byte[] wrappedKey) throws GeneralSecurityException {
+        SecretKeySpec key = key(keyId);
+        return wrappers.apply(cipher -> {
+            cipher.init(Cipher.UNWRAP_MODE, key);
+            return (SecretKey) cipher.unwrap(wrappedKey, "AES", Cipher.SECRET_KEY);
+        });
+    }
+
+    private SecretKeySpec key(int keyId) throws InvalidKeyException {
+        SecretKeySpec key = keyId >= 0 && keyId < keys.length ? keys[keyId] : null;
+        if (key == null) {
+            throw new InvalidKeyException("Key encryption key " + keyId + " is not in the key store");
+        }
+        return key;
+    }
+}
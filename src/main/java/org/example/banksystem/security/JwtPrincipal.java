@@ -0,0 +1,23 @@
+package org.example.banksystem.security;
+
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * Данные проверенного JWT токена
+ * <p>
+ * Возвращается {@link JwtTokenProvider#verify(String)} после однократной проверки подписи и срока действия,
+ * поэтому повторно разбирать токен для получения имени пользователя или ролей не требуется.
+ * </p>
+ *
+ * @param tokenId идентификатор токена (claim "jti"), null у токенов, выданных до его появления
+ * @param username имя пользователя (subject)
+ * @param roles роли пользователя из claim "roles"
+ * @param version версия токенов пользователя из claim "ver" (см. {@link TokenVersionRegistry})
+ * @param expiresAt момент истечения токена
+ *
+ * @author George
+ * @version 1.0
+ */
+public record JwtPrincipal(String tokenId, String username, Set<String> roles, int version, Instant expiresAt) {
+}
@@ -1,12 +1,16 @@
 package org.example.banksystem.security;
 
+import org.example.banksystem.entity.Role;
+import org.example.banksystem.entity.User;
 import org.example.banksystem.service.AuthService;
+import org.example.banksystem.service.TokenRevocationService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -15,6 +19,8 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Optional;
 
 /**
  * JWT фильтр для аутентификации пользователей на основе токена из cookie
@@ -23,6 +29,18 @@ import java.io.IOException;
  * При валидном токене извлекает данные пользователя и устанавливает аутентификацию
  * в контекст безопасности Spring Security.
  * </p>
+ * <p>
+ * Подпись токена проверяется только при первом его появлении, повторные запросы с тем же токеном
+ * обслуживаются из {@link VerifiedTokenCache}.
+ * </p>
+ * <p>
+ * В режиме jwt.stateless пользователь восстанавливается из claims токена без запроса к таблице users,
+ * а изменения и удаления пользователей учитываются по версии токенов ({@link TokenVersionRegistry}).
+ * Иначе пользователь загружается через {@link AuthService} из кеша учетных данных, а версия токена
+ * сверяется и с {@link TokenVersionRegistry}, и с загруженной: изменения и удаления пользователей
+ * на других узлах отзывают токены не позже jwt.version-cache.ttl, а не auth.user-cache.ttl.
+ * Токены, отозванные при выходе, отклоняются в обоих режимах ({@link TokenRevocationService}).
+ * </p>
  *
  * @author George
  * @version 1.0
@@ -31,11 +49,23 @@ import java.io.IOException;
 public class JwtTokenFilter extends OncePerRequestFilter {
 
     @Autowired
-    private JwtTokenProvider jwtTokenProvider;
+    private VerifiedTokenCache verifiedTokenCache;
 
     @Autowired
     private AuthService authService;
 
+    @Autowired
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    /**
+     * Строить пользователя только из claims токена, не обращаясь к базе
+     */
+    @Value("${jwt.stateless:false}")
+    private boolean stateless;
+
     /**
      * Основной метод фильтрации запросов
      *
@@ -49,10 +79,11 @@ public class JwtTokenFilter extends OncePerRequestFilter {
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         String token = getTokenFromRequest(request);
-        if (token != null && jwtTokenProvider.validateToken(token)) {
+        Optional<JwtPrincipal> principal = (token != null ? verifiedTokenCache.verify(token) : Optional.<JwtPrincipal>empty())
+                .filter(verified -> verified.tokenId() == null || !tokenRevocationService.isRevoked(verified.tokenId()));
+        if (principal.isPresent()) {
 
-            String username = jwtTokenProvider.getUsernameFromToken(token);
-            UserDetails user = authService.loadUserByUsername(username);
+            UserDetails user = stateless ? userFromClaims(principal.get()) : loadUser(principal.get());
 
             if (user != null) {
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
@@ -64,8 +95,50 @@ public class JwtTokenFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Восстанавливает пользователя из claims токена, если версия токена актуальна
+     *
+     * @param principal данные проверенного токена
+     * @return пользователь без пароля или null если токен отозван или не содержит известной роли
+     */
+    private User userFromClaims(JwtPrincipal principal) {
+        if (!tokenVersionRegistry.isCurrent(principal.username(), principal.version())) {
+            return null;
+        }
+        return Arrays.stream(Role.values())
+                .filter(role -> principal.roles().contains(role.name()))
+                .findFirst()
+                .map(role -> new User(principal.username(), null, role, principal.version()))
+                .orElse(null);
+    }
+
+    /**
+     * Загружает пользователя, если версия токена совпадает с текущей
+     * <p>
+     * Пользователь может быть загружен из кеша с устаревшей ролью, но роль меняется только
+     * вместе с версией токенов, поэтому устаревшая запись отклоняется по реестру версий.
+     * </p>
+     *
+     * @param principal данные проверенного токена
+     * @return пользователь или null если пользователь не найден или токен отозван
+     */
+    private UserDetails loadUser(JwtPrincipal principal) {
+        if (!tokenVersionRegistry.isCurrent(principal.username(), principal.version())) {
+            return null;
+        }
+        UserDetails user = authService.loadUserByUsername(principal.username());
+        if (user instanceof User entity && entity.getTokenVersion() != principal.version()) {
+            return null;
+        }
+        return user;
+    }
+
     /**
      * Извлекает JWT токен из cookie запроса
+     * <p>
+     * Читается тот же cookie {@link AuthService#ACCESS_COOKIE}, который выставляется при входе
+     * и по которому токен отзывается при выходе.
+     * </p>
      *
      * @param request HTTP запрос
      * @return JWT токен или null если токен не найден
@@ -74,7 +147,7 @@ public class JwtTokenFilter extends OncePerRequestFilter {
         Cookie[] cookies = request.getCookies();
         if (cookies != null) {
             for (Cookie cookie : cookies) {
-                if ("token".equals(cookie.getName())) {
+                if (AuthService.ACCESS_COOKIE.equals(cookie.getName())) {
                     return cookie.getValue();
                 }
             }
@@ -1,9 +1,12 @@
 package org.example.banksystem.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Service;
@@ -13,6 +16,9 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -22,6 +28,10 @@ import java.util.stream.Collectors;
  * Предоставляет функциональность для создания, валидации и извлечения данных из JWT токенов.
  * Используется для аутентификации и авторизации пользователей в системе.
  * </p>
+ * <p>
+ * Ключ подписи декодируется один раз при запуске, а парсер токенов создается заранее:
+ * JwtParser неизменяем и потокобезопасен, поэтому один экземпляр обслуживает все запросы.
+ * </p>
  *
  * @author George
  * @version 1.0
@@ -29,6 +39,11 @@ import java.util.stream.Collectors;
 @Service
 public class JwtTokenProvider {
 
+    /**
+     * Claim с версией токенов пользователя
+     */
+    private static final String VERSION_CLAIM = "ver";
+
     /**
      * Секретный ключ для подписи JWT токенов
      */
@@ -42,13 +57,25 @@ public class JwtTokenProvider {
     private long expiration;
 
     /**
-     * Создает секретный ключ для подписи токенов
-     *
-     * @return SecretKey для подписи JWT токенов
+     * Ключ подписи, декодированный при запуске
      */
-    private SecretKey getSigningKey() {
+    private SecretKey signingKey;
+
+    /**
+     * Потокобезопасный парсер, проверяющий подпись ключом signingKey
+     */
+    private JwtParser parser;
+
+    /**
+     * Декодирует ключ подписи и создает парсер токенов
+     */
+    @PostConstruct
+    public void init() {
         byte[] keyBytes = Decoders.BASE64.decode(key);
-        return Keys.hmacShaKeyFor(keyBytes);
+        signingKey = Keys.hmacShaKeyFor(keyBytes);
+        parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
     }
 
     /**
@@ -56,20 +83,23 @@ public class JwtTokenProvider {
      *
      * @param username имя пользователя
      * @param authorities коллекция прав пользователя
+     * @param version текущая версия токенов пользователя
      * @return JWT токен в виде строки
      */
-    public String createToken(String username, Collection<? extends GrantedAuthority> authorities) {
+    public String createToken(String username, Collection<? extends GrantedAuthority> authorities, int version) {
         Map<String, Object> claims = new HashMap<>();
         claims.put("roles", authorities.stream()
                 .map(GrantedAuthority::getAuthority)
                 .collect(Collectors.toSet()));
+        claims.put(VERSION_CLAIM, version);
 
         return Jwts.builder()
                 .claims(claims)
+                .id(UUID.randomUUID().toString())
                 .subject(username)
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
 
@@ -103,11 +133,48 @@ public class JwtTokenProvider {
      * @return объект Claims со всеми утверждениями
      */
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parser.parseSignedClaims(token).getPayload();
+    }
+
+    /**
+     * Проверяет подпись и срок действия токена и извлекает из него данные пользователя
+     * <p>
+     * Подпись проверяется один раз, поэтому вместо пары validateToken и getUsernameFromToken
+     * при обработке запроса следует вызывать этот метод.
+     * </p>
+     *
+     * @param token JWT токен для проверки
+     * @return данные токена или пустой Optional, если токен недействителен или не содержит subject и exp
+     */
+    public Optional<JwtPrincipal> verify(String token) {
+        try {
+            Claims claims = extractAllClaims(token);
+            Date expiration = claims.getExpiration();
+            if (claims.getSubject() == null || expiration == null) {
+                return Optional.empty();
+            }
+            Integer version = claims.get(VERSION_CLAIM, Integer.class);
+            return Optional.of(new JwtPrincipal(claims.getId(), claims.getSubject(), extractRoles(claims),
+                    version != null ? version : 0, expiration.toInstant()));
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Извлекает роли из claim "roles"
+     *
+     * @param claims утверждения токена
+     * @return множество ролей, пустое если claim отсутствует
+     */
+    private Set<String> extractRoles(Claims claims) {
+        Object roles = claims.get("roles");
+        if (!(roles instanceof Collection<?> collection)) {
+            return Set.of();
+        }
+        return collection.stream()
+                .map(String::valueOf)
+                .collect(Collectors.toUnmodifiableSet());
     }
 
     /**
@@ -118,10 +185,7 @@ public class JwtTokenProvider {
      */
     public boolean validateToken(String token) {
         try {
-            Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token);
+            parser.parseSignedClaims(token);
             return true;
         } catch (Exception e) {
             return false;
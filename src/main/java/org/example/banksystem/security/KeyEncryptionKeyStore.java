@@ -0,0 +1,46 @@
+package org.example.banksystem.security;
+
+import javax.crypto.SecretKey;
+import java.security.GeneralSecurityException;
+
+/**
+ * Хранилище мастер-ключей (KEK) для конвертного шифрования
+ * <p>
+ * Мастер-ключи не покидают хранилище: наружу выдаются только операции обертывания
+ * и развертывания ключей данных. Это позволяет подключить внешний KMS или HSM,
+ * не меняя формат хранения номеров карт.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ * @see CommonsCodecHasher
+ */
+public interface KeyEncryptionKeyStore {
+
+    /**
+     * Возвращает идентификатор мастер-ключа, которым обертываются новые ключи данных
+     *
+     * @return идентификатор ключа от 0 до 255
+     */
+    int activeKeyId();
+
+    /**
+     * Обертывает ключ данных мастер-ключом
+     *
+     * @param keyId идентификатор мастер-ключа
+     * @param dataKey ключ данных
+     * @return обернутый ключ данных
+     * @throws GeneralSecurityException если мастер-ключ не найден или происходит ошибка шифрования
+     */
+    byte[] wrap(int keyId, SecretKey dataKey) throws GeneralSecurityException;
+
+    /**
+     * Развертывает ключ данных мастер-ключом
+     *
+     * @param keyId идентификатор мастер-ключа
+     * @param wrappedKey обернутый ключ данных
+     * @return ключ данных AES
+     * @throws GeneralSecurityException если мастер-ключ не найден или обернутый ключ поврежден
+     */
+    SecretKey unwrap(int keyId, byte[] wrappedKey) throws GeneralSecurityException;
+}
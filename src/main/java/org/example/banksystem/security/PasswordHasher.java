@@ -0,0 +1,261 @@
+package org.example.banksystem.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.example.banksystem.exceptions.auth.PasswordHasherBusyException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Хеширование и проверка паролей в отдельном ограниченном пуле потоков
+ * <p>
+ * BCrypt - самая дорогая по процессору операция сервиса. Вызовы выполняются не в потоках Tomcat,
+ * а в пуле фиксированного размера с ограниченной очередью, поэтому поток входов и регистраций
+ * не занимает все ядра и не вытесняет операции с картами. Когда очередь заполнена или задача
+ * ждет дольше auth.password-hasher.wait-timeout, запрос сразу отклоняется
+ * {@link PasswordHasherBusyException}, а клиент получает 503 с заголовком Retry-After.
+ * </p>
+ * <p>
+ * Фоновое хеширование (перехеширование паролей с устаревшей стоимостью) запускается только
+ * когда очередь пуста, чтобы не задерживать ожидающие входы. Пакетное хеширование при импорте
+ * пользователей держит в пуле не больше задач, чем в нем потоков, и оставляет очередь входам.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ */
+@Component
+public class PasswordHasher implements MeterBinder {
+
+    private final BCryptPasswordEncoder passwordEncoder;
+
+    /**
+     * Пул потоков хеширования
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Максимальное время ожидания результата, включая время в очереди
+     */
+    private final Duration waitTimeout;
+
+    /**
+     * Задержка, которую клиенту предлагается выждать после отказа
+     */
+    private final Duration retryAfter;
+
+    private Timer encodeTimer;
+    private Timer matchesTimer;
+    private Counter rejected;
+
+    /**
+     * Создает пул хеширования паролей
+     *
+     * @param passwordEncoder кодировщик BCrypt
+     * @param threads число потоков, 0 - половина доступных процессоров
+     * @param queueCapacity число задач, ожидающих свободного потока
+     * @param waitTimeout максимальное время ожидания результата
+     * @param retryAfter задержка, сообщаемая клиенту при отказе
+     */
+    public PasswordHasher(BCryptPasswordEncoder passwordEncoder,
+                          @Value("${auth.password-hasher.threads:0}") int threads,
+                          @Value("${auth.password-hasher.queue-capacity:64}") int queueCapacity,
+                          @Value("${auth.password-hasher.wait-timeout:5s}") Duration waitTimeout,
+                          @Value("${auth.password-hasher.retry-after:1s}") Duration retryAfter) {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.passwordEncoder = passwordEncoder;
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory(), new ThreadPoolExecutor.AbortPolicy());
+        this.waitTimeout = waitTimeout;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Регистрирует метрики очереди, отказов и времени хеширования
+     *
+     * @param registry реестр метрик
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("auth.password-hasher.queue.size", executor, pool -> pool.getQueue().size())
+                .description("Число задач хеширования паролей, ожидающих свободного потока")
+                .register(registry);
+        Gauge.builder("auth.password-hasher.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Число потоков, занятых хешированием паролей")
+                .register(registry);
+        encodeTimer = Timer.builder("auth.password-hasher.duration")
+                .description("Время хеширования или проверки пароля без учета ожидания в очереди")
+                .tag("operation", "encode")
+                .register(registry);
+        matchesTimer = Timer.builder("auth.password-hasher.duration")
+                .description("Время хеширования или проверки пароля без учета ожидания в очереди")
+                .tag("operation", "matches")
+                .register(registry);
+        rejected = Counter.builder("auth.password-hasher.rejected")
+                .description("Число запросов, отклоненных из-за переполнения очереди хеширования")
+                .register(registry);
+    }
+
+    /**
+     * Хеширует пароль
+     *
+     * @param rawPassword пароль в открытом виде
+     * @return хеш BCrypt
+     * @throws PasswordHasherBusyException если очередь хеширования переполнена
+     */
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> timed(encodeTimer, () -> passwordEncoder.encode(rawPassword)));
+    }
+
+    /**
+     * Проверяет пароль по хешу
+     *
+     * @param rawPassword пароль в открытом виде
+     * @param encodedPassword хеш BCrypt
+     * @return true если пароль совпадает
+     * @throws PasswordHasherBusyException если очередь хеширования переполнена
+     */
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> timed(matchesTimer, () -> passwordEncoder.matches(rawPassword, encodedPassword)));
+    }
+
+    /**
+     * Хеширует пароль в фоне, если пул не загружен
+     *
+     * @param rawPassword пароль в открытом виде
+     * @return будущий хеш BCrypt или завершенный с ошибкой результат, если в очереди есть задачи
+     */
+    public CompletableFuture<String> encodeInBackground(CharSequence rawPassword) {
+        if (!executor.getQueue().isEmpty()) {
+            return CompletableFuture.failedFuture(skipped());
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> timed(encodeTimer, () -> passwordEncoder.encode(rawPassword)), executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(skipped());
+        }
+    }
+
+    /**
+     * Хеширует пароли параллельно на потоках пула
+     * <p>
+     * Одновременно в пуле находится не больше задач, чем в нем потоков. Если очередь занята
+     * входами и задача отклонена, пароль хешируется в вызывающем потоке, так что пакет
+     * замедляется, но не завершается ошибкой.
+     * </p>
+     *
+     * @param rawPasswords пароли в открытом виде
+     * @return хеши BCrypt в порядке паролей
+     * @throws PasswordHasherBusyException если вызывающий поток прерван
+     */
+    public List<String> encodeAll(List<? extends CharSequence> rawPasswords) {
+        Semaphore window = new Semaphore(executor.getCorePoolSize());
+        List<CompletableFuture<String>> hashes = new ArrayList<>(rawPasswords.size());
+        try {
+            for (CharSequence rawPassword : rawPasswords) {
+                window.acquire();
+                Supplier<String> task = () -> timed(encodeTimer, () -> passwordEncoder.encode(rawPassword));
+                CompletableFuture<String> hash;
+                try {
+                    hash = CompletableFuture.supplyAsync(task, executor);
+                } catch (RejectedExecutionException e) {
+                    hash = CompletableFuture.supplyAsync(task, Runnable::run);
+                }
+                hashes.add(hash.whenComplete((result, error) -> window.release()));
+            }
+        } catch (InterruptedException e) {
+            hashes.forEach(hash -> hash.cancel(true));
+            Thread.currentThread().interrupt();
+            throw busy();
+        }
+        return hashes.stream().map(CompletableFuture::join).toList();
+    }
+
+    /**
+     * Проверяет, что хеш создан с меньшей стоимостью, чем настроенная
+     *
+     * @param encodedPassword хеш BCrypt
+     * @return true если пароль стоит перехешировать
+     */
+    public boolean upgradeEncoding(String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * Останавливает пул при завершении приложения
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private <T> T execute(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw busy();
+        }
+        try {
+            return future.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw busy();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw busy();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private PasswordHasherBusyException busy() {
+        if (rejected != null) {
+            rejected.increment();
+        }
+        return new PasswordHasherBusyException("Too many authentication requests, try again later", retryAfter);
+    }
+
+    private PasswordHasherBusyException skipped() {
+        return new PasswordHasherBusyException("Password hasher is busy", retryAfter);
+    }
+
+    private static <T> T timed(Timer timer, Supplier<T> action) {
+        return timer != null ? timer.record(action) : action.get();
+    }
+
+    private static ThreadFactory threadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "password-hasher-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,128 @@
+package org.example.banksystem.security;
+
+import java.security.GeneralSecurityException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пул не потокобезопасных криптографических объектов (Cipher, Mac)
+ * <p>
+ * Платформенные потоки получают собственный экземпляр через ThreadLocal и переиспользуют его
+ * на протяжении всей жизни потока. Виртуальные потоки живут одну задачу, поэтому для них
+ * экземпляры берутся из общей неблокирующей очереди и возвращаются в нее после использования.
+ * Если операция завершилась ошибкой, экземпляр отбрасывается, так как его состояние не гарантировано.
+ * </p>
+ *
+ * @param <T> тип пулируемого объекта
+ * @author George
+ * @version 1.0
+ */
+public final class ThreadBoundPool<T> {
+
+    /**
+     * Фабрика новых экземпляров
+     */
+    private final Factory<T> factory;
+
+    /**
+     * Экземпляры, закрепленные за платформенными потоками
+     */
+    private final ThreadLocal<T> local = new ThreadLocal<>();
+
+    /**
+     * Общий запас экземпляров для виртуальных потоков
+     */
+    private final Queue<T> shared = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Текущий размер общего запаса
+     */
+    private final AtomicInteger sharedSize = new AtomicInteger();
+
+    /**
+     * Максимальное число простаивающих экземпляров в общем запасе
+     */
+    private final int maxShared;
+
+    /**
+     * Создает пул
+     *
+     * @param factory фабрика новых экземпляров
+     * @param maxShared максимальное число простаивающих экземпляров для виртуальных потоков
+     */
+    public ThreadBoundPool(Factory<T> factory, int maxShared) {
+        this.factory = factory;
+        this.maxShared = maxShared;
+    }
+
+    /**
+     * Выполняет действие над экземпляром, закрепленным за текущим потоком
+     *
+     * @param action действие над экземпляром
+     * @return результат действия
+     * @param <R> тип результата
+     * @throws GeneralSecurityException если действие или создание экземпляра завершились ошибкой
+     */
+    public <R> R apply(Action<T, R> action) throws GeneralSecurityException {
+        if (Thread.currentThread().isVirtual()) {
+            return applyShared(action);
+        }
+        T resource = local.get();
+        if (resource == null) {
+            resource = factory.create();
+            local.set(resource);
+        }
+        try {
+            return action.apply(resource);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            local.remove();
+            throw e;
+        }
+    }
+
+    /**
+     * Выполняет действие над экземпляром из общего запаса
+     *
+     * @param action действие над экземпляром
+     * @return результат действия
+     * @param <R> тип результата
+     * @throws GeneralSecurityException если действие или создание экземпляра завершились ошибкой
+     */
+    private <R> R applyShared(Action<T, R> action) throws GeneralSecurityException {
+        T resource = shared.poll();
+        if (resource == null) {
+            resource = factory.create();
+        } else {
+            sharedSize.decrementAndGet();
+        }
+        R result = action.apply(resource);
+        if (sharedSize.incrementAndGet() <= maxShared) {
+            shared.offer(resource);
+        } else {
+            sharedSize.decrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Фабрика экземпляров пула
+     *
+     * @param <T> тип создаваемого объекта
+     */
+    @FunctionalInterface
+    public interface Factory<T> {
+        T create() throws GeneralSecurityException;
+    }
+
+    /**
+     * Действие над экземпляром пула
+     *
+     * @param <T> тип объекта
+     * @param <R> тип результата
+     */
+    @FunctionalInterface
+    public interface Action<T, R> {
+        R apply(T resource) throws GeneralSecurityException;
+    }
+}
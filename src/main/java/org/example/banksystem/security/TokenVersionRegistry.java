@@ -0,0 +1,90 @@
+package org.example.banksystem.security;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.example.banksystem.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Реестр текущих версий токенов пользователей
+ * <p>
+ * Токен содержит версию пользователя на момент входа (claim "ver"). UserService увеличивает версию
+ * при изменении пользователя, поэтому ранее выданные токены перестают приниматься, а удаленный
+ * пользователь не имеет версии вовсе. Версии кешируются, так что проверка токена на горячем пути
+ * не обращается к таблице users.
+ * </p>
+ * <p>
+ * Изменения на этом узле сбрасывают запись сразу после фиксации транзакции. Изменения, сделанные
+ * другими узлами, становятся видны не позже чем через jwt.version-cache.ttl.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ */
+@Component
+public class TokenVersionRegistry implements MeterBinder {
+
+    /**
+     * Версия пользователя, отсутствующего в базе
+     */
+    private static final int DELETED = -1;
+
+    /**
+     * Версии токенов по имени пользователя
+     */
+    private final LoadingCache<String, Integer> versions;
+
+    /**
+     * Создает реестр
+     *
+     * @param userRepository репозиторий пользователей
+     * @param maxSize максимальное число пользователей в кеше
+     * @param ttl время, через которое версия перечитывается из базы
+     */
+    public TokenVersionRegistry(UserRepository userRepository,
+                                @Value("${jwt.version-cache.max-size:10000}") long maxSize,
+                                @Value("${jwt.version-cache.ttl:30s}") Duration ttl) {
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build(username -> userRepository.findTokenVersionByUsername(username).orElse(DELETED));
+    }
+
+    /**
+     * Регистрирует метрики кеша версий
+     *
+     * @param registry реестр метрик
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, versions, "jwt.token-versions");
+    }
+
+    /**
+     * Проверяет, что токен выдан текущей версии существующего пользователя
+     *
+     * @param username имя пользователя из токена
+     * @param version версия из токена
+     * @return true если версия совпадает с текущей
+     */
+    public boolean isCurrent(String username, int version) {
+        int current = versions.get(username);
+        return current != DELETED && current == version;
+    }
+
+    /**
+     * Сбрасывает закешированную версию пользователя после фиксации текущей транзакции
+     *
+     * @param username имя пользователя
+     */
+    public void invalidate(String username) {
+        TransactionCallbacks.afterCommit(() -> versions.invalidate(username));
+    }
+}
@@ -0,0 +1,38 @@
+package org.example.banksystem.security;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Выполнение действий после фиксации текущей транзакции
+ * <p>
+ * Используется для сброса кешей, содержимое которых читается из базы: если сбросить запись
+ * до фиксации, параллельный запрос может успеть снова загрузить прежнее значение.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ */
+final class TransactionCallbacks {
+
+    private TransactionCallbacks() {
+    }
+
+    /**
+     * Выполняет действие после фиксации текущей транзакции, а вне транзакции - сразу
+     *
+     * @param action действие
+     */
+    static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.example.banksystem.security;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.example.banksystem.entity.Role;
+import org.example.banksystem.entity.User;
+import org.example.banksystem.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Кеш учетных данных пользователей
+ * <p>
+ * Хранит имя, хеш пароля, роль и версию токенов пользователя, чтобы вход и загрузка пользователя
+ * для Spring Security не обращались к таблице users на каждый вызов. Отсутствие пользователя
+ * тоже кешируется. В кеше лежат неизменяемые снимки, каждый вызов получает собственный
+ * экземпляр {@link User}, поэтому изменения вызывающего кода не попадают в кеш.
+ * </p>
+ * <p>
+ * UserService и AuthService сбрасывают запись пользователя после фиксации транзакции,
+ * изменившей его. Изменения, сделанные другими узлами, видны не позже чем через auth.user-cache.ttl.
+ * Запросы с JWT дополнительно сверяют версию токена с {@link TokenVersionRegistry}, поэтому
+ * для них изменение роли или удаление пользователя на другом узле учитывается за jwt.version-cache.ttl.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ */
+@Component
+public class UserDetailsCache implements MeterBinder {
+
+    /**
+     * Снимки пользователей по имени, пустой Optional - пользователь не найден
+     */
+    private final LoadingCache<String, Optional<Snapshot>> users;
+
+    /**
+     * Создает кеш
+     *
+     * @param userRepository репозиторий пользователей
+     * @param maxSize максимальное число пользователей в кеше
+     * @param ttl время, через которое пользователь перечитывается из базы
+     */
+    public UserDetailsCache(UserRepository userRepository,
+                            @Value("${auth.user-cache.max-size:10000}") long maxSize,
+                            @Value("${auth.user-cache.ttl:5m}") Duration ttl) {
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build(username -> userRepository.findById(username).map(Snapshot::of));
+    }
+
+    /**
+     * Регистрирует метрики попаданий, вытеснений и времени загрузки пользователей
+     *
+     * @param registry реестр метрик
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, users, "auth.users");
+        Gauge.builder("auth.users.hit.ratio", users, cache -> cache.stats().hitRate())
+                .description("Доля загрузок пользователя, обслуженных из кеша")
+                .register(registry);
+    }
+
+    /**
+     * Возвращает пользователя из кеша или загружает его из базы
+     *
+     * @param username имя пользователя
+     * @return Optional с новым экземпляром пользователя или empty если пользователь не найден
+     */
+    public Optional<User> get(String username) {
+        return users.get(username).map(Snapshot::toUser);
+    }
+
+    /**
+     * Сбрасывает запись пользователя после фиксации текущей транзакции
+     *
+     * @param username имя пользователя
+     */
+    public void invalidate(String username) {
+        TransactionCallbacks.afterCommit(() -> users.invalidate(username));
+    }
+
+    /**
+     * Неизменяемый снимок учетных данных пользователя
+     */
+    private record Snapshot(String username, String password, Role role, int tokenVersion) {
+
+        private static Snapshot of(User user) {
+            return new Snapshot(user.getUsername(), user.getPassword(), user.getRole(), user.getTokenVersion());
+        }
+
+        private User toUser() {
+            return new User(username, password, role, tokenVersion);
+        }
+    }
+}
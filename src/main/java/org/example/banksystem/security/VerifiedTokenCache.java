@@ -0,0 +1,125 @@
+package org.example.banksystem.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Кеш проверенных JWT токенов
+ * <p>
+ * Один и тот же токен из cookie приходит с каждым запросом в течение всего срока жизни,
+ * поэтому результат {@link JwtTokenProvider#verify(String)} запоминается, и повторные запросы
+ * не проверяют подпись. Ключом служит SHA-256 токена, так что сами токены в памяти не хранятся.
+ * Каждая запись истекает в момент exp своего токена, недействительные токены не кешируются.
+ * </p>
+ * <p>
+ * Одновременные запросы с одним и тем же новым токеном проверяют подпись один раз:
+ * остальные потоки ждут результата вычисления записи в Caffeine.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ */
+@Component
+public class VerifiedTokenCache implements MeterBinder {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private final JwtTokenProvider jwtTokenProvider;
+
+    /**
+     * Проверенные токены по SHA-256 токена
+     */
+    private final Cache<ByteBuffer, JwtPrincipal> principals;
+
+    /**
+     * Экземпляры MessageDigest для вычисления ключа кеша
+     */
+    private final ThreadBoundPool<MessageDigest> digests =
+            new ThreadBoundPool<>(() -> MessageDigest.getInstance(DIGEST_ALGORITHM), 64);
+
+    /**
+     * Создает кеш
+     *
+     * @param jwtTokenProvider сервис проверки токенов
+     * @param maxSize максимальное число токенов в кеше
+     */
+    @Autowired
+    public VerifiedTokenCache(JwtTokenProvider jwtTokenProvider,
+                              @Value("${jwt.cache.max-size:10000}") long maxSize) {
+        this(jwtTokenProvider, maxSize, Ticker.systemTicker());
+    }
+
+    /**
+     * Создает кеш с заданным источником времени
+     *
+     * @param jwtTokenProvider сервис проверки токенов
+     * @param maxSize максимальное число токенов в кеше
+     * @param ticker источник времени для истечения записей
+     */
+    VerifiedTokenCache(JwtTokenProvider jwtTokenProvider, long maxSize, Ticker ticker) {
+        this.jwtTokenProvider = jwtTokenProvider;
+        this.principals = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(Expiry.<ByteBuffer, JwtPrincipal>creating((digest, principal) -> remaining(principal)))
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Регистрирует метрики попаданий и промахов кеша
+     *
+     * @param registry реестр метрик
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, principals, "jwt.verified-tokens");
+        Gauge.builder("jwt.verified-tokens.hit.ratio", principals, cache -> cache.stats().hitRate())
+                .description("Доля запросов, токен которых взят из кеша без проверки подписи")
+                .register(registry);
+    }
+
+    /**
+     * Возвращает данные токена из кеша или проверяет токен и кеширует результат
+     *
+     * @param token JWT токен
+     * @return данные токена или пустой Optional, если токен недействителен
+     */
+    public Optional<JwtPrincipal> verify(String token) {
+        return Optional.ofNullable(principals.get(digest(token),
+                digest -> jwtTokenProvider.verify(token).orElse(null)));
+    }
+
+    /**
+     * Время до истечения токена, начиная с которого запись удаляется из кеша
+     */
+    private static Duration remaining(JwtPrincipal principal) {
+        Duration remaining = Duration.between(Instant.now(), principal.expiresAt());
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+
+    private ByteBuffer digest(String token) {
+        try {
+            return ByteBuffer.wrap(digests.apply(digest -> digest.digest(token.getBytes(StandardCharsets.UTF_8))));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " is not available", e);
+        }
+    }
+}
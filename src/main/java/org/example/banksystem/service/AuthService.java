@@ -1,36 +1,81 @@
 package org.example.banksystem.service;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.banksystem.dto.response.AuthCookies;
 import org.example.banksystem.entity.Role;
 import org.example.banksystem.entity.User;
+import org.example.banksystem.exceptions.auth.InvalidRefreshTokenException;
+import org.example.banksystem.exceptions.auth.PasswordHasherBusyException;
 import org.example.banksystem.exceptions.users.UserNotFoundException;
 import org.example.banksystem.exceptions.users.UserWrongCredentialsException;
+import org.example.banksystem.repository.Constraints;
 import org.example.banksystem.repository.UserRepository;
 import org.example.banksystem.security.JwtTokenProvider;
+import org.example.banksystem.security.PasswordHasher;
+import org.example.banksystem.security.TokenVersionRegistry;
+import org.example.banksystem.security.UserDetailsCache;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.ResponseCookie;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+
 /**
  * Сервис аутентификации и авторизации пользователей
  * <p>
  * Предоставляет функциональность для входа в систему, регистрации новых пользователей
  * и загрузки данных пользователя для Spring Security.
  * </p>
+ * <p>
+ * Вход и загрузка пользователя читают учетные данные через {@link UserDetailsCache},
+ * пароли проверяются и хешируются в ограниченном пуле {@link PasswordHasher}.
+ * Пароль, хеш которого создан с устаревшей стоимостью BCrypt, после успешного входа
+ * перехешируется в фоне с текущей стоимостью.
+ * </p>
+ * <p>
+ * Вместе с JWT токеном выдается одноразовый refresh токен (см. {@link RefreshTokenService}),
+ * который обменивается на новый JWT без повторной проверки пароля.
+ * </p>
  *
  * @author George
  * @version 1.0
  */
+@Slf4j
 @RequiredArgsConstructor
 @Service
 public class AuthService implements UserDetailsService {
 
+    /**
+     * Имя cookie с JWT токеном
+     */
+    public static final String ACCESS_COOKIE = "Authorization";
+
+    /**
+     * Имя cookie с refresh токеном
+     */
+    public static final String REFRESH_COOKIE = "RefreshToken";
+
+    /**
+     * Путь cookie с refresh токеном: он отправляется только на endpoints аутентификации
+     */
+    private static final String REFRESH_PATH = "/api/auth";
+
+    /**
+     * Время жизни cookie с JWT токеном
+     */
+    private static final Duration ACCESS_MAX_AGE = Duration.ofSeconds(3600);
+
     private final UserRepository userRepository;
-    private final BCryptPasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
     private final JwtTokenProvider jwtTokenProvider;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final UserDetailsCache userDetailsCache;
+    private final TokenRevocationService tokenRevocationService;
+    private final RefreshTokenService refreshTokenService;
 
     /**
      * Загружает пользователя по имени для Spring Security
@@ -41,44 +86,125 @@ public class AuthService implements UserDetailsService {
      */
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        return userRepository.findByUsername(username).orElse(null);
+        return userDetailsCache.get(username).orElse(null);
     }
 
     /**
-     * Выполняет аутентификацию пользователя и создает JWT токен
+     * Выполняет аутентификацию пользователя и создает JWT и refresh токены
      *
      * @param username имя пользователя
      * @param password пароль пользователя
-     * @return ResponseCookie с JWT токеном для аутентификации
+     * @return cookie с JWT токеном для аутентификации и refresh токеном
      * @throws UserNotFoundException если пользователь не найден
      * @throws UserWrongCredentialsException если пароль неверный
+     * @throws PasswordHasherBusyException если очередь проверки паролей переполнена
      */
-    public ResponseCookie login(String username, String password) {
-        User user = userRepository.findById(username).orElseThrow(() -> new UserNotFoundException("User not found"));
-        if (!passwordEncoder.matches(password, user.getPassword())) {
+    public AuthCookies login(String username, String password) {
+        User user = userDetailsCache.get(username).orElseThrow(() -> new UserNotFoundException("User not found"));
+        if (!passwordHasher.matches(password, user.getPassword())) {
             throw new UserWrongCredentialsException("Wrong password");
         }
-        return ResponseCookie.from("Authorization", jwtTokenProvider.createToken(user.getUsername(), user.getAuthorities()))
-                .path("/")
-                .secure(false)
-                .maxAge(3600)
-                .httpOnly(true)
-                .sameSite("Strict")
-                .build();
+        if (passwordHasher.upgradeEncoding(user.getPassword())) {
+            rehash(user.getUsername(), user.getPassword(), password);
+        }
+        return issue(user, refreshTokenService.issue(user.getUsername()));
+    }
+
+    /**
+     * Обменивает refresh токен на новые JWT и refresh токены без проверки пароля
+     *
+     * @param refreshToken refresh токен из cookie или null
+     * @return cookie с новым JWT токеном и новым refresh токеном
+     * @throws InvalidRefreshTokenException если токен отсутствует, недействителен или уже был использован
+     */
+    public AuthCookies refresh(String refreshToken) {
+        if (refreshToken == null || refreshToken.isEmpty()) {
+            throw new InvalidRefreshTokenException("Refresh token is missing");
+        }
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshToken);
+        User user = userDetailsCache.get(rotation.username())
+                .orElseThrow(() -> new InvalidRefreshTokenException("Invalid refresh token"));
+        return issue(user, rotation.refreshToken());
+    }
+
+    /**
+     * Выполняет выход из системы: отзывает JWT токен до его истечения, отзывает семейство
+     * refresh токена и удаляет оба cookie
+     * <p>
+     * Недействительный или отсутствующий токен не считается ошибкой, cookie удаляются в любом случае.
+     * </p>
+     *
+     * @param token JWT токен из cookie или null
+     * @param refreshToken refresh токен из cookie или null
+     * @return cookie, удаляющие JWT и refresh токены у клиента
+     */
+    public AuthCookies logout(String token, String refreshToken) {
+        if (token != null) {
+            jwtTokenProvider.verify(token)
+                    .filter(principal -> principal.tokenId() != null)
+                    .ifPresent(principal -> tokenRevocationService.revoke(
+                            principal.tokenId(), principal.username(), principal.expiresAt()));
+        }
+        if (refreshToken != null && !refreshToken.isEmpty()) {
+            refreshTokenService.revokeFamily(refreshToken);
+        }
+        return new AuthCookies(cookie(ACCESS_COOKIE, "", "/", Duration.ZERO),
+                cookie(REFRESH_COOKIE, "", REFRESH_PATH, Duration.ZERO));
     }
 
     /**
      * Регистрирует нового пользователя в системе
+     * <p>
+     * Пользователь вставляется одним INSERT, занятое имя определяется по нарушению первичного ключа.
+     * </p>
      *
      * @param username имя нового пользователя
      * @param password пароль нового пользователя
      * @throws UserWrongCredentialsException если пользователь с таким именем уже существует
+     * @throws PasswordHasherBusyException если очередь хеширования паролей переполнена
      */
     public void registerUser(String username, String password) {
-        if (userRepository.findByUsername(username).isPresent()) {
-            throw new UserWrongCredentialsException("User already exists");
+        try {
+            userRepository.persist(new User(username, passwordHasher.encode(password), Role.ROLE_USER));
+        } catch (DataIntegrityViolationException e) {
+            if (Constraints.isViolated(e, Constraints.USERS_PKEY)) {
+                throw new UserWrongCredentialsException("User already exists");
+            }
+            throw e;
         }
-        User user = new User(username, passwordEncoder.encode(password), Role.ROLE_USER);
-        userRepository.save(user);
+        tokenVersionRegistry.invalidate(username);
+        userDetailsCache.invalidate(username);
+    }
+
+    private void rehash(String username, String currentHash, String password) {
+        passwordHasher.encodeInBackground(password).whenComplete((newHash, error) -> {
+            if (error != null) {
+                log.debug("Skipped password rehash for user {}: {}", username, error.getMessage());
+                return;
+            }
+            try {
+                if (userRepository.updatePasswordIfUnchanged(username, currentHash, newHash) == 1) {
+                    userDetailsCache.invalidate(username);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Failed to store rehashed password for user {}", username, e);
+            }
+        });
+    }
+
+    private AuthCookies issue(User user, String refreshToken) {
+        String token = jwtTokenProvider.createToken(user.getUsername(), user.getAuthorities(), user.getTokenVersion());
+        return new AuthCookies(cookie(ACCESS_COOKIE, token, "/", ACCESS_MAX_AGE),
+                cookie(REFRESH_COOKIE, refreshToken, REFRESH_PATH, refreshTokenService.getTtl()));
+    }
+
+    private static ResponseCookie cookie(String name, String value, String path, Duration maxAge) {
+        return ResponseCookie.from(name, value)
+                .path(path)
+                .secure(false)
+                .maxAge(maxAge)
+                .httpOnly(true)
+                .sameSite("Strict")
+                .build();
     }
 }
\ No newline at end of file
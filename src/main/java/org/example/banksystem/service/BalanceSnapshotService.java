@@ -0,0 +1,60 @@
+package org.example.banksystem.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.banksystem.repository.CardRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Сервис периодических снимков балансов карт
+ * <p>
+ * Снимок ограничивает число переводов журнала, которые нужно сложить для баланса на момент
+ * времени (см. {@link CardService#getBalanceAsOf}). Карты обходятся пачками по
+ * card.balance-snapshot.batch-size в порядке card_id, каждая пачка - в отдельной транзакции,
+ * поэтому переводы ждут снимка не дольше одной пачки. Снимаются только карты,
+ * по которым были переводы после их последнего снимка.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class BalanceSnapshotService {
+
+    private final CardRepository cardRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * Число карт, снимаемых в одной транзакции
+     */
+    @Value("${card.balance-snapshot.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Снимает балансы всех карт, изменившихся после последнего снимка
+     *
+     * @return число обработанных пачек
+     */
+    @Scheduled(fixedDelayString = "${card.balance-snapshot.interval:1h}",
+            initialDelayString = "${card.balance-snapshot.interval:1h}")
+    public int snapshot() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        int batches = 0;
+        Integer last = 0;
+        while (last != null) {
+            int after = last;
+            last = transactionTemplate.execute(status -> cardRepository.snapshotBalances(after, batchSize));
+            if (last != null) {
+                batches++;
+            }
+        }
+        log.debug("Balance snapshot finished in {} batches", batches);
+        return batches;
+    }
+}
@@ -0,0 +1,155 @@
+package org.example.banksystem.service;
+
+import lombok.RequiredArgsConstructor;
+import org.example.banksystem.dto.request.TransferRequest;
+import org.example.banksystem.dto.response.BatchTransferResult;
+import org.example.banksystem.exceptions.cards.CardWrongCredentials;
+import org.example.banksystem.repository.CardRepository;
+import org.example.banksystem.repository.CardTransferRepository.LockedCard;
+import org.example.banksystem.repository.CardTransferRepository.Transfer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Сервис пакетных переводов между картами пользователя
+ * <p>
+ * Пакет выполняется в одной транзакции: все карты пакета блокируются одним запросом,
+ * который одновременно проверяет владельца, затем переводы проверяются по порядку
+ * с учетом уже принятых переводов пакета, и принятые переводы записываются JDBC batch
+ * (см. {@link CardRepository#applyTransfers}). Проверки те же, что у одиночного перевода.
+ * </p>
+ * <p>
+ * В режиме ALL_OR_NOTHING пакет применяется, только если прошли все переводы, иначе балансы
+ * не меняются. В режиме BEST_EFFORT применяются прошедшие переводы, а отклоненные не
+ * влияют на остальные.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ */
+@RequiredArgsConstructor
+@Service
+public class BatchTransferService {
+
+    /**
+     * Режим применения пакета
+     */
+    public enum Mode {
+        ALL_OR_NOTHING,
+        BEST_EFFORT
+    }
+
+    private final CardRepository cardRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * Максимальное число переводов в пакете
+     */
+    @Value("${card.transfer.batch.max-size:1000}")
+    private int maxSize;
+
+    /**
+     * Выполняет пакет переводов пользователя
+     *
+     * @param transfers переводы в порядке применения
+     * @param mode режим применения пакета
+     * @param username имя пользователя, владельца карт
+     * @return результаты переводов в порядке пакета
+     * @throws CardWrongCredentials если пакет пуст или больше card.transfer.batch.max-size
+     */
+    public List<BatchTransferResult> transfer(List<TransferRequest> transfers, Mode mode, String username) {
+        if (transfers == null || transfers.isEmpty()) {
+            throw new CardWrongCredentials("No transfers");
+        }
+        if (transfers.size() > maxSize) {
+            throw new CardWrongCredentials("Too many transfers");
+        }
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            Set<Integer> cardIds = new TreeSet<>();
+            for (TransferRequest transfer : transfers) {
+                if (transfer != null && transfer.from() != null && transfer.to() != null) {
+                    cardIds.add(transfer.from());
+                    cardIds.add(transfer.to());
+                }
+            }
+            Map<Integer, LockedCard> cards = cardIds.isEmpty() ? Map.of() : cardRepository.lockOwnedCards(username, cardIds);
+            Map<Integer, BigDecimal> balances = new HashMap<>();
+            cards.values().forEach(card -> balances.put(card.cardId(), card.balance()));
+
+            String[] errors = new String[transfers.size()];
+            List<Transfer> accepted = new ArrayList<>(transfers.size());
+            boolean failed = false;
+            for (int i = 0; i < transfers.size(); i++) {
+                TransferRequest request = transfers.get(i);
+                BigDecimal amount = amount(request);
+                errors[i] = validate(request, amount, cards, balances);
+                if (errors[i] != null) {
+                    failed = true;
+                    continue;
+                }
+                balances.merge(request.from(), amount.negate(), BigDecimal::add);
+                balances.merge(request.to(), amount, BigDecimal::add);
+                accepted.add(new Transfer(request.from(), request.to(), amount));
+            }
+
+            boolean apply = !failed || mode == Mode.BEST_EFFORT;
+            if (apply) {
+                cardRepository.applyTransfers(accepted);
+            }
+            List<BatchTransferResult> results = new ArrayList<>(transfers.size());
+            for (int i = 0; i < transfers.size(); i++) {
+                TransferRequest request = transfers.get(i);
+                Integer from = request != null ? request.from() : null;
+                Integer to = request != null ? request.to() : null;
+                if (errors[i] != null) {
+                    results.add(BatchTransferResult.failed(i, from, to, errors[i]));
+                } else if (apply) {
+                    results.add(BatchTransferResult.completed(i, from, to));
+                } else {
+                    results.add(BatchTransferResult.rolledBack(i, from, to));
+                }
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Сумма перевода, округленная до копеек так же, как в transfer_funds
+     */
+    private static BigDecimal amount(TransferRequest request) {
+        if (request == null || request.amount() == null || request.amount().isNaN() || request.amount().isInfinite()) {
+            return null;
+        }
+        return BigDecimal.valueOf(request.amount()).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static String validate(TransferRequest request, BigDecimal amount, Map<Integer, LockedCard> cards,
+                                   Map<Integer, BigDecimal> balances) {
+        if (amount == null || amount.signum() <= 0) {
+            return "Amount must be positive";
+        }
+        LockedCard from = cards.get(request.from());
+        LockedCard to = cards.get(request.to());
+        if (from == null || to == null) {
+            return "Access denied";
+        }
+        if (!from.active() || !to.active()) {
+            return "Card not in active status";
+        }
+        if (balances.get(from.cardId()).compareTo(amount) < 0) {
+            return "Insufficient funds";
+        }
+        return null;
+    }
+}
@@ -1,23 +1,49 @@
 package org.example.banksystem.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.example.banksystem.dto.response.CardBalanceResponse;
 import org.example.banksystem.dto.response.CardResponse;
 import org.example.banksystem.entity.Card;
 import org.example.banksystem.entity.CardStatus;
 import org.example.banksystem.exceptions.cards.CardAccessDeniedException;
+import org.example.banksystem.exceptions.cards.CardInsufficientFundsException;
 import org.example.banksystem.exceptions.cards.CardNotFoundException;
 import org.example.banksystem.exceptions.cards.CardNotInService;
 import org.example.banksystem.exceptions.cards.CardWrongCredentials;
+import org.example.banksystem.exceptions.cards.IdempotencyKeyReusedException;
 import org.example.banksystem.exceptions.users.UserNotFoundException;
 import org.example.banksystem.repository.CardRepository;
+import org.example.banksystem.repository.Constraints;
+import org.example.banksystem.repository.Patch;
+import org.example.banksystem.repository.TransferResult;
 import org.example.banksystem.repository.UserRepository;
 import org.example.banksystem.security.CommonsCodecHasher;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 /**
  * Сервис для операций с банковскими картами
@@ -31,22 +57,72 @@ import java.util.List;
  */
 @RequiredArgsConstructor
 @Service
-public class CardService {
+public class CardService implements MeterBinder {
+
+    /**
+     * Максимальная длина ключа идемпотентности (столбец transfer_idempotency_keys.idempotency_key)
+     */
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 64;
 
     private final CommonsCodecHasher coder;
     private final CardRepository cardRepository;
     private final UserRepository userRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final TransferIdempotencyService transferIdempotencyService;
+    private final ObjectProvider<TransferEngine> transferEngine;
+
+    /**
+     * Максимальное число попыток перевода при конфликте транзакций
+     */
+    @Value("${card.transfer.max-attempts:5}")
+    private int transferMaxAttempts;
+
+    /**
+     * Верхняя граница задержки перед первым повтором, удваивается с каждой попыткой
+     */
+    @Value("${card.transfer.backoff:5ms}")
+    private Duration transferBackoff;
+
+    /**
+     * Максимальная задержка перед повтором
+     */
+    @Value("${card.transfer.max-backoff:100ms}")
+    private Duration transferMaxBackoff;
+
+    /**
+     * Максимальное время ожидания результата перевода от движка
+     */
+    @Value("${card.transfer.engine.timeout:10s}")
+    private Duration transferEngineTimeout;
+
+    private Counter transferRetries;
+
+    /**
+     * Регистрирует метрику повторов переводов
+     *
+     * @param registry реестр метрик
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        transferRetries = Counter.builder("card.transfer.retries")
+                .description("Число повторов перевода после отката транзакции из-за взаимной блокировки или ошибки сериализации")
+                .register(registry);
+    }
 
     /**
      * Преобразует сущность Card в DTO CardResponse с маскированным номером
+     * <p>
+     * Маска строится по сохраненным последним цифрам номера, без дешифрования.
+     * </p>
      *
      * @param card сущность карты для преобразования
      * @return DTO с данными карты для ответа API
      */
     public CardResponse parseCard(Card card) {
+        String last4 = card.getCardNumberLast4() != null ? card.getCardNumberLast4() : "****";
         return new CardResponse(
                 card.getCardId(),
-                "*".repeat(12).concat(coder.decode(card.getEncryptedCardNumber()).substring(12)),
+                "*".repeat(12).concat(last4),
                 card.getCardholder(),
                 card.getExpiry_date(),
                 card.getStatus().name()
@@ -88,20 +164,157 @@ public class CardService {
 
     /**
      * Выполняет перевод средств между картами пользователя
+     * <p>
+     * Владелец, статус карт и остаток проверяются и балансы изменяются одним вызовом
+     * функции базы над заблокированными строками (см. {@link CardRepository#transferFunds}).
+     * Функция блокирует карты в порядке card_id, поэтому встречные переводы не образуют
+     * взаимных блокировок. Если транзакция все же откатывается базой из-за конфликта
+     * (взаимная блокировка, ошибка сериализации), перевод повторяется в новой транзакции
+     * с экспоненциальной задержкой со случайным разбросом, не больше card.transfer.max-attempts раз.
+     * </p>
+     * <p>
+     * При card.transfer.engine.enabled перевод выполняется движком с балансами в памяти
+     * (см. {@link TransferEngine}), а если его очередь заполнена - функцией базы.
+     * </p>
      *
      * @param from идентификатор карты отправителя
      * @param to идентификатор карты получателя
      * @param amount сумма перевода
      * @param username имя пользователя, выполняющего операцию
+     * @throws CardWrongCredentials если сумма не положительна
      * @throws CardAccessDeniedException если пользователь не является владельцем одной из карт
+     * @throws CardNotInService если одна из карт неактивна
+     * @throws CardInsufficientFundsException если на карте отправителя недостаточно средств
+     * @throws ConcurrencyFailureException если конфликт повторился на всех попытках
      */
-    @Transactional
     public void transfer(Integer from, Integer to, Double amount, String username) {
-        if (!validateOwner(username, from) || !validateOwner(username, to)) {
+        transfer(from, to, amount, username, null);
+    }
+
+    /**
+     * Выполняет перевод средств между картами пользователя не более одного раза на ключ идемпотентности
+     * <p>
+     * Повтор запроса с тем же ключом возвращает результат первого перевода, в том числе
+     * ошибку, не изменяя балансы (см. {@link TransferIdempotencyService}).
+     * Без ключа работает как {@link #transfer(Integer, Integer, Double, String)}.
+     * </p>
+     *
+     * @param from идентификатор карты отправителя
+     * @param to идентификатор карты получателя
+     * @param amount сумма перевода
+     * @param username имя пользователя, выполняющего операцию
+     * @param idempotencyKey ключ идемпотентности клиента или null
+     * @throws CardWrongCredentials если сумма не положительна или ключ пуст либо длиннее 64 символов
+     * @throws CardAccessDeniedException если пользователь не является владельцем одной из карт
+     * @throws CardNotInService если одна из карт неактивна
+     * @throws CardInsufficientFundsException если на карте отправителя недостаточно средств
+     * @throws IdempotencyKeyReusedException если ключ уже использован для другого перевода
+     * @throws ConcurrencyFailureException если конфликт повторился на всех попытках
+     */
+    public void transfer(Integer from, Integer to, Double amount, String username, String idempotencyKey) {
+        if (amount == null || amount.isNaN() || amount.isInfinite()) {
+            throw new CardWrongCredentials("Amount must be positive");
+        }
+        // Сумма округляется до копеек один раз, все пути перевода получают уже округленное значение
+        BigDecimal value = BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP);
+        if (value.signum() <= 0) {
+            throw new CardWrongCredentials("Amount must be positive");
+        }
+        if (idempotencyKey != null && (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            throw new CardWrongCredentials("Invalid Idempotency-Key");
+        }
+        TransferResult result = idempotencyKey == null
+                ? transferDirect(username, from, to, value)
+                : transferIdempotencyService.execute(username, idempotencyKey, from, to, value,
+                        () -> transferWithRetry(() -> cardRepository.transferFundsOnce(username, idempotencyKey,
+                                transferIdempotencyService.getTtl(), from, to, value)));
+        switch (result) {
+            case COMPLETED -> {
+            }
+            case ACCESS_DENIED -> throw new CardAccessDeniedException("Access denied");
+            case CARD_NOT_ACTIVE -> throw new CardNotInService("Card not in active status");
+            case INSUFFICIENT_FUNDS -> throw new CardInsufficientFundsException("Insufficient funds");
+            case IDEMPOTENCY_KEY_REUSED -> throw new IdempotencyKeyReusedException("Idempotency key already used for another transfer");
+        }
+    }
+
+    /**
+     * Выполняет перевод без ключа идемпотентности движком, если он включен и принял перевод, иначе функцией базы
+     * <p>
+     * Результат движка ожидается не дольше card.transfer.engine.timeout.
+     * </p>
+     */
+    private TransferResult transferDirect(String username, Integer from, Integer to, BigDecimal amount) {
+        TransferEngine engine = transferEngine.getIfAvailable();
+        CompletableFuture<TransferResult> pending = engine != null ? engine.submit(username, from, to, amount) : null;
+        if (pending == null) {
+            return transferWithRetry(() -> cardRepository.transferFunds(username, from, to, amount));
+        }
+        try {
+            return pending.get(transferEngineTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Transfer engine failed", e.getCause());
+        } catch (TimeoutException e) {
+            // Перевод мог быть записан позже, поэтому он не повторяется функцией базы
+            throw new QueryTimeoutException("Transfer engine did not answer in time", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for transfer engine", e);
+        }
+    }
+
+    /**
+     * Выполняет перевод в отдельной транзакции, повторяя его при конфликте транзакций
+     */
+    private TransferResult transferWithRetry(Supplier<TransferResult> transfer) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        long backoff = transferBackoff.toNanos();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> transfer.get());
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= transferMaxAttempts) {
+                    throw e;
+                }
+                if (transferRetries != null) {
+                    transferRetries.increment();
+                }
+                try {
+                    TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(backoff + 1));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                backoff = Math.min(backoff * 2, transferMaxBackoff.toNanos());
+            }
+        }
+    }
+
+    /**
+     * Вычисляет баланс карты пользователя на момент времени
+     * <p>
+     * Стоимость запроса ограничена переводами после последнего снимка баланса до asOf,
+     * а не всей историей карты (см. {@link BalanceSnapshotService}).
+     * </p>
+     *
+     * @param cardId идентификатор карты
+     * @param asOf момент времени или null для текущего момента
+     * @param username имя пользователя, выполняющего операцию
+     * @return баланс карты на момент asOf
+     * @throws CardAccessDeniedException если пользователь не является владельцем карты
+     * @throws CardWrongCredentials если до asOf нет истории баланса карты
+     */
+    public CardBalanceResponse getBalanceAsOf(Integer cardId, Instant asOf, String username) {
+        if (!validateOwner(username, cardId)) {
             throw new CardAccessDeniedException("Access denied");
         }
-        cardRepository.decreaseCardBalance(from, amount);
-        cardRepository.increaseCardBalance(to, amount);
+        Instant moment = asOf != null ? asOf : Instant.now();
+        BigDecimal balance = cardRepository.findBalanceAsOf(cardId, moment)
+                .orElseThrow(() -> new CardWrongCredentials("No balance history at this time"));
+        return new CardBalanceResponse(cardId, balance, moment);
     }
 
     /**
@@ -123,8 +336,25 @@ public class CardService {
         return cardRepository.findAll().stream().map(this::parseCard).toList();
     }
 
+    /**
+     * Находит карту по полному номеру через слепой индекс
+     *
+     * @param cardNumber номер карты
+     * @return DTO с данными найденной карты
+     * @throws CardNotFoundException если карта не найдена
+     */
+    public CardResponse findCardByNumber(String cardNumber) {
+        return cardRepository.findByCardNumberIndex(coder.index(cardNumber))
+                .map(this::parseCard)
+                .orElseThrow(() -> new CardNotFoundException("Card not found"));
+    }
+
     /**
      * Создает новую карту для пользователя
+     * <p>
+     * Карта вставляется одним INSERT: отсутствие владельца и занятый номер определяются
+     * по нарушению внешнего ключа и уникального индекса номера.
+     * </p>
      *
      * @param cardNumber номер карты
      * @param cardholder имя владельца карты
@@ -134,17 +364,26 @@ public class CardService {
      */
     @Transactional
     public void addCard(String cardNumber, String cardholder, Date expiry_date) {
-        if (!userRepository.existsById(cardholder)) {
-            throw new UserNotFoundException("User not found");
+        String cardNumberIndex = coder.index(cardNumber);
+        try {
+            Card card = cardRepository.persist(new Card(coder.encode(cardNumber), cardNumberIndex, Card.lastDigits(cardNumber), cardholder, expiry_date, CardStatus.ACTIVE, 0.0));
+            cardRepository.snapshotBalance(card.getCardId());
+        } catch (DataIntegrityViolationException e) {
+            if (Constraints.isViolated(e, Constraints.FK_CARD_USER)) {
+                throw new UserNotFoundException("User not found");
+            }
+            if (Constraints.isViolated(e, Constraints.UX_CARDS_CARD_NUMBER_INDEX)) {
+                throw new CardWrongCredentials("Card number already taken");
+            }
+            throw e;
         }
-        if (cardRepository.existsByEncryptedCardNumber(coder.decode(cardNumber))) {
-            throw new CardWrongCredentials("Card number already taken");
-        }
-        cardRepository.save(new Card(coder.encode(cardNumber), cardholder, expiry_date, CardStatus.ACTIVE, 0.0));
     }
 
     /**
      * Обновляет данные существующей карты
+     * <p>
+     * Новый баланс сохраняется снимком в той же транзакции, так как он не проходит через журнал переводов.
+     * </p>
      *
      * @param cardId идентификатор карты
      * @param cardNumber номер карты
@@ -161,13 +400,80 @@ public class CardService {
         if (!userRepository.existsById(cardholder)) {
             throw new UserNotFoundException("User not found");
         }
-        if (!cardRepository.existsByEncryptedCardNumber(coder.decode(cardNumber))) {
+        String cardNumberIndex = coder.index(cardNumber);
+        if (!cardRepository.existsByCardNumberIndex(cardNumberIndex)) {
             throw new CardNotFoundException("Card not found");
         }
         if (Arrays.stream(CardStatus.values()).filter(cardStatus -> cardStatus.name().equals(status)).findFirst().isEmpty()) {
             throw new CardWrongCredentials("Status not found");
         }
-        cardRepository.save(new Card(cardId, coder.encode(cardNumber), cardholder, expiry_date, CardStatus.valueOf(status), amount));
+        cardRepository.saveAndFlush(new Card(cardId, coder.encode(cardNumber), cardNumberIndex, Card.lastDigits(cardNumber), cardholder, expiry_date, CardStatus.valueOf(status), amount));
+        cardRepository.snapshotBalance(cardId);
+    }
+
+    /**
+     * Частично обновляет банковскую карту
+     * <p>
+     * Записывает одним UPDATE только переданные поля. Номер карты шифруется и индексируется,
+     * только если он передан. Существование владельца и уникальность номера проверяются
+     * ограничениями базы, без отдельных запросов. Новый баланс сохраняется снимком
+     * в той же транзакции, так как он не проходит через журнал переводов.
+     * </p>
+     *
+     * @param cardId идентификатор карты
+     * @param cardNumber новый номер карты или null
+     * @param cardholder новый владелец карты или null
+     * @param expiry_date новый срок действия или null
+     * @param status новый статус карты или null
+     * @param balance новый баланс карты или null
+     * @throws CardNotFoundException если карта не найдена
+     * @throws UserNotFoundException если новый владелец не найден
+     * @throws CardWrongCredentials если статус невалиден, номер занят или не передано ни одного поля
+     */
+    @Transactional
+    public void patchCard(Integer cardId, String cardNumber, String cardholder, Date expiry_date, String status, Double balance) {
+        if (status != null && Arrays.stream(CardStatus.values()).noneMatch(value -> value.name().equals(status))) {
+            throw new CardWrongCredentials("Status not found");
+        }
+        Patch<Card> patch = Patch.of(Card.class);
+        if (cardNumber != null) {
+            patch.set("encryptedCardNumber", coder.encode(cardNumber))
+                    .set("cardNumberIndex", coder.index(cardNumber))
+                    .set("cardNumberLast4", Card.lastDigits(cardNumber));
+        }
+        if (cardholder != null) {
+            patch.set("cardholder", cardholder);
+        }
+        if (expiry_date != null) {
+            patch.set("expiry_date", expiry_date);
+        }
+        if (status != null) {
+            patch.set("status", CardStatus.valueOf(status));
+        }
+        if (balance != null) {
+            patch.set("balance", balance);
+        }
+        if (patch.isEmpty()) {
+            throw new CardWrongCredentials("Nothing to update");
+        }
+        int updated;
+        try {
+            updated = cardRepository.patch(cardId, patch);
+        } catch (DataIntegrityViolationException e) {
+            if (Constraints.isViolated(e, Constraints.FK_CARD_USER)) {
+                throw new UserNotFoundException("User not found");
+            }
+            if (Constraints.isViolated(e, Constraints.UX_CARDS_CARD_NUMBER_INDEX)) {
+                throw new CardWrongCredentials("Card number already taken");
+            }
+            throw e;
+        }
+        if (updated == 0) {
+            throw new CardNotFoundException("Card not found");
+        }
+        if (balance != null) {
+            cardRepository.snapshotBalance(cardId);
+        }
     }
 
     /**
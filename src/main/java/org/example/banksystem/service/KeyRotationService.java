@@ -0,0 +1,268 @@
+package org.example.banksystem.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.banksystem.dto.response.KeyRotationResponse;
+import org.example.banksystem.exceptions.cards.KeyRotationInProgressException;
+import org.example.banksystem.security.CommonsCodecHasher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сервис фоновой ротации ключа шифрования номеров карт
+ * <p>
+ * Приводит к текущему формату все карты, зашифрованные другим мастер-ключом или в прежнем формате
+ * (см. {@link CommonsCodecHasher#reencryptAll(List)}): у конвертов переобертывается только ключ данных,
+ * значения прежних форматов шифруются конвертом заново. Таблица cards проходится пачками
+ * в порядке card_id (keyset-пагинация), строки с актуальным заголовком отбираются на стороне БД.
+ * Каждая пачка перешифровывается пакетно и записывается одним JDBC batch в отдельной короткой
+ * транзакции, поэтому блокировки строк держатся недолго, а прерванная ротация продолжается
+ * с того места, где остановилась.
+ * </p>
+ * <p>
+ * Запись выполняется сравнением со старым значением: если номер карты был изменен
+ * во время ротации, строка пропускается, так как уже записана активным ключом.
+ * Скорость ограничивается параметром codec.rotation.rows-per-second, чтобы задача
+ * не отнимала соединения и процессор у переводов.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class KeyRotationService {
+
+    private final CommonsCodecHasher coder;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * Схема таблицы cards
+     */
+    @Value("${spring.liquibase.default-schema}")
+    private String schema;
+
+    /**
+     * Размер пачки карт
+     */
+    @Value("${codec.rotation.chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * Максимальная скорость перешифрования, карт в секунду
+     */
+    @Value("${codec.rotation.rows-per-second:1000}")
+    private int rowsPerSecond;
+
+    /**
+     * Однопоточный исполнитель задачи ротации
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "card-key-rotation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Прогресс последнего запуска
+     */
+    private volatile Progress progress;
+
+    /**
+     * Запускает фоновую ротацию ключа
+     *
+     * @return состояние запущенной задачи
+     * @throws KeyRotationInProgressException если ротация уже выполняется
+     */
+    public synchronized KeyRotationResponse start() {
+        if (progress != null && progress.state == State.RUNNING) {
+            throw new KeyRotationInProgressException("Key rotation is already running");
+        }
+        Progress started = new Progress(coder.activeKeyId());
+        progress = started;
+        executor.execute(() -> rotate(started));
+        return started.toResponse();
+    }
+
+    /**
+     * Запрашивает остановку ротации после текущей пачки
+     *
+     * @return состояние задачи
+     */
+    public KeyRotationResponse cancel() {
+        Progress current = progress;
+        if (current != null) {
+            current.cancelled = true;
+        }
+        return getStatus();
+    }
+
+    /**
+     * Возвращает состояние последнего запуска ротации
+     *
+     * @return состояние задачи или IDLE, если ротация не запускалась
+     */
+    public KeyRotationResponse getStatus() {
+        Progress current = progress;
+        return current != null ? current.toResponse() : new Progress(coder.activeKeyId()).idle();
+    }
+
+    /**
+     * Останавливает исполнитель при завершении приложения
+     */
+    @PreDestroy
+    public void shutdown() {
+        Progress current = progress;
+        if (current != null) {
+            current.cancelled = true;
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * Проходит таблицу cards и перешифровывает устаревшие строки
+     */
+    private void rotate(Progress progress) {
+        String table = schema + ".cards";
+        String select = "SELECT card_id, encrypted_card_number FROM " + table
+                + " WHERE card_id > ? AND substring(encrypted_card_number FROM 1 FOR 2) <> ?"
+                + " ORDER BY card_id LIMIT ?";
+        String update = "UPDATE " + table + " SET encrypted_card_number = ?"
+                + " WHERE card_id = ? AND encrypted_card_number = ?";
+        byte[] activeHeader = coder.activeHeader();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        try {
+            List<Integer> ids = new ArrayList<>(chunkSize);
+            List<byte[]> encrypted = new ArrayList<>(chunkSize);
+            do {
+                ids.clear();
+                encrypted.clear();
+                jdbcTemplate.query(select, resultSet -> {
+                    ids.add(resultSet.getInt(1));
+                    encrypted.add(resultSet.getBytes(2));
+                }, progress.lastCardId, activeHeader, chunkSize);
+                if (ids.isEmpty()) {
+                    break;
+                }
+
+                List<Object[]> batch = reencryptChunk(progress, ids, encrypted);
+                int[] counts = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(update, batch));
+                for (int count : counts) {
+                    if (count == 0) {
+                        progress.skipped++;
+                    } else {
+                        progress.reencrypted++;
+                    }
+                }
+                progress.lastCardId = ids.getLast();
+                throttle(progress);
+            } while (ids.size() == chunkSize && !progress.cancelled);
+            progress.finish(progress.cancelled ? State.CANCELLED : State.COMPLETED, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            progress.finish(State.CANCELLED, null);
+        } catch (RuntimeException e) {
+            log.error("Card key rotation failed after card {}", progress.lastCardId, e);
+            progress.finish(State.FAILED, e.getMessage());
+        }
+    }
+
+    /**
+     * Перешифровывает пачку одним пакетным вызовом, а если в пачке есть поврежденные
+     * значения - по одному, пропуская нечитаемые строки
+     */
+    private List<Object[]> reencryptChunk(Progress progress, List<Integer> ids, List<byte[]> encrypted) {
+        List<Object[]> batch = new ArrayList<>(ids.size());
+        try {
+            List<byte[]> reencrypted = coder.reencryptAll(encrypted);
+            for (int i = 0; i < ids.size(); i++) {
+                batch.add(new Object[]{reencrypted.get(i), ids.get(i), encrypted.get(i)});
+            }
+        } catch (RuntimeException batchFailure) {
+            for (int i = 0; i < ids.size(); i++) {
+                try {
+                    batch.add(new Object[]{coder.reencrypt(encrypted.get(i)), ids.get(i), encrypted.get(i)});
+                } catch (RuntimeException e) {
+                    log.warn("Card {} could not be decrypted and was not rotated", ids.get(i));
+                    progress.skipped++;
+                }
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Приостанавливает задачу так, чтобы средняя скорость не превышала заданную
+     */
+    private void throttle(Progress progress) throws InterruptedException {
+        long processed = progress.reencrypted + progress.skipped;
+        long expectedNanos = TimeUnit.SECONDS.toNanos(processed) / rowsPerSecond;
+        long aheadNanos = expectedNanos - (System.nanoTime() - progress.startedNanos);
+        if (aheadNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(aheadNanos);
+        }
+    }
+
+    /**
+     * Состояние задачи ротации
+     */
+    enum State {
+        IDLE, RUNNING, COMPLETED, CANCELLED, FAILED
+    }
+
+    /**
+     * Прогресс одного запуска ротации
+     * <p>
+     * Счетчики изменяет только поток ротации, остальные потоки их только читают.
+     * </p>
+     */
+    private static final class Progress {
+
+        private final int activeKeyId;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final long startedNanos = System.nanoTime();
+        private volatile State state = State.RUNNING;
+        private volatile boolean cancelled;
+        private volatile long reencrypted;
+        private volatile long skipped;
+        private volatile int lastCardId;
+        private volatile long finishedNanos;
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+
+        private Progress(int activeKeyId) {
+            this.activeKeyId = activeKeyId;
+        }
+
+        private void finish(State state, String error) {
+            this.finishedNanos = System.nanoTime();
+            this.finishedAt = LocalDateTime.now();
+            this.error = error;
+            this.state = state;
+        }
+
+        private KeyRotationResponse idle() {
+            return new KeyRotationResponse(State.IDLE.name(), activeKeyId, 0, 0, 0, 0, null, null, null);
+        }
+
+        private KeyRotationResponse toResponse() {
+            long end = state == State.RUNNING ? System.nanoTime() : finishedNanos;
+            double seconds = Math.max(end - startedNanos, 1) / 1e9;
+            return new KeyRotationResponse(state.name(), activeKeyId, reencrypted, skipped, lastCardId,
+                    reencrypted / seconds, startedAt, finishedAt, error);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package org.example.banksystem.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.example.banksystem.exceptions.auth.InvalidRefreshTokenException;
+import org.example.banksystem.exceptions.users.UserNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.SecureRandom;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Сервис одноразовых refresh токенов
+ * <p>
+ * Refresh токен - случайная строка, которую клиент обменивает на новый JWT без проверки пароля.
+ * В таблице refresh_tokens хранится только SHA-256 хеш токена. Каждый обмен помечает токен
+ * использованным и выдает следующий токен того же семейства, начатого при входе.
+ * </p>
+ * <p>
+ * Повторное предъявление уже использованного токена означает, что токен был украден:
+ * семейство удаляется целиком, а версия токенов пользователя увеличивается
+ * (см. {@link UserService#revokeTokens(String)}), так что выданные JWT тоже перестают приниматься.
+ * </p>
+ * <p>
+ * Отзыв сессий пользователя, смена пароля или роли удаляют все его семейства, удаление
+ * пользователя удаляет их каскадно. Обмен сначала блокирует строку пользователя, поэтому
+ * он не может выдать токен параллельно с отзывом.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class RefreshTokenService {
+
+    /**
+     * Число случайных байт в токене
+     */
+    private static final int TOKEN_BYTES = 32;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final UserService userService;
+
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Схема таблицы refresh_tokens
+     */
+    @Value("${spring.liquibase.default-schema}")
+    private String schema;
+
+    /**
+     * Время жизни refresh токена
+     */
+    @Value("${jwt.refresh.ttl:14d}")
+    private Duration ttl;
+
+    /**
+     * Результат обмена refresh токена
+     *
+     * @param username владелец токена
+     * @param refreshToken новый refresh токен
+     */
+    public record Rotation(String username, String refreshToken) {
+    }
+
+    /**
+     * Выдает первый refresh токен нового семейства
+     *
+     * @param username имя пользователя
+     * @return refresh токен
+     */
+    public String issue(String username) {
+        return insert(username, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Обменивает refresh токен на следующий токен того же семейства
+     * <p>
+     * Строка владельца блокируется FOR SHARE до обмена: отзыв сессий и удаление пользователя
+     * изменяют эту строку раньше, чем refresh токены, поэтому обмен либо завершается до отзыва
+     * (и новый токен удаляется отзывом), либо ждет его и уже не находит токен.
+     * </p>
+     *
+     * @param refreshToken предъявленный refresh токен
+     * @return имя владельца и новый refresh токен
+     * @throws InvalidRefreshTokenException если токен неизвестен, истек или уже был использован
+     */
+    public Rotation rotate(String refreshToken) {
+        String hash = hash(refreshToken);
+        Timestamp now = Timestamp.from(Instant.now());
+        Outcome outcome = new TransactionTemplate(transactionManager).execute(status -> {
+            List<String> owner = jdbcTemplate.queryForList("SELECT u.username FROM " + schema + ".users u"
+                    + " JOIN " + table() + " r ON r.username = u.username"
+                    + " WHERE r.token_hash = ? FOR SHARE OF u", String.class, hash);
+            if (owner.isEmpty()) {
+                return null;
+            }
+            List<Row> consumed = jdbcTemplate.query("UPDATE " + table() + " SET used_at = ?"
+                    + " WHERE token_hash = ? AND used_at IS NULL AND expires_at > ?"
+                    + " RETURNING username, family_id, used_at", ROW_MAPPER, now, hash, now);
+            if (!consumed.isEmpty()) {
+                Row row = consumed.get(0);
+                return new Outcome(row.username(), insert(row.username(), row.familyId()), false);
+            }
+            List<Row> existing = jdbcTemplate.query("SELECT username, family_id, used_at FROM " + table()
+                    + " WHERE token_hash = ?", ROW_MAPPER, hash);
+            if (existing.isEmpty() || existing.get(0).usedAt() == null) {
+                return null;
+            }
+            Row row = existing.get(0);
+            jdbcTemplate.update("DELETE FROM " + table() + " WHERE family_id = ?", row.familyId());
+            return new Outcome(row.username(), null, true);
+        });
+        if (outcome == null) {
+            throw new InvalidRefreshTokenException("Invalid refresh token");
+        }
+        if (outcome.reused()) {
+            log.warn("Refresh token reuse detected for user {}, revoking all tokens", outcome.username());
+            try {
+                userService.revokeTokens(outcome.username());
+            } catch (UserNotFoundException e) {
+                log.debug("User {} no longer exists", outcome.username());
+            }
+            throw new InvalidRefreshTokenException("Refresh token reuse detected");
+        }
+        return new Rotation(outcome.username(), outcome.refreshToken());
+    }
+
+    /**
+     * Отзывает семейство, к которому принадлежит refresh токен
+     * <p>
+     * Неизвестный токен не считается ошибкой.
+     * </p>
+     *
+     * @param refreshToken refresh токен
+     */
+    public void revokeFamily(String refreshToken) {
+        jdbcTemplate.update("DELETE FROM " + table() + " WHERE family_id IN"
+                + " (SELECT family_id FROM " + table() + " WHERE token_hash = ?)", hash(refreshToken));
+    }
+
+    /**
+     * Удаляет истекшие refresh токены
+     * <p>
+     * Использованные токены хранятся до истечения, чтобы их повторное предъявление распознавалось.
+     * </p>
+     */
+    @Scheduled(fixedDelayString = "${jwt.refresh.prune-interval:1h}",
+            initialDelayString = "${jwt.refresh.prune-interval:1h}")
+    public void prune() {
+        int pruned = jdbcTemplate.update("DELETE FROM " + table() + " WHERE expires_at < ?", Timestamp.from(Instant.now()));
+        if (pruned > 0) {
+            log.debug("Pruned {} expired refresh tokens", pruned);
+        }
+    }
+
+    /**
+     * Время жизни refresh токена
+     *
+     * @return время жизни
+     */
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    private String insert(String username, String familyId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        jdbcTemplate.update("INSERT INTO " + table() + " (token_hash, family_id, username, expires_at) VALUES (?, ?, ?, ?)",
+                hash(token), familyId, username, Timestamp.from(Instant.now().plus(ttl)));
+        return token;
+    }
+
+    private static String hash(String token) {
+        return DigestUtils.sha256Hex(token);
+    }
+
+    private String table() {
+        return schema + ".refresh_tokens";
+    }
+
+    private static final RowMapper<Row> ROW_MAPPER = (resultSet, rowNum) -> new Row(
+            resultSet.getString("username"), resultSet.getString("family_id"), resultSet.getTimestamp("used_at"));
+
+    /**
+     * Строка таблицы refresh_tokens
+     */
+    private record Row(String username, String familyId, Timestamp usedAt) {
+    }
+
+    /**
+     * Результат транзакции обмена
+     */
+    private record Outcome(String username, String refreshToken, boolean reused) {
+    }
+}
@@ -0,0 +1,148 @@
+package org.example.banksystem.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.banksystem.security.BloomFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * Сервис отзыва JWT токенов
+ * <p>
+ * Идентификаторы отозванных токенов (claim "jti") хранятся в таблице revoked_tokens до истечения
+ * токена. Перед таблицей стоит фильтр Блума в памяти: для неотозванного токена, то есть почти
+ * для каждого запроса, проверка отвечает без обращения к базе, и только положительный ответ
+ * фильтра (отозванный токен или редкое ложное срабатывание) уточняется запросом.
+ * </p>
+ * <p>
+ * Фильтр периодически перестраивается из таблицы: так удаляются истекшие записи,
+ * которые фильтр Блума не умеет удалять сам, и подхватываются отзывы, сделанные другими узлами.
+ * Отзыв всех токенов пользователя выполняется увеличением версии токенов (см. {@link UserService#revokeTokens(String)}).
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class TokenRevocationService {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Схема таблицы revoked_tokens
+     */
+    @Value("${spring.liquibase.default-schema}")
+    private String schema;
+
+    /**
+     * Ожидаемое число одновременно отозванных неистекших токенов
+     */
+    @Value("${jwt.revocation.expected-tokens:100000}")
+    private long expectedTokens;
+
+    /**
+     * Допустимая доля ложных срабатываний фильтра, уточняемых запросом к базе
+     */
+    @Value("${jwt.revocation.false-positive-rate:0.001}")
+    private double falsePositiveRate;
+
+    /**
+     * Текущий фильтр отозванных токенов
+     */
+    private volatile BloomFilter filter;
+
+    /**
+     * Фильтр, который строится в данный момент, отзывы добавляются и в него
+     */
+    private BloomFilter pending;
+
+    /**
+     * Блокировка замены фильтра, чтобы отзыв во время перестроения не потерялся
+     */
+    private final Object filterLock = new Object();
+
+    /**
+     * Строит фильтр из таблицы при запуске приложения
+     */
+    @PostConstruct
+    public void init() {
+        rebuild();
+    }
+
+    /**
+     * Отзывает токен до момента его истечения
+     *
+     * @param tokenId идентификатор токена (claim "jti")
+     * @param username владелец токена
+     * @param expiresAt момент истечения токена
+     */
+    public void revoke(String tokenId, String username, Instant expiresAt) {
+        jdbcTemplate.update("INSERT INTO " + table() + " (token_id, username, expires_at) VALUES (?, ?, ?)"
+                + " ON CONFLICT (token_id) DO NOTHING", tokenId, username, Timestamp.from(expiresAt));
+        synchronized (filterLock) {
+            filter.put(tokenId);
+            if (pending != null) {
+                pending.put(tokenId);
+            }
+        }
+    }
+
+    /**
+     * Проверяет, отозван ли токен
+     *
+     * @param tokenId идентификатор токена (claim "jti")
+     * @return true если токен отозван
+     */
+    public boolean isRevoked(String tokenId) {
+        if (!filter.mightContain(tokenId)) {
+            return false;
+        }
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + table() + " WHERE token_id = ?)", Boolean.class, tokenId));
+    }
+
+    /**
+     * Удаляет записи об истекших токенах и перестраивает фильтр
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.refresh-interval:30s}",
+            initialDelayString = "${jwt.revocation.refresh-interval:30s}")
+    public void refresh() {
+        int pruned = jdbcTemplate.update("DELETE FROM " + table() + " WHERE expires_at < ?", Timestamp.from(Instant.now()));
+        if (pruned > 0) {
+            log.debug("Pruned {} expired revoked tokens", pruned);
+        }
+        rebuild();
+    }
+
+    private void rebuild() {
+        BloomFilter rebuilt = new BloomFilter(expectedTokens, falsePositiveRate);
+        synchronized (filterLock) {
+            pending = rebuilt;
+        }
+        try {
+            jdbcTemplate.query("SELECT token_id FROM " + table() + " WHERE expires_at >= ?",
+                    resultSet -> {
+                        rebuilt.put(resultSet.getString(1));
+                    }, Timestamp.from(Instant.now()));
+            synchronized (filterLock) {
+                filter = rebuilt;
+            }
+        } finally {
+            synchronized (filterLock) {
+                pending = null;
+            }
+        }
+    }
+
+    private String table() {
+        return schema + ".revoked_tokens";
+    }
+}
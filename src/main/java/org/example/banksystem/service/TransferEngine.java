@@ -0,0 +1,477 @@
+package org.example.banksystem.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.banksystem.repository.CardRepository;
+import org.example.banksystem.repository.CardStateRepository;
+import org.example.banksystem.repository.CardStateRepository.BalanceChange;
+import org.example.banksystem.repository.CardStateRepository.CardState;
+import org.example.banksystem.repository.CardTransferRepository;
+import org.example.banksystem.repository.CardTransferRepository.Transfer;
+import org.example.banksystem.repository.TransferResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Движок переводов с балансами в памяти и групповой записью в базу
+ * <p>
+ * Карты разделены между card.transfer.engine.shards шардами по владельцу: перевод возможен только
+ * между картами одного владельца, поэтому обе карты перевода всегда в одном шарде и шарды
+ * не координируются между собой. У каждого шарда один поток-писатель, который единственный
+ * читает и изменяет балансы шарда, поэтому на пути перевода нет блокировок: запрос кладется
+ * в неблокирующую очередь шарда, а писатель забирает из нее до card.transfer.engine.max-batch
+ * запросов, проверяет их по балансам в памяти и записывает все принятые переводы одной транзакцией.
+ * Результаты отдаются только после фиксации транзакции.
+ * </p>
+ * <p>
+ * Балансы записываются сравнением с прочитанными значениями (см. {@link CardStateRepository#compareAndSetBalances}),
+ * поэтому изменение карты в обход движка (блокировка, изменение администратором, перевод по ключу
+ * идемпотентности) не теряется: пачка откатывается, измененные карты перечитываются, и пачка
+ * проверяется заново, не больше card.transfer.engine.commit-attempts раз. Отказ в переводе
+ * отдается только после перечитывания карт отказа из базы. Состояние всех карт загружается
+ * из базы при запуске, карты, созданные позже, загружаются при первом переводе.
+ * </p>
+ * <p>
+ * Включается параметром card.transfer.engine.enabled.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "card.transfer.engine.enabled", havingValue = "true")
+public class TransferEngine implements MeterBinder {
+
+    /**
+     * Пауза писателя без запросов, если его не разбудил новый запрос
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Наибольшая сумма в копейках, которую можно сравнить с балансом
+     */
+    private static final BigDecimal MAX_CENTS = BigDecimal.valueOf(Long.MAX_VALUE, 2);
+
+    private static final String ACTIVE = "ACTIVE";
+
+    private final CardStateRepository cardStateRepository;
+    private final CardTransferRepository cardTransferRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Shard[] shards;
+    private final int queueCapacity;
+    private final int maxBatch;
+    private final int commitAttempts;
+
+    private volatile boolean running;
+
+    private DistributionSummary groupSize;
+    private Counter conflicts;
+
+    @Autowired
+    public TransferEngine(CardRepository cardRepository,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${card.transfer.engine.shards:0}") int shards,
+                          @Value("${card.transfer.engine.queue-capacity:65536}") int queueCapacity,
+                          @Value("${card.transfer.engine.max-batch:512}") int maxBatch,
+                          @Value("${card.transfer.engine.commit-attempts:3}") int commitAttempts) {
+        this(cardRepository, cardRepository, transactionManager, shards, queueCapacity, maxBatch, commitAttempts);
+    }
+
+    /**
+     * Создает движок над репозиториями состояния карт и журнала
+     *
+     * @param cardStateRepository репозиторий состояния карт
+     * @param cardTransferRepository репозиторий журнала переводов
+     * @param transactionManager менеджер транзакций записи пачек
+     * @param shards число шардов, 0 - по числу процессоров
+     * @param queueCapacity максимальное число ожидающих запросов в шарде
+     * @param maxBatch максимальное число запросов в одной транзакции
+     * @param commitAttempts число попыток записи пачки при изменении карт в обход движка
+     */
+    public TransferEngine(CardStateRepository cardStateRepository,
+                          CardTransferRepository cardTransferRepository,
+                          PlatformTransactionManager transactionManager,
+                          int shards, int queueCapacity, int maxBatch, int commitAttempts) {
+        this.cardStateRepository = cardStateRepository;
+        this.cardTransferRepository = cardTransferRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shards = new Shard[shards > 0 ? shards : Runtime.getRuntime().availableProcessors()];
+        for (int i = 0; i < this.shards.length; i++) {
+            this.shards[i] = new Shard(i);
+        }
+        this.queueCapacity = queueCapacity;
+        this.maxBatch = maxBatch;
+        this.commitAttempts = commitAttempts;
+    }
+
+    /**
+     * Регистрирует метрики очередей, размера групп и конфликтов записи
+     *
+     * @param registry реестр метрик
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("card.transfer.engine.queue", this,
+                        engine -> Arrays.stream(engine.shards).mapToInt(shard -> shard.size.get()).sum())
+                .description("Число переводов, ожидающих записи во всех шардах")
+                .register(registry);
+        groupSize = DistributionSummary.builder("card.transfer.engine.group.size")
+                .description("Число переводов, записанных одной транзакцией")
+                .register(registry);
+        conflicts = Counter.builder("card.transfer.engine.conflicts")
+                .description("Число пачек, откатанных из-за изменения карт в обход движка")
+                .register(registry);
+    }
+
+    /**
+     * Загружает состояние всех карт и запускает писателей шардов
+     */
+    @PostConstruct
+    public void start() {
+        long begin = System.nanoTime();
+        AtomicInteger cards = new AtomicInteger();
+        transactionTemplate.executeWithoutResult(status -> cardStateRepository.forEachCardState(state -> {
+            Shard shard = shardOf(state.cardholder());
+            shard.accounts.put(state.cardId(), new Account(state));
+            cards.incrementAndGet();
+        }));
+        running = true;
+        for (Shard shard : shards) {
+            shard.writer.start();
+        }
+        log.info("Transfer engine started with {} shards and {} cards in {} ms", shards.length, cards.get(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+    }
+
+    /**
+     * Останавливает прием переводов и дожидается записи принятых
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.writer);
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            // Запросы, принятые до остановки, но положенные в очередь после выхода писателя
+            while (shard.size.get() > 0) {
+                if (!shard.drain()) {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+    }
+
+    /**
+     * Принимает перевод между картами пользователя
+     *
+     * @param username имя пользователя, выполняющего операцию
+     * @param from идентификатор карты отправителя
+     * @param to идентификатор карты получателя
+     * @param amount сумма перевода, округленная до копеек и положительная (проверяется {@link CardService#transfer})
+     * @return результат перевода после записи в базу или null, если движок остановлен, писатель шарда
+     * завершился или очередь шарда заполнена
+     */
+    public CompletableFuture<TransferResult> submit(String username, Integer from, Integer to, BigDecimal amount) {
+        Shard shard = shardOf(username);
+        if (shard.size.incrementAndGet() > queueCapacity || !running || !shard.writer.isAlive()) {
+            shard.size.decrementAndGet();
+            return null;
+        }
+        Command command = new Command(username, from, to, amount.setScale(2, RoundingMode.HALF_UP));
+        shard.queue.offer(command);
+        LockSupport.unpark(shard.writer);
+        return command.result;
+    }
+
+    private Shard shardOf(String username) {
+        return shards[Math.floorMod(Objects.hashCode(username), shards.length)];
+    }
+
+    /**
+     * Перевод, ожидающий записи
+     */
+    private static final class Command {
+
+        private final String username;
+        private final Integer from;
+        private final Integer to;
+        private final BigDecimal amount;
+        private final long cents;
+        private final CompletableFuture<TransferResult> result = new CompletableFuture<>();
+
+        private Command(String username, Integer from, Integer to, BigDecimal amount) {
+            this.username = username;
+            this.from = from;
+            this.to = to;
+            this.amount = amount;
+            // Сумма больше любого баланса отклоняется как недостаточность средств
+            this.cents = amount.compareTo(MAX_CENTS) > 0 ? Long.MAX_VALUE : amount.unscaledValue().longValue();
+        }
+    }
+
+    /**
+     * Состояние карты в памяти шарда, баланс в копейках
+     */
+    private static final class Account {
+
+        private final Integer cardId;
+        private final String cardholder;
+        private final String status;
+        private long balance;
+
+        private Account(CardState state) {
+            this.cardId = state.cardId();
+            this.cardholder = state.cardholder();
+            this.status = state.status();
+            this.balance = state.balance().movePointRight(2).longValueExact();
+        }
+
+        private CardState state(long balance) {
+            return new CardState(cardId, cardholder, status, BigDecimal.valueOf(balance, 2));
+        }
+    }
+
+    /**
+     * Пачка отклонена при записи: карты изменены в обход движка
+     */
+    private static final class StaleCardsException extends RuntimeException {
+
+        private final List<Integer> cardIds;
+
+        private StaleCardsException(List<Integer> cardIds) {
+            super(null, null, false, false);
+            this.cardIds = cardIds;
+        }
+    }
+
+    /**
+     * Шард: очередь запросов и балансы карт, доступные только писателю
+     */
+    private final class Shard {
+
+        private final ConcurrentLinkedQueue<Command> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final Map<Integer, Account> accounts = new HashMap<>();
+        private final List<Command> batch = new ArrayList<>();
+        private final Thread writer;
+        private final int index;
+
+        private Shard(int index) {
+            this.index = index;
+            this.writer = new Thread(this::run, "card-transfer-engine-" + index);
+            this.writer.setDaemon(true);
+        }
+
+        private void run() {
+            try {
+                while (running) {
+                    if (!drain()) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                }
+            } finally {
+                if (running) {
+                    // Писатель завершился аварийно: новые переводы не принимаются (см. submit), принятые отклоняются
+                    log.error("Transfer engine shard {} writer stopped", index);
+                    IllegalStateException failure = new IllegalStateException("Transfer engine shard " + index + " stopped");
+                    Command command;
+                    while ((command = queue.poll()) != null) {
+                        size.decrementAndGet();
+                        command.result.completeExceptionally(failure);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Забирает и записывает одну пачку
+         *
+         * @return false, если очередь пуста
+         */
+        private boolean drain() {
+            Command command;
+            while (batch.size() < maxBatch && (command = queue.poll()) != null) {
+                batch.add(command);
+            }
+            if (batch.isEmpty()) {
+                return false;
+            }
+            size.addAndGet(-batch.size());
+            try {
+                process(batch);
+            } catch (Throwable e) {
+                log.error("Transfer engine shard {} failed to process a batch", index, e);
+                // Балансы в памяти могли остаться частично измененными, карты перечитываются при следующем переводе
+                accounts.clear();
+                RuntimeException failure = e instanceof RuntimeException runtime
+                        ? runtime : new IllegalStateException("Transfer engine shard " + index + " failed", e);
+                batch.forEach(pending -> pending.result.completeExceptionally(failure));
+            } finally {
+                batch.clear();
+            }
+            return true;
+        }
+
+        private void process(List<Command> commands) {
+            Set<Integer> reloaded = new HashSet<>();
+            int attempt = 1;
+            while (true) {
+                TransferResult[] results = new TransferResult[commands.size()];
+                Map<Integer, Long> original = new TreeMap<>();
+                List<Transfer> journal = new ArrayList<>(commands.size());
+                Set<Integer> rejected = new HashSet<>();
+                for (int i = 0; i < commands.size(); i++) {
+                    results[i] = apply(commands.get(i), original, journal);
+                    if (results[i] != TransferResult.COMPLETED) {
+                        rejected.add(commands.get(i).from);
+                        rejected.add(commands.get(i).to);
+                    }
+                }
+
+                // Отказ возможен из-за устаревшего состояния в памяти, поэтому подтверждается по базе
+                rejected.remove(null);
+                rejected.removeAll(reloaded);
+                if (!rejected.isEmpty()) {
+                    revert(original);
+                    reload(rejected);
+                    reloaded.addAll(rejected);
+                    continue;
+                }
+
+                if (!journal.isEmpty()) {
+                    try {
+                        commit(original, journal);
+                    } catch (StaleCardsException e) {
+                        revert(original);
+                        reload(e.cardIds);
+                        reloaded.addAll(e.cardIds);
+                        if (conflicts != null) {
+                            conflicts.increment();
+                        }
+                        if (++attempt > commitAttempts) {
+                            ConcurrencyFailureException failure =
+                                    new ConcurrencyFailureException("Cards changed concurrently with transfer engine");
+                            commands.forEach(command -> command.result.completeExceptionally(failure));
+                            return;
+                        }
+                        continue;
+                    } catch (RuntimeException e) {
+                        revert(original);
+                        original.keySet().forEach(accounts::remove);
+                        throw e;
+                    }
+                    if (groupSize != null) {
+                        groupSize.record(journal.size());
+                    }
+                }
+                for (int i = 0; i < commands.size(); i++) {
+                    commands.get(i).result.complete(results[i]);
+                }
+                return;
+            }
+        }
+
+        /**
+         * Проверяет перевод по балансам в памяти и применяет его, запоминая исходные балансы
+         */
+        private TransferResult apply(Command command, Map<Integer, Long> original, List<Transfer> journal) {
+            Account from = accounts.get(command.from);
+            Account to = accounts.get(command.to);
+            if (from == null || to == null
+                    || !from.cardholder.equals(command.username) || !to.cardholder.equals(command.username)) {
+                return TransferResult.ACCESS_DENIED;
+            }
+            if (!ACTIVE.equals(from.status) || !ACTIVE.equals(to.status)) {
+                return TransferResult.CARD_NOT_ACTIVE;
+            }
+            if (from.balance < command.cents) {
+                return TransferResult.INSUFFICIENT_FUNDS;
+            }
+            if (from != to) {
+                original.putIfAbsent(from.cardId, from.balance);
+                original.putIfAbsent(to.cardId, to.balance);
+                from.balance -= command.cents;
+                to.balance += command.cents;
+                journal.add(new Transfer(from.cardId, to.cardId, command.amount));
+            }
+            return TransferResult.COMPLETED;
+        }
+
+        /**
+         * Записывает балансы измененных карт в порядке card_id и журнал переводов одной транзакцией
+         */
+        private void commit(Map<Integer, Long> original, List<Transfer> journal) {
+            List<BalanceChange> changes = new ArrayList<>(original.size());
+            original.forEach((cardId, balance) -> {
+                Account account = accounts.get(cardId);
+                changes.add(new BalanceChange(account.state(balance), BigDecimal.valueOf(account.balance, 2)));
+            });
+            transactionTemplate.executeWithoutResult(status -> {
+                int[] updated = cardStateRepository.compareAndSetBalances(changes);
+                List<Integer> stale = new ArrayList<>();
+                for (int i = 0; i < updated.length; i++) {
+                    if (updated[i] == 0) {
+                        stale.add(changes.get(i).expected().cardId());
+                    }
+                }
+                if (!stale.isEmpty()) {
+                    throw new StaleCardsException(stale);
+                }
+                cardTransferRepository.appendJournal(journal);
+            });
+        }
+
+        private void revert(Map<Integer, Long> original) {
+            original.forEach((cardId, balance) -> accounts.get(cardId).balance = balance);
+        }
+
+        /**
+         * Перечитывает карты из базы, оставляя в памяти только карты владельцев этого шарда
+         */
+        private void reload(Collection<Integer> cardIds) {
+            cardIds.forEach(accounts::remove);
+            for (CardState state : cardStateRepository.findCardStates(cardIds)) {
+                if (shardOf(state.cardholder()) == this) {
+                    accounts.put(state.cardId(), new Account(state));
+                }
+            }
+        }
+    }
+}
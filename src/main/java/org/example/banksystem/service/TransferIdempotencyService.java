@@ -0,0 +1,175 @@
+package org.example.banksystem.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.example.banksystem.repository.CardRepository;
+import org.example.banksystem.repository.TransferResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Сервис ключей идемпотентности переводов
+ * <p>
+ * Источник истины - таблица transfer_idempotency_keys, в которую ключ записывается в транзакции
+ * перевода (см. {@link CardRepository#transferFundsOnce}). Завершенные переводы дополнительно
+ * хранятся в памяти до истечения ключа, поэтому повтор запроса клиентом обычно обслуживается
+ * без обращения к базе. Результат перевода по ключу не меняется, поэтому кеш не нужно сбрасывать
+ * при изменениях на других узлах.
+ * </p>
+ * <p>
+ * Одновременные запросы с одним ключом на этом узле не выполняются параллельно: второй ждет
+ * результата первого и не занимает соединение с базой. Между узлами то же обеспечивает
+ * ожидание на первичном ключе таблицы.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ */
+@Slf4j
+@Service
+public class TransferIdempotencyService implements MeterBinder {
+
+    private final CardRepository cardRepository;
+
+    /**
+     * Время хранения ключа
+     */
+    @Getter
+    private final Duration ttl;
+
+    /**
+     * Завершенные переводы по ключу
+     */
+    private final Cache<Key, Outcome> completed;
+
+    /**
+     * Выполняющиеся на этом узле переводы по ключу
+     */
+    private final ConcurrentMap<Key, CompletableFuture<Outcome>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Создает сервис
+     *
+     * @param cardRepository репозиторий карт
+     * @param ttl время хранения ключа
+     * @param maxSize максимальное число завершенных переводов в памяти
+     */
+    public TransferIdempotencyService(CardRepository cardRepository,
+                                      @Value("${card.transfer.idempotency.ttl:24h}") Duration ttl,
+                                      @Value("${card.transfer.idempotency.max-size:100000}") long maxSize) {
+        this.cardRepository = cardRepository;
+        this.ttl = ttl;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Регистрирует метрики попаданий в кеш завершенных переводов
+     *
+     * @param registry реестр метрик
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, completed, "card.transfer.idempotency");
+    }
+
+    /**
+     * Выполняет перевод не более одного раза на ключ пользователя
+     *
+     * @param username имя пользователя
+     * @param idempotencyKey ключ идемпотентности клиента
+     * @param from идентификатор карты отправителя
+     * @param to идентификатор карты получателя
+     * @param amount сумма перевода
+     * @param transfer перевод через {@link CardRepository#transferFundsOnce}
+     * @return результат первого перевода с этим ключом или {@link TransferResult#IDEMPOTENCY_KEY_REUSED},
+     * если ключ использован для другого перевода
+     */
+    public TransferResult execute(String username, String idempotencyKey, Integer from, Integer to, BigDecimal amount,
+                                  Supplier<TransferResult> transfer) {
+        Key key = new Key(username, idempotencyKey);
+        Request request = new Request(from, to, amount.setScale(2, RoundingMode.HALF_UP));
+        while (true) {
+            Outcome outcome = completed.getIfPresent(key);
+            if (outcome != null) {
+                return outcome.resultFor(request);
+            }
+            CompletableFuture<Outcome> own = new CompletableFuture<>();
+            CompletableFuture<Outcome> running = inFlight.putIfAbsent(key, own);
+            if (running != null) {
+                try {
+                    return running.join().resultFor(request);
+                } catch (CompletionException e) {
+                    // Первый запрос не зафиксировал перевод, ключ свободен
+                    continue;
+                }
+            }
+            try {
+                TransferResult result = transfer.get();
+                outcome = new Outcome(request, result);
+                if (result != TransferResult.IDEMPOTENCY_KEY_REUSED) {
+                    completed.put(key, outcome);
+                }
+                own.complete(outcome);
+                return result;
+            } catch (RuntimeException e) {
+                own.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, own);
+            }
+        }
+    }
+
+    /**
+     * Удаляет истекшие ключи идемпотентности
+     */
+    @Scheduled(fixedDelayString = "${card.transfer.idempotency.prune-interval:1h}",
+            initialDelayString = "${card.transfer.idempotency.prune-interval:1h}")
+    public void prune() {
+        int pruned = cardRepository.deleteExpiredIdempotencyKeys();
+        if (pruned > 0) {
+            log.debug("Pruned {} expired transfer idempotency keys", pruned);
+        }
+    }
+
+    /**
+     * Ключ идемпотентности в пространстве ключей пользователя
+     */
+    private record Key(String username, String idempotencyKey) {
+    }
+
+    /**
+     * Карты и сумма перевода, сумма округлена так же, как в базе
+     */
+    private record Request(Integer from, Integer to, BigDecimal amount) {
+    }
+
+    /**
+     * Запрос и результат перевода по ключу
+     */
+    private record Outcome(Request request, TransferResult result) {
+
+        private TransferResult resultFor(Request other) {
+            return request.equals(other) ? result : TransferResult.IDEMPOTENCY_KEY_REUSED;
+        }
+    }
+}
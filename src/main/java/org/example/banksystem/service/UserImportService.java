@@ -0,0 +1,215 @@
+package org.example.banksystem.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.banksystem.dto.request.UserRequest;
+import org.example.banksystem.dto.response.UserImportResult;
+import org.example.banksystem.entity.Role;
+import org.example.banksystem.security.PasswordHasher;
+import org.example.banksystem.security.TokenVersionRegistry;
+import org.example.banksystem.security.UserDetailsCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Сервис массового импорта пользователей
+ * <p>
+ * Файл читается построчно и обрабатывается пачками по admin.user-import.batch-size строк,
+ * поэтому в памяти находится только текущая пачка. Пароли пачки хешируются параллельно
+ * в пуле {@link PasswordHasher}, затем пачка записывается одним JDBC batch в отдельной
+ * транзакции. Уже существующие имена пропускаются через ON CONFLICT DO NOTHING без ошибки
+ * всей пачки. Результат каждой строки пишется в выходной поток в формате NDJSON
+ * сразу после записи пачки.
+ * </p>
+ * <p>
+ * Формат CSV - строки "username,password,role" без кавычек, первая строка может быть заголовком.
+ * Имя берется до первой запятой, роль - после последней, поэтому пароль может содержать запятые.
+ * Формат NDJSON - по одному объекту {@link UserRequest} на строку.
+ * </p>
+ *
+ * @author George
+ * @version 1.0
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class UserImportService {
+
+    /**
+     * Формат входного файла
+     */
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    private static final String CSV_HEADER = "username,password,role";
+
+    /**
+     * Максимальная длина имени пользователя (столбец users.username)
+     */
+    private static final int MAX_USERNAME_LENGTH = 20;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final PasswordHasher passwordHasher;
+    private final ObjectMapper objectMapper;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final UserDetailsCache userDetailsCache;
+
+    /**
+     * Схема таблицы users
+     */
+    @Value("${spring.liquibase.default-schema}")
+    private String schema;
+
+    /**
+     * Число строк, хешируемых и записываемых за один раз
+     */
+    @Value("${admin.user-import.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Импортирует пользователей из потока и пишет построчный результат
+     *
+     * @param input файл пользователей в кодировке UTF-8
+     * @param format формат файла
+     * @param output поток для результатов в формате NDJSON
+     * @throws IOException если чтение файла или запись результата не удались
+     */
+    public void importUsers(InputStream input, Format format, OutputStream output) throws IOException {
+        String insert = "INSERT INTO " + schema + ".users (username, password, role) VALUES (?, ?, ?)"
+                + " ON CONFLICT (username) DO NOTHING";
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        List<Row> chunk = new ArrayList<>(batchSize);
+        long lineNumber = 0;
+        long rows = 0;
+        long created = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || (format == Format.CSV && lineNumber == 1 && line.strip().equalsIgnoreCase(CSV_HEADER))) {
+                continue;
+            }
+            chunk.add(parse(lineNumber, line, format));
+            rows++;
+            if (chunk.size() == batchSize) {
+                created += importChunk(chunk, insert, transactionTemplate, output);
+                chunk.clear();
+            }
+        }
+        created += importChunk(chunk, insert, transactionTemplate, output);
+        log.info("User import finished: {} created, {} failed", created, rows - created);
+    }
+
+    /**
+     * Хеширует пароли пачки, записывает ее одним JDBC batch и выводит результаты строк
+     *
+     * @return число созданных пользователей
+     */
+    private int importChunk(List<Row> chunk, String insert, TransactionTemplate transactionTemplate,
+                            OutputStream output) throws IOException {
+        List<Row> valid = chunk.stream().filter(row -> row.error == null).toList();
+        int[] counts = new int[0];
+        String error = null;
+        if (!valid.isEmpty()) {
+            try {
+                List<String> hashes = passwordHasher.encodeAll(valid.stream().map(row -> row.password).toList());
+                List<Object[]> batch = new ArrayList<>(valid.size());
+                for (int i = 0; i < valid.size(); i++) {
+                    batch.add(new Object[]{valid.get(i).username, hashes.get(i), valid.get(i).role});
+                }
+                counts = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(insert, batch));
+            } catch (DataAccessException e) {
+                log.error("User import batch starting at line {} failed", valid.getFirst().line, e);
+                error = "Import failed";
+            }
+        }
+
+        int created = 0;
+        int next = 0;
+        for (Row row : chunk) {
+            if (row.error != null) {
+                write(UserImportResult.failed(row.line, row.username, row.error), output);
+            } else if (error != null) {
+                write(UserImportResult.failed(row.line, row.username, error), output);
+            } else if (counts[next++] == 0) {
+                write(UserImportResult.failed(row.line, row.username, "User already exists"), output);
+            } else {
+                tokenVersionRegistry.invalidate(row.username);
+                userDetailsCache.invalidate(row.username);
+                write(UserImportResult.created(row.line, row.username), output);
+                created++;
+            }
+        }
+        output.flush();
+        return created;
+    }
+
+    private Row parse(long lineNumber, String line, Format format) {
+        String username;
+        String password;
+        String role;
+        if (format == Format.CSV) {
+            int first = line.indexOf(',');
+            int last = line.lastIndexOf(',');
+            if (first < 0 || first == last) {
+                return new Row(lineNumber, null, null, null, "Malformed row");
+            }
+            username = line.substring(0, first).strip();
+            password = line.substring(first + 1, last);
+            role = line.substring(last + 1).strip();
+        } else {
+            try {
+                UserRequest request = objectMapper.readValue(line, UserRequest.class);
+                username = request.username();
+                password = request.password();
+                role = request.role();
+            } catch (JsonProcessingException e) {
+                return new Row(lineNumber, null, null, null, "Malformed row");
+            }
+        }
+        return new Row(lineNumber, username, password, role, validate(username, password, role));
+    }
+
+    private static String validate(String username, String password, String role) {
+        if (username == null || username.isBlank() || username.length() > MAX_USERNAME_LENGTH) {
+            return "Invalid username";
+        }
+        if (password == null || password.isEmpty()) {
+            return "Password is empty";
+        }
+        if (Arrays.stream(Role.values()).noneMatch(value -> value.name().equals(role))) {
+            return "Role not found";
+        }
+        return null;
+    }
+
+    private void write(UserImportResult result, OutputStream output) throws IOException {
+        output.write(objectMapper.writeValueAsBytes(result));
+        output.write('\n');
+    }
+
+    /**
+     * Разобранная строка файла, error не null если строка не прошла проверку
+     */
+    private record Row(long line, String username, String password, String role, String error) {
+    }
+}
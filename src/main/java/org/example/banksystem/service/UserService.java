@@ -7,8 +7,13 @@ import org.example.banksystem.entity.Role;
 import org.example.banksystem.entity.User;
 import org.example.banksystem.exceptions.users.UserNotFoundException;
 import org.example.banksystem.exceptions.users.UserWrongCredentialsException;
+import org.example.banksystem.repository.Constraints;
+import org.example.banksystem.repository.Patch;
 import org.example.banksystem.repository.UserRepository;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.example.banksystem.security.PasswordHasher;
+import org.example.banksystem.security.TokenVersionRegistry;
+import org.example.banksystem.security.UserDetailsCache;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import java.util.Arrays;
@@ -29,7 +34,9 @@ import java.util.List;
 public class UserService {
 
     private final UserRepository userRepository;
-    private final BCryptPasswordEncoder bCryptPasswordEncoder;
+    private final PasswordHasher passwordHasher;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final UserDetailsCache userDetailsCache;
 
     /**
      * Преобразует сущность User в DTO UserResponse
@@ -56,6 +63,9 @@ public class UserService {
 
     /**
      * Создает нового пользователя в системе
+     * <p>
+     * Пользователь вставляется одним INSERT, занятое имя определяется по нарушению первичного ключа.
+     * </p>
      *
      * @param username имя пользователя
      * @param password пароль пользователя
@@ -64,17 +74,27 @@ public class UserService {
      */
     @Transactional
     public void addUser(String username, String password, String role) {
-        if (userRepository.existsById(username)) {
-            throw new UserWrongCredentialsException("User already exists");
-        }
         if (Arrays.stream(Role.values()).filter(cardStatus -> cardStatus.name().equals(role)).findFirst().isEmpty()) {
             throw new UserWrongCredentialsException("Role not found");
         }
-        userRepository.save(new User(username, bCryptPasswordEncoder.encode(password), Role.valueOf(role)));
+        try {
+            userRepository.persist(new User(username, passwordHasher.encode(password), Role.valueOf(role)));
+        } catch (DataIntegrityViolationException e) {
+            if (Constraints.isViolated(e, Constraints.USERS_PKEY)) {
+                throw new UserWrongCredentialsException("User already exists");
+            }
+            throw e;
+        }
+        tokenVersionRegistry.invalidate(username);
+        userDetailsCache.invalidate(username);
     }
 
     /**
      * Обновляет данные существующего пользователя
+     * <p>
+     * Увеличивает версию токенов пользователя и удаляет его refresh токены, поэтому токены,
+     * выданные до изменения роли или пароля, перестают приниматься.
+     * </p>
      *
      * @param username имя пользователя для обновления
      * @param password новый пароль пользователя
@@ -84,17 +104,83 @@ public class UserService {
      */
     @Transactional
     public void updateUser(String username, String password, String role) {
-        if (!userRepository.existsById(username)) {
-            throw new UserNotFoundException("User not found");
-        }
+        User user = userRepository.findById(username).orElseThrow(() -> new UserNotFoundException("User not found"));
         if (Arrays.stream(Role.values()).filter(cardStatus -> cardStatus.name().equals(role)).findFirst().isEmpty()) {
             throw new UserWrongCredentialsException("Role not found");
         }
-        userRepository.save(new User(username, bCryptPasswordEncoder.encode(password), Role.valueOf(role)));
+        user.setPassword(passwordHasher.encode(password));
+        user.setRole(Role.valueOf(role));
+        user.setTokenVersion(user.getTokenVersion() + 1);
+        userRepository.saveAndFlush(user);
+        userRepository.deleteRefreshTokens(username);
+        tokenVersionRegistry.invalidate(username);
+        userDetailsCache.invalidate(username);
+    }
+
+    /**
+     * Частично обновляет пользователя
+     * <p>
+     * Записывает одним UPDATE только переданные поля. Пароль хешируется, только если он передан,
+     * поэтому смена роли не запускает BCrypt. Версия токенов увеличивается на стороне базы,
+     * refresh токены пользователя удаляются.
+     * </p>
+     *
+     * @param username имя пользователя для обновления
+     * @param password новый пароль или null, если пароль не меняется
+     * @param role новая роль или null, если роль не меняется
+     * @throws UserNotFoundException если пользователь не найден
+     * @throws UserWrongCredentialsException если роль невалидна или не передано ни одного поля
+     */
+    @Transactional
+    public void patchUser(String username, String password, String role) {
+        if (password == null && role == null) {
+            throw new UserWrongCredentialsException("Nothing to update");
+        }
+        if (role != null && Arrays.stream(Role.values()).noneMatch(value -> value.name().equals(role))) {
+            throw new UserWrongCredentialsException("Role not found");
+        }
+        Patch<User> patch = Patch.of(User.class).increment("tokenVersion");
+        if (role != null) {
+            patch.set("role", Role.valueOf(role));
+        }
+        if (password != null) {
+            patch.set("password", passwordHasher.encode(password));
+        }
+        if (userRepository.patch(username, patch) == 0) {
+            throw new UserNotFoundException("User not found");
+        }
+        userRepository.deleteRefreshTokens(username);
+        tokenVersionRegistry.invalidate(username);
+        userDetailsCache.invalidate(username);
+    }
+
+    /**
+     * Отзывает все выданные пользователю токены
+     * <p>
+     * Увеличивает версию токенов пользователя: токены с прежней версией перестают приниматься
+     * на этом узле сразу, на остальных - не позже jwt.version-cache.ttl. Refresh токены
+     * пользователя удаляются в той же транзакции.
+     * </p>
+     *
+     * @param username имя пользователя
+     * @throws UserNotFoundException если пользователь не найден
+     */
+    @Transactional
+    public void revokeTokens(String username) {
+        User user = userRepository.findById(username).orElseThrow(() -> new UserNotFoundException("User not found"));
+        user.setTokenVersion(user.getTokenVersion() + 1);
+        userRepository.saveAndFlush(user);
+        userRepository.deleteRefreshTokens(username);
+        tokenVersionRegistry.invalidate(username);
+        userDetailsCache.invalidate(username);
     }
 
     /**
      * Удаляет пользователя по имени
+     * <p>
+     * Выданные пользователю токены перестают приниматься, refresh токены удаляются
+     * каскадно внешним ключом refresh_tokens.username.
+     * </p>
      *
      * @param username имя пользователя для удаления
      * @throws UserNotFoundException если пользователь не найден
@@ -105,5 +191,7 @@ public class UserService {
             throw new UserNotFoundException("User not found");
         }
         userRepository.deleteById(username);
+        tokenVersionRegistry.invalidate(username);
+        userDetailsCache.invalidate(username);
     }
 }
\ No newline at end of file
@@ -3,7 +3,9 @@ package org.example.banksystem;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = {
+        "codec.kek.file=${java.io.tmpdir}/banksystem-test/kek.properties",
+        "codec.kek.create-if-missing=true"})
 class BanksystemApplicationTests {
 
     @Test
@@ -0,0 +1,119 @@
+package org.example.banksystem.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность переводов при параллельной нагрузке: прежние четыре запроса
+ * (две проверки владельца, списание и зачисление в одной транзакции) против одного вызова
+ * функции transfer_funds с проверкой статуса и остатка
+ * <p>
+ * Нужна база с примененными миграциями, по умолчанию из application.yml. Другая база задается
+ * переменными окружения BENCHMARK_DB_URL, BENCHMARK_DB_USER, BENCHMARK_DB_PASSWORD.
+ * Бенчмарк создает пользователя bench_transfer с картами и удаляет его по завершении.
+ * </p>
+ * <p>
+ * Запуск: ./mvnw -Pbenchmark -DskipTests verify -Djmh.include=CardTransferBenchmark
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class CardTransferBenchmark {
+
+    private static final String SCHEMA = "banking";
+    private static final String USERNAME = "bench_transfer";
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    /**
+     * Число карт пользователя: чем меньше, тем чаще переводы конкурируют за одни строки
+     */
+    @Param({"16", "1024"})
+    public int cards;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private int[] cardIds;
+
+    @Setup
+    public void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(env("BENCHMARK_DB_URL", "jdbc:postgresql://localhost:5432/bank"));
+        dataSource.setUsername(env("BENCHMARK_DB_USER", "postgres"));
+        dataSource.setPassword(env("BENCHMARK_DB_PASSWORD", "postgres"));
+        dataSource.setMaximumPoolSize(16);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        jdbcTemplate.update("DELETE FROM " + SCHEMA + ".users WHERE username = ?", USERNAME);
+        jdbcTemplate.update("INSERT INTO " + SCHEMA + ".users (username, password, role) VALUES (?, 'x', 'ROLE_USER')", USERNAME);
+        cardIds = new int[cards];
+        for (int i = 0; i < cards; i++) {
+            cardIds[i] = jdbcTemplate.queryForObject("INSERT INTO " + SCHEMA + ".cards"
+                    + " (encrypted_card_number, card_number_index, card_number_last4, cardholder, expiry_date, status, balance)"
+                    + " VALUES ('\\x00'::bytea, ?, '0000', ?, DATE '2099-12-31', 'ACTIVE', 1000000000)"
+                    + " RETURNING card_id", Integer.class, "bench-transfer-" + i, USERNAME);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        jdbcTemplate.update("DELETE FROM " + SCHEMA + ".users WHERE username = ?", USERNAME);
+        dataSource.close();
+    }
+
+    /**
+     * Встречные переводы блокируют строки в разном порядке, и взаимная блокировка
+     * откатывает один из них: такой перевод считается выполненной операцией без результата
+     */
+    @Benchmark
+    public boolean legacyFourStatements() {
+        int from = randomCard();
+        int to = randomCard();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!owns(from) || !owns(to)) {
+                    throw new IllegalStateException("Access denied");
+                }
+                jdbcTemplate.update("UPDATE " + SCHEMA + ".cards SET balance = balance - ? WHERE card_id = ?", AMOUNT, from);
+                jdbcTemplate.update("UPDATE " + SCHEMA + ".cards SET balance = balance + ? WHERE card_id = ?", AMOUNT, to);
+            });
+            return true;
+        } catch (ConcurrencyFailureException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    public Integer transferFunds() {
+        return jdbcTemplate.queryForObject("SELECT " + SCHEMA + ".transfer_funds(?, ?, ?, ?)",
+                Integer.class, USERNAME, randomCard(), randomCard(), AMOUNT);
+    }
+
+    private boolean owns(int cardId) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM " + SCHEMA
+                + ".cards WHERE cardholder = ? AND card_id = ?)", Boolean.class, USERNAME, cardId));
+    }
+
+    private int randomCard() {
+        return cardIds[ThreadLocalRandom.current().nextInt(cardIds.length)];
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+}
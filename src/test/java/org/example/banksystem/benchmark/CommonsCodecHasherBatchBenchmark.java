@@ -0,0 +1,64 @@
+package org.example.banksystem.benchmark;
+
+import org.example.banksystem.security.CommonsCodecHasher;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность пакетного дешифрования CommonsCodecHasher.decodeAll
+ * в сравнении с последовательным вызовом decode для 10k, 100k и 1M карт
+ * <p>
+ * Запуск: ./mvnw -Pbenchmark -DskipTests verify -Djmh.include=CommonsCodecHasherBatchBenchmark
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class CommonsCodecHasherBatchBenchmark {
+
+    private static final byte[] KEY = "32charactersareeasytomakeanduse!".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] INDEX_KEY = "blindindexkeyforcardnumbershmac!".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"10000", "100000", "1000000"})
+    private int cards;
+
+    private CommonsCodecHasher hasher;
+    private List<byte[]> encrypted;
+
+    @Setup
+    public void setUp() {
+        hasher = new CommonsCodecHasher(KEY, INDEX_KEY, 0);
+        List<String> cardNumbers = new ArrayList<>(cards);
+        for (int i = 0; i < cards; i++) {
+            cardNumbers.add(String.format("%016d", i));
+        }
+        encrypted = hasher.encodeAll(cardNumbers);
+    }
+
+    @TearDown
+    public void tearDown() {
+        hasher.close();
+    }
+
+    @Benchmark
+    public List<String> sequentialDecode() {
+        List<String> result = new ArrayList<>(encrypted.size());
+        for (byte[] hash : encrypted) {
+            result.add(hasher.decode(hash));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<String> decodeAll() {
+        return hasher.decodeAll(encrypted);
+    }
+
+}
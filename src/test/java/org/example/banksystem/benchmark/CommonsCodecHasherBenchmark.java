@@ -0,0 +1,134 @@
+package org.example.banksystem.benchmark;
+
+import org.apache.commons.codec.binary.Base64;
+import org.example.banksystem.security.CommonsCodecHasher;
+import org.example.banksystem.security.InMemoryKeyEncryptionKeyStore;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение CommonsCodecHasher (конверт AES-GCM, бинарный формат) с прежней реализацией,
+ * создававшей ключ и Cipher на каждый вызов и хранившей Base64
+ * <p>
+ * Запуск: ./mvnw -Pbenchmark -DskipTests verify -Djmh.include=CommonsCodecHasherBenchmark
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommonsCodecHasherBenchmark {
+
+    private static final byte[] KEY = "32charactersareeasytomakeanduse!".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] INDEX_KEY = "blindindexkeyforcardnumbershmac!".getBytes(StandardCharsets.UTF_8);
+    private static final String CARD_NUMBER = "1234567890123456";
+
+    private CommonsCodecHasher hasher;
+    private CommonsCodecHasher uncachedHasher;
+    private byte[] encrypted;
+    private byte[] legacyEncrypted;
+    private String legacyBase64;
+
+    @Setup
+    public void setUp() throws Exception {
+        hasher = new CommonsCodecHasher(KEY, INDEX_KEY, 1);
+        // Кеш ключей данных нулевого размера: каждое дешифрование разворачивает ключ данных
+        uncachedHasher = new CommonsCodecHasher(KEY, Map.of(),
+                new InMemoryKeyEncryptionKeyStore(Map.of(0, KEY), 0), 0, Duration.ZERO, INDEX_KEY, 1);
+        encrypted = hasher.encode(CARD_NUMBER);
+        // Полный (необрезанный) шифртекст прежнего формата, чтобы дешифрование было возможно в обеих реализациях
+        legacyBase64 = LegacyHasher.encodeFull(CARD_NUMBER);
+        legacyEncrypted = CommonsCodecHasher.fromLegacy(legacyBase64);
+    }
+
+    @TearDown
+    public void tearDown() {
+        hasher.close();
+        uncachedHasher.close();
+    }
+
+    @Benchmark
+    public String legacyEncode() throws Exception {
+        return LegacyHasher.encode(CARD_NUMBER);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return hasher.encode(CARD_NUMBER);
+    }
+
+    @Benchmark
+    public String legacyDecode() throws Exception {
+        return LegacyHasher.decode(legacyBase64);
+    }
+
+    @Benchmark
+    public String decode() {
+        return hasher.decode(encrypted);
+    }
+
+    @Benchmark
+    public String decodeUncachedDataKey() {
+        return uncachedHasher.decode(encrypted);
+    }
+
+    @Benchmark
+    public String decodeLegacyFormat() {
+        return hasher.decode(legacyEncrypted);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String legacyDecodeContended() throws Exception {
+        return LegacyHasher.decode(legacyBase64);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String decodeContended() {
+        return hasher.decode(encrypted);
+    }
+
+    /**
+     * Копия прежней реализации CommonsCodecHasher
+     */
+    static final class LegacyHasher {
+
+        static String encode(String input) throws Exception {
+            String base64 = encodeFull(input);
+            return base64.substring(0, Math.min(32, base64.length()));
+        }
+
+        static String encodeFull(String input) throws Exception {
+            SecretKeySpec keySpec = new SecretKeySpec(KEY, "AES");
+            Cipher cipher = Cipher.getInstance("AES");
+            cipher.init(Cipher.ENCRYPT_MODE, keySpec);
+
+            byte[] encrypted = cipher.doFinal(input.getBytes(StandardCharsets.UTF_8));
+            return Base64.encodeBase64String(encrypted);
+        }
+
+        static String decode(String hash) throws Exception {
+            SecretKeySpec keySpec = new SecretKeySpec(KEY, "AES");
+            Cipher cipher = Cipher.getInstance("AES");
+            cipher.init(Cipher.DECRYPT_MODE, keySpec);
+
+            String paddedHash = hash;
+            while (paddedHash.length() % 4 != 0) {
+                paddedHash += "=";
+            }
+
+            byte[] decoded = Base64.decodeBase64(paddedHash);
+            byte[] decrypted = cipher.doFinal(decoded);
+            return new String(decrypted, StandardCharsets.UTF_8);
+        }
+    }
+}
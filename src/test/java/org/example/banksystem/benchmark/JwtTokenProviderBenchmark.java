@@ -0,0 +1,100 @@
+package org.example.banksystem.benchmark;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.example.banksystem.security.JwtPrincipal;
+import org.example.banksystem.security.JwtTokenProvider;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость проверки JWT токена на один запрос: прежняя пара validateToken и getUsernameFromToken,
+ * каждый вызов которой декодировал ключ и создавал парсер, против однократной проверки
+ * {@link JwtTokenProvider#verify(String)} заранее созданным парсером
+ * <p>
+ * Запуск: ./mvnw -Pbenchmark -DskipTests verify -Djmh.include=JwtTokenProviderBenchmark
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtTokenProviderBenchmark {
+
+    private static final String KEY = "cookieencodedwithbase32algorithmabracadabraineedmorecharactersinthiskey";
+
+    private JwtTokenProvider jwtTokenProvider;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtTokenProvider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(jwtTokenProvider, "key", KEY);
+        ReflectionTestUtils.setField(jwtTokenProvider, "expiration", 3_600_000L);
+        jwtTokenProvider.init();
+        token = jwtTokenProvider.createToken("testuser", List.of(new SimpleGrantedAuthority("ROLE_USER")), 0);
+    }
+
+    @Benchmark
+    public String legacyPerRequest() {
+        return LegacyProvider.validateToken(token) ? LegacyProvider.getUsernameFromToken(token) : null;
+    }
+
+    @Benchmark
+    public Optional<JwtPrincipal> verify() {
+        return jwtTokenProvider.verify(token);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String legacyPerRequestContended() {
+        return LegacyProvider.validateToken(token) ? LegacyProvider.getUsernameFromToken(token) : null;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<JwtPrincipal> verifyContended() {
+        return jwtTokenProvider.verify(token);
+    }
+
+    /**
+     * Копия прежней реализации проверки токена в JwtTokenProvider
+     */
+    static final class LegacyProvider {
+
+        static SecretKey getSigningKey() {
+            return Keys.hmacShaKeyFor(Decoders.BASE64.decode(KEY));
+        }
+
+        static String getUsernameFromToken(String token) {
+            Claims claims = Jwts.parser()
+                    .verifyWith(getSigningKey())
+                    .build()
+                    .parseSignedClaims(token)
+                    .getPayload();
+            return claims.getSubject();
+        }
+
+        static boolean validateToken(String token) {
+            try {
+                Jwts.parser()
+                        .verifyWith(getSigningKey())
+                        .build()
+                        .parseSignedClaims(token);
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.example.banksystem.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.example.banksystem.repository.CardStateRepositoryImpl;
+import org.example.banksystem.repository.CardTransferRepositoryImpl;
+import org.example.banksystem.repository.TransferResult;
+import org.example.banksystem.service.TransferEngine;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность переводов при параллельной нагрузке: вызов функции transfer_funds
+ * на каждый перевод против движка с балансами в памяти и групповой записью (TransferEngine)
+ * <p>
+ * Нужна база с примененными миграциями, по умолчанию из application.yml. Другая база задается
+ * переменными окружения BENCHMARK_DB_URL, BENCHMARK_DB_USER, BENCHMARK_DB_PASSWORD.
+ * Бенчмарк создает пользователей bench_transfer_N с картами и удаляет их по завершении.
+ * Движок шардирует карты по владельцу, поэтому число пользователей ограничивает число работающих шардов.
+ * </p>
+ * <p>
+ * Запуск: ./mvnw -Pbenchmark -DskipTests verify -Djmh.include=TransferEngineBenchmark
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class TransferEngineBenchmark {
+
+    private static final String SCHEMA = "banking";
+    private static final String USERNAME = "bench_transfer_";
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    /**
+     * Число пользователей, между картами каждого идут переводы
+     */
+    @Param({"1", "8"})
+    public int users;
+
+    /**
+     * Число карт каждого пользователя: чем меньше, тем чаще переводы конкурируют за одни строки
+     */
+    @Param({"16"})
+    public int cards;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransferEngine engine;
+    private int[][] cardIds;
+
+    @Setup
+    public void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(env("BENCHMARK_DB_URL", "jdbc:postgresql://localhost:5432/bank"));
+        dataSource.setUsername(env("BENCHMARK_DB_USER", "postgres"));
+        dataSource.setPassword(env("BENCHMARK_DB_PASSWORD", "postgres"));
+        dataSource.setMaximumPoolSize(16);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        deleteUsers();
+        cardIds = new int[users][cards];
+        for (int u = 0; u < users; u++) {
+            jdbcTemplate.update("INSERT INTO " + SCHEMA + ".users (username, password, role) VALUES (?, 'x', 'ROLE_USER')",
+                    USERNAME + u);
+            for (int i = 0; i < cards; i++) {
+                cardIds[u][i] = jdbcTemplate.queryForObject("INSERT INTO " + SCHEMA + ".cards"
+                        + " (encrypted_card_number, card_number_index, card_number_last4, cardholder, expiry_date, status, balance)"
+                        + " VALUES ('\\x00'::bytea, ?, '0000', ?, DATE '2099-12-31', 'ACTIVE', 1000000000)"
+                        + " RETURNING card_id", Integer.class, "bench-engine-" + u + "-" + i, USERNAME + u);
+            }
+        }
+        engine = new TransferEngine(new CardStateRepositoryImpl(jdbcTemplate, SCHEMA),
+                new CardTransferRepositoryImpl(jdbcTemplate, SCHEMA), new DataSourceTransactionManager(dataSource),
+                0, 65536, 512, 3);
+        engine.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.stop();
+        deleteUsers();
+        dataSource.close();
+    }
+
+    @Benchmark
+    public Integer transferFunds() {
+        int user = ThreadLocalRandom.current().nextInt(users);
+        return jdbcTemplate.queryForObject("SELECT " + SCHEMA + ".transfer_funds(?, ?, ?, ?)",
+                Integer.class, USERNAME + user, randomCard(user), randomCard(user), AMOUNT);
+    }
+
+    /**
+     * Каждый поток ждет фиксации своего перевода, поэтому размер группы ограничен числом потоков
+     */
+    @Benchmark
+    public TransferResult transferEngine() {
+        int user = ThreadLocalRandom.current().nextInt(users);
+        return engine.submit(USERNAME + user, randomCard(user), randomCard(user), AMOUNT).join();
+    }
+
+    private void deleteUsers() {
+        for (int u = 0; u < users; u++) {
+            jdbcTemplate.update("DELETE FROM " + SCHEMA + ".users WHERE username = ?", USERNAME + u);
+        }
+    }
+
+    private int randomCard(int user) {
+        return cardIds[user][ThreadLocalRandom.current().nextInt(cards)];
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+}
@@ -1,23 +1,36 @@
 package org.example.banksystem.controller;
 
+import org.example.banksystem.dto.request.CardPatchRequest;
 import org.example.banksystem.dto.request.CardRequest;
+import org.example.banksystem.dto.request.CardSearchRequest;
+import org.example.banksystem.dto.request.UserPatchRequest;
 import org.example.banksystem.dto.request.UserRequest;
 import org.example.banksystem.dto.response.ApiResponseDTO;
 import org.example.banksystem.dto.response.CardResponse;
+import org.example.banksystem.dto.response.KeyRotationResponse;
 import org.example.banksystem.dto.response.UserResponse;
 import org.example.banksystem.exceptions.cards.CardNotFoundException;
 import org.example.banksystem.exceptions.cards.CardWrongCredentials;
 import org.example.banksystem.exceptions.users.UserNotFoundException;
 import org.example.banksystem.exceptions.users.UserWrongCredentialsException;
 import org.example.banksystem.service.CardService;
+import org.example.banksystem.service.KeyRotationService;
+import org.example.banksystem.service.UserImportService;
 import org.example.banksystem.service.UserService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.List;
 
@@ -37,6 +50,12 @@ class AdminControllerTest {
     @Mock
     private UserService userService;
 
+    @Mock
+    private KeyRotationService keyRotationService;
+
+    @Mock
+    private UserImportService userImportService;
+
     @InjectMocks
     private AdminController adminController;
 
@@ -125,6 +144,37 @@ class AdminControllerTest {
         verify(cardService).getAllCards();
     }
 
+    @Test
+    void findCard_WhenCardExists_ShouldReturnCard() {
+        // Arrange
+        CardResponse expectedCard = createTestCardResponse();
+        when(cardService.findCardByNumber(CARD_NUMBER)).thenReturn(expectedCard);
+
+        // Act
+        ResponseEntity<ApiResponseDTO<CardResponse>> response = adminController.findCard(new CardSearchRequest(CARD_NUMBER));
+
+        // Assert
+        assertEquals(200, response.getStatusCode().value());
+        ApiResponseDTO<CardResponse> responseBody = response.getBody();
+        assertNotNull(responseBody);
+        assertEquals("success", responseBody.status());
+        assertEquals(expectedCard, responseBody.data());
+        verify(cardService).findCardByNumber(CARD_NUMBER);
+    }
+
+    @Test
+    void findCard_WhenCardNotFound_ShouldPropagate() {
+        // Arrange
+        when(cardService.findCardByNumber(CARD_NUMBER)).thenThrow(new CardNotFoundException("Card not found"));
+
+        // Act & Assert
+        CardNotFoundException exception = assertThrows(CardNotFoundException.class,
+                () -> adminController.findCard(new CardSearchRequest(CARD_NUMBER)));
+
+        assertEquals("Card not found", exception.getMessage());
+        verify(cardService).findCardByNumber(CARD_NUMBER);
+    }
+
     @Test
     void addCard_WithValidData_ShouldAddCard() {
         // Arrange
@@ -383,6 +433,18 @@ class AdminControllerTest {
         verify(userService).delete(USERNAME);
     }
 
+    @Test
+    void revokeUserTokens_WithValidId_ShouldRevokeTokens() {
+        // Act
+        ResponseEntity<ApiResponseDTO<Void>> response = adminController.revokeUserTokens(USERNAME);
+
+        // Assert
+        assertEquals(200, response.getStatusCode().value());
+        assertNotNull(response.getBody());
+        assertEquals("User tokens successfully revoked", response.getBody().message());
+        verify(userService).revokeTokens(USERNAME);
+    }
+
     // Edge cases and additional tests
 
     @Test
@@ -541,4 +603,105 @@ class AdminControllerTest {
         assertNotNull(addUserBody);
         assertNotNull(addUserBody.timestamp());
     }
-}
\ No newline at end of file
+
+    @Test
+    void startKeyRotation_ShouldReturnAcceptedWithStatus() {
+        // Arrange
+        KeyRotationResponse status = new KeyRotationResponse("RUNNING", 1, 0, 0, 0, 0.0, null, null, null);
+        when(keyRotationService.start()).thenReturn(status);
+
+        // Act
+        ResponseEntity<ApiResponseDTO<KeyRotationResponse>> response = adminController.startKeyRotation();
+
+        // Assert
+        assertEquals(202, response.getStatusCode().value());
+        assertNotNull(response.getBody());
+        assertEquals(status, response.getBody().data());
+        verify(keyRotationService).start();
+    }
+
+    @Test
+    void getKeyRotation_ShouldReturnStatus() {
+        // Arrange
+        KeyRotationResponse status = new KeyRotationResponse("COMPLETED", 1, 10, 0, 10, 100.0, null, null, null);
+        when(keyRotationService.getStatus()).thenReturn(status);
+
+        // Act
+        ResponseEntity<ApiResponseDTO<KeyRotationResponse>> response = adminController.getKeyRotation();
+
+        // Assert
+        assertEquals(200, response.getStatusCode().value());
+        assertNotNull(response.getBody());
+        assertEquals(status, response.getBody().data());
+    }
+
+    @Test
+    void cancelKeyRotation_ShouldDelegateToService() {
+        // Arrange
+        KeyRotationResponse status = new KeyRotationResponse("RUNNING", 1, 5, 0, 5, 50.0, null, null, null);
+        when(keyRotationService.cancel()).thenReturn(status);
+
+        // Act
+        ResponseEntity<ApiResponseDTO<KeyRotationResponse>> response = adminController.cancelKeyRotation();
+
+        // Assert
+        assertEquals(200, response.getStatusCode().value());
+        verify(keyRotationService).cancel();
+    }
+
+    @Test
+    void importUsers_ShouldStreamServiceResultsForCsv() throws Exception {
+        // Arrange
+        MockHttpServletRequest httpRequest = new MockHttpServletRequest();
+        httpRequest.setContent("alice,secret,ROLE_USER\n".getBytes(StandardCharsets.UTF_8));
+        doAnswer(invocation -> {
+            OutputStream output = invocation.getArgument(2);
+            output.write("result\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(userImportService).importUsers(any(InputStream.class), eq(UserImportService.Format.CSV), any(OutputStream.class));
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response = adminController.importUsers("text/csv; charset=UTF-8", httpRequest);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        response.getBody().writeTo(output);
+
+        // Assert
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals(MediaType.valueOf("application/x-ndjson"), response.getHeaders().getContentType());
+        assertEquals("result\n", output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void importUsers_WithNdjson_ShouldSelectNdjsonFormat() throws Exception {
+        // Arrange
+        MockHttpServletRequest httpRequest = new MockHttpServletRequest();
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response = adminController.importUsers("application/x-ndjson", httpRequest);
+        response.getBody().writeTo(new ByteArrayOutputStream());
+
+        // Assert
+        verify(userImportService).importUsers(any(InputStream.class), eq(UserImportService.Format.NDJSON), any(OutputStream.class));
+    }
+
+    @Test
+    void patchUser_ShouldPassOnlyProvidedFields() {
+        // Act
+        ResponseEntity<ApiResponseDTO<Void>> response = adminController.patchUser(USERNAME, new UserPatchRequest(null, "ROLE_ADMIN"));
+
+        // Assert
+        assertEquals(200, response.getStatusCode().value());
+        verify(userService).patchUser(USERNAME, null, "ROLE_ADMIN");
+    }
+
+    @Test
+    void patchCard_ShouldPassOnlyProvidedFields() {
+        // Act
+        ResponseEntity<ApiResponseDTO<Void>> response = adminController.patchCard(CARD_ID,
+                new CardPatchRequest(null, null, null, "BLOCKED", null));
+
+        // Assert
+        assertEquals(200, response.getStatusCode().value());
+        verify(cardService).patchCard(CARD_ID, null, null, null, "BLOCKED", null);
+    }
+}
@@ -2,9 +2,14 @@ package org.example.banksystem.controller;
 
 import org.example.banksystem.dto.request.AuthRequest;
 import org.example.banksystem.dto.response.ApiResponseDTO;
+import org.example.banksystem.dto.response.AuthCookies;
+import org.example.banksystem.exceptions.auth.InvalidRefreshTokenException;
 import org.example.banksystem.exceptions.users.UserNotFoundException;
 import org.example.banksystem.exceptions.users.UserWrongCredentialsException;
+import org.example.banksystem.exceptions.auth.AuthRateLimitExceededException;
+import org.example.banksystem.security.AuthRateLimiter;
 import org.example.banksystem.service.AuthService;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -13,9 +18,12 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.time.Duration;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 /**
@@ -27,12 +35,23 @@ class AuthControllerTest {
     @Mock
     private AuthService authService;
 
+    @Mock
+    private AuthRateLimiter authRateLimiter;
+
     @InjectMocks
     private AuthController authController;
 
     private final String USERNAME = "testuser";
     private final String PASSWORD = "password123";
     private final String JWT_TOKEN = "jwt.token.here";
+    private final String REFRESH_TOKEN = "refresh-token";
+    private final String CLIENT_ADDRESS = "10.0.0.7";
+    private final MockHttpServletRequest httpRequest = new MockHttpServletRequest();
+
+    @BeforeEach
+    void setUp() {
+        httpRequest.setRemoteAddr(CLIENT_ADDRESS);
+    }
 
     @Test
     void login_WithValidCredentials_ShouldReturnResponseWithCookie() {
@@ -46,10 +65,10 @@ class AuthControllerTest {
                 .sameSite("Strict")
                 .build();
 
-        when(authService.login(USERNAME, PASSWORD)).thenReturn(expectedCookie);
+        when(authService.login(USERNAME, PASSWORD)).thenReturn(withRefreshCookie(expectedCookie));
 
         // Act
-        ResponseEntity<ApiResponseDTO<Void>> response = authController.login(authRequest);
+        ResponseEntity<ApiResponseDTO<Void>> response = authController.login(authRequest, httpRequest);
 
         // Assert
         assertNotNull(response);
@@ -68,6 +87,130 @@ class AuthControllerTest {
         verify(authService).login(USERNAME, PASSWORD);
     }
 
+    @Test
+    void login_ShouldSetAccessAndRefreshCookies() {
+        // Arrange
+        AuthRequest authRequest = new AuthRequest(USERNAME, PASSWORD);
+        ResponseCookie accessCookie = ResponseCookie.from("Authorization", JWT_TOKEN).path("/").build();
+        when(authService.login(USERNAME, PASSWORD)).thenReturn(withRefreshCookie(accessCookie));
+
+        // Act
+        ResponseEntity<ApiResponseDTO<Void>> response = authController.login(authRequest, httpRequest);
+
+        // Assert
+        List<String> setCookieHeaders = response.getHeaders().get(HttpHeaders.SET_COOKIE);
+        assertNotNull(setCookieHeaders);
+        assertEquals(2, setCookieHeaders.size());
+        assertTrue(setCookieHeaders.get(0).contains("Authorization=" + JWT_TOKEN));
+        assertTrue(setCookieHeaders.get(1).contains("RefreshToken=" + REFRESH_TOKEN));
+        assertTrue(setCookieHeaders.get(1).contains("Path=/api/auth"));
+    }
+
+    @Test
+    void refresh_ShouldReturnNewCookies() {
+        // Arrange
+        ResponseCookie accessCookie = ResponseCookie.from("Authorization", JWT_TOKEN).path("/").build();
+        when(authService.refresh(REFRESH_TOKEN)).thenReturn(withRefreshCookie(accessCookie));
+
+        // Act
+        ResponseEntity<ApiResponseDTO<Void>> response = authController.refresh(REFRESH_TOKEN, httpRequest);
+
+        // Assert
+        assertEquals(200, response.getStatusCode().value());
+        assertNotNull(response.getBody());
+        assertEquals("Token refresh success", response.getBody().message());
+        List<String> setCookieHeaders = response.getHeaders().get(HttpHeaders.SET_COOKIE);
+        assertNotNull(setCookieHeaders);
+        assertEquals(2, setCookieHeaders.size());
+        verify(authService).refresh(REFRESH_TOKEN);
+    }
+
+    @Test
+    void refresh_WhenTokenInvalid_ShouldPropagateException() {
+        // Arrange
+        when(authService.refresh(REFRESH_TOKEN)).thenThrow(new InvalidRefreshTokenException("Invalid refresh token"));
+
+        // Act & Assert
+        InvalidRefreshTokenException exception = assertThrows(InvalidRefreshTokenException.class,
+                () -> authController.refresh(REFRESH_TOKEN, httpRequest));
+
+        assertEquals("Invalid refresh token", exception.getMessage());
+    }
+
+    @Test
+    void login_ShouldCheckClientAndUsernameLimitsBeforeAuthentication() {
+        // Arrange
+        AuthRequest authRequest = new AuthRequest(USERNAME, PASSWORD);
+        when(authService.login(USERNAME, PASSWORD))
+                .thenReturn(withRefreshCookie(ResponseCookie.from("Authorization", JWT_TOKEN).build()));
+
+        // Act
+        authController.login(authRequest, httpRequest);
+
+        // Assert
+        var inOrder = inOrder(authRateLimiter, authService);
+        inOrder.verify(authRateLimiter).checkClient(CLIENT_ADDRESS);
+        inOrder.verify(authRateLimiter).checkUsername(USERNAME);
+        inOrder.verify(authService).login(USERNAME, PASSWORD);
+    }
+
+    @Test
+    void login_WhenRateLimited_ShouldNotCallAuthService() {
+        // Arrange
+        AuthRequest authRequest = new AuthRequest(USERNAME, PASSWORD);
+        doThrow(new AuthRateLimitExceededException("Too many authentication attempts, try again later", Duration.ofSeconds(3)))
+                .when(authRateLimiter).checkUsername(USERNAME);
+
+        // Act & Assert
+        assertThrows(AuthRateLimitExceededException.class, () -> authController.login(authRequest, httpRequest));
+        verifyNoInteractions(authService);
+    }
+
+    @Test
+    void refresh_WhenClientRateLimited_ShouldNotCallAuthService() {
+        // Arrange
+        doThrow(new AuthRateLimitExceededException("Too many authentication attempts, try again later", Duration.ofSeconds(3)))
+                .when(authRateLimiter).checkClient(CLIENT_ADDRESS);
+
+        // Act & Assert
+        assertThrows(AuthRateLimitExceededException.class, () -> authController.refresh(REFRESH_TOKEN, httpRequest));
+        verifyNoInteractions(authService);
+    }
+
+    @Test
+    void register_WhenRateLimited_ShouldNotCallAuthService() {
+        // Arrange
+        AuthRequest authRequest = new AuthRequest(USERNAME, PASSWORD);
+        doThrow(new AuthRateLimitExceededException("Too many authentication attempts, try again later", Duration.ofSeconds(3)))
+                .when(authRateLimiter).checkClient(CLIENT_ADDRESS);
+
+        // Act & Assert
+        assertThrows(AuthRateLimitExceededException.class, () -> authController.register(authRequest, httpRequest));
+        verifyNoInteractions(authService);
+    }
+
+    @Test
+    void logout_ShouldReturnExpiredCookies() {
+        // Arrange
+        AuthCookies expiredCookies = new AuthCookies(
+                ResponseCookie.from("Authorization", "").path("/").maxAge(0).httpOnly(true).sameSite("Strict").build(),
+                ResponseCookie.from("RefreshToken", "").path("/api/auth").maxAge(0).httpOnly(true).sameSite("Strict").build());
+        when(authService.logout(JWT_TOKEN, REFRESH_TOKEN)).thenReturn(expiredCookies);
+
+        // Act
+        ResponseEntity<ApiResponseDTO<Void>> response = authController.logout(JWT_TOKEN, REFRESH_TOKEN);
+
+        // Assert
+        assertEquals(200, response.getStatusCode().value());
+        assertNotNull(response.getBody());
+        assertEquals("Logout success", response.getBody().message());
+        List<String> setCookieHeaders = response.getHeaders().get(HttpHeaders.SET_COOKIE);
+        assertNotNull(setCookieHeaders);
+        assertEquals(2, setCookieHeaders.size());
+        assertTrue(setCookieHeaders.stream().allMatch(header -> header.contains("Max-Age=0")));
+        verify(authService).logout(JWT_TOKEN, REFRESH_TOKEN);
+    }
+
     @Test
     void login_WhenUserNotFound_ShouldPropagateException() {
         // Arrange
@@ -77,7 +220,7 @@ class AuthControllerTest {
 
         // Act & Assert
         UserNotFoundException exception = assertThrows(UserNotFoundException.class,
-                () -> authController.login(authRequest));
+                () -> authController.login(authRequest, httpRequest));
 
         assertEquals("User not found", exception.getMessage());
         verify(authService).login(USERNAME, PASSWORD);
@@ -92,7 +235,7 @@ class AuthControllerTest {
 
         // Act & Assert
         UserWrongCredentialsException exception = assertThrows(UserWrongCredentialsException.class,
-                () -> authController.login(authRequest));
+                () -> authController.login(authRequest, httpRequest));
 
         assertEquals("Wrong password", exception.getMessage());
         verify(authService).login(USERNAME, PASSWORD);
@@ -104,10 +247,10 @@ class AuthControllerTest {
         AuthRequest authRequest = new AuthRequest(USERNAME, PASSWORD);
         ResponseCookie expectedCookie = ResponseCookie.from("Authorization", JWT_TOKEN).build();
 
-        when(authService.login(USERNAME, PASSWORD)).thenReturn(expectedCookie);
+        when(authService.login(USERNAME, PASSWORD)).thenReturn(withRefreshCookie(expectedCookie));
 
         // Act
-        authController.login(authRequest);
+        authController.login(authRequest, httpRequest);
 
         // Assert
         verify(authService).login(USERNAME, PASSWORD);
@@ -119,7 +262,7 @@ class AuthControllerTest {
         AuthRequest authRequest = new AuthRequest(USERNAME, PASSWORD);
 
         // Act
-        ResponseEntity<ApiResponseDTO<Void>> response = authController.register(authRequest);
+        ResponseEntity<ApiResponseDTO<Void>> response = authController.register(authRequest, httpRequest);
 
         // Assert
         assertNotNull(response);
@@ -143,7 +286,7 @@ class AuthControllerTest {
 
         // Act & Assert
         UserWrongCredentialsException exception = assertThrows(UserWrongCredentialsException.class,
-                () -> authController.register(authRequest));
+                () -> authController.register(authRequest, httpRequest));
 
         assertEquals("User already exists", exception.getMessage());
         verify(authService).registerUser(USERNAME, PASSWORD);
@@ -155,7 +298,7 @@ class AuthControllerTest {
         AuthRequest authRequest = new AuthRequest(USERNAME, PASSWORD);
 
         // Act
-        authController.register(authRequest);
+        authController.register(authRequest, httpRequest);
 
         // Assert
         verify(authService).registerUser(USERNAME, PASSWORD);
@@ -173,10 +316,10 @@ class AuthControllerTest {
                 .sameSite("Strict")
                 .build();
 
-        when(authService.login(USERNAME, PASSWORD)).thenReturn(expectedCookie);
+        when(authService.login(USERNAME, PASSWORD)).thenReturn(withRefreshCookie(expectedCookie));
 
         // Act
-        ResponseEntity<ApiResponseDTO<Void>> response = authController.login(authRequest);
+        ResponseEntity<ApiResponseDTO<Void>> response = authController.login(authRequest, httpRequest);
 
         // Assert
         String setCookieHeader = response.getHeaders().getFirst(HttpHeaders.SET_COOKIE);
@@ -196,10 +339,10 @@ class AuthControllerTest {
         AuthRequest authRequest = new AuthRequest(differentUsername, differentPassword);
         ResponseCookie expectedCookie = ResponseCookie.from("Authorization", JWT_TOKEN).build();
 
-        when(authService.login(differentUsername, differentPassword)).thenReturn(expectedCookie);
+        when(authService.login(differentUsername, differentPassword)).thenReturn(withRefreshCookie(expectedCookie));
 
         // Act
-        authController.login(authRequest);
+        authController.login(authRequest, httpRequest);
 
         // Assert
         verify(authService).login(differentUsername, differentPassword);
@@ -213,7 +356,7 @@ class AuthControllerTest {
         AuthRequest authRequest = new AuthRequest(differentUsername, differentPassword);
 
         // Act
-        authController.register(authRequest);
+        authController.register(authRequest, httpRequest);
 
         // Assert
         verify(authService).registerUser(differentUsername, differentPassword);
@@ -225,10 +368,10 @@ class AuthControllerTest {
         AuthRequest authRequest = new AuthRequest(USERNAME, PASSWORD);
         ResponseCookie expectedCookie = ResponseCookie.from("Authorization", JWT_TOKEN).build();
 
-        when(authService.login(USERNAME, PASSWORD)).thenReturn(expectedCookie);
+        when(authService.login(USERNAME, PASSWORD)).thenReturn(withRefreshCookie(expectedCookie));
 
         // Act
-        ResponseEntity<ApiResponseDTO<Void>> response = authController.login(authRequest);
+        ResponseEntity<ApiResponseDTO<Void>> response = authController.login(authRequest, httpRequest);
 
         // Assert
         ApiResponseDTO<Void> responseBody = response.getBody();
@@ -244,7 +387,7 @@ class AuthControllerTest {
         AuthRequest authRequest = new AuthRequest(USERNAME, PASSWORD);
 
         // Act
-        ResponseEntity<ApiResponseDTO<Void>> response = authController.register(authRequest);
+        ResponseEntity<ApiResponseDTO<Void>> response = authController.register(authRequest, httpRequest);
 
         // Assert
         ApiResponseDTO<Void> responseBody = response.getBody();
@@ -253,4 +396,8 @@ class AuthControllerTest {
         assertEquals("User successfully registered", responseBody.message());
         assertNotNull(responseBody.timestamp());
     }
-}
\ No newline at end of file
+
+    private AuthCookies withRefreshCookie(ResponseCookie accessCookie) {
+        return new AuthCookies(accessCookie, ResponseCookie.from("RefreshToken", REFRESH_TOKEN).path("/api/auth").build());
+    }
+}
@@ -2,11 +2,14 @@ package org.example.banksystem.controller;
 
 import org.example.banksystem.dto.request.TransferRequest;
 import org.example.banksystem.dto.response.ApiResponseDTO;
+import org.example.banksystem.dto.response.BatchTransferResult;
+import org.example.banksystem.dto.response.CardBalanceResponse;
 import org.example.banksystem.dto.response.CardResponse;
 import org.example.banksystem.entity.User;
 import org.example.banksystem.exceptions.cards.CardAccessDeniedException;
 import org.example.banksystem.exceptions.cards.CardNotFoundException;
 import org.example.banksystem.exceptions.cards.CardNotInService;
+import org.example.banksystem.service.BatchTransferService;
 import org.example.banksystem.service.CardService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -15,6 +18,8 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.ResponseEntity;
 
+import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.Date;
 import java.util.List;
 
@@ -31,6 +36,9 @@ class CardControllerTest {
     @Mock
     private CardService cardService;
 
+    @Mock
+    private BatchTransferService batchTransferService;
+
     @InjectMocks
     private CardController cardController;
 
@@ -206,7 +214,7 @@ class CardControllerTest {
 
         // Act
         ResponseEntity<ApiResponseDTO<Void>> response =
-                cardController.transfer(transferRequest, user);
+                cardController.transfer(transferRequest, null, user);
 
         // Assert
         assertNotNull(response);
@@ -218,7 +226,7 @@ class CardControllerTest {
         assertEquals("Card successfully transferred", responseBody.message());
         assertNull(responseBody.data());
 
-        verify(cardService).transfer(FROM_CARD_ID, TO_CARD_ID, AMOUNT, USERNAME);
+        verify(cardService).transfer(FROM_CARD_ID, TO_CARD_ID, AMOUNT, USERNAME, null);
     }
 
     @Test
@@ -228,14 +236,14 @@ class CardControllerTest {
         TransferRequest transferRequest = new TransferRequest(FROM_CARD_ID, TO_CARD_ID, AMOUNT);
 
         doThrow(new CardAccessDeniedException("Access denied"))
-                .when(cardService).transfer(FROM_CARD_ID, TO_CARD_ID, AMOUNT, USERNAME);
+                .when(cardService).transfer(FROM_CARD_ID, TO_CARD_ID, AMOUNT, USERNAME, null);
 
         // Act & Assert
         CardAccessDeniedException exception = assertThrows(CardAccessDeniedException.class,
-                () -> cardController.transfer(transferRequest, user));
+                () -> cardController.transfer(transferRequest, null, user));
 
         assertEquals("Access denied", exception.getMessage());
-        verify(cardService).transfer(FROM_CARD_ID, TO_CARD_ID, AMOUNT, USERNAME);
+        verify(cardService).transfer(FROM_CARD_ID, TO_CARD_ID, AMOUNT, USERNAME, null);
     }
 
     @Test
@@ -245,10 +253,10 @@ class CardControllerTest {
         TransferRequest transferRequest = new TransferRequest(FROM_CARD_ID, TO_CARD_ID, AMOUNT);
 
         // Act
-        cardController.transfer(transferRequest, user);
+        cardController.transfer(transferRequest, null, user);
 
         // Assert
-        verify(cardService).transfer(FROM_CARD_ID, TO_CARD_ID, AMOUNT, USERNAME);
+        verify(cardService).transfer(FROM_CARD_ID, TO_CARD_ID, AMOUNT, USERNAME, null);
     }
 
     @Test
@@ -259,10 +267,10 @@ class CardControllerTest {
         TransferRequest transferRequest = new TransferRequest(FROM_CARD_ID, TO_CARD_ID, differentAmount);
 
         // Act
-        cardController.transfer(transferRequest, user);
+        cardController.transfer(transferRequest, null, user);
 
         // Assert
-        verify(cardService).transfer(FROM_CARD_ID, TO_CARD_ID, differentAmount, USERNAME);
+        verify(cardService).transfer(FROM_CARD_ID, TO_CARD_ID, differentAmount, USERNAME, null);
     }
 
     @Test
@@ -274,10 +282,10 @@ class CardControllerTest {
         TransferRequest transferRequest = new TransferRequest(differentFromCardId, differentToCardId, AMOUNT);
 
         // Act
-        cardController.transfer(transferRequest, user);
+        cardController.transfer(transferRequest, null, user);
 
         // Assert
-        verify(cardService).transfer(differentFromCardId, differentToCardId, AMOUNT, USERNAME);
+        verify(cardService).transfer(differentFromCardId, differentToCardId, AMOUNT, USERNAME, null);
     }
 
     @Test
@@ -353,7 +361,7 @@ class CardControllerTest {
         TransferRequest transferRequest = new TransferRequest(FROM_CARD_ID, TO_CARD_ID, AMOUNT);
 
         // Act
-        ResponseEntity<ApiResponseDTO<Void>> response = cardController.transfer(transferRequest, user);
+        ResponseEntity<ApiResponseDTO<Void>> response = cardController.transfer(transferRequest, null, user);
 
         // Assert
         ApiResponseDTO<Void> responseBody = response.getBody();
@@ -385,4 +393,56 @@ class CardControllerTest {
         assertEquals(3, responseBody.data().size());
         verify(cardService).getCardsByUsername(USERNAME);
     }
-}
\ No newline at end of file
+
+    @Test
+    void transfer_WithIdempotencyKey_ShouldPassKeyToService() {
+        // Arrange
+        User user = createTestUser();
+        TransferRequest transferRequest = new TransferRequest(FROM_CARD_ID, TO_CARD_ID, AMOUNT);
+
+        // Act
+        cardController.transfer(transferRequest, "retry-key", user);
+
+        // Assert
+        verify(cardService).transfer(FROM_CARD_ID, TO_CARD_ID, AMOUNT, USERNAME, "retry-key");
+    }
+
+    @Test
+    void transferBatch_ShouldReturnPerItemResults() {
+        // Arrange
+        User user = createTestUser();
+        List<TransferRequest> transfers = List.of(new TransferRequest(FROM_CARD_ID, TO_CARD_ID, AMOUNT));
+        List<BatchTransferResult> results = List.of(BatchTransferResult.completed(0, FROM_CARD_ID, TO_CARD_ID));
+        when(batchTransferService.transfer(transfers, BatchTransferService.Mode.BEST_EFFORT, USERNAME)).thenReturn(results);
+
+        // Act
+        ResponseEntity<ApiResponseDTO<List<BatchTransferResult>>> response =
+                cardController.transferBatch(transfers, BatchTransferService.Mode.BEST_EFFORT, user);
+
+        // Assert
+        assertEquals(200, response.getStatusCode().value());
+        ApiResponseDTO<List<BatchTransferResult>> responseBody = response.getBody();
+        assertNotNull(responseBody);
+        assertEquals("Transfers:", responseBody.message());
+        assertEquals(results, responseBody.data());
+    }
+
+    @Test
+    void getBalance_ShouldReturnBalanceAsOfRequestedTime() {
+        // Arrange
+        User user = createTestUser();
+        Instant asOf = Instant.parse("2024-01-15T10:30:00Z");
+        CardBalanceResponse balance = new CardBalanceResponse(CARD_ID, new BigDecimal("250.00"), asOf);
+        when(cardService.getBalanceAsOf(CARD_ID, asOf, USERNAME)).thenReturn(balance);
+
+        // Act
+        ResponseEntity<ApiResponseDTO<CardBalanceResponse>> response = cardController.getBalance(CARD_ID, asOf, user);
+
+        // Assert
+        assertEquals(200, response.getStatusCode().value());
+        ApiResponseDTO<CardBalanceResponse> responseBody = response.getBody();
+        assertNotNull(responseBody);
+        assertEquals("Balance:", responseBody.message());
+        assertEquals(balance, responseBody.data());
+    }
+}
@@ -0,0 +1,110 @@
+package org.example.banksystem.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.banksystem.exceptions.auth.AuthRateLimitExceededException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для ограничителя попыток аутентификации AuthRateLimiter
+ */
+class AuthRateLimiterTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private SimpleMeterRegistry registry;
+    private AuthRateLimiter authRateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        authRateLimiter = new AuthRateLimiter(4, Duration.ofSeconds(1), 2, Duration.ofSeconds(10), 1_000, nanos::get);
+        registry = new SimpleMeterRegistry();
+        authRateLimiter.bindTo(registry);
+    }
+
+    @Test
+    void checkUsername_ShouldAllowBurstThenReject() {
+        // Act
+        authRateLimiter.checkUsername("testuser");
+        authRateLimiter.checkUsername("testuser");
+        AuthRateLimitExceededException exception = assertThrows(AuthRateLimitExceededException.class,
+                () -> authRateLimiter.checkUsername("testuser"));
+
+        // Assert
+        assertEquals(Duration.ofSeconds(10), exception.getRetryAfter());
+        assertEquals(1, registry.get("auth.rate-limit.rejected").tag("key", "username").counter().count());
+    }
+
+    @Test
+    void checkUsername_ShouldRefillOneAttemptPerPeriod() {
+        // Arrange
+        authRateLimiter.checkUsername("testuser");
+        authRateLimiter.checkUsername("testuser");
+
+        // Act
+        nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+        authRateLimiter.checkUsername("testuser");
+
+        // Assert
+        assertThrows(AuthRateLimitExceededException.class, () -> authRateLimiter.checkUsername("testuser"));
+    }
+
+    @Test
+    void checkUsername_ShouldKeepSeparateBucketsPerKey() {
+        // Arrange
+        authRateLimiter.checkUsername("testuser");
+        authRateLimiter.checkUsername("testuser");
+
+        // Act & Assert
+        assertDoesNotThrow(() -> authRateLimiter.checkUsername("otheruser"));
+        assertDoesNotThrow(() -> authRateLimiter.checkClient("testuser"));
+        assertDoesNotThrow(() -> authRateLimiter.checkUsername(null));
+    }
+
+    @Test
+    void checkClient_WithConcurrentAttempts_ShouldAllowExactlyBurst() throws Exception {
+        // Arrange
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> attempts = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 64; i++) {
+            attempts.add(executor.submit(() -> {
+                try {
+                    authRateLimiter.checkClient("10.0.0.7");
+                    return true;
+                } catch (AuthRateLimitExceededException e) {
+                    return false;
+                }
+            }));
+        }
+        int allowed = 0;
+        for (Future<Boolean> attempt : attempts) {
+            allowed += attempt.get(5, TimeUnit.SECONDS) ? 1 : 0;
+        }
+        executor.shutdown();
+
+        // Assert
+        assertEquals(4, allowed);
+        assertEquals(60, registry.get("auth.rate-limit.rejected").tag("key", "client").counter().count());
+    }
+
+    @Test
+    void constructor_WithInvalidLimit_ShouldThrowIllegalArgumentException() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> new AuthRateLimiter(0, Duration.ofSeconds(1), 2, Duration.ofSeconds(10), 1_000, nanos::get));
+        assertThrows(IllegalArgumentException.class,
+                () -> new AuthRateLimiter(4, Duration.ZERO, 2, Duration.ofSeconds(10), 1_000, nanos::get));
+    }
+}
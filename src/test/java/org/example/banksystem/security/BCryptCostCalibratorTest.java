@@ -0,0 +1,33 @@
+package org.example.banksystem.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для подбора стоимости BCrypt BCryptCostCalibrator
+ */
+class BCryptCostCalibratorTest {
+
+    @Test
+    void calibrate_WithTinyTarget_ShouldReturnMinStrength() {
+        // Act & Assert
+        assertEquals(4, BCryptCostCalibrator.calibrate(Duration.ZERO, 4, 6));
+    }
+
+    @Test
+    void calibrate_WithHugeTarget_ShouldReturnMaxStrength() {
+        // Act & Assert
+        assertEquals(6, BCryptCostCalibrator.calibrate(Duration.ofHours(1), 4, 6));
+    }
+
+    @Test
+    void calibrate_WithInvalidBounds_ShouldThrowIllegalArgumentException() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> BCryptCostCalibrator.calibrate(Duration.ofMillis(250), 3, 10));
+        assertThrows(IllegalArgumentException.class, () -> BCryptCostCalibrator.calibrate(Duration.ofMillis(250), 12, 10));
+        assertThrows(IllegalArgumentException.class, () -> BCryptCostCalibrator.calibrate(Duration.ofMillis(250), 10, 32));
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.banksystem.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для фильтра Блума BloomFilter
+ */
+class BloomFilterTest {
+
+    @Test
+    void mightContain_ShouldNeverMissAddedValuesAndKeepFalsePositivesLow() {
+        // Arrange
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        List<String> added = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            added.add(UUID.randomUUID().toString());
+        }
+
+        // Act
+        added.forEach(filter::put);
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain(UUID.randomUUID().toString())) {
+                falsePositives++;
+            }
+        }
+
+        // Assert
+        assertTrue(added.stream().allMatch(filter::mightContain));
+        assertTrue(falsePositives < 300, "False positives: " + falsePositives);
+    }
+
+    @Test
+    void put_FromConcurrentThreads_ShouldKeepAllValues() throws Exception {
+        // Arrange
+        BloomFilter filter = new BloomFilter(8_000, 0.01);
+        List<Future<List<String>>> results = new ArrayList<>();
+
+        // Act
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int t = 0; t < 8; t++) {
+                results.add(executor.submit(() -> {
+                    List<String> values = new ArrayList<>();
+                    for (int i = 0; i < 1_000; i++) {
+                        String value = UUID.randomUUID().toString();
+                        filter.put(value);
+                        values.add(value);
+                    }
+                    return values;
+                }));
+            }
+
+            // Assert
+            for (Future<List<String>> result : results) {
+                assertTrue(result.get().stream().allMatch(filter::mightContain));
+            }
+        }
+    }
+
+    @Test
+    void constructor_WithInvalidParameters_ShouldThrow() {
+        // Act & Assert
+        assertFalse(new BloomFilter(1, 0.5).mightContain("token"));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 0));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 1));
+    }
+}
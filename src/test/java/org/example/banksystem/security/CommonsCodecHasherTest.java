@@ -0,0 +1,256 @@
+package org.example.banksystem.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для компонента шифрования CommonsCodecHasher
+ */
+class CommonsCodecHasherTest {
+
+    private static final byte[] KEY = "32charactersareeasytomakeanduse!".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] INDEX_KEY = "blindindexkeyforcardnumbershmac!".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NEW_KEY = "anotherthirtytwocharacterkey1234".getBytes(StandardCharsets.UTF_8);
+    private static final int WRAPPED_KEY_LENGTH = 40;
+    private static final String CARD_NUMBER = "1234567890123456";
+
+    private final CommonsCodecHasher hasher = new CommonsCodecHasher(KEY, INDEX_KEY, 4);
+
+    @AfterEach
+    void tearDown() {
+        hasher.close();
+    }
+
+    @Test
+    void encode_ThenDecode_ShouldRoundTrip() {
+        // Act
+        byte[] encrypted = hasher.encode(CARD_NUMBER);
+
+        // Assert
+        assertEquals(CommonsCodecHasher.FORMAT_ENVELOPE, encrypted[0]);
+        assertEquals(CommonsCodecHasher.PRIMARY_KEY_ID, encrypted[1]);
+        assertEquals(WRAPPED_KEY_LENGTH, encrypted[2]);
+        assertEquals(3 + WRAPPED_KEY_LENGTH + 12 + CARD_NUMBER.length() + 16, encrypted.length);
+        assertTrue(hasher.isCurrentFormat(encrypted));
+        assertEquals(CARD_NUMBER, hasher.decode(encrypted));
+    }
+
+    @Test
+    void encode_ShouldUseFreshIvPerCall() {
+        // Act
+        byte[] first = hasher.encode(CARD_NUMBER);
+        byte[] second = hasher.encode(CARD_NUMBER);
+
+        // Assert
+        assertFalse(Arrays.equals(first, second));
+        assertEquals(hasher.decode(first), hasher.decode(second));
+    }
+
+    @Test
+    void decode_WithLegacyTruncatedValue_ShouldRecoverCardNumber() {
+        // Arrange
+        byte[] legacy = CommonsCodecHasher.fromLegacy("cK6UMOFi5g+FK9ifGJdcOT0HPzb3xNkv");
+
+        // Act
+        String result = hasher.decode(legacy);
+
+        // Assert
+        assertEquals(CommonsCodecHasher.FORMAT_LEGACY, legacy[0]);
+        assertFalse(hasher.isCurrentFormat(legacy));
+        assertEquals(CARD_NUMBER, result);
+    }
+
+    @Test
+    void decode_WithTamperedValue_ShouldThrow() {
+        // Arrange
+        byte[] encrypted = hasher.encode(CARD_NUMBER);
+        byte[] tamperedCiphertext = encrypted.clone();
+        tamperedCiphertext[20] ^= 1;
+        byte[] tamperedVersion = encrypted.clone();
+        tamperedVersion[0] = CommonsCodecHasher.FORMAT_GCM;
+
+        // Act & Assert
+        assertThrows(RuntimeException.class, () -> hasher.decode(tamperedCiphertext));
+        assertThrows(RuntimeException.class, () -> hasher.decode(tamperedVersion));
+        assertThrows(RuntimeException.class, () -> hasher.decode(new byte[0]));
+    }
+
+    @Test
+    void encode_ShouldUseOwnDataKeyPerCardAndSharedKeyPerBatch() {
+        // Act
+        byte[] first = hasher.encode(CARD_NUMBER);
+        byte[] second = hasher.encode(CARD_NUMBER);
+        List<byte[]> batch = hasher.encodeAll(List.of(CARD_NUMBER, "1234567890123457"));
+
+        // Assert
+        assertFalse(Arrays.equals(header(first), header(second)));
+        assertArrayEquals(header(batch.get(0)), header(batch.get(1)));
+        assertFalse(Arrays.equals(batch.get(0), batch.get(1)));
+    }
+
+    @Test
+    void reencrypt_WithNewMasterKey_ShouldRewrapDataKeyOnly() {
+        // Arrange
+        byte[] oldValue = hasher.encode(CARD_NUMBER);
+        CommonsCodecHasher rotated = new CommonsCodecHasher(KEY, Map.of(),
+                new InMemoryKeyEncryptionKeyStore(Map.of(0, KEY, 7, NEW_KEY), 7), INDEX_KEY, 1);
+
+        // Act
+        byte[] newValue = rotated.reencrypt(oldValue);
+
+        // Assert
+        assertEquals(7, newValue[1]);
+        assertFalse(rotated.isCurrentFormat(oldValue));
+        assertTrue(rotated.isCurrentFormat(newValue));
+        assertSame(newValue, rotated.reencrypt(newValue));
+        assertArrayEquals(new byte[]{CommonsCodecHasher.FORMAT_ENVELOPE, 7}, rotated.activeHeader());
+        assertArrayEquals(body(oldValue), body(newValue));
+        assertEquals(CARD_NUMBER, rotated.decode(oldValue));
+        assertEquals(CARD_NUMBER, rotated.decode(newValue));
+        assertThrows(RuntimeException.class, () -> hasher.decode(newValue));
+        rotated.close();
+    }
+
+    @Test
+    void decode_WithKeyedFormatFromKeyRing_ShouldRecoverAndReencrypt() throws Exception {
+        // Arrange
+        byte[] keyed = AesCipherEngine.seal(new SecretKeySpec(NEW_KEY, "AES"),
+                new byte[]{CommonsCodecHasher.FORMAT_KEYED, 5}, 2, CARD_NUMBER.getBytes(StandardCharsets.UTF_8));
+        CommonsCodecHasher ringHasher = new CommonsCodecHasher(KEY, Map.of(5, new String(NEW_KEY, StandardCharsets.UTF_8)),
+                new InMemoryKeyEncryptionKeyStore(Map.of(0, KEY), 0), INDEX_KEY, 1);
+
+        // Act
+        byte[] reencrypted = ringHasher.reencrypt(keyed);
+
+        // Assert
+        assertEquals(CARD_NUMBER, ringHasher.decode(keyed));
+        assertTrue(ringHasher.isCurrentFormat(reencrypted));
+        assertEquals(CARD_NUMBER, ringHasher.decode(reencrypted));
+        assertThrows(RuntimeException.class, () -> hasher.decode(keyed));
+        ringHasher.close();
+    }
+
+    @Test
+    void keyRing_WithInvalidKeyIds_ShouldThrow() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> new InMemoryKeyEncryptionKeyStore(Map.of(0, KEY), 3));
+        assertThrows(IllegalArgumentException.class, () -> new CommonsCodecHasher(KEY, Map.of(0, "x"),
+                new InMemoryKeyEncryptionKeyStore(Map.of(0, KEY), 0), INDEX_KEY, 1));
+    }
+
+    @Test
+    void decode_ShouldCacheUnwrappedDataKeysAndPublishMetrics() {
+        // Arrange
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        CommonsCodecHasher reader = new CommonsCodecHasher(KEY, INDEX_KEY, 1);
+        reader.bindTo(registry);
+        byte[] encrypted = hasher.encode(CARD_NUMBER);
+
+        // Act
+        reader.decode(encrypted);
+        reader.decode(encrypted);
+        reader.decode(encrypted);
+
+        // Assert
+        assertEquals(1, registry.get("card.data-key.unwrap").timer().count());
+        assertEquals(2.0 / 3, registry.get("card.data-keys.hit.ratio").gauge().value(), 1e-9);
+        reader.close();
+    }
+
+    @Test
+    void index_ShouldBeDeterministicAndKeyed() {
+        // Arrange
+        CommonsCodecHasher otherKeyHasher = new CommonsCodecHasher(KEY, "anotherindexkeyforcardnumbershm!".getBytes(StandardCharsets.UTF_8), 1);
+
+        // Act
+        String index = hasher.index(CARD_NUMBER);
+
+        // Assert
+        assertEquals(64, index.length());
+        assertEquals(index, hasher.index(CARD_NUMBER));
+        assertNotEquals(index, hasher.index("1234567890123457"));
+        assertNotEquals(index, otherKeyHasher.index(CARD_NUMBER));
+    }
+
+    @Test
+    void decode_WithCorruptedInput_ShouldThrowAndKeepWorking() {
+        // Act & Assert
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> hasher.decode(new byte[]{1, 0, 0, 0, 0, 0, 0}));
+        assertEquals("Decoding error", exception.getMessage());
+
+        assertEquals(CARD_NUMBER, hasher.decode(hasher.encode(CARD_NUMBER)));
+    }
+
+    @Test
+    void decodeAll_WithSmallAndLargeBatches_ShouldPreserveOrder() {
+        for (int size : new int[]{0, 10, 5_000}) {
+            // Arrange
+            List<String> cardNumbers = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                cardNumbers.add(String.format("%016d", i));
+            }
+
+            // Act
+            List<byte[]> encrypted = hasher.encodeAll(cardNumbers);
+            List<String> decrypted = hasher.decodeAll(encrypted);
+
+            // Assert
+            assertEquals(size, encrypted.size());
+            assertEquals(cardNumbers, decrypted);
+        }
+    }
+
+    @Test
+    void decodeAll_WithCorruptedElement_ShouldThrow() {
+        // Arrange
+        List<byte[]> encrypted = new ArrayList<>(hasher.encodeAll(Collections.nCopies(1_000, CARD_NUMBER)));
+        encrypted.set(700, CommonsCodecHasher.fromLegacy("AAAA"));
+
+        // Act & Assert
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> hasher.decodeAll(encrypted));
+        assertTrue(exception.getMessage().contains("Decoding error"));
+    }
+
+    @Test
+    void decode_FromPlatformAndVirtualThreads_ShouldRoundTrip() throws Exception {
+        // Arrange
+        byte[] encrypted = hasher.encode(CARD_NUMBER);
+        List<Future<String>> results = new ArrayList<>();
+
+        // Act
+        try (ExecutorService platform = Executors.newFixedThreadPool(4);
+             ExecutorService virtual = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 200; i++) {
+                ExecutorService executor = i % 2 == 0 ? platform : virtual;
+                results.add(executor.submit(() -> hasher.decode(encrypted)));
+            }
+
+            // Assert
+            for (Future<String> result : results) {
+                assertEquals(CARD_NUMBER, result.get());
+            }
+        }
+    }
+
+    private static byte[] header(byte[] encrypted) {
+        return Arrays.copyOfRange(encrypted, 0, 3 + WRAPPED_KEY_LENGTH);
+    }
+
+    private static byte[] body(byte[] encrypted) {
+        return Arrays.copyOfRange(encrypted, 3 + WRAPPED_KEY_LENGTH, encrypted.length);
+    }
+}
@@ -0,0 +1,74 @@
+package org.example.banksystem.security;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.InvalidKeyException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для файлового хранилища мастер-ключей FileKeyEncryptionKeyStore
+ */
+class FileKeyEncryptionKeyStoreTest {
+
+    private static final SecretKey DATA_KEY =
+            new SecretKeySpec("0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8), "AES");
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void constructor_WithMissingFileAndCreateAllowed_ShouldCreateReusableKey() throws Exception {
+        // Arrange
+        Path file = directory.resolve("keys/kek.properties");
+
+        // Act
+        FileKeyEncryptionKeyStore created = new FileKeyEncryptionKeyStore(file, true);
+        byte[] wrapped = created.wrap(created.activeKeyId(), DATA_KEY);
+        FileKeyEncryptionKeyStore reloaded = new FileKeyEncryptionKeyStore(file, false);
+
+        // Assert
+        assertTrue(Files.exists(file));
+        assertEquals(0, reloaded.activeKeyId());
+        assertEquals(40, wrapped.length);
+        assertArrayEquals(DATA_KEY.getEncoded(), reloaded.unwrap(0, wrapped).getEncoded());
+    }
+
+    @Test
+    void constructor_WithSeveralKeys_ShouldUseActiveKeyAndKeepOldOnes() throws Exception {
+        // Arrange
+        Path file = directory.resolve("kek.properties");
+        Files.writeString(file, """
+                active=2
+                key.1=MzJjaGFyYWN0ZXJzYXJlZWFzeXRvbWFrZWFuZHVzZSE=
+                key.2=YW5vdGhlcnRoaXJ0eXR3b2NoYXJhY3RlcmtleTEyMzQ=
+                """);
+
+        // Act
+        FileKeyEncryptionKeyStore store = new FileKeyEncryptionKeyStore(file, false);
+        byte[] wrappedByOld = store.wrap(1, DATA_KEY);
+
+        // Assert
+        assertEquals(2, store.activeKeyId());
+        assertArrayEquals(DATA_KEY.getEncoded(), store.unwrap(1, wrappedByOld).getEncoded());
+        assertThrows(Exception.class, () -> store.unwrap(2, wrappedByOld));
+        assertThrows(InvalidKeyException.class, () -> store.wrap(3, DATA_KEY));
+    }
+
+    @Test
+    void constructor_WithMissingFile_ShouldThrow() {
+        // Act & Assert
+        UncheckedIOException exception = assertThrows(UncheckedIOException.class,
+                () -> new FileKeyEncryptionKeyStore(directory.resolve("missing.properties"), false));
+
+        assertTrue(exception.getCause().getMessage().contains("codec.kek.create-if-missing"));
+        assertFalse(Files.exists(directory.resolve("missing.properties")));
+    }
+}
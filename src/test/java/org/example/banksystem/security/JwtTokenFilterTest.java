@@ -0,0 +1,198 @@
+package org.example.banksystem.security;
+
+import jakarta.servlet.http.Cookie;
+import org.example.banksystem.entity.Role;
+import org.example.banksystem.entity.User;
+import org.example.banksystem.service.AuthService;
+import org.example.banksystem.service.RefreshTokenService;
+import org.example.banksystem.service.TokenRevocationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.util.WebUtils;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тесты для JWT фильтра JwtTokenFilter
+ */
+@ExtendWith(MockitoExtension.class)
+class JwtTokenFilterTest {
+
+    private static final String TOKEN = "header.payload.signature";
+    private static final String USERNAME = "testuser";
+    private static final String TOKEN_ID = "6f1c2b9e-0d7a-4c55-9a43-2f1e8b7d3c10";
+
+    @Mock
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Mock
+    private AuthService authService;
+
+    @Mock
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    @Mock
+    private TokenRevocationService tokenRevocationService;
+
+    @InjectMocks
+    private JwtTokenFilter jwtTokenFilter;
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void doFilter_InStatelessMode_ShouldBuildUserFromClaimsWithoutLoadingIt() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(jwtTokenFilter, "stateless", true);
+        when(verifiedTokenCache.verify(TOKEN)).thenReturn(Optional.of(principal(2)));
+        when(tokenVersionRegistry.isCurrent(USERNAME, 2)).thenReturn(true);
+
+        // Act
+        Authentication result = filter();
+
+        // Assert
+        assertNotNull(result);
+        User user = assertInstanceOf(User.class, result.getPrincipal());
+        assertEquals(USERNAME, user.getUsername());
+        assertEquals(Role.ROLE_ADMIN, user.getRole());
+        assertNull(user.getPassword());
+        verifyNoInteractions(authService);
+    }
+
+    @Test
+    void doFilter_InStatelessModeWithStaleVersion_ShouldNotAuthenticate() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(jwtTokenFilter, "stateless", true);
+        when(verifiedTokenCache.verify(TOKEN)).thenReturn(Optional.of(principal(1)));
+        when(tokenVersionRegistry.isCurrent(USERNAME, 1)).thenReturn(false);
+
+        // Act & Assert
+        assertNull(filter());
+        verifyNoInteractions(authService);
+    }
+
+    @Test
+    void doFilter_InStatefulMode_ShouldLoadUserAndCheckVersion() throws Exception {
+        // Arrange
+        when(verifiedTokenCache.verify(TOKEN)).thenReturn(Optional.of(principal(2)));
+        when(tokenVersionRegistry.isCurrent(USERNAME, 2)).thenReturn(true);
+        when(authService.loadUserByUsername(USERNAME)).thenReturn(new User(USERNAME, "password", Role.ROLE_ADMIN, 2));
+
+        // Act
+        Authentication result = filter();
+
+        // Assert
+        assertNotNull(result);
+        assertEquals(USERNAME, ((User) result.getPrincipal()).getUsername());
+    }
+
+    @Test
+    void doFilter_InStatefulModeWithStaleVersion_ShouldNotAuthenticate() throws Exception {
+        // Arrange
+        when(verifiedTokenCache.verify(TOKEN)).thenReturn(Optional.of(principal(1)));
+        when(tokenVersionRegistry.isCurrent(USERNAME, 1)).thenReturn(true);
+        when(authService.loadUserByUsername(USERNAME)).thenReturn(new User(USERNAME, "password", Role.ROLE_USER, 2));
+
+        // Act & Assert
+        assertNull(filter());
+    }
+
+    @Test
+    void doFilter_InStatefulModeWithVersionRevokedOnAnotherNode_ShouldNotUseCachedUser() throws Exception {
+        // Arrange
+        // Кеш учетных данных еще хранит прежнюю роль и версию, реестр версий уже видит новую
+        when(verifiedTokenCache.verify(TOKEN)).thenReturn(Optional.of(principal(2)));
+        when(tokenVersionRegistry.isCurrent(USERNAME, 2)).thenReturn(false);
+
+        // Act & Assert
+        assertNull(filter());
+        verifyNoInteractions(authService);
+    }
+
+    @Test
+    void doFilter_WithRevokedToken_ShouldNotAuthenticate() throws Exception {
+        // Arrange
+        when(verifiedTokenCache.verify(TOKEN)).thenReturn(Optional.of(principal(2)));
+        when(tokenRevocationService.isRevoked(TOKEN_ID)).thenReturn(true);
+
+        // Act & Assert
+        assertNull(filter());
+        verifyNoInteractions(authService, tokenVersionRegistry);
+    }
+
+    @Test
+    void doFilter_WithInvalidToken_ShouldNotAuthenticate() throws Exception {
+        // Arrange
+        when(verifiedTokenCache.verify(TOKEN)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertNull(filter());
+        verifyNoInteractions(authService, tokenVersionRegistry, tokenRevocationService);
+    }
+
+    @Test
+    void doFilter_AfterLogout_ShouldRejectTokenFromLoginCookie() throws Exception {
+        // Arrange
+        JwtTokenProvider jwtTokenProvider = mock(JwtTokenProvider.class);
+        AuthService logoutService = new AuthService(null, null, jwtTokenProvider, null, null,
+                tokenRevocationService, mock(RefreshTokenService.class));
+        Set<String> revoked = new HashSet<>();
+        doAnswer(invocation -> revoked.add(invocation.getArgument(0)))
+                .when(tokenRevocationService).revoke(anyString(), anyString(), any());
+        when(tokenRevocationService.isRevoked(anyString())).thenAnswer(invocation -> revoked.contains(invocation.getArgument(0)));
+        when(jwtTokenProvider.verify(TOKEN)).thenReturn(Optional.of(principal(2)));
+        when(verifiedTokenCache.verify(TOKEN)).thenReturn(Optional.of(principal(2)));
+        when(tokenVersionRegistry.isCurrent(USERNAME, 2)).thenReturn(true);
+        when(authService.loadUserByUsername(USERNAME)).thenReturn(new User(USERNAME, "password", Role.ROLE_ADMIN, 2));
+        MockHttpServletRequest request = request();
+        assertNotNull(filter(request));
+        SecurityContextHolder.clearContext();
+
+        // Act
+        logoutService.logout(WebUtils.getCookie(request, AuthService.ACCESS_COOKIE).getValue(), null);
+
+        // Assert
+        assertEquals(Set.of(TOKEN_ID), revoked);
+        assertNull(filter(request()));
+    }
+
+    private Authentication filter() throws Exception {
+        return filter(request());
+    }
+
+    private Authentication filter(MockHttpServletRequest request) throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        jwtTokenFilter.doFilter(request, new MockHttpServletResponse(), chain);
+        assertNotNull(chain.getRequest());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(AuthService.ACCESS_COOKIE, TOKEN));
+        return request;
+    }
+
+    private static JwtPrincipal principal(int version) {
+        return new JwtPrincipal(TOKEN_ID, USERNAME, Set.of("ROLE_ADMIN"), version, Instant.now().plusSeconds(60));
+    }
+}
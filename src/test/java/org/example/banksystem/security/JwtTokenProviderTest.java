@@ -0,0 +1,105 @@
+package org.example.banksystem.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для сервиса JWT токенов JwtTokenProvider
+ */
+class JwtTokenProviderTest {
+
+    private static final String KEY = "cookieencodedwithbase32algorithmabracadabraineedmorecharactersinthiskey";
+    private static final String OTHER_KEY = "anotherkeyencodedwithbase64thatislongenoughforhmacsha256signing";
+    private static final String USERNAME = "testuser";
+
+    private JwtTokenProvider jwtTokenProvider;
+
+    @BeforeEach
+    void setUp() {
+        jwtTokenProvider = newProvider(KEY, 3_600_000);
+    }
+
+    @Test
+    void verify_WithValidToken_ShouldReturnPrincipal() {
+        // Arrange
+        Instant before = Instant.now();
+        String token = jwtTokenProvider.createToken(USERNAME,
+                List.of(new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("ROLE_ADMIN")), 3);
+
+        // Act
+        Optional<JwtPrincipal> result = jwtTokenProvider.verify(token);
+
+        // Assert
+        assertTrue(result.isPresent());
+        assertEquals(USERNAME, result.get().username());
+        assertEquals(Set.of("ROLE_USER", "ROLE_ADMIN"), result.get().roles());
+        assertEquals(3, result.get().version());
+        assertNotNull(result.get().tokenId());
+        assertNotEquals(result.get().tokenId(), jwtTokenProvider.verify(jwtTokenProvider.createToken(USERNAME, List.of(), 3))
+                .orElseThrow().tokenId());
+        assertFalse(result.get().expiresAt().isBefore(before.plusSeconds(3_599)));
+        assertTrue(jwtTokenProvider.validateToken(token));
+        assertEquals(USERNAME, jwtTokenProvider.getUsernameFromToken(token));
+    }
+
+    @Test
+    void verify_WithForeignSignature_ShouldReturnEmpty() {
+        // Arrange
+        String token = newProvider(OTHER_KEY, 3_600_000).createToken(USERNAME, List.of(), 0);
+
+        // Act & Assert
+        assertTrue(jwtTokenProvider.verify(token).isEmpty());
+        assertFalse(jwtTokenProvider.validateToken(token));
+    }
+
+    @Test
+    void verify_WithExpiredOrMalformedToken_ShouldReturnEmpty() {
+        // Arrange
+        String expired = newProvider(KEY, -1_000).createToken(USERNAME, List.of(), 0);
+
+        // Act & Assert
+        assertTrue(jwtTokenProvider.verify(expired).isEmpty());
+        assertTrue(jwtTokenProvider.verify("not.a.token").isEmpty());
+        assertTrue(jwtTokenProvider.verify("").isEmpty());
+    }
+
+    @Test
+    void verify_WithoutRolesAndVersionClaims_ShouldUseDefaults() {
+        // Arrange
+        String token = Jwts.builder()
+                .subject(USERNAME)
+                .expiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(KEY)))
+                .compact();
+
+        // Act
+        Optional<JwtPrincipal> result = jwtTokenProvider.verify(token);
+
+        // Assert
+        assertTrue(result.isPresent());
+        assertEquals(Set.of(), result.get().roles());
+        assertEquals(0, result.get().version());
+        assertNull(result.get().tokenId());
+    }
+
+    private static JwtTokenProvider newProvider(String key, long expiration) {
+        JwtTokenProvider provider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(provider, "key", key);
+        ReflectionTestUtils.setField(provider, "expiration", expiration);
+        provider.init();
+        return provider;
+    }
+}
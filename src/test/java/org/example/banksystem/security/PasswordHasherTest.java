@@ -0,0 +1,202 @@
+package org.example.banksystem.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.banksystem.exceptions.auth.PasswordHasherBusyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты для пула хеширования паролей PasswordHasher
+ */
+class PasswordHasherTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private PasswordHasher passwordHasher;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        passwordHasher.shutdown();
+    }
+
+    @Test
+    void encodeAndMatches_ShouldDelegateToBCrypt() {
+        // Arrange
+        passwordHasher = new PasswordHasher(new BCryptPasswordEncoder(4), 1, 4, Duration.ofSeconds(5), Duration.ofSeconds(1));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        passwordHasher.bindTo(registry);
+
+        // Act
+        String hash = passwordHasher.encode("password123");
+
+        // Assert
+        assertTrue(hash.startsWith("$2a$04$"));
+        assertTrue(passwordHasher.matches("password123", hash));
+        assertFalse(passwordHasher.matches("wrong", hash));
+        assertEquals(1, registry.get("auth.password-hasher.duration").tag("operation", "encode").timer().count());
+        assertEquals(2, registry.get("auth.password-hasher.duration").tag("operation", "matches").timer().count());
+    }
+
+    @Test
+    void encode_WhenQueueIsFull_ShouldRejectImmediately() throws Exception {
+        // Arrange
+        passwordHasher = new PasswordHasher(blockingEncoder(), 1, 1, Duration.ofSeconds(30), Duration.ofSeconds(2));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        passwordHasher.bindTo(registry);
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> passwordHasher.encode("first"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> passwordHasher.encode("second"));
+        awaitQueueSize(registry, 1);
+
+        // Act & Assert
+        PasswordHasherBusyException exception = assertThrows(PasswordHasherBusyException.class,
+                () -> passwordHasher.encode("third"));
+
+        assertEquals(Duration.ofSeconds(2), exception.getRetryAfter());
+        assertEquals(1, registry.get("auth.password-hasher.rejected").counter().count());
+        release.countDown();
+        assertEquals("hash", running.get(5, TimeUnit.SECONDS));
+        assertEquals("hash", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void matches_WhenWaitTimesOut_ShouldReject() throws Exception {
+        // Arrange
+        passwordHasher = new PasswordHasher(blockingEncoder(), 1, 4, Duration.ofMillis(50), Duration.ofSeconds(1));
+        CompletableFuture.runAsync(() -> passwordHasher.encode("first"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Act & Assert
+        assertThrows(PasswordHasherBusyException.class, () -> passwordHasher.matches("password", "hash"));
+    }
+
+    @Test
+    void upgradeEncoding_ShouldDetectHashesWithLowerStrength() {
+        // Arrange
+        passwordHasher = new PasswordHasher(new BCryptPasswordEncoder(5), 1, 4, Duration.ofSeconds(5), Duration.ofSeconds(1));
+
+        // Act & Assert
+        assertTrue(passwordHasher.upgradeEncoding(new BCryptPasswordEncoder(4).encode("password123")));
+        assertFalse(passwordHasher.upgradeEncoding(new BCryptPasswordEncoder(5).encode("password123")));
+        assertFalse(passwordHasher.upgradeEncoding(new BCryptPasswordEncoder(6).encode("password123")));
+    }
+
+    @Test
+    void encodeInBackground_WhenIdle_ShouldEncodeWithCurrentStrength() throws Exception {
+        // Arrange
+        passwordHasher = new PasswordHasher(new BCryptPasswordEncoder(5), 1, 4, Duration.ofSeconds(5), Duration.ofSeconds(1));
+
+        // Act
+        String hash = passwordHasher.encodeInBackground("password123").get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertTrue(hash.startsWith("$2a$05$"));
+    }
+
+    @Test
+    void encodeInBackground_WhenRequestsAreQueued_ShouldSkip() throws Exception {
+        // Arrange
+        passwordHasher = new PasswordHasher(blockingEncoder(), 1, 4, Duration.ofSeconds(30), Duration.ofSeconds(1));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        passwordHasher.bindTo(registry);
+        CompletableFuture.runAsync(() -> passwordHasher.encode("first"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture.runAsync(() -> passwordHasher.encode("second"));
+        awaitQueueSize(registry, 1);
+
+        // Act
+        CompletableFuture<String> result = passwordHasher.encodeInBackground("password123");
+
+        // Assert
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(0, registry.get("auth.password-hasher.rejected").counter().count());
+    }
+
+    @Test
+    void encodeAll_ShouldReturnHashesInOrder() {
+        // Arrange
+        passwordHasher = new PasswordHasher(new BCryptPasswordEncoder(4), 2, 4, Duration.ofSeconds(5), Duration.ofSeconds(1));
+        List<String> passwords = List.of("alpha", "bravo", "charlie", "delta", "echo");
+
+        // Act
+        List<String> hashes = passwordHasher.encodeAll(passwords);
+
+        // Assert
+        assertEquals(passwords.size(), hashes.size());
+        for (int i = 0; i < passwords.size(); i++) {
+            assertTrue(passwordHasher.matches(passwords.get(i), hashes.get(i)));
+        }
+    }
+
+    @Test
+    void encodeAll_WhenQueueIsFull_ShouldHashInCallerThread() throws Exception {
+        // Arrange
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(4) {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                if (!rawPassword.toString().startsWith("blocked")) {
+                    return Thread.currentThread().getName();
+                }
+                started.countDown();
+                while (true) {
+                    try {
+                        release.await();
+                        return "hash";
+                    } catch (InterruptedException e) {
+                        // поток хеширования остается занятым до конца теста
+                    }
+                }
+            }
+        };
+        passwordHasher = new PasswordHasher(encoder, 1, 1, Duration.ofSeconds(30), Duration.ofSeconds(1));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        passwordHasher.bindTo(registry);
+        CompletableFuture.runAsync(() -> passwordHasher.encode("blocked-first"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture.runAsync(() -> passwordHasher.encode("blocked-second"));
+        awaitQueueSize(registry, 1);
+
+        // Act
+        List<String> hashes = passwordHasher.encodeAll(List.of("password123"));
+
+        // Assert
+        assertEquals(List.of(Thread.currentThread().getName()), hashes);
+        assertEquals(0, registry.get("auth.password-hasher.rejected").counter().count());
+    }
+
+    private BCryptPasswordEncoder blockingEncoder() {
+        return new BCryptPasswordEncoder(4) {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                while (true) {
+                    try {
+                        release.await();
+                        return "hash";
+                    } catch (InterruptedException e) {
+                        // поток хеширования остается занятым, даже если ожидающий запрос отменил задачу
+                    }
+                }
+            }
+        };
+    }
+
+    private static void awaitQueueSize(SimpleMeterRegistry registry, int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (registry.get("auth.password-hasher.queue.size").gauge().value() < size) {
+            assertTrue(System.nanoTime() < deadline, "queue did not fill up");
+            Thread.sleep(5);
+        }
+    }
+}
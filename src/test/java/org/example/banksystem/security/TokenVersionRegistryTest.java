@@ -0,0 +1,91 @@
+package org.example.banksystem.security;
+
+import org.example.banksystem.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тесты для реестра версий токенов TokenVersionRegistry
+ */
+@ExtendWith(MockitoExtension.class)
+class TokenVersionRegistryTest {
+
+    private static final String USERNAME = "testuser";
+
+    @Mock
+    private UserRepository userRepository;
+
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    @BeforeEach
+    void setUp() {
+        tokenVersionRegistry = new TokenVersionRegistry(userRepository, 100, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void isCurrent_ShouldLoadVersionOnceAndCompare() {
+        // Arrange
+        when(userRepository.findTokenVersionByUsername(USERNAME)).thenReturn(Optional.of(2));
+
+        // Act & Assert
+        assertTrue(tokenVersionRegistry.isCurrent(USERNAME, 2));
+        assertFalse(tokenVersionRegistry.isCurrent(USERNAME, 1));
+        assertTrue(tokenVersionRegistry.isCurrent(USERNAME, 2));
+        verify(userRepository, times(1)).findTokenVersionByUsername(USERNAME);
+    }
+
+    @Test
+    void isCurrent_WhenUserDeleted_ShouldReturnFalse() {
+        // Arrange
+        when(userRepository.findTokenVersionByUsername(USERNAME)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertFalse(tokenVersionRegistry.isCurrent(USERNAME, 0));
+        assertFalse(tokenVersionRegistry.isCurrent(USERNAME, -1));
+    }
+
+    @Test
+    void invalidate_OutsideTransaction_ShouldReloadVersionImmediately() {
+        // Arrange
+        when(userRepository.findTokenVersionByUsername(USERNAME)).thenReturn(Optional.of(0), Optional.of(1));
+        tokenVersionRegistry.isCurrent(USERNAME, 0);
+
+        // Act
+        tokenVersionRegistry.invalidate(USERNAME);
+
+        // Assert
+        assertFalse(tokenVersionRegistry.isCurrent(USERNAME, 0));
+        assertTrue(tokenVersionRegistry.isCurrent(USERNAME, 1));
+    }
+
+    @Test
+    void invalidate_InsideTransaction_ShouldWaitForCommit() {
+        // Arrange
+        when(userRepository.findTokenVersionByUsername(USERNAME)).thenReturn(Optional.of(0), Optional.of(1));
+        tokenVersionRegistry.isCurrent(USERNAME, 0);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // Act
+            tokenVersionRegistry.invalidate(USERNAME);
+            boolean beforeCommit = tokenVersionRegistry.isCurrent(USERNAME, 0);
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+            // Assert
+            assertTrue(beforeCommit);
+            assertTrue(tokenVersionRegistry.isCurrent(USERNAME, 1));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+}
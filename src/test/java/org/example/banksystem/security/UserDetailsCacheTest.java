@@ -0,0 +1,115 @@
+package org.example.banksystem.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.banksystem.entity.Role;
+import org.example.banksystem.entity.User;
+import org.example.banksystem.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тесты для кеша учетных данных пользователей UserDetailsCache
+ */
+@ExtendWith(MockitoExtension.class)
+class UserDetailsCacheTest {
+
+    private static final String USERNAME = "testuser";
+
+    @Mock
+    private UserRepository userRepository;
+
+    private UserDetailsCache userDetailsCache;
+
+    @BeforeEach
+    void setUp() {
+        userDetailsCache = new UserDetailsCache(userRepository, 100, Duration.ofMinutes(5));
+    }
+
+    @Test
+    void get_RepeatedCalls_ShouldLoadOnceAndPublishMetrics() {
+        // Arrange
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        userDetailsCache.bindTo(registry);
+        when(userRepository.findById(USERNAME)).thenReturn(Optional.of(new User(USERNAME, "hash", Role.ROLE_USER, 3)));
+
+        // Act
+        User first = userDetailsCache.get(USERNAME).orElseThrow();
+        User second = userDetailsCache.get(USERNAME).orElseThrow();
+
+        // Assert
+        assertEquals(USERNAME, second.getUsername());
+        assertEquals("hash", second.getPassword());
+        assertEquals(Role.ROLE_USER, second.getRole());
+        assertEquals(3, second.getTokenVersion());
+        assertNotSame(first, second);
+        verify(userRepository, times(1)).findById(USERNAME);
+        assertEquals(0.5, registry.get("auth.users.hit.ratio").gauge().value(), 1e-9);
+        assertEquals(1, registry.get("cache.load").tag("cache", "auth.users").tag("result", "success")
+                .functionCounter().count());
+        assertNotNull(registry.find("cache.evictions").tag("cache", "auth.users").functionCounter());
+    }
+
+    @Test
+    void get_WhenCallerMutatesUser_ShouldNotAffectCache() {
+        // Arrange
+        when(userRepository.findById(USERNAME)).thenReturn(Optional.of(new User(USERNAME, "hash", Role.ROLE_USER)));
+
+        // Act
+        userDetailsCache.get(USERNAME).orElseThrow().setRole(Role.ROLE_ADMIN);
+
+        // Assert
+        assertEquals(Role.ROLE_USER, userDetailsCache.get(USERNAME).orElseThrow().getRole());
+    }
+
+    @Test
+    void get_WhenUserNotFound_ShouldCacheAbsenceUntilInvalidated() {
+        // Arrange
+        when(userRepository.findById(USERNAME))
+                .thenReturn(Optional.empty(), Optional.of(new User(USERNAME, "hash", Role.ROLE_USER)));
+
+        // Act
+        Optional<User> missing = userDetailsCache.get(USERNAME);
+        Optional<User> stillMissing = userDetailsCache.get(USERNAME);
+        userDetailsCache.invalidate(USERNAME);
+        Optional<User> registered = userDetailsCache.get(USERNAME);
+
+        // Assert
+        assertTrue(missing.isEmpty());
+        assertTrue(stillMissing.isEmpty());
+        assertTrue(registered.isPresent());
+        verify(userRepository, times(2)).findById(USERNAME);
+    }
+
+    @Test
+    void invalidate_InsideTransaction_ShouldWaitForCommit() {
+        // Arrange
+        when(userRepository.findById(USERNAME)).thenReturn(
+                Optional.of(new User(USERNAME, "hash", Role.ROLE_USER)),
+                Optional.of(new User(USERNAME, "hash", Role.ROLE_ADMIN, 1)));
+        userDetailsCache.get(USERNAME);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // Act
+            userDetailsCache.invalidate(USERNAME);
+            Role beforeCommit = userDetailsCache.get(USERNAME).orElseThrow().getRole();
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+            // Assert
+            assertEquals(Role.ROLE_USER, beforeCommit);
+            assertEquals(Role.ROLE_ADMIN, userDetailsCache.get(USERNAME).orElseThrow().getRole());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.example.banksystem.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тесты для кеша проверенных токенов VerifiedTokenCache
+ */
+@ExtendWith(MockitoExtension.class)
+class VerifiedTokenCacheTest {
+
+    private static final String TOKEN = "header.payload.signature";
+
+    @Mock
+    private JwtTokenProvider jwtTokenProvider;
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final JwtPrincipal principal = new JwtPrincipal("id-1", "testuser", Set.of("ROLE_USER"), 0, Instant.now().plusSeconds(60));
+
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @BeforeEach
+    void setUp() {
+        verifiedTokenCache = new VerifiedTokenCache(jwtTokenProvider, 100, nanos::get);
+    }
+
+    @Test
+    void verify_RepeatedToken_ShouldVerifySignatureOnceAndPublishMetrics() {
+        // Arrange
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        verifiedTokenCache.bindTo(registry);
+        when(jwtTokenProvider.verify(TOKEN)).thenReturn(Optional.of(principal));
+
+        // Act
+        Optional<JwtPrincipal> first = verifiedTokenCache.verify(TOKEN);
+        Optional<JwtPrincipal> second = verifiedTokenCache.verify(TOKEN);
+        Optional<JwtPrincipal> third = verifiedTokenCache.verify(TOKEN);
+
+        // Assert
+        assertEquals(Optional.of(principal), first);
+        assertSame(first.get(), second.get());
+        assertSame(first.get(), third.get());
+        verify(jwtTokenProvider, times(1)).verify(TOKEN);
+        assertEquals(2, registry.get("cache.gets").tag("cache", "jwt.verified-tokens").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1, registry.get("cache.gets").tag("cache", "jwt.verified-tokens").tag("result", "miss")
+                .functionCounter().count());
+        assertEquals(2.0 / 3, registry.get("jwt.verified-tokens.hit.ratio").gauge().value(), 1e-9);
+    }
+
+    @Test
+    void verify_WithInvalidToken_ShouldNotCacheResult() {
+        // Arrange
+        when(jwtTokenProvider.verify(TOKEN)).thenReturn(Optional.empty());
+
+        // Act
+        Optional<JwtPrincipal> first = verifiedTokenCache.verify(TOKEN);
+        Optional<JwtPrincipal> second = verifiedTokenCache.verify(TOKEN);
+
+        // Assert
+        assertTrue(first.isEmpty());
+        assertTrue(second.isEmpty());
+        verify(jwtTokenProvider, times(2)).verify(TOKEN);
+    }
+
+    @Test
+    void verify_AfterTokenExpiry_ShouldVerifyAgain() {
+        // Arrange
+        when(jwtTokenProvider.verify(TOKEN)).thenReturn(Optional.of(principal), Optional.empty());
+        verifiedTokenCache.verify(TOKEN);
+
+        // Act
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        Optional<JwtPrincipal> beforeExpiry = verifiedTokenCache.verify(TOKEN);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        Optional<JwtPrincipal> afterExpiry = verifiedTokenCache.verify(TOKEN);
+
+        // Assert
+        assertTrue(beforeExpiry.isPresent());
+        assertTrue(afterExpiry.isEmpty());
+        verify(jwtTokenProvider, times(2)).verify(TOKEN);
+    }
+
+    @Test
+    void verify_DifferentTokens_ShouldBeCachedSeparately() {
+        // Arrange
+        JwtPrincipal admin = new JwtPrincipal("id-2", "admin", Set.of("ROLE_ADMIN"), 0, Instant.now().plusSeconds(60));
+        when(jwtTokenProvider.verify(TOKEN)).thenReturn(Optional.of(principal));
+        when(jwtTokenProvider.verify("other.token.signature")).thenReturn(Optional.of(admin));
+
+        // Act & Assert
+        assertEquals("testuser", verifiedTokenCache.verify(TOKEN).orElseThrow().username());
+        assertEquals("admin", verifiedTokenCache.verify("other.token.signature").orElseThrow().username());
+        assertEquals("testuser", verifiedTokenCache.verify(TOKEN).orElseThrow().username());
+    }
+
+    @Test
+    void verify_ConcurrentRequests_ShouldReturnSamePrincipal() throws Exception {
+        // Arrange
+        when(jwtTokenProvider.verify(TOKEN)).thenReturn(Optional.of(principal));
+        List<Future<Optional<JwtPrincipal>>> results = new ArrayList<>();
+
+        // Act
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 200; i++) {
+                results.add(executor.submit(() -> verifiedTokenCache.verify(TOKEN)));
+            }
+
+            // Assert
+            for (Future<Optional<JwtPrincipal>> result : results) {
+                assertSame(principal, result.get().orElseThrow());
+            }
+        }
+        verify(jwtTokenProvider, times(1)).verify(TOKEN);
+    }
+}
@@ -1,25 +1,38 @@
 package org.example.banksystem.service;
 
+import org.example.banksystem.dto.response.AuthCookies;
 import org.example.banksystem.entity.Role;
 import org.example.banksystem.entity.User;
+import org.example.banksystem.exceptions.auth.InvalidRefreshTokenException;
 import org.example.banksystem.exceptions.users.UserNotFoundException;
 import org.example.banksystem.exceptions.users.UserWrongCredentialsException;
 import org.example.banksystem.repository.UserRepository;
+import org.example.banksystem.security.JwtPrincipal;
 import org.example.banksystem.security.JwtTokenProvider;
+import org.example.banksystem.security.PasswordHasher;
+import org.example.banksystem.security.TokenVersionRegistry;
+import org.example.banksystem.security.UserDetailsCache;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.ResponseCookie;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -33,11 +46,23 @@ class AuthServiceTest {
     private UserRepository userRepository;
 
     @Mock
-    private BCryptPasswordEncoder passwordEncoder;
+    private PasswordHasher passwordHasher;
 
     @Mock
     private JwtTokenProvider jwtTokenProvider;
 
+    @Mock
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
+    @Mock
+    private TokenRevocationService tokenRevocationService;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
     @InjectMocks
     private AuthService authService;
 
@@ -46,6 +71,8 @@ class AuthServiceTest {
     private final String PASSWORD = "password123";
     private final String ENCODED_PASSWORD = "encodedPassword123";
     private final String JWT_TOKEN = "jwt.token.here";
+    private final String REFRESH_TOKEN = "refresh-token";
+    private final String NEXT_REFRESH_TOKEN = "next-refresh-token";
 
     @BeforeEach
     void setUp() {
@@ -55,7 +82,7 @@ class AuthServiceTest {
     @Test
     void loadUserByUsername_WhenUserExists_ShouldReturnUserDetails() {
         // Arrange
-        when(userRepository.findByUsername(USERNAME)).thenReturn(Optional.of(testUser));
+        when(userDetailsCache.get(USERNAME)).thenReturn(Optional.of(testUser));
 
         // Act
         UserDetails result = authService.loadUserByUsername(USERNAME);
@@ -64,111 +91,264 @@ class AuthServiceTest {
         assertNotNull(result);
         assertEquals(USERNAME, result.getUsername());
         assertEquals(ENCODED_PASSWORD, result.getPassword());
-        verify(userRepository).findByUsername(USERNAME);
+        verify(userDetailsCache).get(USERNAME);
     }
 
     @Test
     void loadUserByUsername_WhenUserNotExists_ShouldReturnNull() {
         // Arrange
-        when(userRepository.findByUsername(USERNAME)).thenReturn(Optional.empty());
+        when(userDetailsCache.get(USERNAME)).thenReturn(Optional.empty());
 
         // Act
         UserDetails result = authService.loadUserByUsername(USERNAME);
 
         // Assert
         assertNull(result);
-        verify(userRepository).findByUsername(USERNAME);
+        verify(userDetailsCache).get(USERNAME);
     }
 
     @Test
-    void login_WithValidCredentials_ShouldReturnResponseCookie() {
+    void login_WithValidCredentials_ShouldReturnResponseCookies() {
         // Arrange
-        when(userRepository.findById(USERNAME)).thenReturn(Optional.of(testUser));
-        when(passwordEncoder.matches(PASSWORD, ENCODED_PASSWORD)).thenReturn(true);
-        when(jwtTokenProvider.createToken(USERNAME, testUser.getAuthorities())).thenReturn(JWT_TOKEN);
+        when(userDetailsCache.get(USERNAME)).thenReturn(Optional.of(testUser));
+        when(passwordHasher.matches(PASSWORD, ENCODED_PASSWORD)).thenReturn(true);
+        when(jwtTokenProvider.createToken(USERNAME, testUser.getAuthorities(), 0)).thenReturn(JWT_TOKEN);
+        when(refreshTokenService.issue(USERNAME)).thenReturn(REFRESH_TOKEN);
+        when(refreshTokenService.getTtl()).thenReturn(Duration.ofDays(14));
 
         // Act
-        ResponseCookie result = authService.login(USERNAME, PASSWORD);
+        AuthCookies result = authService.login(USERNAME, PASSWORD);
 
         // Assert
         assertNotNull(result);
-        assertEquals("Authorization", result.getName());
-        assertEquals(JWT_TOKEN, result.getValue());
-        assertEquals("/", result.getPath());
-        assertFalse(result.isSecure());
-        assertEquals(3600, result.getMaxAge().getSeconds());
-        assertTrue(result.isHttpOnly());
-        assertEquals("Strict", result.getSameSite());
+        ResponseCookie accessToken = result.accessToken();
+        assertEquals("Authorization", accessToken.getName());
+        assertEquals(JWT_TOKEN, accessToken.getValue());
+        assertEquals("/", accessToken.getPath());
+        assertFalse(accessToken.isSecure());
+        assertEquals(3600, accessToken.getMaxAge().getSeconds());
+        assertTrue(accessToken.isHttpOnly());
+        assertEquals("Strict", accessToken.getSameSite());
+
+        ResponseCookie refreshToken = result.refreshToken();
+        assertEquals("RefreshToken", refreshToken.getName());
+        assertEquals(REFRESH_TOKEN, refreshToken.getValue());
+        assertEquals("/api/auth", refreshToken.getPath());
+        assertEquals(Duration.ofDays(14), refreshToken.getMaxAge());
+        assertTrue(refreshToken.isHttpOnly());
+        assertEquals("Strict", refreshToken.getSameSite());
+
+        verify(userDetailsCache).get(USERNAME);
+        verify(passwordHasher).matches(PASSWORD, ENCODED_PASSWORD);
+        verify(jwtTokenProvider).createToken(USERNAME, testUser.getAuthorities(), 0);
+        verify(passwordHasher, never()).encodeInBackground(anyString());
+    }
+
+    @Test
+    void login_WithOutdatedHashStrength_ShouldRehashInBackground() {
+        // Arrange
+        when(userDetailsCache.get(USERNAME)).thenReturn(Optional.of(testUser));
+        when(passwordHasher.matches(PASSWORD, ENCODED_PASSWORD)).thenReturn(true);
+        when(passwordHasher.upgradeEncoding(ENCODED_PASSWORD)).thenReturn(true);
+        when(passwordHasher.encodeInBackground(PASSWORD)).thenReturn(CompletableFuture.completedFuture("rehashedPassword"));
+        when(userRepository.updatePasswordIfUnchanged(USERNAME, ENCODED_PASSWORD, "rehashedPassword")).thenReturn(1);
+        when(refreshTokenService.getTtl()).thenReturn(Duration.ofDays(14));
+
+        // Act
+        authService.login(USERNAME, PASSWORD);
+
+        // Assert
+        verify(userRepository).updatePasswordIfUnchanged(USERNAME, ENCODED_PASSWORD, "rehashedPassword");
+        verify(userDetailsCache).invalidate(USERNAME);
+    }
+
+    @Test
+    void login_WhenRehashSkippedOrPasswordChanged_ShouldNotInvalidateCache() {
+        // Arrange
+        when(userDetailsCache.get(USERNAME)).thenReturn(Optional.of(testUser));
+        when(passwordHasher.matches(PASSWORD, ENCODED_PASSWORD)).thenReturn(true);
+        when(passwordHasher.upgradeEncoding(ENCODED_PASSWORD)).thenReturn(true);
+        when(passwordHasher.encodeInBackground(PASSWORD))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("busy")))
+                .thenReturn(CompletableFuture.completedFuture("rehashedPassword"));
+        when(userRepository.updatePasswordIfUnchanged(USERNAME, ENCODED_PASSWORD, "rehashedPassword")).thenReturn(0);
+        when(refreshTokenService.getTtl()).thenReturn(Duration.ofDays(14));
+
+        // Act
+        authService.login(USERNAME, PASSWORD);
+        authService.login(USERNAME, PASSWORD);
 
-        verify(userRepository).findById(USERNAME);
-        verify(passwordEncoder).matches(PASSWORD, ENCODED_PASSWORD);
-        verify(jwtTokenProvider).createToken(USERNAME, testUser.getAuthorities());
+        // Assert
+        verify(userRepository, times(1)).updatePasswordIfUnchanged(USERNAME, ENCODED_PASSWORD, "rehashedPassword");
+        verify(userDetailsCache, never()).invalidate(anyString());
     }
 
     @Test
     void login_WhenUserNotFound_ShouldThrowUserNotFoundException() {
         // Arrange
-        when(userRepository.findById(USERNAME)).thenReturn(Optional.empty());
+        when(userDetailsCache.get(USERNAME)).thenReturn(Optional.empty());
 
         // Act & Assert
         UserNotFoundException exception = assertThrows(UserNotFoundException.class,
                 () -> authService.login(USERNAME, PASSWORD));
 
         assertEquals("User not found", exception.getMessage());
-        verify(userRepository).findById(USERNAME);
-        verify(passwordEncoder, never()).matches(anyString(), anyString());
-        verify(jwtTokenProvider, never()).createToken(anyString(), any());
+        verify(userDetailsCache).get(USERNAME);
+        verify(passwordHasher, never()).matches(anyString(), anyString());
+        verify(jwtTokenProvider, never()).createToken(anyString(), any(), anyInt());
+        verifyNoInteractions(refreshTokenService);
     }
 
     @Test
     void login_WithWrongPassword_ShouldThrowUserWrongCredentialsException() {
         // Arrange
-        when(userRepository.findById(USERNAME)).thenReturn(Optional.of(testUser));
-        when(passwordEncoder.matches(PASSWORD, ENCODED_PASSWORD)).thenReturn(false);
+        when(userDetailsCache.get(USERNAME)).thenReturn(Optional.of(testUser));
+        when(passwordHasher.matches(PASSWORD, ENCODED_PASSWORD)).thenReturn(false);
 
         // Act & Assert
         UserWrongCredentialsException exception = assertThrows(UserWrongCredentialsException.class,
                 () -> authService.login(USERNAME, PASSWORD));
 
         assertEquals("Wrong password", exception.getMessage());
-        verify(userRepository).findById(USERNAME);
-        verify(passwordEncoder).matches(PASSWORD, ENCODED_PASSWORD);
-        verify(jwtTokenProvider, never()).createToken(anyString(), any());
+        verify(userDetailsCache).get(USERNAME);
+        verify(passwordHasher).matches(PASSWORD, ENCODED_PASSWORD);
+        verify(jwtTokenProvider, never()).createToken(anyString(), any(), anyInt());
+        verifyNoInteractions(refreshTokenService);
+    }
+
+    @Test
+    void refresh_WithValidToken_ShouldIssueNewTokensWithoutPasswordCheck() {
+        // Arrange
+        when(refreshTokenService.rotate(REFRESH_TOKEN))
+                .thenReturn(new RefreshTokenService.Rotation(USERNAME, NEXT_REFRESH_TOKEN));
+        when(refreshTokenService.getTtl()).thenReturn(Duration.ofDays(14));
+        when(userDetailsCache.get(USERNAME)).thenReturn(Optional.of(testUser));
+        when(jwtTokenProvider.createToken(USERNAME, testUser.getAuthorities(), 0)).thenReturn(JWT_TOKEN);
+
+        // Act
+        AuthCookies result = authService.refresh(REFRESH_TOKEN);
+
+        // Assert
+        assertEquals(JWT_TOKEN, result.accessToken().getValue());
+        assertEquals(NEXT_REFRESH_TOKEN, result.refreshToken().getValue());
+        verifyNoInteractions(passwordHasher);
+    }
+
+    @Test
+    void refresh_WithMissingToken_ShouldThrowInvalidRefreshTokenException() {
+        // Act & Assert
+        assertThrows(InvalidRefreshTokenException.class, () -> authService.refresh(null));
+        assertThrows(InvalidRefreshTokenException.class, () -> authService.refresh(""));
+        verifyNoInteractions(refreshTokenService);
+    }
+
+    @Test
+    void refresh_WhenRotationFails_ShouldPropagateException() {
+        // Arrange
+        when(refreshTokenService.rotate(REFRESH_TOKEN))
+                .thenThrow(new InvalidRefreshTokenException("Refresh token reuse detected"));
+
+        // Act & Assert
+        InvalidRefreshTokenException exception = assertThrows(InvalidRefreshTokenException.class,
+                () -> authService.refresh(REFRESH_TOKEN));
+
+        assertEquals("Refresh token reuse detected", exception.getMessage());
+        verify(jwtTokenProvider, never()).createToken(anyString(), any(), anyInt());
+    }
+
+    @Test
+    void refresh_WhenUserDeleted_ShouldThrowInvalidRefreshTokenException() {
+        // Arrange
+        when(refreshTokenService.rotate(REFRESH_TOKEN))
+                .thenReturn(new RefreshTokenService.Rotation(USERNAME, NEXT_REFRESH_TOKEN));
+        when(userDetailsCache.get(USERNAME)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(InvalidRefreshTokenException.class, () -> authService.refresh(REFRESH_TOKEN));
+        verify(jwtTokenProvider, never()).createToken(anyString(), any(), anyInt());
+    }
+
+    @Test
+    void logout_WithValidTokens_ShouldRevokeTokensAndExpireCookies() {
+        // Arrange
+        Instant expiresAt = Instant.now().plusSeconds(600);
+        when(jwtTokenProvider.verify(JWT_TOKEN))
+                .thenReturn(Optional.of(new JwtPrincipal("token-id", USERNAME, Set.of("ROLE_USER"), 0, expiresAt)));
+
+        // Act
+        AuthCookies result = authService.logout(JWT_TOKEN, REFRESH_TOKEN);
+
+        // Assert
+        assertEquals("Authorization", result.accessToken().getName());
+        assertEquals("", result.accessToken().getValue());
+        assertEquals(0, result.accessToken().getMaxAge().getSeconds());
+        assertEquals("RefreshToken", result.refreshToken().getName());
+        assertEquals("/api/auth", result.refreshToken().getPath());
+        assertEquals(0, result.refreshToken().getMaxAge().getSeconds());
+        verify(tokenRevocationService).revoke("token-id", USERNAME, expiresAt);
+        verify(refreshTokenService).revokeFamily(REFRESH_TOKEN);
+    }
+
+    @Test
+    void logout_WithInvalidOrMissingToken_ShouldOnlyExpireCookies() {
+        // Arrange
+        when(jwtTokenProvider.verify(JWT_TOKEN)).thenReturn(Optional.empty());
+
+        // Act
+        AuthCookies withInvalidToken = authService.logout(JWT_TOKEN, null);
+        AuthCookies withoutToken = authService.logout(null, null);
+
+        // Assert
+        assertEquals(0, withInvalidToken.accessToken().getMaxAge().getSeconds());
+        assertEquals(0, withoutToken.accessToken().getMaxAge().getSeconds());
+        assertEquals(0, withoutToken.refreshToken().getMaxAge().getSeconds());
+        verifyNoInteractions(tokenRevocationService);
+        verifyNoInteractions(refreshTokenService);
     }
 
     @Test
     void registerUser_WithNewUser_ShouldSaveUser() {
         // Arrange
-        when(userRepository.findByUsername(USERNAME)).thenReturn(Optional.empty());
-        when(passwordEncoder.encode(PASSWORD)).thenReturn(ENCODED_PASSWORD);
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        when(passwordHasher.encode(PASSWORD)).thenReturn(ENCODED_PASSWORD);
 
         // Act
         authService.registerUser(USERNAME, PASSWORD);
 
         // Assert
-        verify(userRepository).findByUsername(USERNAME);
-        verify(passwordEncoder).encode(PASSWORD);
-        verify(userRepository).save(argThat(user ->
+        verify(passwordHasher).encode(PASSWORD);
+        verify(userRepository).persist(argThat(user ->
                 user.getUsername().equals(USERNAME) &&
                         user.getPassword().equals(ENCODED_PASSWORD) &&
                         user.getRole() == Role.ROLE_USER
         ));
+        verify(tokenVersionRegistry).invalidate(USERNAME);
+        verify(userDetailsCache).invalidate(USERNAME);
     }
 
     @Test
     void registerUser_WhenUserAlreadyExists_ShouldThrowUserWrongCredentialsException() {
         // Arrange
-        when(userRepository.findByUsername(USERNAME)).thenReturn(Optional.of(testUser));
+        when(passwordHasher.encode(PASSWORD)).thenReturn(ENCODED_PASSWORD);
+        when(userRepository.persist(any(User.class))).thenThrow(constraintViolation("users_pkey"));
 
         // Act & Assert
         UserWrongCredentialsException exception = assertThrows(UserWrongCredentialsException.class,
                 () -> authService.registerUser(USERNAME, PASSWORD));
 
         assertEquals("User already exists", exception.getMessage());
-        verify(userRepository).findByUsername(USERNAME);
-        verify(passwordEncoder, never()).encode(anyString());
-        verify(userRepository, never()).save(any(User.class));
+        verify(userRepository, never()).findByUsername(anyString());
+        verify(tokenVersionRegistry, never()).invalidate(anyString());
+        verify(userDetailsCache, never()).invalidate(anyString());
+    }
+
+    @Test
+    void registerUser_WhenOtherConstraintViolated_ShouldPropagateException() {
+        // Arrange
+        when(passwordHasher.encode(PASSWORD)).thenReturn(ENCODED_PASSWORD);
+        when(userRepository.persist(any(User.class))).thenThrow(constraintViolation("some_other_constraint"));
+
+        // Act & Assert
+        assertThrows(DataIntegrityViolationException.class, () -> authService.registerUser(USERNAME, PASSWORD));
     }
 
     @Test
@@ -177,16 +357,14 @@ class AuthServiceTest {
         String rawPassword = "rawPassword";
         String encodedPassword = "encodedPassword";
 
-        when(userRepository.findByUsername(USERNAME)).thenReturn(Optional.empty());
-        when(passwordEncoder.encode(rawPassword)).thenReturn(encodedPassword);
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        when(passwordHasher.encode(rawPassword)).thenReturn(encodedPassword);
 
         // Act
         authService.registerUser(USERNAME, rawPassword);
 
         // Assert
-        verify(passwordEncoder).encode(rawPassword);
-        verify(userRepository).save(argThat(user ->
+        verify(passwordHasher).encode(rawPassword);
+        verify(userRepository).persist(argThat(user ->
                 user.getPassword().equals(encodedPassword)
         ));
     }
@@ -194,30 +372,35 @@ class AuthServiceTest {
     @Test
     void login_ShouldUseCorrectAuthoritiesForTokenCreation() {
         // Arrange
-        when(userRepository.findById(USERNAME)).thenReturn(Optional.of(testUser));
-        when(passwordEncoder.matches(PASSWORD, ENCODED_PASSWORD)).thenReturn(true);
-        when(jwtTokenProvider.createToken(USERNAME, testUser.getAuthorities())).thenReturn(JWT_TOKEN);
+        when(userDetailsCache.get(USERNAME)).thenReturn(Optional.of(testUser));
+        when(passwordHasher.matches(PASSWORD, ENCODED_PASSWORD)).thenReturn(true);
+        when(jwtTokenProvider.createToken(USERNAME, testUser.getAuthorities(), 0)).thenReturn(JWT_TOKEN);
+        when(refreshTokenService.issue(USERNAME)).thenReturn(REFRESH_TOKEN);
+        when(refreshTokenService.getTtl()).thenReturn(Duration.ofDays(14));
 
         // Act
         authService.login(USERNAME, PASSWORD);
 
         // Assert
-        verify(jwtTokenProvider).createToken(USERNAME, testUser.getAuthorities());
+        verify(jwtTokenProvider).createToken(USERNAME, testUser.getAuthorities(), 0);
     }
 
     @Test
     void registerUser_ShouldSetDefaultRoleAsUser() {
         // Arrange
-        when(userRepository.findByUsername(USERNAME)).thenReturn(Optional.empty());
-        when(passwordEncoder.encode(PASSWORD)).thenReturn(ENCODED_PASSWORD);
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        when(passwordHasher.encode(PASSWORD)).thenReturn(ENCODED_PASSWORD);
 
         // Act
         authService.registerUser(USERNAME, PASSWORD);
 
         // Assert
-        verify(userRepository).save(argThat(user ->
+        verify(userRepository).persist(argThat(user ->
                 user.getRole() == Role.ROLE_USER
         ));
     }
-}
\ No newline at end of file
+
+    private static DataIntegrityViolationException constraintViolation(String constraintName) {
+        return new DataIntegrityViolationException("constraint violation",
+                new ConstraintViolationException("constraint violation", new SQLException("constraint violation"), constraintName));
+    }
+}
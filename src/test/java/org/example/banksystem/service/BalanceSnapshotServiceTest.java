@@ -0,0 +1,63 @@
+package org.example.banksystem.service;
+
+import org.example.banksystem.repository.CardRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тесты для сервиса снимков балансов BalanceSnapshotService
+ */
+@ExtendWith(MockitoExtension.class)
+class BalanceSnapshotServiceTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BalanceSnapshotService balanceSnapshotService;
+
+    @BeforeEach
+    void setUp() {
+        balanceSnapshotService = new BalanceSnapshotService(cardRepository, transactionManager);
+        ReflectionTestUtils.setField(balanceSnapshotService, "batchSize", 2);
+    }
+
+    @Test
+    void snapshot_ShouldWalkCardsInBatchesEachInOwnTransaction() {
+        // Arrange
+        when(cardRepository.snapshotBalances(anyInt(), eq(2))).thenReturn(4, 7, null);
+
+        // Act
+        int batches = balanceSnapshotService.snapshot();
+
+        // Assert
+        assertEquals(2, batches);
+        InOrder inOrder = inOrder(cardRepository);
+        inOrder.verify(cardRepository).snapshotBalances(0, 2);
+        inOrder.verify(cardRepository).snapshotBalances(4, 2);
+        inOrder.verify(cardRepository).snapshotBalances(7, 2);
+        verify(transactionManager, times(3)).commit(any());
+    }
+
+    @Test
+    void snapshot_WithoutCards_ShouldStopAfterFirstBatch() {
+        // Arrange
+        when(cardRepository.snapshotBalances(0, 2)).thenReturn(null);
+
+        // Act & Assert
+        assertEquals(0, balanceSnapshotService.snapshot());
+        verify(cardRepository, times(1)).snapshotBalances(anyInt(), anyInt());
+    }
+}
@@ -0,0 +1,129 @@
+package org.example.banksystem.service;
+
+import org.example.banksystem.dto.request.TransferRequest;
+import org.example.banksystem.dto.response.BatchTransferResult;
+import org.example.banksystem.exceptions.cards.CardWrongCredentials;
+import org.example.banksystem.repository.CardRepository;
+import org.example.banksystem.repository.CardTransferRepository.LockedCard;
+import org.example.banksystem.repository.CardTransferRepository.Transfer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тесты для сервиса пакетных переводов BatchTransferService
+ */
+@ExtendWith(MockitoExtension.class)
+class BatchTransferServiceTest {
+
+    private static final String USERNAME = "testuser";
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BatchTransferService batchTransferService;
+
+    @BeforeEach
+    void setUp() {
+        batchTransferService = new BatchTransferService(cardRepository, transactionManager);
+        ReflectionTestUtils.setField(batchTransferService, "maxSize", 3);
+    }
+
+    @Test
+    void transfer_WithValidBatch_ShouldLockCardsOnceAndApplyAllTransfers() {
+        // Arrange
+        when(cardRepository.lockOwnedCards(USERNAME, Set.of(1, 2, 3))).thenReturn(Map.of(
+                1, new LockedCard(1, true, new BigDecimal("100.00")),
+                2, new LockedCard(2, true, new BigDecimal("0.00")),
+                3, new LockedCard(3, true, new BigDecimal("0.00"))));
+        List<TransferRequest> transfers = List.of(
+                new TransferRequest(1, 2, 60.0),
+                new TransferRequest(2, 3, 60.0));
+
+        // Act
+        List<BatchTransferResult> results = batchTransferService.transfer(transfers, BatchTransferService.Mode.ALL_OR_NOTHING, USERNAME);
+
+        // Assert
+        assertEquals(List.of(
+                BatchTransferResult.completed(0, 1, 2),
+                BatchTransferResult.completed(1, 2, 3)), results);
+        verify(cardRepository, times(1)).lockOwnedCards(anyString(), anyCollection());
+        verify(cardRepository).applyTransfers(List.of(
+                new Transfer(1, 2, new BigDecimal("60.00")),
+                new Transfer(2, 3, new BigDecimal("60.00"))));
+    }
+
+    @Test
+    void transfer_AllOrNothingWithFailedItem_ShouldNotApplyAnything() {
+        // Arrange
+        when(cardRepository.lockOwnedCards(eq(USERNAME), anyCollection())).thenReturn(Map.of(
+                1, new LockedCard(1, true, new BigDecimal("100.00")),
+                2, new LockedCard(2, true, new BigDecimal("0.00"))));
+        List<TransferRequest> transfers = List.of(
+                new TransferRequest(1, 2, 60.0),
+                new TransferRequest(1, 2, 60.0));
+
+        // Act
+        List<BatchTransferResult> results = batchTransferService.transfer(transfers, BatchTransferService.Mode.ALL_OR_NOTHING, USERNAME);
+
+        // Assert
+        assertEquals(List.of(
+                BatchTransferResult.rolledBack(0, 1, 2),
+                BatchTransferResult.failed(1, 1, 2, "Insufficient funds")), results);
+        verify(cardRepository, never()).applyTransfers(any());
+    }
+
+    @Test
+    void transfer_BestEffort_ShouldApplyPassedItemsAndReportFailures() {
+        // Arrange
+        when(cardRepository.lockOwnedCards(eq(USERNAME), anyCollection())).thenReturn(Map.of(
+                1, new LockedCard(1, true, new BigDecimal("100.00")),
+                2, new LockedCard(2, true, new BigDecimal("0.00")),
+                3, new LockedCard(3, false, new BigDecimal("0.00"))));
+        List<TransferRequest> transfers = List.of(
+                new TransferRequest(1, 9, 10.0),
+                new TransferRequest(1, 3, 10.0),
+                new TransferRequest(1, 2, -1.0),
+                new TransferRequest(1, 2, 100.0));
+        ReflectionTestUtils.setField(batchTransferService, "maxSize", 4);
+
+        // Act
+        List<BatchTransferResult> results = batchTransferService.transfer(transfers, BatchTransferService.Mode.BEST_EFFORT, USERNAME);
+
+        // Assert
+        assertEquals(List.of(
+                BatchTransferResult.failed(0, 1, 9, "Access denied"),
+                BatchTransferResult.failed(1, 1, 3, "Card not in active status"),
+                BatchTransferResult.failed(2, 1, 2, "Amount must be positive"),
+                BatchTransferResult.completed(3, 1, 2)), results);
+        verify(cardRepository).applyTransfers(List.of(new Transfer(1, 2, new BigDecimal("100.00"))));
+    }
+
+    @Test
+    void transfer_WithEmptyOrOversizedBatch_ShouldThrowWithoutLocking() {
+        // Act & Assert
+        assertThrows(CardWrongCredentials.class,
+                () -> batchTransferService.transfer(List.of(), BatchTransferService.Mode.BEST_EFFORT, USERNAME));
+        assertThrows(CardWrongCredentials.class,
+                () -> batchTransferService.transfer(Collections.nCopies(4, new TransferRequest(1, 2, 1.0)),
+                        BatchTransferService.Mode.BEST_EFFORT, USERNAME));
+        verifyNoInteractions(cardRepository);
+    }
+}
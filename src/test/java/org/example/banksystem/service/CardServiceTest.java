@@ -1,26 +1,49 @@
 package org.example.banksystem.service;
 
+import org.example.banksystem.dto.response.CardBalanceResponse;
 import org.example.banksystem.dto.response.CardResponse;
 import org.example.banksystem.entity.Card;
 import org.example.banksystem.entity.CardStatus;
 import org.example.banksystem.exceptions.cards.CardAccessDeniedException;
+import org.example.banksystem.exceptions.cards.CardInsufficientFundsException;
 import org.example.banksystem.exceptions.cards.CardNotFoundException;
 import org.example.banksystem.exceptions.cards.CardNotInService;
 import org.example.banksystem.exceptions.cards.CardWrongCredentials;
+import org.example.banksystem.exceptions.cards.IdempotencyKeyReusedException;
 import org.example.banksystem.exceptions.users.UserNotFoundException;
 import org.example.banksystem.repository.CardRepository;
+import org.example.banksystem.repository.Patch;
+import org.example.banksystem.repository.TransferResult;
 import org.example.banksystem.repository.UserRepository;
 import org.example.banksystem.security.CommonsCodecHasher;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -41,6 +64,18 @@ class CardServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TransferIdempotencyService transferIdempotencyService;
+
+    @Mock
+    private ObjectProvider<TransferEngine> transferEngineProvider;
+
+    @Mock
+    private TransferEngine transferEngine;
+
     @InjectMocks
     private CardService cardService;
 
@@ -48,22 +83,25 @@ class CardServiceTest {
     private final Integer CARD_ID = 1;
     private final String USERNAME = "testuser";
     private final String CARD_NUMBER = "1234567812345678";
-    private final String ENCRYPTED_CARD_NUMBER = "encrypted123";
+    private final byte[] ENCRYPTED_CARD_NUMBER = {1, 2, 3};
+    private final String CARD_NUMBER_INDEX = "index123";
+    private final String CARD_NUMBER_LAST4 = "5678";
     private final Date EXPIRY_DATE = new Date();
 
     @BeforeEach
     void setUp() {
-        testCard = new Card(CARD_ID, ENCRYPTED_CARD_NUMBER, USERNAME, EXPIRY_DATE, CardStatus.ACTIVE, 1000.0);
+        testCard = new Card(CARD_ID, ENCRYPTED_CARD_NUMBER, CARD_NUMBER_INDEX, CARD_NUMBER_LAST4, USERNAME, EXPIRY_DATE, CardStatus.ACTIVE, 1000.0);
+        ReflectionTestUtils.setField(cardService, "transferMaxAttempts", 3);
+        ReflectionTestUtils.setField(cardService, "transferBackoff", Duration.ofMillis(1));
+        ReflectionTestUtils.setField(cardService, "transferMaxBackoff", Duration.ofMillis(2));
+        ReflectionTestUtils.setField(cardService, "transferEngineTimeout", Duration.ofMillis(50));
     }
 
     @Test
     void parseCard_ShouldReturnCardResponseWithMaskedNumber() {
         // Arrange
-        String decodedCardNumber = "1234567812345678";
         String maskedNumber = "************5678";
 
-        when(coder.decode(ENCRYPTED_CARD_NUMBER)).thenReturn(decodedCardNumber);
-
         // Act
         CardResponse result = cardService.parseCard(testCard);
 
@@ -74,7 +112,20 @@ class CardServiceTest {
         assertEquals(USERNAME, result.cardHolder());
         assertEquals(EXPIRY_DATE, result.cardExp());
         assertEquals("ACTIVE", result.status());
-        verify(coder).decode(ENCRYPTED_CARD_NUMBER);
+        verifyNoInteractions(coder);
+    }
+
+    @Test
+    void parseCard_WhenLast4Missing_ShouldMaskWholeNumber() {
+        // Arrange
+        testCard.setCardNumberLast4(null);
+
+        // Act
+        CardResponse result = cardService.parseCard(testCard);
+
+        // Assert
+        assertEquals("*".repeat(16), result.cardMask());
+        verifyNoInteractions(coder);
     }
 
     @Test
@@ -170,41 +221,220 @@ class CardServiceTest {
     @Test
     void transfer_WithValidData_ShouldTransferFunds() {
         // Arrange
-        Integer fromCardId = 1;
-        Integer toCardId = 2;
-        Double amount = 100.0;
-
-        when(cardRepository.existsByCardholderAndCardId(USERNAME, fromCardId)).thenReturn(true);
-        when(cardRepository.existsByCardholderAndCardId(USERNAME, toCardId)).thenReturn(true);
+        when(cardRepository.transferFunds(USERNAME, 1, 2, new BigDecimal("100.00"))).thenReturn(TransferResult.COMPLETED);
 
         // Act
-        cardService.transfer(fromCardId, toCardId, amount, USERNAME);
+        cardService.transfer(1, 2, 100.0, USERNAME);
 
         // Assert
-        verify(cardRepository).existsByCardholderAndCardId(USERNAME, fromCardId);
-        verify(cardRepository).existsByCardholderAndCardId(USERNAME, toCardId);
-        verify(cardRepository).decreaseCardBalance(fromCardId, amount);
-        verify(cardRepository).increaseCardBalance(toCardId, amount);
+        verify(cardRepository).transferFunds(USERNAME, 1, 2, new BigDecimal("100.00"));
+        verify(cardRepository, never()).existsByCardholderAndCardId(anyString(), anyInt());
     }
 
     @Test
     void transfer_WhenUserNotOwner_ShouldThrowCardAccessDeniedException() {
         // Arrange
-        Integer fromCardId = 1;
-        Integer toCardId = 2;
-        Double amount = 100.0;
-
-        when(cardRepository.existsByCardholderAndCardId(USERNAME, fromCardId)).thenReturn(false);
+        when(cardRepository.transferFunds(eq(USERNAME), eq(1), eq(2), any())).thenReturn(TransferResult.ACCESS_DENIED);
 
         // Act & Assert
         CardAccessDeniedException exception = assertThrows(CardAccessDeniedException.class,
-                () -> cardService.transfer(fromCardId, toCardId, amount, USERNAME));
+                () -> cardService.transfer(1, 2, 100.0, USERNAME));
 
         assertEquals("Access denied", exception.getMessage());
-        verify(cardRepository).existsByCardholderAndCardId(USERNAME, fromCardId);
-        verify(cardRepository, never()).existsByCardholderAndCardId(USERNAME, toCardId);
-        verify(cardRepository, never()).decreaseCardBalance(anyInt(), anyDouble());
-        verify(cardRepository, never()).increaseCardBalance(anyInt(), anyDouble());
+    }
+
+    @Test
+    void transfer_WhenCardNotActive_ShouldThrowCardNotInService() {
+        // Arrange
+        when(cardRepository.transferFunds(eq(USERNAME), eq(1), eq(2), any())).thenReturn(TransferResult.CARD_NOT_ACTIVE);
+
+        // Act & Assert
+        assertThrows(CardNotInService.class, () -> cardService.transfer(1, 2, 100.0, USERNAME));
+    }
+
+    @Test
+    void transfer_WhenInsufficientFunds_ShouldThrowException() {
+        // Arrange
+        when(cardRepository.transferFunds(eq(USERNAME), eq(1), eq(2), any())).thenReturn(TransferResult.INSUFFICIENT_FUNDS);
+
+        // Act & Assert
+        CardInsufficientFundsException exception = assertThrows(CardInsufficientFundsException.class,
+                () -> cardService.transfer(1, 2, 100.0, USERNAME));
+
+        assertEquals("Insufficient funds", exception.getMessage());
+    }
+
+    @Test
+    void transfer_WhenDeadlockDetected_ShouldRetryInNewTransaction() {
+        // Arrange
+        when(cardRepository.transferFunds(eq(USERNAME), eq(1), eq(2), any()))
+                .thenThrow(new PessimisticLockingFailureException("deadlock detected"))
+                .thenReturn(TransferResult.COMPLETED);
+
+        // Act
+        cardService.transfer(1, 2, 100.0, USERNAME);
+
+        // Assert
+        verify(cardRepository, times(2)).transferFunds(eq(USERNAME), eq(1), eq(2), any());
+        verify(transactionManager, times(2)).getTransaction(any());
+        verify(transactionManager).rollback(any());
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void transfer_WhenConflictPersists_ShouldGiveUpAfterMaxAttempts() {
+        // Arrange
+        when(cardRepository.transferFunds(eq(USERNAME), eq(1), eq(2), any()))
+                .thenThrow(new CannotAcquireLockException("could not serialize access"));
+
+        // Act & Assert
+        assertThrows(CannotAcquireLockException.class, () -> cardService.transfer(1, 2, 100.0, USERNAME));
+        verify(cardRepository, times(3)).transferFunds(eq(USERNAME), eq(1), eq(2), any());
+    }
+
+    @Test
+    void transfer_WhenEngineEnabled_ShouldRouteTransferToEngine() {
+        // Arrange
+        when(transferEngineProvider.getIfAvailable()).thenReturn(transferEngine);
+        when(transferEngine.submit(USERNAME, 1, 2, new BigDecimal("100.00")))
+                .thenReturn(CompletableFuture.completedFuture(TransferResult.INSUFFICIENT_FUNDS));
+
+        // Act & Assert
+        assertThrows(CardInsufficientFundsException.class, () -> cardService.transfer(1, 2, 100.0, USERNAME));
+        verify(cardRepository, never()).transferFunds(anyString(), anyInt(), anyInt(), any());
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    void transfer_WhenEngineDoesNotAnswer_ShouldTimeOutWithoutDatabaseFallback() {
+        // Arrange
+        when(transferEngineProvider.getIfAvailable()).thenReturn(transferEngine);
+        when(transferEngine.submit(USERNAME, 1, 2, new BigDecimal("100.00"))).thenReturn(new CompletableFuture<>());
+
+        // Act & Assert
+        assertThrows(QueryTimeoutException.class, () -> cardService.transfer(1, 2, 100.0, USERNAME));
+        verify(cardRepository, never()).transferFunds(anyString(), anyInt(), anyInt(), any());
+    }
+
+    @Test
+    void transfer_WhenEngineQueueFull_ShouldFallBackToDatabaseFunction() {
+        // Arrange
+        when(transferEngineProvider.getIfAvailable()).thenReturn(transferEngine);
+        when(transferEngine.submit(USERNAME, 1, 2, new BigDecimal("100.00"))).thenReturn(null);
+        when(cardRepository.transferFunds(USERNAME, 1, 2, new BigDecimal("100.00"))).thenReturn(TransferResult.COMPLETED);
+
+        // Act
+        cardService.transfer(1, 2, 100.0, USERNAME);
+
+        // Assert
+        verify(cardRepository).transferFunds(USERNAME, 1, 2, new BigDecimal("100.00"));
+    }
+
+    @Test
+    void transfer_WithIdempotencyKey_ShouldTransferOnceThroughIdempotencyService() {
+        // Arrange
+        Duration ttl = Duration.ofHours(24);
+        when(transferIdempotencyService.getTtl()).thenReturn(ttl);
+        when(transferIdempotencyService.execute(eq(USERNAME), eq("key-1"), eq(1), eq(2), eq(new BigDecimal("100.00")), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<TransferResult>>getArgument(5).get());
+        when(cardRepository.transferFundsOnce(USERNAME, "key-1", ttl, 1, 2, new BigDecimal("100.00")))
+                .thenReturn(TransferResult.COMPLETED);
+
+        // Act
+        cardService.transfer(1, 2, 100.0, USERNAME, "key-1");
+
+        // Assert
+        verify(cardRepository).transferFundsOnce(USERNAME, "key-1", ttl, 1, 2, new BigDecimal("100.00"));
+        verify(cardRepository, never()).transferFunds(any(), any(), any(), any());
+    }
+
+    @Test
+    void transfer_WhenIdempotencyKeyReused_ShouldThrowException() {
+        // Arrange
+        when(transferIdempotencyService.execute(eq(USERNAME), eq("key-1"), eq(1), eq(2), any(), any()))
+                .thenReturn(TransferResult.IDEMPOTENCY_KEY_REUSED);
+
+        // Act & Assert
+        assertThrows(IdempotencyKeyReusedException.class, () -> cardService.transfer(1, 2, 100.0, USERNAME, "key-1"));
+    }
+
+    @Test
+    void transfer_WithInvalidIdempotencyKey_ShouldThrowWithoutCallingDatabase() {
+        // Act & Assert
+        assertThrows(CardWrongCredentials.class, () -> cardService.transfer(1, 2, 100.0, USERNAME, " "));
+        assertThrows(CardWrongCredentials.class, () -> cardService.transfer(1, 2, 100.0, USERNAME, "k".repeat(65)));
+        verifyNoInteractions(transferIdempotencyService);
+        verify(cardRepository, never()).transferFundsOnce(any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void transfer_WithNonPositiveAmount_ShouldThrowWithoutCallingDatabase() {
+        // Act & Assert
+        assertThrows(CardWrongCredentials.class, () -> cardService.transfer(1, 2, 0.0, USERNAME));
+        assertThrows(CardWrongCredentials.class, () -> cardService.transfer(1, 2, -5.0, USERNAME));
+        assertThrows(CardWrongCredentials.class, () -> cardService.transfer(1, 2, Double.NaN, USERNAME));
+        verify(cardRepository, never()).transferFunds(any(), any(), any(), any());
+    }
+
+    @Test
+    void transfer_WithSubCentAmount_ShouldRejectBeforeAnyTransferPath() {
+        // Act & Assert
+        CardWrongCredentials exception = assertThrows(CardWrongCredentials.class,
+                () -> cardService.transfer(1, 2, 0.004, USERNAME));
+        assertThrows(CardWrongCredentials.class, () -> cardService.transfer(1, 2, 0.001, USERNAME, "key-1"));
+
+        assertEquals("Amount must be positive", exception.getMessage());
+        verify(cardRepository, never()).transferFunds(any(), any(), any(), any());
+        verifyNoInteractions(transferIdempotencyService, transferEngineProvider);
+    }
+
+    @Test
+    void transfer_ShouldPassAmountRoundedToCents() {
+        // Arrange
+        when(cardRepository.transferFunds(USERNAME, 1, 2, new BigDecimal("0.01"))).thenReturn(TransferResult.COMPLETED);
+
+        // Act
+        cardService.transfer(1, 2, 0.005, USERNAME);
+
+        // Assert
+        verify(cardRepository).transferFunds(USERNAME, 1, 2, new BigDecimal("0.01"));
+    }
+
+    @Test
+    void getBalanceAsOf_WithOwner_ShouldReturnBalanceFromHistory() {
+        // Arrange
+        Instant asOf = Instant.parse("2024-01-15T10:30:00Z");
+        when(cardRepository.existsByCardholderAndCardId(USERNAME, CARD_ID)).thenReturn(true);
+        when(cardRepository.findBalanceAsOf(CARD_ID, asOf)).thenReturn(Optional.of(new BigDecimal("250.00")));
+
+        // Act
+        CardBalanceResponse result = cardService.getBalanceAsOf(CARD_ID, asOf, USERNAME);
+
+        // Assert
+        assertEquals(new CardBalanceResponse(CARD_ID, new BigDecimal("250.00"), asOf), result);
+    }
+
+    @Test
+    void getBalanceAsOf_WhenUserNotOwner_ShouldThrowWithoutQueryingHistory() {
+        // Arrange
+        when(cardRepository.existsByCardholderAndCardId(USERNAME, CARD_ID)).thenReturn(false);
+
+        // Act & Assert
+        assertThrows(CardAccessDeniedException.class, () -> cardService.getBalanceAsOf(CARD_ID, null, USERNAME));
+        verify(cardRepository, never()).findBalanceAsOf(any(), any());
+    }
+
+    @Test
+    void getBalanceAsOf_WhenNoSnapshotBefore_ShouldThrowCardWrongCredentials() {
+        // Arrange
+        when(cardRepository.existsByCardholderAndCardId(USERNAME, CARD_ID)).thenReturn(true);
+        when(cardRepository.findBalanceAsOf(eq(CARD_ID), any())).thenReturn(Optional.empty());
+
+        // Act & Assert
+        CardWrongCredentials exception = assertThrows(CardWrongCredentials.class,
+                () -> cardService.getBalanceAsOf(CARD_ID, Instant.EPOCH, USERNAME));
+
+        assertEquals("No balance history at this time", exception.getMessage());
     }
 
     @Test
@@ -212,7 +442,6 @@ class CardServiceTest {
         // Arrange
         List<Card> cards = List.of(testCard);
         when(cardRepository.findCardsByUsername(USERNAME)).thenReturn(Optional.of(cards));
-        when(coder.decode(ENCRYPTED_CARD_NUMBER)).thenReturn(CARD_NUMBER);
 
         // Act
         List<CardResponse> result = cardService.getCardsByUsername(USERNAME);
@@ -221,7 +450,7 @@ class CardServiceTest {
         assertNotNull(result);
         assertEquals(1, result.size());
         verify(cardRepository).findCardsByUsername(USERNAME);
-        verify(coder).decode(ENCRYPTED_CARD_NUMBER);
+        verify(coder, never()).decode(any(byte[].class));
     }
 
     @Test
@@ -236,7 +465,7 @@ class CardServiceTest {
         assertNotNull(result);
         assertTrue(result.isEmpty());
         verify(cardRepository).findCardsByUsername(USERNAME);
-        verify(coder, never()).decode(anyString());
+        verify(coder, never()).decode(any(byte[].class));
     }
 
     @Test
@@ -244,7 +473,6 @@ class CardServiceTest {
         // Arrange
         List<Card> cards = List.of(testCard);
         when(cardRepository.findAll()).thenReturn(cards);
-        when(coder.decode(ENCRYPTED_CARD_NUMBER)).thenReturn(CARD_NUMBER);
 
         // Act
         List<CardResponse> result = cardService.getAllCards();
@@ -253,66 +481,102 @@ class CardServiceTest {
         assertNotNull(result);
         assertEquals(1, result.size());
         verify(cardRepository).findAll();
-        verify(coder).decode(ENCRYPTED_CARD_NUMBER);
+        verify(coder, never()).decode(any(byte[].class));
     }
 
     @Test
-    void addCard_WithValidData_ShouldSaveCard() {
+    void findCardByNumber_WhenCardExists_ShouldReturnCardResponse() {
         // Arrange
-        when(userRepository.existsById(USERNAME)).thenReturn(true);
-        when(coder.decode(CARD_NUMBER)).thenReturn(CARD_NUMBER);
-        when(cardRepository.existsByEncryptedCardNumber(CARD_NUMBER)).thenReturn(false);
+        when(coder.index(CARD_NUMBER)).thenReturn(CARD_NUMBER_INDEX);
+        when(cardRepository.findByCardNumberIndex(CARD_NUMBER_INDEX)).thenReturn(Optional.of(testCard));
+
+        // Act
+        CardResponse result = cardService.findCardByNumber(CARD_NUMBER);
+
+        // Assert
+        assertEquals(CARD_ID, result.card_id());
+        assertEquals("************5678", result.cardMask());
+        verify(cardRepository).findByCardNumberIndex(CARD_NUMBER_INDEX);
+    }
+
+    @Test
+    void findCardByNumber_WhenCardNotFound_ShouldThrowCardNotFoundException() {
+        // Arrange
+        when(coder.index(CARD_NUMBER)).thenReturn(CARD_NUMBER_INDEX);
+        when(cardRepository.findByCardNumberIndex(CARD_NUMBER_INDEX)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        CardNotFoundException exception = assertThrows(CardNotFoundException.class,
+                () -> cardService.findCardByNumber(CARD_NUMBER));
+
+        assertEquals("Card not found", exception.getMessage());
+        verify(coder, never()).decode(any(byte[].class));
+    }
+
+    @Test
+    void addCard_WithValidData_ShouldPersistCard() {
+        // Arrange
+        when(coder.index(CARD_NUMBER)).thenReturn(CARD_NUMBER_INDEX);
         when(coder.encode(CARD_NUMBER)).thenReturn(ENCRYPTED_CARD_NUMBER);
+        when(cardRepository.persist(any(Card.class))).thenReturn(testCard);
 
         // Act
         cardService.addCard(CARD_NUMBER, USERNAME, EXPIRY_DATE);
 
         // Assert
-        verify(userRepository).existsById(USERNAME);
-        verify(coder).decode(CARD_NUMBER);
-        verify(cardRepository).existsByEncryptedCardNumber(CARD_NUMBER);
+        verify(coder).index(CARD_NUMBER);
         verify(coder).encode(CARD_NUMBER);
-        verify(cardRepository).save(argThat(card ->
-                card.getEncryptedCardNumber().equals(ENCRYPTED_CARD_NUMBER) &&
+        verify(cardRepository).persist(argThat(card ->
+                Arrays.equals(card.getEncryptedCardNumber(), ENCRYPTED_CARD_NUMBER) &&
+                        card.getCardNumberIndex().equals(CARD_NUMBER_INDEX) &&
+                        card.getCardNumberLast4().equals(CARD_NUMBER_LAST4) &&
                         card.getCardholder().equals(USERNAME) &&
                         card.getExpiry_date().equals(EXPIRY_DATE) &&
                         card.getStatus() == CardStatus.ACTIVE &&
                         card.getBalance() == 0.0
         ));
+        verify(cardRepository).snapshotBalance(CARD_ID);
+        verify(userRepository, never()).existsById(anyString());
+        verify(cardRepository, never()).existsByCardNumberIndex(anyString());
     }
 
     @Test
     void addCard_WhenUserNotFound_ShouldThrowUserNotFoundException() {
         // Arrange
-        when(userRepository.existsById(USERNAME)).thenReturn(false);
+        when(coder.index(CARD_NUMBER)).thenReturn(CARD_NUMBER_INDEX);
+        when(coder.encode(CARD_NUMBER)).thenReturn(ENCRYPTED_CARD_NUMBER);
+        when(cardRepository.persist(any(Card.class))).thenThrow(constraintViolation("fk_card_user"));
 
         // Act & Assert
         UserNotFoundException exception = assertThrows(UserNotFoundException.class,
                 () -> cardService.addCard(CARD_NUMBER, USERNAME, EXPIRY_DATE));
 
         assertEquals("User not found", exception.getMessage());
-        verify(userRepository).existsById(USERNAME);
-        verify(coder, never()).decode(anyString());
-        verify(cardRepository, never()).existsByEncryptedCardNumber(anyString());
-        verify(cardRepository, never()).save(any());
     }
 
     @Test
     void addCard_WhenCardNumberExists_ShouldThrowCardWrongCredentials() {
         // Arrange
-        when(userRepository.existsById(USERNAME)).thenReturn(true);
-        when(coder.decode(CARD_NUMBER)).thenReturn(CARD_NUMBER);
-        when(cardRepository.existsByEncryptedCardNumber(CARD_NUMBER)).thenReturn(true);
+        when(coder.index(CARD_NUMBER)).thenReturn(CARD_NUMBER_INDEX);
+        when(coder.encode(CARD_NUMBER)).thenReturn(ENCRYPTED_CARD_NUMBER);
+        when(cardRepository.persist(any(Card.class))).thenThrow(constraintViolation("ux_cards_card_number_index"));
 
         // Act & Assert
         CardWrongCredentials exception = assertThrows(CardWrongCredentials.class,
                 () -> cardService.addCard(CARD_NUMBER, USERNAME, EXPIRY_DATE));
 
         assertEquals("Card number already taken", exception.getMessage());
-        verify(userRepository).existsById(USERNAME);
-        verify(coder).decode(CARD_NUMBER);
-        verify(cardRepository).existsByEncryptedCardNumber(CARD_NUMBER);
-        verify(cardRepository, never()).save(any());
+    }
+
+    @Test
+    void addCard_WhenOtherConstraintViolated_ShouldPropagateException() {
+        // Arrange
+        when(coder.index(CARD_NUMBER)).thenReturn(CARD_NUMBER_INDEX);
+        when(coder.encode(CARD_NUMBER)).thenReturn(ENCRYPTED_CARD_NUMBER);
+        when(cardRepository.persist(any(Card.class))).thenThrow(constraintViolation("cards_pkey"));
+
+        // Act & Assert
+        assertThrows(DataIntegrityViolationException.class, () -> cardService.addCard(CARD_NUMBER, USERNAME, EXPIRY_DATE));
     }
 
     @Test
@@ -322,8 +586,8 @@ class CardServiceTest {
         Double amount = 1500.0;
 
         when(userRepository.existsById(USERNAME)).thenReturn(true);
-        when(coder.decode(CARD_NUMBER)).thenReturn(CARD_NUMBER);
-        when(cardRepository.existsByEncryptedCardNumber(CARD_NUMBER)).thenReturn(true);
+        when(coder.index(CARD_NUMBER)).thenReturn(CARD_NUMBER_INDEX);
+        when(cardRepository.existsByCardNumberIndex(CARD_NUMBER_INDEX)).thenReturn(true);
         when(coder.encode(CARD_NUMBER)).thenReturn(ENCRYPTED_CARD_NUMBER);
 
         // Act
@@ -331,17 +595,20 @@ class CardServiceTest {
 
         // Assert
         verify(userRepository).existsById(USERNAME);
-        verify(coder).decode(CARD_NUMBER);
-        verify(cardRepository).existsByEncryptedCardNumber(CARD_NUMBER);
+        verify(coder).index(CARD_NUMBER);
+        verify(cardRepository).existsByCardNumberIndex(CARD_NUMBER_INDEX);
         verify(coder).encode(CARD_NUMBER);
-        verify(cardRepository).save(argThat(card ->
+        verify(cardRepository).saveAndFlush(argThat(card ->
                 card.getCardId().equals(CARD_ID) &&
-                        card.getEncryptedCardNumber().equals(ENCRYPTED_CARD_NUMBER) &&
+                        Arrays.equals(card.getEncryptedCardNumber(), ENCRYPTED_CARD_NUMBER) &&
+                        card.getCardNumberIndex().equals(CARD_NUMBER_INDEX) &&
+                        card.getCardNumberLast4().equals(CARD_NUMBER_LAST4) &&
                         card.getCardholder().equals(USERNAME) &&
                         card.getExpiry_date().equals(EXPIRY_DATE) &&
                         card.getStatus() == CardStatus.ACTIVE &&
                         card.getBalance().equals(amount)
         ));
+        verify(cardRepository).snapshotBalance(CARD_ID);
     }
 
     @Test
@@ -355,16 +622,16 @@ class CardServiceTest {
 
         assertEquals("User not found", exception.getMessage());
         verify(userRepository).existsById(USERNAME);
-        verify(coder, never()).decode(anyString());
-        verify(cardRepository, never()).save(any());
+        verify(coder, never()).decode(any(byte[].class));
+        verify(cardRepository, never()).saveAndFlush(any());
     }
 
     @Test
     void updateCard_WhenCardNotFound_ShouldThrowCardNotFoundException() {
         // Arrange
         when(userRepository.existsById(USERNAME)).thenReturn(true);
-        when(coder.decode(CARD_NUMBER)).thenReturn(CARD_NUMBER);
-        when(cardRepository.existsByEncryptedCardNumber(CARD_NUMBER)).thenReturn(false);
+        when(coder.index(CARD_NUMBER)).thenReturn(CARD_NUMBER_INDEX);
+        when(cardRepository.existsByCardNumberIndex(CARD_NUMBER_INDEX)).thenReturn(false);
 
         // Act & Assert
         CardNotFoundException exception = assertThrows(CardNotFoundException.class,
@@ -372,17 +639,17 @@ class CardServiceTest {
 
         assertEquals("Card not found", exception.getMessage());
         verify(userRepository).existsById(USERNAME);
-        verify(coder).decode(CARD_NUMBER);
-        verify(cardRepository).existsByEncryptedCardNumber(CARD_NUMBER);
-        verify(cardRepository, never()).save(any());
+        verify(coder).index(CARD_NUMBER);
+        verify(cardRepository).existsByCardNumberIndex(CARD_NUMBER_INDEX);
+        verify(cardRepository, never()).saveAndFlush(any());
     }
 
     @Test
     void updateCard_WhenInvalidStatus_ShouldThrowCardWrongCredentials() {
         // Arrange
         when(userRepository.existsById(USERNAME)).thenReturn(true);
-        when(coder.decode(CARD_NUMBER)).thenReturn(CARD_NUMBER);
-        when(cardRepository.existsByEncryptedCardNumber(CARD_NUMBER)).thenReturn(true);
+        when(coder.index(CARD_NUMBER)).thenReturn(CARD_NUMBER_INDEX);
+        when(cardRepository.existsByCardNumberIndex(CARD_NUMBER_INDEX)).thenReturn(true);
 
         // Act & Assert
         CardWrongCredentials exception = assertThrows(CardWrongCredentials.class,
@@ -390,9 +657,9 @@ class CardServiceTest {
 
         assertEquals("Status not found", exception.getMessage());
         verify(userRepository).existsById(USERNAME);
-        verify(coder).decode(CARD_NUMBER);
-        verify(cardRepository).existsByEncryptedCardNumber(CARD_NUMBER);
-        verify(cardRepository, never()).save(any());
+        verify(coder).index(CARD_NUMBER);
+        verify(cardRepository).existsByCardNumberIndex(CARD_NUMBER_INDEX);
+        verify(cardRepository, never()).saveAndFlush(any());
     }
 
     @Test
@@ -421,4 +688,92 @@ class CardServiceTest {
         verify(cardRepository).existsById(CARD_ID);
         verify(cardRepository, never()).deleteById(anyInt());
     }
-}
\ No newline at end of file
+
+    @Test
+    void patchCard_WithStatusOnly_ShouldUpdateStatusWithoutEncryption() {
+        // Arrange
+        when(cardRepository.patch(eq(CARD_ID), any())).thenReturn(1);
+
+        // Act
+        cardService.patchCard(CARD_ID, null, null, null, "BLOCKED", null);
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Patch<Card>> patch = ArgumentCaptor.forClass(Patch.class);
+        verify(cardRepository).patch(eq(CARD_ID), patch.capture());
+        assertEquals(Map.of("status", CardStatus.BLOCKED), patch.getValue().getValues());
+        verifyNoInteractions(coder);
+        verify(cardRepository, never()).findById(any());
+        verify(cardRepository, never()).save(any());
+        verify(cardRepository, never()).snapshotBalance(any());
+    }
+
+    @Test
+    void patchCard_WithCardNumber_ShouldWriteEncryptedNumberIndexAndLastDigits() {
+        // Arrange
+        when(coder.encode(CARD_NUMBER)).thenReturn(ENCRYPTED_CARD_NUMBER);
+        when(coder.index(CARD_NUMBER)).thenReturn(CARD_NUMBER_INDEX);
+        when(cardRepository.patch(eq(CARD_ID), any())).thenReturn(1);
+
+        // Act
+        cardService.patchCard(CARD_ID, CARD_NUMBER, USERNAME, null, null, 10.0);
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Patch<Card>> patch = ArgumentCaptor.forClass(Patch.class);
+        verify(cardRepository).patch(eq(CARD_ID), patch.capture());
+        Map<String, Object> values = patch.getValue().getValues();
+        assertEquals(Set.of("encryptedCardNumber", "cardNumberIndex", "cardNumberLast4", "cardholder", "balance"), values.keySet());
+        assertArrayEquals(ENCRYPTED_CARD_NUMBER, (byte[]) values.get("encryptedCardNumber"));
+        assertEquals(CARD_NUMBER_INDEX, values.get("cardNumberIndex"));
+        assertEquals(CARD_NUMBER_LAST4, values.get("cardNumberLast4"));
+        verify(cardRepository).snapshotBalance(CARD_ID);
+    }
+
+    @Test
+    void patchCard_WhenCardNotFound_ShouldThrowException() {
+        // Arrange
+        when(cardRepository.patch(eq(CARD_ID), any())).thenReturn(0);
+
+        // Act & Assert
+        assertThrows(CardNotFoundException.class, () -> cardService.patchCard(CARD_ID, null, null, EXPIRY_DATE, null, null));
+    }
+
+    @Test
+    void patchCard_WhenCardholderNotFound_ShouldThrowUserNotFound() {
+        // Arrange
+        when(cardRepository.patch(eq(CARD_ID), any())).thenThrow(constraintViolation("fk_card_user"));
+
+        // Act & Assert
+        assertThrows(UserNotFoundException.class, () -> cardService.patchCard(CARD_ID, null, "ghost", null, null, null));
+    }
+
+    @Test
+    void patchCard_WhenCardNumberTaken_ShouldThrowException() {
+        // Arrange
+        when(coder.encode(CARD_NUMBER)).thenReturn(ENCRYPTED_CARD_NUMBER);
+        when(coder.index(CARD_NUMBER)).thenReturn(CARD_NUMBER_INDEX);
+        when(cardRepository.patch(eq(CARD_ID), any())).thenThrow(constraintViolation("ux_cards_card_number_index"));
+
+        // Act & Assert
+        CardWrongCredentials exception = assertThrows(CardWrongCredentials.class,
+                () -> cardService.patchCard(CARD_ID, CARD_NUMBER, null, null, null, null));
+
+        assertEquals("Card number already taken", exception.getMessage());
+    }
+
+    @Test
+    void patchCard_WithInvalidStatusOrNoFields_ShouldThrowException() {
+        // Act & Assert
+        assertEquals("Status not found", assertThrows(CardWrongCredentials.class,
+                () -> cardService.patchCard(CARD_ID, null, null, null, "LOST", null)).getMessage());
+        assertEquals("Nothing to update", assertThrows(CardWrongCredentials.class,
+                () -> cardService.patchCard(CARD_ID, null, null, null, null, null)).getMessage());
+        verify(cardRepository, never()).patch(any(), any());
+    }
+
+    private static DataIntegrityViolationException constraintViolation(String constraintName) {
+        return new DataIntegrityViolationException("constraint violation",
+                new ConstraintViolationException("constraint violation", new SQLException("constraint violation"), constraintName));
+    }
+}
@@ -0,0 +1,152 @@
+package org.example.banksystem.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.banksystem.exceptions.cards.CardInsufficientFundsException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Нагрузочный тест переводов CardService на горячем наборе карт
+ * <p>
+ * Потоки одновременно переводят средства в обе стороны между несколькими картами одного
+ * пользователя, то есть постоянно берут одни и те же строки во встречном порядке.
+ * Тест выводит пропускную способность, p99 задержки перевода, число повторов после отката
+ * и прирост счетчика взаимных блокировок pg_stat_database, и проверяет, что сумма балансов
+ * не изменилась и ни один перевод не был потерян.
+ * </p>
+ * <p>
+ * Нужна база из application.yml. Запуск: ./mvnw test -Dtest=CardTransferStressTest -Dstress=true
+ * [-Dstress.threads=16 -Dstress.transfers=500 -Dstress.cards=4]
+ * </p>
+ */
+@SpringBootTest(properties = {
+        "codec.kek.file=${java.io.tmpdir}/banksystem-test/kek.properties",
+        "codec.kek.create-if-missing=true"})
+@EnabledIfSystemProperty(named = "stress", matches = "true")
+class CardTransferStressTest {
+
+    private static final String USERNAME = "stress_transfer";
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000.00");
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${spring.liquibase.default-schema}")
+    private String schema;
+
+    private final int threads = Integer.getInteger("stress.threads", 16);
+    private final int transfersPerThread = Integer.getInteger("stress.transfers", 500);
+    private final int cards = Integer.getInteger("stress.cards", 4);
+
+    private int[] cardIds;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM " + schema + ".users WHERE username = ?", USERNAME);
+        jdbcTemplate.update("INSERT INTO " + schema + ".users (username, password, role) VALUES (?, 'x', 'ROLE_USER')", USERNAME);
+        cardIds = new int[cards];
+        for (int i = 0; i < cards; i++) {
+            cardIds[i] = jdbcTemplate.queryForObject("INSERT INTO " + schema + ".cards"
+                    + " (encrypted_card_number, card_number_index, card_number_last4, cardholder, expiry_date, status, balance)"
+                    + " VALUES ('\\x00'::bytea, ?, '0000', ?, DATE '2099-12-31', 'ACTIVE', ?)"
+                    + " RETURNING card_id", Integer.class, "stress-transfer-" + i, USERNAME, INITIAL_BALANCE);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM " + schema + ".users WHERE username = ?", USERNAME);
+    }
+
+    @Test
+    void transfer_UnderContention_ShouldKeepBalancesWithoutDeadlocks() throws Exception {
+        // Arrange
+        Counter retries = meterRegistry.find("card.transfer.retries").counter();
+        double retriesBefore = retries != null ? retries.count() : 0;
+        long deadlocksBefore = deadlocks();
+        long[] latencies = new long[threads * transfersPerThread];
+        AtomicLong rejected = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        // Act
+        List<Future<?>> workers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            int offset = t * transfersPerThread;
+            workers.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < transfersPerThread; i++) {
+                    int from = cardIds[random.nextInt(cards)];
+                    int to = cardIds[random.nextInt(cards)];
+                    long begin = System.nanoTime();
+                    try {
+                        cardService.transfer(from, to, 1.0 + random.nextInt(100), USERNAME);
+                    } catch (CardInsufficientFundsException e) {
+                        rejected.incrementAndGet();
+                    }
+                    latencies[offset + i] = System.nanoTime() - begin;
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+
+        // Assert
+        Arrays.sort(latencies);
+        double retried = (retries != null ? retries.count() : 0) - retriesBefore;
+        long deadlocked = deadlocks() - deadlocksBefore;
+        System.out.printf("Transfers: %d in %d threads over %d cards, %.0f ops/s, p50 %.2f ms, p99 %.2f ms,"
+                        + " rejected %d, retries %.0f, deadlocks %d%n",
+                latencies.length, threads, cards, latencies.length / (elapsed / 1e9),
+                latencies[latencies.length / 2] / 1e6, latencies[(int) (latencies.length * 0.99)] / 1e6,
+                rejected.get(), retried, deadlocked);
+
+        BigDecimal total = jdbcTemplate.queryForObject("SELECT sum(balance) FROM " + schema + ".cards WHERE cardholder = ?",
+                BigDecimal.class, USERNAME);
+        assertEquals(0, INITIAL_BALANCE.multiply(BigDecimal.valueOf(cards)).compareTo(total));
+        assertEquals(0, retried);
+    }
+
+    /**
+     * Число взаимных блокировок, обнаруженных в текущей базе с момента сброса статистики
+     */
+    private long deadlocks() {
+        jdbcTemplate.execute("SELECT pg_stat_clear_snapshot()");
+        Long deadlocks = jdbcTemplate.queryForObject(
+                "SELECT deadlocks FROM pg_stat_database WHERE datname = current_database()", Long.class);
+        return deadlocks != null ? deadlocks : 0;
+    }
+}
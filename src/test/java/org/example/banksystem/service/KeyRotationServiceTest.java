@@ -0,0 +1,182 @@
+package org.example.banksystem.service;
+
+import org.example.banksystem.dto.response.KeyRotationResponse;
+import org.example.banksystem.exceptions.cards.KeyRotationInProgressException;
+import org.example.banksystem.security.CommonsCodecHasher;
+import org.example.banksystem.security.InMemoryKeyEncryptionKeyStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тесты для сервиса ротации ключа шифрования KeyRotationService
+ */
+@ExtendWith(MockitoExtension.class)
+class KeyRotationServiceTest {
+
+    private static final byte[] OLD_KEY = "32charactersareeasytomakeanduse!".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NEW_KEY = "anotherthirtytwocharacterkey1234".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] INDEX_KEY = "blindindexkeyforcardnumbershmac!".getBytes(StandardCharsets.UTF_8);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final CommonsCodecHasher oldCoder = new CommonsCodecHasher(OLD_KEY, INDEX_KEY, 1);
+    private final CommonsCodecHasher coder = new CommonsCodecHasher(OLD_KEY, Map.of(),
+            new InMemoryKeyEncryptionKeyStore(Map.of(0, OLD_KEY, 1, NEW_KEY), 1), INDEX_KEY, 1);
+
+    private KeyRotationService keyRotationService;
+
+    @BeforeEach
+    void setUp() {
+        keyRotationService = new KeyRotationService(coder, jdbcTemplate, transactionManager);
+        ReflectionTestUtils.setField(keyRotationService, "schema", "banking");
+        ReflectionTestUtils.setField(keyRotationService, "chunkSize", 2);
+        ReflectionTestUtils.setField(keyRotationService, "rowsPerSecond", 1_000_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        keyRotationService.shutdown();
+        oldCoder.close();
+        coder.close();
+    }
+
+    @Test
+    void start_ShouldReencryptStaleCardsChunkByChunk() throws Exception {
+        // Arrange
+        List<byte[]> stored = List.of(
+                oldCoder.encode("1111222233334444"),
+                oldCoder.encode("5555666677778888"),
+                oldCoder.encode("9999000011112222"));
+        doAnswer(invocation -> {
+            int lastCardId = invocation.getArgument(2);
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (int id = lastCardId + 1; id <= Math.min(lastCardId + 2, stored.size()); id++) {
+                ResultSet row = mock(ResultSet.class);
+                when(row.getInt(1)).thenReturn(id);
+                when(row.getBytes(2)).thenReturn(stored.get(id - 1));
+                handler.processRow(row);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), anyInt(), any(byte[].class), eq(2));
+        doReturn(new int[]{1, 1}, new int[]{1})
+                .when(jdbcTemplate).batchUpdate(anyString(), anyList());
+
+        // Act
+        keyRotationService.start();
+        KeyRotationResponse result = awaitFinished();
+
+        // Assert
+        assertEquals("COMPLETED", result.state());
+        assertEquals(3, result.reencrypted());
+        assertEquals(0, result.skipped());
+        assertEquals(3, result.lastCardId());
+        assertEquals(1, result.activeKeyId());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> batches = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(contains("WHERE card_id = ? AND encrypted_card_number = ?"), batches.capture());
+        List<Object[]> rows = new ArrayList<>();
+        batches.getAllValues().forEach(rows::addAll);
+        assertEquals(3, rows.size());
+        for (Object[] row : rows) {
+            byte[] reencrypted = (byte[]) row[0];
+            assertTrue(coder.isCurrentFormat(reencrypted));
+            assertFalse(coder.isCurrentFormat((byte[]) row[2]));
+            assertEquals(oldCoder.decode((byte[]) row[2]), coder.decode(reencrypted));
+            assertSame(stored.get((Integer) row[1] - 1), row[2]);
+        }
+    }
+
+    @Test
+    void start_WithCorruptedCard_ShouldSkipItAndContinue() throws Exception {
+        // Arrange
+        byte[] valid = oldCoder.encode("1111222233334444");
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            ResultSet corrupted = mock(ResultSet.class);
+            when(corrupted.getInt(1)).thenReturn(1);
+            when(corrupted.getBytes(2)).thenReturn(new byte[]{CommonsCodecHasher.FORMAT_KEYED, 0, 1, 2});
+            handler.processRow(corrupted);
+            ResultSet row = mock(ResultSet.class);
+            when(row.getInt(1)).thenReturn(2);
+            when(row.getBytes(2)).thenReturn(valid);
+            handler.processRow(row);
+            return null;
+        }).doAnswer(invocation -> null)
+                .when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), anyInt(), any(byte[].class), eq(2));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1});
+
+        // Act
+        keyRotationService.start();
+        KeyRotationResponse result = awaitFinished();
+
+        // Assert
+        assertEquals("COMPLETED", result.state());
+        assertEquals(1, result.reencrypted());
+        assertEquals(1, result.skipped());
+    }
+
+    @Test
+    void start_WhileRunning_ShouldThrowAndCancelShouldStop() throws Exception {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), anyInt(), any(byte[].class), eq(2));
+        keyRotationService.start();
+
+        // Act & Assert
+        assertThrows(KeyRotationInProgressException.class, () -> keyRotationService.start());
+        assertEquals("RUNNING", keyRotationService.cancel().state());
+        release.countDown();
+        assertEquals("CANCELLED", awaitFinished().state());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void getStatus_BeforeStart_ShouldReturnIdle() {
+        // Act
+        KeyRotationResponse result = keyRotationService.getStatus();
+
+        // Assert
+        assertEquals("IDLE", result.state());
+        assertEquals(1, result.activeKeyId());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    private KeyRotationResponse awaitFinished() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        KeyRotationResponse status = keyRotationService.getStatus();
+        while ("RUNNING".equals(status.state()) && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+            status = keyRotationService.getStatus();
+        }
+        return status;
+    }
+}
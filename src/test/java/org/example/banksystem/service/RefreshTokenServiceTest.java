@@ -0,0 +1,213 @@
+package org.example.banksystem.service;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.example.banksystem.exceptions.auth.InvalidRefreshTokenException;
+import org.example.banksystem.exceptions.users.UserNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тесты для сервиса refresh токенов RefreshTokenService
+ */
+@ExtendWith(MockitoExtension.class)
+class RefreshTokenServiceTest {
+
+    private static final String USERNAME = "testuser";
+    private static final String FAMILY_ID = "6f1c2b9e-0d7a-4c55-9a43-2f1e8b7d3c10";
+    private static final String REFRESH_TOKEN = "presented-refresh-token";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private UserService userService;
+
+    private RefreshTokenService refreshTokenService;
+
+    @BeforeEach
+    void setUp() {
+        refreshTokenService = new RefreshTokenService(jdbcTemplate, transactionManager, userService);
+        ReflectionTestUtils.setField(refreshTokenService, "schema", "banking");
+        ReflectionTestUtils.setField(refreshTokenService, "ttl", Duration.ofDays(14));
+    }
+
+    @Test
+    void issue_ShouldStoreOnlyTokenHash() {
+        // Act
+        String token = refreshTokenService.issue(USERNAME);
+
+        // Assert
+        ArgumentCaptor<Object> args = ArgumentCaptor.forClass(Object.class);
+        verify(jdbcTemplate).update(startsWith("INSERT INTO banking.refresh_tokens"), args.capture(),
+                args.capture(), args.capture(), args.capture());
+        List<Object> values = args.getAllValues();
+        assertEquals(DigestUtils.sha256Hex(token), values.get(0));
+        assertNotEquals(token, values.get(0));
+        assertEquals(USERNAME, values.get(2));
+        assertTrue(((Timestamp) values.get(3)).toInstant().isAfter(Instant.now().plus(Duration.ofDays(13))));
+    }
+
+    @Test
+    void issue_ShouldReturnDistinctTokens() {
+        // Act & Assert
+        assertNotEquals(refreshTokenService.issue(USERNAME), refreshTokenService.issue(USERNAME));
+    }
+
+    @Test
+    void rotate_WithUnusedToken_ShouldIssueNextTokenOfSameFamily() {
+        // Arrange
+        when(jdbcTemplate.queryForList(contains("FOR SHARE"), eq(String.class), eq(hash(REFRESH_TOKEN))))
+                .thenReturn(List.of(USERNAME));
+        when(jdbcTemplate.query(startsWith("UPDATE"), any(RowMapper.class), any(), eq(hash(REFRESH_TOKEN)), any()))
+                .thenAnswer(row(null));
+
+        // Act
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(REFRESH_TOKEN);
+
+        // Assert
+        assertEquals(USERNAME, rotation.username());
+        assertNotEquals(REFRESH_TOKEN, rotation.refreshToken());
+        verify(jdbcTemplate).update(startsWith("INSERT INTO banking.refresh_tokens"),
+                eq(hash(rotation.refreshToken())), eq(FAMILY_ID), eq(USERNAME), any(Timestamp.class));
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void rotate_WithUsedToken_ShouldRevokeFamilyAndUserTokens() {
+        // Arrange
+        when(jdbcTemplate.queryForList(contains("FOR SHARE"), eq(String.class), eq(hash(REFRESH_TOKEN))))
+                .thenReturn(List.of(USERNAME));
+        when(jdbcTemplate.query(startsWith("UPDATE"), any(RowMapper.class), any(), any(), any())).thenReturn(List.of());
+        when(jdbcTemplate.query(startsWith("SELECT"), any(RowMapper.class), eq(hash(REFRESH_TOKEN))))
+                .thenAnswer(row(Timestamp.from(Instant.now().minusSeconds(60))));
+
+        // Act & Assert
+        InvalidRefreshTokenException exception = assertThrows(InvalidRefreshTokenException.class,
+                () -> refreshTokenService.rotate(REFRESH_TOKEN));
+
+        assertEquals("Refresh token reuse detected", exception.getMessage());
+        verify(jdbcTemplate).update(startsWith("DELETE FROM banking.refresh_tokens WHERE family_id"), eq(FAMILY_ID));
+        verify(userService).revokeTokens(USERNAME);
+    }
+
+    @Test
+    void rotate_WithUsedTokenOfDeletedUser_ShouldStillRejectToken() {
+        // Arrange
+        when(jdbcTemplate.queryForList(contains("FOR SHARE"), eq(String.class), eq(hash(REFRESH_TOKEN))))
+                .thenReturn(List.of(USERNAME));
+        when(jdbcTemplate.query(startsWith("UPDATE"), any(RowMapper.class), any(), any(), any())).thenReturn(List.of());
+        when(jdbcTemplate.query(startsWith("SELECT"), any(RowMapper.class), eq(hash(REFRESH_TOKEN))))
+                .thenAnswer(row(Timestamp.from(Instant.now().minusSeconds(60))));
+        doThrow(new UserNotFoundException("User not found")).when(userService).revokeTokens(USERNAME);
+
+        // Act & Assert
+        assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.rotate(REFRESH_TOKEN));
+    }
+
+    @Test
+    void rotate_WithUnknownOrExpiredToken_ShouldThrowWithoutRevocation() {
+        // Arrange
+        when(jdbcTemplate.queryForList(contains("FOR SHARE"), eq(String.class), eq(hash(REFRESH_TOKEN))))
+                .thenReturn(List.of(USERNAME));
+        when(jdbcTemplate.query(startsWith("UPDATE"), any(RowMapper.class), any(), any(), any())).thenReturn(List.of());
+        when(jdbcTemplate.query(startsWith("SELECT"), any(RowMapper.class), eq(hash(REFRESH_TOKEN)))).thenReturn(List.of());
+
+        // Act & Assert
+        InvalidRefreshTokenException exception = assertThrows(InvalidRefreshTokenException.class,
+                () -> refreshTokenService.rotate(REFRESH_TOKEN));
+
+        assertEquals("Invalid refresh token", exception.getMessage());
+        verify(jdbcTemplate, never()).update(startsWith("DELETE"), any(Object[].class));
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void rotate_AfterUserSessionsRevoked_ShouldRejectToken() {
+        // Arrange
+        // Отзыв сессий удалил семейство, пока обмен ждал блокировку строки пользователя
+        when(jdbcTemplate.queryForList(contains("FOR SHARE"), eq(String.class), eq(hash(REFRESH_TOKEN))))
+                .thenReturn(List.of(USERNAME));
+        when(jdbcTemplate.query(startsWith("UPDATE"), any(RowMapper.class), any(), any(), any())).thenReturn(List.of());
+        when(jdbcTemplate.query(startsWith("SELECT"), any(RowMapper.class), eq(hash(REFRESH_TOKEN)))).thenReturn(List.of());
+
+        // Act & Assert
+        InvalidRefreshTokenException exception = assertThrows(InvalidRefreshTokenException.class,
+                () -> refreshTokenService.rotate(REFRESH_TOKEN));
+
+        assertEquals("Invalid refresh token", exception.getMessage());
+        verify(jdbcTemplate, never()).update(startsWith("INSERT"), any(Object[].class));
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void rotate_AfterUserDeleted_ShouldRejectTokenWithoutConsumingIt() {
+        // Arrange
+        when(jdbcTemplate.queryForList(contains("FOR SHARE"), eq(String.class), eq(hash(REFRESH_TOKEN))))
+                .thenReturn(List.of());
+
+        // Act & Assert
+        InvalidRefreshTokenException exception = assertThrows(InvalidRefreshTokenException.class,
+                () -> refreshTokenService.rotate(REFRESH_TOKEN));
+
+        assertEquals("Invalid refresh token", exception.getMessage());
+        verify(jdbcTemplate, never()).query(startsWith("UPDATE"), any(RowMapper.class), any(Object[].class));
+        verify(jdbcTemplate, never()).update(startsWith("INSERT"), any(Object[].class));
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void revokeFamily_ShouldDeleteFamilyByTokenHash() {
+        // Act
+        refreshTokenService.revokeFamily(REFRESH_TOKEN);
+
+        // Assert
+        verify(jdbcTemplate).update(startsWith("DELETE FROM banking.refresh_tokens WHERE family_id IN"),
+                eq(hash(REFRESH_TOKEN)));
+    }
+
+    @Test
+    void prune_ShouldDeleteExpiredTokens() {
+        // Act
+        refreshTokenService.prune();
+
+        // Assert
+        verify(jdbcTemplate).update(eq("DELETE FROM banking.refresh_tokens WHERE expires_at < ?"), any(Timestamp.class));
+    }
+
+    private static String hash(String token) {
+        return DigestUtils.sha256Hex(token);
+    }
+
+    private static Answer<List<Object>> row(Timestamp usedAt) {
+        return invocation -> {
+            RowMapper<?> mapper = invocation.getArgument(1);
+            ResultSet resultSet = mock(ResultSet.class);
+            when(resultSet.getString("username")).thenReturn(USERNAME);
+            when(resultSet.getString("family_id")).thenReturn(FAMILY_ID);
+            when(resultSet.getTimestamp("used_at")).thenReturn(usedAt);
+            return List.of(mapper.mapRow(resultSet, 0));
+        };
+    }
+}
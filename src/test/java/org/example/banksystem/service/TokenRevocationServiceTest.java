@@ -0,0 +1,103 @@
+package org.example.banksystem.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тесты для сервиса отзыва токенов TokenRevocationService
+ */
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationServiceTest {
+
+    private static final String TOKEN_ID = "6f1c2b9e-0d7a-4c55-9a43-2f1e8b7d3c10";
+    private static final String STORED_TOKEN_ID = "0b8e7c1d-3f2a-4e6b-8c9d-1a2b3c4d5e6f";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private TokenRevocationService tokenRevocationService;
+
+    @BeforeEach
+    void setUp() {
+        tokenRevocationService = new TokenRevocationService(jdbcTemplate);
+        ReflectionTestUtils.setField(tokenRevocationService, "schema", "banking");
+        ReflectionTestUtils.setField(tokenRevocationService, "expectedTokens", 1_000L);
+        ReflectionTestUtils.setField(tokenRevocationService, "falsePositiveRate", 0.000_001);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            ResultSet row = mock(ResultSet.class);
+            when(row.getString(1)).thenReturn(STORED_TOKEN_ID);
+            handler.processRow(row);
+            return null;
+        }).when(jdbcTemplate).query(contains("SELECT token_id FROM banking.revoked_tokens"),
+                any(RowCallbackHandler.class), any(Timestamp.class));
+        tokenRevocationService.init();
+    }
+
+    @Test
+    void isRevoked_WithUnknownToken_ShouldNotQueryDatabase() {
+        // Act
+        boolean result = tokenRevocationService.isRevoked(TOKEN_ID);
+
+        // Assert
+        assertFalse(result);
+        verify(jdbcTemplate, never()).queryForObject(anyString(), eq(Boolean.class), any());
+    }
+
+    @Test
+    void isRevoked_WithStoredToken_ShouldConfirmInDatabase() {
+        // Arrange
+        when(jdbcTemplate.queryForObject(contains("SELECT EXISTS"), eq(Boolean.class), eq(STORED_TOKEN_ID)))
+                .thenReturn(true);
+
+        // Act & Assert
+        assertTrue(tokenRevocationService.isRevoked(STORED_TOKEN_ID));
+    }
+
+    @Test
+    void revoke_ShouldPersistAndRejectTokenImmediately() {
+        // Arrange
+        Instant expiresAt = Instant.now().plusSeconds(600);
+        when(jdbcTemplate.queryForObject(contains("SELECT EXISTS"), eq(Boolean.class), eq(TOKEN_ID))).thenReturn(true);
+
+        // Act
+        tokenRevocationService.revoke(TOKEN_ID, "testuser", expiresAt);
+
+        // Assert
+        verify(jdbcTemplate).update(contains("ON CONFLICT (token_id) DO NOTHING"),
+                eq(TOKEN_ID), eq("testuser"), eq(Timestamp.from(expiresAt)));
+        assertTrue(tokenRevocationService.isRevoked(TOKEN_ID));
+    }
+
+    @Test
+    void refresh_ShouldPruneExpiredTokensAndRebuildFilter() {
+        // Arrange
+        // Запись о токене истекла: после удаления таблица пуста
+        reset(jdbcTemplate);
+        when(jdbcTemplate.update(contains("DELETE FROM banking.revoked_tokens WHERE expires_at < ?"), any(Timestamp.class)))
+                .thenReturn(3);
+
+        // Act
+        tokenRevocationService.refresh();
+
+        // Assert
+        verify(jdbcTemplate).update(contains("DELETE FROM"), any(Timestamp.class));
+        verify(jdbcTemplate).query(contains("SELECT token_id FROM"), any(RowCallbackHandler.class), any(Timestamp.class));
+        assertFalse(tokenRevocationService.isRevoked(STORED_TOKEN_ID));
+        verify(jdbcTemplate, never()).queryForObject(anyString(), eq(Boolean.class), any());
+    }
+}
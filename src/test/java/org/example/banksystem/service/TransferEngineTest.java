@@ -0,0 +1,218 @@
+package org.example.banksystem.service;
+
+import org.example.banksystem.repository.CardStateRepository;
+import org.example.banksystem.repository.CardStateRepository.BalanceChange;
+import org.example.banksystem.repository.CardStateRepository.CardState;
+import org.example.banksystem.repository.CardTransferRepository;
+import org.example.banksystem.repository.CardTransferRepository.Transfer;
+import org.example.banksystem.repository.TransferResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тесты для движка переводов TransferEngine
+ */
+@ExtendWith(MockitoExtension.class)
+class TransferEngineTest {
+
+    private static final String USERNAME = "alice";
+
+    @Mock
+    private CardStateRepository cardStateRepository;
+
+    @Mock
+    private CardTransferRepository cardTransferRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private TransferEngine transferEngine;
+
+    @AfterEach
+    void tearDown() {
+        if (transferEngine != null) {
+            transferEngine.stop();
+        }
+    }
+
+    @Test
+    void submit_ShouldApplyTransferInMemoryAndCommitBalancesWithJournal() throws Exception {
+        // Arrange
+        start(card(1, USERNAME, "100.00"), card(2, USERNAME, "0.00"));
+        when(cardStateRepository.compareAndSetBalances(anyList())).thenReturn(new int[]{1, 1});
+
+        // Act
+        TransferResult first = await(transferEngine.submit(USERNAME, 1, 2, new BigDecimal("30")));
+        TransferResult second = await(transferEngine.submit(USERNAME, 1, 2, new BigDecimal("70.004")));
+
+        // Assert
+        assertEquals(TransferResult.COMPLETED, first);
+        assertEquals(TransferResult.COMPLETED, second);
+        List<List<BalanceChange>> changes = captureBalanceChanges(2);
+        assertEquals(List.of(
+                new BalanceChange(card(1, USERNAME, "100.00"), new BigDecimal("70.00")),
+                new BalanceChange(card(2, USERNAME, "0.00"), new BigDecimal("30.00"))), changes.get(0));
+        assertEquals(List.of(
+                new BalanceChange(card(1, USERNAME, "70.00"), new BigDecimal("0.00")),
+                new BalanceChange(card(2, USERNAME, "30.00"), new BigDecimal("100.00"))), changes.get(1));
+        verify(cardTransferRepository).appendJournal(List.of(new Transfer(1, 2, new BigDecimal("30.00"))));
+        verify(cardTransferRepository).appendJournal(List.of(new Transfer(1, 2, new BigDecimal("70.00"))));
+        verify(transactionManager, times(3)).commit(any());
+    }
+
+    @Test
+    void submit_WhenRejectedInMemory_ShouldConfirmWithDatabase() throws Exception {
+        // Arrange
+        start(card(1, USERNAME, "10.00"), card(2, USERNAME, "0.00"), card(3, "bob", "50.00"));
+        when(cardStateRepository.findCardStates(anyCollection()))
+                .thenReturn(List.of(card(1, USERNAME, "10.00"), card(2, USERNAME, "0.00")))
+                .thenReturn(List.of(card(1, USERNAME, "10.00"), card(3, "bob", "50.00")));
+
+        // Act
+        TransferResult insufficient = await(transferEngine.submit(USERNAME, 1, 2, new BigDecimal("20.00")));
+        TransferResult denied = await(transferEngine.submit(USERNAME, 1, 3, new BigDecimal("1.00")));
+
+        // Assert
+        assertEquals(TransferResult.INSUFFICIENT_FUNDS, insufficient);
+        assertEquals(TransferResult.ACCESS_DENIED, denied);
+        verify(cardStateRepository, times(2)).findCardStates(anyCollection());
+        verify(cardStateRepository, never()).compareAndSetBalances(anyList());
+        verifyNoInteractions(cardTransferRepository);
+    }
+
+    @Test
+    void submit_WhenCardCreatedAfterStart_ShouldLoadItFromDatabase() throws Exception {
+        // Arrange
+        start(card(1, USERNAME, "10.00"));
+        when(cardStateRepository.findCardStates(anyCollection()))
+                .thenReturn(List.of(card(1, USERNAME, "10.00"), card(2, USERNAME, "0.00")));
+        when(cardStateRepository.compareAndSetBalances(anyList())).thenReturn(new int[]{1, 1});
+
+        // Act
+        TransferResult result = await(transferEngine.submit(USERNAME, 1, 2, new BigDecimal("10.00")));
+
+        // Assert
+        assertEquals(TransferResult.COMPLETED, result);
+        verify(cardTransferRepository).appendJournal(List.of(new Transfer(1, 2, new BigDecimal("10.00"))));
+    }
+
+    @Test
+    void submit_WhenCardChangedInDatabase_ShouldReloadAndRetryBatch() throws Exception {
+        // Arrange
+        start(card(1, USERNAME, "100.00"), card(2, USERNAME, "0.00"));
+        when(cardStateRepository.compareAndSetBalances(anyList()))
+                .thenReturn(new int[]{0, 1})
+                .thenReturn(new int[]{1, 1});
+        when(cardStateRepository.findCardStates(List.of(1))).thenReturn(List.of(card(1, USERNAME, "500.00")));
+
+        // Act
+        TransferResult result = await(transferEngine.submit(USERNAME, 1, 2, new BigDecimal("50.00")));
+
+        // Assert
+        assertEquals(TransferResult.COMPLETED, result);
+        List<List<BalanceChange>> changes = captureBalanceChanges(2);
+        assertEquals(List.of(
+                new BalanceChange(card(1, USERNAME, "500.00"), new BigDecimal("450.00")),
+                new BalanceChange(card(2, USERNAME, "0.00"), new BigDecimal("50.00"))), changes.get(1));
+        verify(transactionManager).rollback(any());
+        verify(cardTransferRepository, times(1)).appendJournal(anyList());
+    }
+
+    @Test
+    void submit_WhenCardChangedOnEveryAttempt_ShouldFailWithConcurrencyFailure() {
+        // Arrange
+        start(card(1, USERNAME, "100.00"), card(2, USERNAME, "0.00"));
+        when(cardStateRepository.compareAndSetBalances(anyList())).thenReturn(new int[]{0, 1});
+        when(cardStateRepository.findCardStates(List.of(1))).thenReturn(List.of(card(1, USERNAME, "100.00")));
+
+        // Act
+        CompletableFuture<TransferResult> result = transferEngine.submit(USERNAME, 1, 2, new BigDecimal("1.00"));
+
+        // Assert
+        Exception exception = assertThrows(Exception.class, () -> await(result));
+        assertInstanceOf(ConcurrencyFailureException.class, exception.getCause());
+        verify(cardStateRepository, times(3)).compareAndSetBalances(anyList());
+        verifyNoInteractions(cardTransferRepository);
+    }
+
+    @Test
+    void submit_WhenBatchFailsWithError_ShouldFailItAndKeepWriterRunning() throws Exception {
+        // Arrange
+        start(card(1, USERNAME, "100.00"), card(2, USERNAME, "0.00"));
+        when(cardStateRepository.compareAndSetBalances(anyList()))
+                .thenThrow(new StackOverflowError())
+                .thenReturn(new int[]{1, 1});
+        when(cardStateRepository.findCardStates(anyCollection()))
+                .thenReturn(List.of(card(1, USERNAME, "100.00"), card(2, USERNAME, "0.00")));
+
+        // Act
+        CompletableFuture<TransferResult> failed = transferEngine.submit(USERNAME, 1, 2, new BigDecimal("10.00"));
+        Exception exception = assertThrows(Exception.class, () -> await(failed));
+        TransferResult next = await(transferEngine.submit(USERNAME, 1, 2, new BigDecimal("10.00")));
+
+        // Assert
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+        assertInstanceOf(StackOverflowError.class, exception.getCause().getCause());
+        assertEquals(TransferResult.COMPLETED, next);
+        // Балансы в памяти сброшены и перечитаны из базы, неудачный перевод не учтен
+        List<List<BalanceChange>> changes = captureBalanceChanges(2);
+        assertEquals(List.of(
+                new BalanceChange(card(1, USERNAME, "100.00"), new BigDecimal("90.00")),
+                new BalanceChange(card(2, USERNAME, "0.00"), new BigDecimal("10.00"))), changes.get(1));
+    }
+
+    @Test
+    void submit_AfterStop_ShouldReturnNull() {
+        // Arrange
+        start(card(1, USERNAME, "100.00"));
+        transferEngine.stop();
+
+        // Act
+        CompletableFuture<TransferResult> result = transferEngine.submit(USERNAME, 1, 1, BigDecimal.ONE);
+
+        // Assert
+        assertNull(result);
+    }
+
+    private void start(CardState... cards) {
+        doAnswer(invocation -> {
+            Consumer<CardState> consumer = invocation.getArgument(0);
+            Arrays.stream(cards).forEach(consumer);
+            return null;
+        }).when(cardStateRepository).forEachCardState(any());
+        transferEngine = new TransferEngine(cardStateRepository, cardTransferRepository, transactionManager, 1, 16, 16, 3);
+        transferEngine.start();
+    }
+
+    private List<List<BalanceChange>> captureBalanceChanges(int times) {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<BalanceChange>> changes = ArgumentCaptor.forClass(List.class);
+        verify(cardStateRepository, times(times)).compareAndSetBalances(changes.capture());
+        return changes.getAllValues();
+    }
+
+    private static TransferResult await(CompletableFuture<TransferResult> result) throws Exception {
+        return result.get(5, TimeUnit.SECONDS);
+    }
+
+    private static CardState card(Integer cardId, String cardholder, String balance) {
+        return new CardState(cardId, cardholder, "ACTIVE", new BigDecimal(balance));
+    }
+}
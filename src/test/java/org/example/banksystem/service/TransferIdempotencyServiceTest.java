@@ -0,0 +1,151 @@
+package org.example.banksystem.service;
+
+import org.example.banksystem.repository.CardRepository;
+import org.example.banksystem.repository.TransferResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тесты для сервиса ключей идемпотентности переводов TransferIdempotencyService
+ */
+@ExtendWith(MockitoExtension.class)
+class TransferIdempotencyServiceTest {
+
+    private static final String USERNAME = "testuser";
+    private static final BigDecimal AMOUNT = new BigDecimal("100.0");
+
+    @Mock
+    private CardRepository cardRepository;
+
+    private TransferIdempotencyService transferIdempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        transferIdempotencyService = new TransferIdempotencyService(cardRepository, Duration.ofHours(24), 1000);
+    }
+
+    @Test
+    void execute_WhenRetried_ShouldReturnStoredResultWithoutTransferring() {
+        // Arrange
+        AtomicInteger transfers = new AtomicInteger();
+
+        // Act
+        TransferResult first = transferIdempotencyService.execute(USERNAME, "key", 1, 2, AMOUNT, () -> {
+            transfers.incrementAndGet();
+            return TransferResult.INSUFFICIENT_FUNDS;
+        });
+        TransferResult retry = transferIdempotencyService.execute(USERNAME, "key", 1, 2, new BigDecimal("100.00"), () -> {
+            transfers.incrementAndGet();
+            return TransferResult.COMPLETED;
+        });
+
+        // Assert
+        assertEquals(TransferResult.INSUFFICIENT_FUNDS, first);
+        assertEquals(TransferResult.INSUFFICIENT_FUNDS, retry);
+        assertEquals(1, transfers.get());
+    }
+
+    @Test
+    void execute_WithSameKeyForAnotherTransfer_ShouldReportReusedKey() {
+        // Arrange
+        transferIdempotencyService.execute(USERNAME, "key", 1, 2, AMOUNT, () -> TransferResult.COMPLETED);
+
+        // Act
+        TransferResult result = transferIdempotencyService.execute(USERNAME, "key", 1, 3, AMOUNT, () -> TransferResult.COMPLETED);
+
+        // Assert
+        assertEquals(TransferResult.IDEMPOTENCY_KEY_REUSED, result);
+    }
+
+    @Test
+    void execute_WithSameKeyOfAnotherUser_ShouldTransfer() {
+        // Arrange
+        transferIdempotencyService.execute(USERNAME, "key", 1, 2, AMOUNT, () -> TransferResult.COMPLETED);
+
+        // Act
+        TransferResult result = transferIdempotencyService.execute("other", "key", 1, 2, AMOUNT, () -> TransferResult.ACCESS_DENIED);
+
+        // Assert
+        assertEquals(TransferResult.ACCESS_DENIED, result);
+    }
+
+    @Test
+    void execute_WithConcurrentDuplicate_ShouldWaitForFirstTransfer() throws Exception {
+        // Arrange
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger transfers = new AtomicInteger();
+        CompletableFuture<TransferResult> first = CompletableFuture.supplyAsync(() ->
+                transferIdempotencyService.execute(USERNAME, "key", 1, 2, AMOUNT, () -> {
+                    transfers.incrementAndGet();
+                    started.countDown();
+                    awaitQuietly(release);
+                    return TransferResult.COMPLETED;
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Act
+        CompletableFuture<TransferResult> duplicate = CompletableFuture.supplyAsync(() ->
+                transferIdempotencyService.execute(USERNAME, "key", 1, 2, AMOUNT, () -> {
+                    transfers.incrementAndGet();
+                    return TransferResult.COMPLETED;
+                }));
+        Thread.sleep(50);
+        assertFalse(duplicate.isDone());
+        release.countDown();
+
+        // Assert
+        assertEquals(TransferResult.COMPLETED, first.get(5, TimeUnit.SECONDS));
+        assertEquals(TransferResult.COMPLETED, duplicate.get(5, TimeUnit.SECONDS));
+        assertEquals(1, transfers.get());
+    }
+
+    @Test
+    void execute_WhenTransferFails_ShouldNotRememberKey() {
+        // Arrange
+        assertThrows(CannotAcquireLockException.class, () -> transferIdempotencyService.execute(USERNAME, "key", 1, 2, AMOUNT,
+                () -> {
+                    throw new CannotAcquireLockException("could not serialize access");
+                }));
+
+        // Act
+        TransferResult result = transferIdempotencyService.execute(USERNAME, "key", 1, 2, AMOUNT, () -> TransferResult.COMPLETED);
+
+        // Assert
+        assertEquals(TransferResult.COMPLETED, result);
+    }
+
+    @Test
+    void prune_ShouldDeleteExpiredKeys() {
+        // Arrange
+        when(cardRepository.deleteExpiredIdempotencyKeys()).thenReturn(3);
+
+        // Act
+        transferIdempotencyService.prune();
+
+        // Assert
+        verify(cardRepository).deleteExpiredIdempotencyKeys();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package org.example.banksystem.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.banksystem.dto.response.UserImportResult;
+import org.example.banksystem.security.PasswordHasher;
+import org.example.banksystem.security.TokenVersionRegistry;
+import org.example.banksystem.security.UserDetailsCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тесты для сервиса массового импорта пользователей UserImportService
+ */
+@ExtendWith(MockitoExtension.class)
+class UserImportServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private PasswordHasher passwordHasher;
+
+    @Mock
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private UserImportService userImportService;
+
+    @BeforeEach
+    void setUp() {
+        userImportService = new UserImportService(jdbcTemplate, transactionManager, passwordHasher, objectMapper,
+                tokenVersionRegistry, userDetailsCache);
+        ReflectionTestUtils.setField(userImportService, "schema", "banking");
+        ReflectionTestUtils.setField(userImportService, "batchSize", 500);
+    }
+
+    @Test
+    void importUsers_Csv_ShouldInsertRowsAndReportDuplicates() throws Exception {
+        // Arrange
+        String csv = "username,password,role\nalice,secret,ROLE_USER\nbob,pa,ss,ROLE_ADMIN\n";
+        when(passwordHasher.encodeAll(List.of("secret", "pa,ss"))).thenReturn(List.of("hash1", "hash2"));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1, 0});
+
+        // Act
+        List<UserImportResult> results = importUsers(csv, UserImportService.Format.CSV);
+
+        // Assert
+        assertEquals(List.of(
+                UserImportResult.created(2, "alice"),
+                UserImportResult.failed(3, "bob", "User already exists")), results);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(contains("INSERT INTO banking.users"), batch.capture());
+        assertArrayEquals(new Object[]{"alice", "hash1", "ROLE_USER"}, batch.getValue().get(0));
+        assertArrayEquals(new Object[]{"bob", "hash2", "ROLE_ADMIN"}, batch.getValue().get(1));
+        verify(tokenVersionRegistry).invalidate("alice");
+        verify(userDetailsCache).invalidate("alice");
+        verify(userDetailsCache, never()).invalidate("bob");
+    }
+
+    @Test
+    void importUsers_Ndjson_ShouldRejectInvalidRowsWithoutHashing() throws Exception {
+        // Arrange
+        String ndjson = """
+                {"username":"alice","password":"secret","role":"ROLE_USER"}
+                {"username":"bob","password":"secret","role":"ROLE_ROOT"}
+                {"username":"carol","password":"","role":"ROLE_USER"}
+                {"username":"averyveryverylongusername","password":"secret","role":"ROLE_USER"}
+                not a json
+                """;
+        when(passwordHasher.encodeAll(List.of("secret"))).thenReturn(List.of("hash"));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1});
+
+        // Act
+        List<UserImportResult> results = importUsers(ndjson, UserImportService.Format.NDJSON);
+
+        // Assert
+        assertEquals(List.of(
+                UserImportResult.created(1, "alice"),
+                UserImportResult.failed(2, "bob", "Role not found"),
+                UserImportResult.failed(3, "carol", "Password is empty"),
+                UserImportResult.failed(4, "averyveryverylongusername", "Invalid username"),
+                UserImportResult.failed(5, null, "Malformed row")), results);
+    }
+
+    @Test
+    void importUsers_ShouldProcessFileInBatches() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(userImportService, "batchSize", 2);
+        String csv = "alice,secret,ROLE_USER\nbob,secret,ROLE_USER\n\ncarol,secret,ROLE_USER\n";
+        when(passwordHasher.encodeAll(anyList())).thenReturn(List.of("hash1", "hash2"), List.of("hash3"));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1, 1}, new int[]{1});
+
+        // Act
+        List<UserImportResult> results = importUsers(csv, UserImportService.Format.CSV);
+
+        // Assert
+        assertEquals(List.of(
+                UserImportResult.created(1, "alice"),
+                UserImportResult.created(2, "bob"),
+                UserImportResult.created(4, "carol")), results);
+        verify(passwordHasher, times(2)).encodeAll(anyList());
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void importUsers_WhenBatchFails_ShouldReportRowsAndContinue() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(userImportService, "batchSize", 1);
+        String csv = "alice,secret,ROLE_USER\nbob,secret,ROLE_USER\n";
+        when(passwordHasher.encodeAll(anyList())).thenReturn(List.of("hash"));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("Connection lost"))
+                .thenReturn(new int[]{1});
+
+        // Act
+        List<UserImportResult> results = importUsers(csv, UserImportService.Format.CSV);
+
+        // Assert
+        assertEquals(List.of(
+                UserImportResult.failed(1, "alice", "Import failed"),
+                UserImportResult.created(2, "bob")), results);
+        verify(userDetailsCache, never()).invalidate("alice");
+    }
+
+    private List<UserImportResult> importUsers(String content, UserImportService.Format format) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        userImportService.importUsers(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), format, output);
+        List<UserImportResult> results = new ArrayList<>();
+        for (String line : output.toString(StandardCharsets.UTF_8).split("\n")) {
+            results.add(objectMapper.readValue(line, UserImportResult.class));
+        }
+        return results;
+    }
+}
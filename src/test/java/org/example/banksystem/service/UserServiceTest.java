@@ -5,17 +5,27 @@ import org.example.banksystem.entity.Role;
 import org.example.banksystem.entity.User;
 import org.example.banksystem.exceptions.users.UserNotFoundException;
 import org.example.banksystem.exceptions.users.UserWrongCredentialsException;
+import org.example.banksystem.repository.Patch;
 import org.example.banksystem.repository.UserRepository;
+import org.example.banksystem.security.PasswordHasher;
+import org.example.banksystem.security.TokenVersionRegistry;
+import org.example.banksystem.security.UserDetailsCache;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.dao.DataIntegrityViolationException;
 
+import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -31,7 +41,13 @@ class UserServiceTest {
     private UserRepository userRepository;
 
     @Mock
-    private BCryptPasswordEncoder bCryptPasswordEncoder;
+    private PasswordHasher passwordHasher;
+
+    @Mock
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    @Mock
+    private UserDetailsCache userDetailsCache;
 
     @InjectMocks
     private UserService userService;
@@ -107,17 +123,14 @@ class UserServiceTest {
     @Test
     void addUser_WithValidData_ShouldSaveUser() {
         // Arrange
-        when(userRepository.existsById(USERNAME)).thenReturn(false);
-        when(bCryptPasswordEncoder.encode(PASSWORD)).thenReturn(ENCODED_PASSWORD);
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        when(passwordHasher.encode(PASSWORD)).thenReturn(ENCODED_PASSWORD);
 
         // Act
         userService.addUser(USERNAME, PASSWORD, ROLE_USER);
 
         // Assert
-        verify(userRepository).existsById(USERNAME);
-        verify(bCryptPasswordEncoder).encode(PASSWORD);
-        verify(userRepository).save(argThat(user ->
+        verify(passwordHasher).encode(PASSWORD);
+        verify(userRepository).persist(argThat(user ->
                 user.getUsername().equals(USERNAME) &&
                         user.getPassword().equals(ENCODED_PASSWORD) &&
                         user.getRole() == Role.ROLE_USER
@@ -127,15 +140,13 @@ class UserServiceTest {
     @Test
     void addUser_WithAdminRole_ShouldSaveAdminUser() {
         // Arrange
-        when(userRepository.existsById(USERNAME)).thenReturn(false);
-        when(bCryptPasswordEncoder.encode(PASSWORD)).thenReturn(ENCODED_PASSWORD);
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        when(passwordHasher.encode(PASSWORD)).thenReturn(ENCODED_PASSWORD);
 
         // Act
         userService.addUser(USERNAME, PASSWORD, ROLE_ADMIN);
 
         // Assert
-        verify(userRepository).save(argThat(user ->
+        verify(userRepository).persist(argThat(user ->
                 user.getUsername().equals(USERNAME) &&
                         user.getPassword().equals(ENCODED_PASSWORD) &&
                         user.getRole() == Role.ROLE_ADMIN
@@ -145,32 +156,30 @@ class UserServiceTest {
     @Test
     void addUser_WhenUserAlreadyExists_ShouldThrowUserWrongCredentialsException() {
         // Arrange
-        when(userRepository.existsById(USERNAME)).thenReturn(true);
+        when(passwordHasher.encode(PASSWORD)).thenReturn(ENCODED_PASSWORD);
+        when(userRepository.persist(any(User.class))).thenThrow(constraintViolation("users_pkey"));
 
         // Act & Assert
         UserWrongCredentialsException exception = assertThrows(UserWrongCredentialsException.class,
                 () -> userService.addUser(USERNAME, PASSWORD, ROLE_USER));
 
         assertEquals("User already exists", exception.getMessage());
-        verify(userRepository).existsById(USERNAME);
-        verify(bCryptPasswordEncoder, never()).encode(anyString());
-        verify(userRepository, never()).save(any());
+        verify(userRepository, never()).existsById(anyString());
+        verify(userDetailsCache, never()).invalidate(anyString());
     }
 
     @Test
     void addUser_WhenInvalidRole_ShouldThrowUserWrongCredentialsException() {
         // Arrange
         String invalidRole = "INVALID_ROLE";
-        when(userRepository.existsById(USERNAME)).thenReturn(false);
 
         // Act & Assert
         UserWrongCredentialsException exception = assertThrows(UserWrongCredentialsException.class,
                 () -> userService.addUser(USERNAME, PASSWORD, invalidRole));
 
         assertEquals("Role not found", exception.getMessage());
-        verify(userRepository).existsById(USERNAME);
-        verify(bCryptPasswordEncoder, never()).encode(anyString());
-        verify(userRepository, never()).save(any());
+        verify(passwordHasher, never()).encode(anyString());
+        verify(userRepository, never()).persist(any());
     }
 
     @Test
@@ -179,16 +188,14 @@ class UserServiceTest {
         String rawPassword = "rawPassword";
         String encodedPassword = "encodedPassword";
 
-        when(userRepository.existsById(USERNAME)).thenReturn(false);
-        when(bCryptPasswordEncoder.encode(rawPassword)).thenReturn(encodedPassword);
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        when(passwordHasher.encode(rawPassword)).thenReturn(encodedPassword);
 
         // Act
         userService.addUser(USERNAME, rawPassword, ROLE_USER);
 
         // Assert
-        verify(bCryptPasswordEncoder).encode(rawPassword);
-        verify(userRepository).save(argThat(user ->
+        verify(passwordHasher).encode(rawPassword);
+        verify(userRepository).persist(argThat(user ->
                 user.getPassword().equals(encodedPassword)
         ));
     }
@@ -199,52 +206,56 @@ class UserServiceTest {
         String newPassword = "newPassword123";
         String encodedNewPassword = "encodedNewPassword123";
 
-        when(userRepository.existsById(USERNAME)).thenReturn(true);
-        when(bCryptPasswordEncoder.encode(newPassword)).thenReturn(encodedNewPassword);
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        when(userRepository.findById(USERNAME)).thenReturn(Optional.of(testUser));
+        when(passwordHasher.encode(newPassword)).thenReturn(encodedNewPassword);
+        when(userRepository.saveAndFlush(any(User.class))).thenReturn(testUser);
 
         // Act
         userService.updateUser(USERNAME, newPassword, ROLE_ADMIN);
 
         // Assert
-        verify(userRepository).existsById(USERNAME);
-        verify(bCryptPasswordEncoder).encode(newPassword);
-        verify(userRepository).save(argThat(user ->
+        verify(userRepository).findById(USERNAME);
+        verify(passwordHasher).encode(newPassword);
+        verify(userRepository).saveAndFlush(argThat(user ->
                 user.getUsername().equals(USERNAME) &&
                         user.getPassword().equals(encodedNewPassword) &&
-                        user.getRole() == Role.ROLE_ADMIN
+                        user.getRole() == Role.ROLE_ADMIN &&
+                        user.getTokenVersion() == 1
         ));
+        verify(userRepository).deleteRefreshTokens(USERNAME);
+        verify(tokenVersionRegistry).invalidate(USERNAME);
+        verify(userDetailsCache).invalidate(USERNAME);
     }
 
     @Test
     void updateUser_WhenUserNotFound_ShouldThrowUserNotFoundException() {
         // Arrange
-        when(userRepository.existsById(USERNAME)).thenReturn(false);
+        when(userRepository.findById(USERNAME)).thenReturn(Optional.empty());
 
         // Act & Assert
         UserNotFoundException exception = assertThrows(UserNotFoundException.class,
                 () -> userService.updateUser(USERNAME, PASSWORD, ROLE_USER));
 
         assertEquals("User not found", exception.getMessage());
-        verify(userRepository).existsById(USERNAME);
-        verify(bCryptPasswordEncoder, never()).encode(anyString());
-        verify(userRepository, never()).save(any());
+        verify(userRepository).findById(USERNAME);
+        verify(passwordHasher, never()).encode(anyString());
+        verify(userRepository, never()).saveAndFlush(any());
     }
 
     @Test
     void updateUser_WhenInvalidRole_ShouldThrowUserWrongCredentialsException() {
         // Arrange
         String invalidRole = "INVALID_ROLE";
-        when(userRepository.existsById(USERNAME)).thenReturn(true);
+        when(userRepository.findById(USERNAME)).thenReturn(Optional.of(testUser));
 
         // Act & Assert
         UserWrongCredentialsException exception = assertThrows(UserWrongCredentialsException.class,
                 () -> userService.updateUser(USERNAME, PASSWORD, invalidRole));
 
         assertEquals("Role not found", exception.getMessage());
-        verify(userRepository).existsById(USERNAME);
-        verify(bCryptPasswordEncoder, never()).encode(anyString());
-        verify(userRepository, never()).save(any());
+        verify(userRepository).findById(USERNAME);
+        verify(passwordHasher, never()).encode(anyString());
+        verify(userRepository, never()).saveAndFlush(any());
     }
 
     @Test
@@ -253,20 +264,52 @@ class UserServiceTest {
         String newRawPassword = "newRawPassword";
         String encodedNewPassword = "encodedNewPassword";
 
-        when(userRepository.existsById(USERNAME)).thenReturn(true);
-        when(bCryptPasswordEncoder.encode(newRawPassword)).thenReturn(encodedNewPassword);
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        when(userRepository.findById(USERNAME)).thenReturn(Optional.of(testUser));
+        when(passwordHasher.encode(newRawPassword)).thenReturn(encodedNewPassword);
+        when(userRepository.saveAndFlush(any(User.class))).thenReturn(testUser);
 
         // Act
         userService.updateUser(USERNAME, newRawPassword, ROLE_USER);
 
         // Assert
-        verify(bCryptPasswordEncoder).encode(newRawPassword);
-        verify(userRepository).save(argThat(user ->
+        verify(passwordHasher).encode(newRawPassword);
+        verify(userRepository).saveAndFlush(argThat(user ->
                 user.getPassword().equals(encodedNewPassword)
         ));
     }
 
+    @Test
+    void revokeTokens_ShouldIncrementTokenVersionAndInvalidateCaches() {
+        // Arrange
+        when(userRepository.findById(USERNAME)).thenReturn(Optional.of(testUser));
+
+        // Act
+        userService.revokeTokens(USERNAME);
+
+        // Assert
+        InOrder inOrder = inOrder(userRepository);
+        inOrder.verify(userRepository).saveAndFlush(argThat(user ->
+                user.getTokenVersion() == 1 &&
+                        user.getPassword().equals(ENCODED_PASSWORD) &&
+                        user.getRole() == Role.ROLE_USER
+        ));
+        inOrder.verify(userRepository).deleteRefreshTokens(USERNAME);
+        verify(tokenVersionRegistry).invalidate(USERNAME);
+        verify(userDetailsCache).invalidate(USERNAME);
+    }
+
+    @Test
+    void revokeTokens_WhenUserNotFound_ShouldThrowUserNotFoundException() {
+        // Arrange
+        when(userRepository.findById(USERNAME)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(UserNotFoundException.class, () -> userService.revokeTokens(USERNAME));
+        verify(userRepository, never()).saveAndFlush(any());
+        verify(userRepository, never()).deleteRefreshTokens(any());
+        verifyNoInteractions(tokenVersionRegistry, userDetailsCache);
+    }
+
     @Test
     void delete_WhenUserExists_ShouldDeleteUser() {
         // Arrange
@@ -278,6 +321,8 @@ class UserServiceTest {
         // Assert
         verify(userRepository).existsById(USERNAME);
         verify(userRepository).deleteById(USERNAME);
+        verify(tokenVersionRegistry).invalidate(USERNAME);
+        verify(userDetailsCache).invalidate(USERNAME);
     }
 
     @Test
@@ -300,20 +345,18 @@ class UserServiceTest {
         for (Role role : Role.values()) {
             // Arrange
             String username = "user_" + role.name();
-            when(userRepository.existsById(username)).thenReturn(false);
-            when(bCryptPasswordEncoder.encode(PASSWORD)).thenReturn(ENCODED_PASSWORD);
-            when(userRepository.save(any(User.class))).thenReturn(testUser);
+            when(passwordHasher.encode(PASSWORD)).thenReturn(ENCODED_PASSWORD);
 
             // Act
             userService.addUser(username, PASSWORD, role.name());
 
             // Assert
-            verify(userRepository).save(argThat(user ->
+            verify(userRepository).persist(argThat(user ->
                     user.getRole() == role
             ));
 
             // Reset mocks for next iteration
-            reset(userRepository, bCryptPasswordEncoder);
+            reset(userRepository, passwordHasher);
         }
     }
 
@@ -323,18 +366,92 @@ class UserServiceTest {
         String newPassword = "newPassword123";
         String encodedNewPassword = "encodedNewPassword123";
 
-        when(userRepository.existsById(USERNAME)).thenReturn(true);
-        when(bCryptPasswordEncoder.encode(newPassword)).thenReturn(encodedNewPassword);
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        when(userRepository.findById(USERNAME)).thenReturn(Optional.of(testUser));
+        when(passwordHasher.encode(newPassword)).thenReturn(encodedNewPassword);
+        when(userRepository.saveAndFlush(any(User.class))).thenReturn(testUser);
 
         // Act
         userService.updateUser(USERNAME, newPassword, ROLE_USER);
 
         // Assert
-        verify(userRepository).save(argThat(user ->
+        verify(userRepository).saveAndFlush(argThat(user ->
                 user.getUsername().equals(USERNAME) &&
                         user.getPassword().equals(encodedNewPassword) &&
                         user.getRole() == Role.ROLE_USER
         ));
     }
-}
\ No newline at end of file
+
+    @Test
+    void patchUser_WithRoleOnly_ShouldUpdateRoleWithoutHashing() {
+        // Arrange
+        when(userRepository.patch(eq(USERNAME), any())).thenReturn(1);
+
+        // Act
+        userService.patchUser(USERNAME, null, ROLE_ADMIN);
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Patch<User>> patch = ArgumentCaptor.forClass(Patch.class);
+        verify(userRepository).patch(eq(USERNAME), patch.capture());
+        assertEquals(Map.of("role", Role.ROLE_ADMIN), patch.getValue().getValues());
+        assertEquals(Set.of("tokenVersion"), patch.getValue().getIncrements());
+        verifyNoInteractions(passwordHasher);
+        verify(userRepository, never()).findById(any());
+        verify(userRepository).deleteRefreshTokens(USERNAME);
+        verify(tokenVersionRegistry).invalidate(USERNAME);
+        verify(userDetailsCache).invalidate(USERNAME);
+    }
+
+    @Test
+    void patchUser_WithPasswordOnly_ShouldHashPasswordAndKeepRole() {
+        // Arrange
+        when(passwordHasher.encode(PASSWORD)).thenReturn(ENCODED_PASSWORD);
+        when(userRepository.patch(eq(USERNAME), any())).thenReturn(1);
+
+        // Act
+        userService.patchUser(USERNAME, PASSWORD, null);
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Patch<User>> patch = ArgumentCaptor.forClass(Patch.class);
+        verify(userRepository).patch(eq(USERNAME), patch.capture());
+        assertEquals(Map.of("password", ENCODED_PASSWORD), patch.getValue().getValues());
+    }
+
+    @Test
+    void patchUser_WhenUserNotFound_ShouldThrowException() {
+        // Arrange
+        when(userRepository.patch(eq(USERNAME), any())).thenReturn(0);
+
+        // Act & Assert
+        assertThrows(UserNotFoundException.class, () -> userService.patchUser(USERNAME, null, ROLE_USER));
+        verify(tokenVersionRegistry, never()).invalidate(any());
+        verify(userRepository, never()).deleteRefreshTokens(any());
+    }
+
+    @Test
+    void patchUser_WithInvalidRole_ShouldThrowException() {
+        // Act & Assert
+        UserWrongCredentialsException exception = assertThrows(UserWrongCredentialsException.class,
+                () -> userService.patchUser(USERNAME, PASSWORD, "ROLE_ROOT"));
+
+        assertEquals("Role not found", exception.getMessage());
+        verifyNoInteractions(passwordHasher);
+        verify(userRepository, never()).patch(any(), any());
+    }
+
+    @Test
+    void patchUser_WithoutFields_ShouldThrowException() {
+        // Act & Assert
+        UserWrongCredentialsException exception = assertThrows(UserWrongCredentialsException.class,
+                () -> userService.patchUser(USERNAME, null, null));
+
+        assertEquals("Nothing to update", exception.getMessage());
+        verify(userRepository, never()).patch(any(), any());
+    }
+
+    private static DataIntegrityViolationException constraintViolation(String constraintName) {
+        return new DataIntegrityViolationException("constraint violation",
+                new ConstraintViolationException("constraint violation", new SQLException("constraint violation"), constraintName));
+    }
+}